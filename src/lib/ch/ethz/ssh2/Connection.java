@@ -12,6 +12,7 @@ import java.util.Vector;
 
 import ch.ethz.ssh2.auth.AuthenticationManager;
 import ch.ethz.ssh2.channel.ChannelManager;
+import ch.ethz.ssh2.compression.CompressionFactory;
 import ch.ethz.ssh2.crypto.CryptoWishList;
 import ch.ethz.ssh2.crypto.cipher.BlockCipherFactory;
 import ch.ethz.ssh2.crypto.digest.MAC;
@@ -1160,6 +1161,26 @@ import ch.ethz.ssh2.util.TimeoutService.TimeoutToken;
 		cryptoWishList.c2s_mac_algos = macs;
 	}
 
+	/**
+	 * Enable/disable the compression of the packets in both directions.
+	 * The delayed "zlib@openssh.com" compression is used, it starts after
+	 * the authentication. It pays off on slow links, but costs CPU time on
+	 * fast ones.
+	 * <p>
+	 * Must be called before the connection is established, otherwise it
+	 * affects only the next key exchange. Compression is disabled by
+	 * default. It cannot be enabled, if the JVM is older than 1.7.
+	 * 
+	 * @param enable whether the compression should be offered to the server.
+	 */
+	public synchronized void setCompression(boolean enable)
+	{
+		String[] compressors = enable ? CompressionFactory.getAvailableCompressorList() : CompressionFactory
+				.getDefaultCompressorList();
+		cryptoWishList.c2s_comp_algos = compressors;
+		cryptoWishList.s2c_comp_algos = compressors;
+	}
+
 	/**
 	 * Sets the parameters for the diffie-hellman group exchange. Unless you
 	 * know what you are doing, you will never need this. Default values are
@@ -36,6 +36,17 @@ package ch.ethz.ssh2;
 	 */
 	public String serverToClientMACAlgorithm;
 
+	/**
+	 * The currently used compression algorithm for packets from to the client
+	 * to the server.
+	 */
+	public String clientToServerCompressionAlgorithm;
+	/**
+	 * The currently used compression algorithm for packets from to the server
+	 * to the client.
+	 */
+	public String serverToClientCompressionAlgorithm;
+
 	/**
 	 * The type of the server host key (currently either "ssh-dss" or
 	 * "ssh-rsa").
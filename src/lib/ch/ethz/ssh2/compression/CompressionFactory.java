@@ -0,0 +1,66 @@
+package ch.ethz.ssh2.compression;
+
+/**
+ * CompressionFactory.
+ * 
+ * @author Rasto Levrinc
+ */
+public class CompressionFactory
+{
+	/* Delayed zlib, it is started after the user authentication */
+
+	public static final String ZLIB_OPENSSH = "zlib@openssh.com";
+
+	public static final String NONE = "none";
+
+	/**
+	 * Returns the compression methods that are offered by default. The
+	 * compression must be turned on explicitly, since it only pays off on
+	 * slow links.
+	 */
+	public static String[] getDefaultCompressorList()
+	{
+		return new String[] { NONE };
+	}
+
+	/**
+	 * Returns all supported compression methods, higher priority first.
+	 */
+	public static String[] getAvailableCompressorList()
+	{
+		if (Zlib.isAvailable())
+			return new String[] { ZLIB_OPENSSH, NONE };
+		return new String[] { NONE };
+	}
+
+	public static void checkCompressorList(String[] compressorCandidates)
+	{
+		for (int i = 0; i < compressorCandidates.length; i++)
+		{
+			String c = compressorCandidates[i];
+			if (!NONE.equals(c) && !(ZLIB_OPENSSH.equals(c) && Zlib.isAvailable()))
+				throw new IllegalArgumentException("Unknown compression " + c);
+		}
+	}
+
+	/**
+	 * Returns whether the compression is started only after the user
+	 * authentication.
+	 */
+	public static boolean isDelayed(String type)
+	{
+		return ZLIB_OPENSSH.equals(type);
+	}
+
+	/**
+	 * Returns a new compressor for one direction, or null for "none".
+	 */
+	public static Zlib createCompressor(String type, boolean compress)
+	{
+		if (type == null || NONE.equals(type))
+			return null;
+		if (ZLIB_OPENSSH.equals(type))
+			return new Zlib(compress);
+		throw new IllegalArgumentException("Unknown compression " + type);
+	}
+}
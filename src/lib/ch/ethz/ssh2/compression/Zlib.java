@@ -0,0 +1,129 @@
+package ch.ethz.ssh2.compression;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Zlib. Compresses or uncompresses the payloads of one direction. The
+ * Deflater or Inflater is reused for all packets, since the stream spans
+ * the whole connection. Every packet ends with a sync flush.
+ * 
+ * @author Rasto Levrinc
+ */
+public class Zlib
+{
+	/* Maximal size of an uncompressed payload */
+
+	private static final int MAX_PAYLOAD_LENGTH = 256 * 1024;
+
+	private final Deflater deflater;
+
+	private final Inflater inflater;
+
+	private byte[] buffer = new byte[8192];
+
+	/**
+	 * @param compress true for the sending, false for the receiving direction.
+	 */
+	public Zlib(boolean compress)
+	{
+		if (compress)
+		{
+			deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+			inflater = null;
+		}
+		else
+		{
+			deflater = null;
+			inflater = new Inflater();
+		}
+	}
+
+	/**
+	 * Returns whether the JVM can flush the Deflater after every packet
+	 * (Java 7 or later).
+	 */
+	public static boolean isAvailable()
+	{
+		try
+		{
+			Deflater.class.getMethod("deflate", new Class<?>[] { byte[].class, int.class, int.class, int.class });
+			return true;
+		}
+		catch (NoSuchMethodException e)
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the buffer with the result of the last compress or uncompress
+	 * call. It is overwritten by the next call.
+	 */
+	public byte[] getBuffer()
+	{
+		return buffer;
+	}
+
+	/**
+	 * Compresses the data into the buffer and returns the compressed length.
+	 */
+	public int compress(byte[] src, int off, int len)
+	{
+		deflater.setInput(src, off, len);
+
+		int n = 0;
+		while (true)
+		{
+			n += deflater.deflate(buffer, n, buffer.length - n, Deflater.SYNC_FLUSH);
+			/* the flush is complete, if there was room left in the buffer */
+			if (n < buffer.length)
+				break;
+			grow();
+		}
+		return n;
+	}
+
+	/**
+	 * Uncompresses the data into the buffer and returns the uncompressed
+	 * length.
+	 */
+	public int uncompress(byte[] src, int off, int len) throws IOException
+	{
+		inflater.setInput(src, off, len);
+
+		int n = 0;
+		try
+		{
+			while (true)
+			{
+				int cnt = inflater.inflate(buffer, n, buffer.length - n);
+				n += cnt;
+				if (n < buffer.length && inflater.needsInput())
+					break;
+				if (cnt == 0 && !inflater.needsInput())
+					throw new IOException("Remote sent corrupt compressed data.");
+				if (n == buffer.length)
+				{
+					if (buffer.length >= MAX_PAYLOAD_LENGTH)
+						throw new IOException("Uncompressed payload is too big.");
+					grow();
+				}
+			}
+		}
+		catch (DataFormatException e)
+		{
+			throw (IOException) new IOException("Remote sent corrupt compressed data.").initCause(e);
+		}
+		return n;
+	}
+
+	private void grow()
+	{
+		byte[] tmp = new byte[buffer.length * 2];
+		System.arraycopy(buffer, 0, tmp, 0, buffer.length);
+		buffer = tmp;
+	}
+}
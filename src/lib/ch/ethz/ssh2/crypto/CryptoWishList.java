@@ -1,6 +1,7 @@
 
 package ch.ethz.ssh2.crypto;
 
+import ch.ethz.ssh2.compression.CompressionFactory;
 import ch.ethz.ssh2.crypto.cipher.BlockCipherFactory;
 import ch.ethz.ssh2.crypto.digest.MAC;
 import ch.ethz.ssh2.transport.KexManager;
@@ -19,4 +20,6 @@ public class CryptoWishList
 	public String[] s2c_enc_algos = BlockCipherFactory.getDefaultCipherList();
 	public String[] c2s_mac_algos = MAC.getMacList();
 	public String[] s2c_mac_algos = MAC.getMacList();
+	public String[] c2s_comp_algos = CompressionFactory.getDefaultCompressorList();
+	public String[] s2c_comp_algos = CompressionFactory.getDefaultCompressorList();
 }
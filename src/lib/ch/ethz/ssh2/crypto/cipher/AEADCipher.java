@@ -0,0 +1,32 @@
+package ch.ethz.ssh2.crypto.cipher;
+
+import java.security.GeneralSecurityException;
+
+/**
+ * AEADCipher. A cipher that encrypts and authenticates whole packets, so
+ * that there is no separate MAC. It is not a BlockCipher, since it cannot
+ * transform the packet block by block.
+ * 
+ * @author Rasto Levrinc
+ */
+public interface AEADCipher
+{
+	/**
+	 * Returns the block size, that the packets are padded to.
+	 */
+	public int getBlockSize();
+
+	/**
+	 * Returns the length of the tag, that follows the encrypted packet.
+	 */
+	public int getTagSize();
+
+	/**
+	 * Encrypts or decrypts one packet. The 4 byte packet length is in the
+	 * aad. When encrypting, len bytes are encrypted and the tag is appended,
+	 * when decrypting, len includes the tag. Returns the number of bytes
+	 * written to dst.
+	 */
+	public int transformPacket(byte[] aad, byte[] src, int srcoff, int len, byte[] dst, int dstoff)
+			throws GeneralSecurityException;
+}
@@ -0,0 +1,107 @@
+package ch.ethz.ssh2.crypto.cipher;
+
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * AESGCM. The aes128-gcm@openssh.com and aes256-gcm@openssh.com ciphers
+ * (RFC 5647 with the OpenSSH changes): the packet length is not encrypted,
+ * but authenticated, the whole rest of the packet is encrypted and followed
+ * by a 16 byte tag, there is no separate MAC. The 12 byte nonce is a fixed
+ * part and a 64 bit counter that is incremented after every packet.
+ * 
+ * @author Rasto Levrinc
+ */
+public class AESGCM implements AEADCipher
+{
+	public static final int TAG_SIZE = 16;
+
+	public static final int IV_SIZE = 12;
+
+	private static final int BLOCK_SIZE = 16;
+
+	private final Cipher cipher;
+
+	private final SecretKeySpec key;
+
+	private final boolean encrypt;
+
+	private final byte[] iv = new byte[IV_SIZE];
+
+	public AESGCM(boolean encrypt, byte[] key, byte[] iv) throws GeneralSecurityException
+	{
+		this.cipher = Cipher.getInstance("AES/GCM/NoPadding");
+		this.key = new SecretKeySpec(key, "AES");
+		this.encrypt = encrypt;
+		System.arraycopy(iv, 0, this.iv, 0, IV_SIZE);
+	}
+
+	/**
+	 * Returns whether the JCE provides AES in the GCM mode.
+	 */
+	public static boolean isAvailable(int keySize)
+	{
+		try
+		{
+			Cipher c = Cipher.getInstance("AES/GCM/NoPadding");
+			byte[] k = new byte[keySize];
+			c.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(k, "AES"), new GCMParameterSpec(TAG_SIZE * 8,
+					new byte[IV_SIZE]));
+			return true;
+		}
+		catch (GeneralSecurityException e)
+		{
+			return false;
+		}
+		catch (NoClassDefFoundError e)
+		{
+			/* java 6 */
+			return false;
+		}
+	}
+
+	public int getBlockSize()
+	{
+		return BLOCK_SIZE;
+	}
+
+	public int getTagSize()
+	{
+		return TAG_SIZE;
+	}
+
+	public int transformPacket(byte[] aad, byte[] src, int srcoff, int len, byte[] dst, int dstoff)
+			throws GeneralSecurityException
+	{
+		return transform(aad, 4, src, srcoff, len, dst, dstoff);
+	}
+
+	/**
+	 * Encrypts or decrypts len bytes with the first aadlen bytes of aad as
+	 * associated data with the current nonce and increments the counter
+	 * afterwards. Returns the number of bytes written to dst.
+	 */
+	public int transform(byte[] aad, int aadlen, byte[] src, int srcoff, int len, byte[] dst, int dstoff)
+			throws GeneralSecurityException
+	{
+		cipher.init(encrypt ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_SIZE * 8,
+				iv));
+		if (aadlen > 0)
+			cipher.updateAAD(aad, 0, aadlen);
+		int n = cipher.doFinal(src, srcoff, len, dst, dstoff);
+		incrementCounter();
+		return n;
+	}
+
+	private void incrementCounter()
+	{
+		for (int i = IV_SIZE - 1; i >= 4; i--)
+		{
+			if (++iv[i] != 0)
+				break;
+		}
+	}
+}
@@ -1,6 +1,7 @@
 
 package ch.ethz.ssh2.crypto.cipher;
 
+import java.security.GeneralSecurityException;
 import java.util.Vector;
 
 /**
@@ -17,34 +18,80 @@ import java.util.Vector;
 		int blocksize;
 		int keysize;
 		String cipherClass;
+		String jceAlgorithm;
 
 		public CipherEntry(String type, int blockSize, int keySize, String cipherClass)
+		{
+			this(type, blockSize, keySize, cipherClass, null);
+		}
+
+		public CipherEntry(String type, int blockSize, int keySize, String cipherClass, String jceAlgorithm)
 		{
 			this.type = type;
 			this.blocksize = blockSize;
 			this.keysize = keySize;
 			this.cipherClass = cipherClass;
+			this.jceAlgorithm = jceAlgorithm;
 		}
 	}
 
 	static Vector ciphers = new Vector();
 
+	/**
+	 * Whether the JCE (javax.crypto) implementations are used, if they are
+	 * available. The pure Java ones are used otherwise.
+	 */
+	private static volatile boolean useJCE = true;
+
 	static
 	{
 		/* Higher Priority First */
 
-		ciphers.addElement(new CipherEntry("aes256-ctr", 16, 32, "ch.ethz.ssh2.crypto.cipher.AES"));
-		ciphers.addElement(new CipherEntry("aes192-ctr", 16, 24, "ch.ethz.ssh2.crypto.cipher.AES"));
-		ciphers.addElement(new CipherEntry("aes128-ctr", 16, 16, "ch.ethz.ssh2.crypto.cipher.AES"));
-		ciphers.addElement(new CipherEntry("blowfish-ctr", 8, 16, "ch.ethz.ssh2.crypto.cipher.BlowFish"));
+		if (AESGCM.isAvailable(16))
+			ciphers.addElement(new CipherEntry("aes128-gcm@openssh.com", 16, 16, null, "AES"));
+		if (AESGCM.isAvailable(32))
+			ciphers.addElement(new CipherEntry("aes256-gcm@openssh.com", 16, 32, null, "AES"));
+
+		ciphers.addElement(new CipherEntry("aes256-ctr", 16, 32, "ch.ethz.ssh2.crypto.cipher.AES", "AES"));
+		ciphers.addElement(new CipherEntry("aes192-ctr", 16, 24, "ch.ethz.ssh2.crypto.cipher.AES", "AES"));
+		ciphers.addElement(new CipherEntry("aes128-ctr", 16, 16, "ch.ethz.ssh2.crypto.cipher.AES", "AES"));
+		ciphers.addElement(new CipherEntry("blowfish-ctr", 8, 16, "ch.ethz.ssh2.crypto.cipher.BlowFish", "Blowfish"));
 
-		ciphers.addElement(new CipherEntry("aes256-cbc", 16, 32, "ch.ethz.ssh2.crypto.cipher.AES"));
-		ciphers.addElement(new CipherEntry("aes192-cbc", 16, 24, "ch.ethz.ssh2.crypto.cipher.AES"));
-		ciphers.addElement(new CipherEntry("aes128-cbc", 16, 16, "ch.ethz.ssh2.crypto.cipher.AES"));
-		ciphers.addElement(new CipherEntry("blowfish-cbc", 8, 16, "ch.ethz.ssh2.crypto.cipher.BlowFish"));
+		ciphers.addElement(new CipherEntry("aes256-cbc", 16, 32, "ch.ethz.ssh2.crypto.cipher.AES", "AES"));
+		ciphers.addElement(new CipherEntry("aes192-cbc", 16, 24, "ch.ethz.ssh2.crypto.cipher.AES", "AES"));
+		ciphers.addElement(new CipherEntry("aes128-cbc", 16, 16, "ch.ethz.ssh2.crypto.cipher.AES", "AES"));
+		ciphers.addElement(new CipherEntry("blowfish-cbc", 8, 16, "ch.ethz.ssh2.crypto.cipher.BlowFish", "Blowfish"));
 		
-		ciphers.addElement(new CipherEntry("3des-ctr", 8, 24, "ch.ethz.ssh2.crypto.cipher.DESede"));
-		ciphers.addElement(new CipherEntry("3des-cbc", 8, 24, "ch.ethz.ssh2.crypto.cipher.DESede"));
+		ciphers.addElement(new CipherEntry("3des-ctr", 8, 24, "ch.ethz.ssh2.crypto.cipher.DESede", "DESede"));
+		ciphers.addElement(new CipherEntry("3des-cbc", 8, 24, "ch.ethz.ssh2.crypto.cipher.DESede", "DESede"));
+	}
+
+	/**
+	 * Sets whether the JCE implementations should be used for the new
+	 * ciphers. The AEAD ciphers are always from the JCE.
+	 */
+	public static void setUseJCE(boolean use)
+	{
+		useJCE = use;
+	}
+
+	/**
+	 * Returns whether the cipher encrypts whole packets and authenticates
+	 * them itself, so that there is no MAC.
+	 */
+	public static boolean isAEAD(String type)
+	{
+		return type.endsWith("-gcm@openssh.com");
+	}
+
+	/**
+	 * Returns how long IV the cipher needs.
+	 */
+	public static int getIVSize(String type)
+	{
+		if (isAEAD(type))
+			return AESGCM.IV_SIZE;
+		return getBlockSize(type);
 	}
 
 	public static String[] getDefaultCipherList()
@@ -69,20 +116,28 @@ import java.util.Vector;
 		try
 		{
 			CipherEntry ce = getEntry(type);
+
+			String mode = null;
+			if (type.endsWith("-cbc"))
+				mode = "CBC";
+			else if (type.endsWith("-ctr"))
+				mode = "CTR";
+			else
+				throw new IllegalArgumentException("Cannot instantiate " + type);
+
+			if (useJCE && ce.jceAlgorithm != null && JCEBlockCipher.isAvailable(ce.jceAlgorithm, mode, ce.keysize))
+				return new JCEBlockCipher(ce.jceAlgorithm, mode, encrypt, key, iv);
+
 			Class cc = Class.forName(ce.cipherClass);
 			BlockCipher bc = (BlockCipher) cc.newInstance();
 
-			if (type.endsWith("-cbc"))
+			if ("CBC".equals(mode))
 			{
 				bc.init(encrypt, key);
 				return new CBCMode(bc, iv, encrypt);
 			}
-			else if (type.endsWith("-ctr"))
-			{
-				bc.init(true, key);
-				return new CTRMode(bc, iv, encrypt);
-			}
-			throw new IllegalArgumentException("Cannot instantiate " + type);
+			bc.init(true, key);
+			return new CTRMode(bc, iv, encrypt);
 		}
 		catch (Exception e)
 		{
@@ -90,6 +145,24 @@ import java.util.Vector;
 		}
 	}
 
+	/**
+	 * Creates the cipher for the type, for which isAEAD is true.
+	 */
+	public static AEADCipher createAEADCipher(String type, boolean encrypt, byte[] key, byte[] iv)
+	{
+		getEntry(type);
+		if (!isAEAD(type))
+			throw new IllegalArgumentException("Cannot instantiate " + type);
+		try
+		{
+			return new AESGCM(encrypt, key, iv);
+		}
+		catch (GeneralSecurityException e)
+		{
+			throw new IllegalArgumentException("Cannot instantiate " + type);
+		}
+	}
+
 	private static CipherEntry getEntry(String type)
 	{
 		for (int i = 0; i < ciphers.size(); i++)
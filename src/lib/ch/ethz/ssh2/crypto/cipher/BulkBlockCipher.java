@@ -0,0 +1,15 @@
+package ch.ethz.ssh2.crypto.cipher;
+
+/**
+ * BulkBlockCipher. A block cipher that can transform many consecutive
+ * blocks in one call.
+ * 
+ * @author Rasto Levrinc
+ */
+public interface BulkBlockCipher extends BlockCipher
+{
+	/**
+	 * Transforms len bytes, len must be a multiple of the block size.
+	 */
+	public void transformBlocks(byte[] src, int srcoff, byte[] dst, int dstoff, int len);
+}
@@ -28,6 +28,7 @@ public class CipherInputStream
 	byte[] input_buffer = new byte[BUFF_SIZE];
 	int input_buffer_pos = 0;
 	int input_buffer_size = 0;
+	byte[] bulk_buffer = new byte[BUFF_SIZE];
 
 	public CipherInputStream(BlockCipher tc, InputStream bi)
 	{
@@ -71,16 +72,21 @@ public class CipherInputStream
 		pos = blockSize;
 	}
 
-	private void getBlock() throws IOException
+	private void readFully(byte[] b, int len) throws IOException
 	{
 		int n = 0;
-		while (n < blockSize)
+		while (n < len)
 		{
-			int len = internal_read(enc, n, blockSize - n);
-			if (len < 0)
+			int cnt = internal_read(b, n, len - n);
+			if (cnt < 0)
 				throw new IOException("Cannot read full block, EOF reached.");
-			n += len;
+			n += cnt;
 		}
+	}
+
+	private void getBlock() throws IOException
+	{
+		readFully(enc, blockSize);
 
 		try
 		{
@@ -104,6 +110,25 @@ public class CipherInputStream
 
 		while (len > 0)
 		{
+			if (pos >= blockSize && len >= blockSize && currentCipher instanceof BulkBlockCipher)
+			{
+				/* whole blocks in one call */
+				int n = Math.min(len - (len % blockSize), BUFF_SIZE - (BUFF_SIZE % blockSize));
+				readFully(bulk_buffer, n);
+				try
+				{
+					((BulkBlockCipher) currentCipher).transformBlocks(bulk_buffer, 0, dst, off, n);
+				}
+				catch (Exception e)
+				{
+					throw new IOException("Error while decrypting block.");
+				}
+				off += n;
+				len -= n;
+				count += n;
+				continue;
+			}
+
 			if (pos >= blockSize)
 				getBlock();
 
@@ -27,6 +27,7 @@ public class CipherOutputStream
 	final int BUFF_SIZE = 2048;
 	byte[] out_buffer = new byte[BUFF_SIZE];
 	int out_buffer_pos = 0;
+	byte[] bulk_buffer = new byte[BUFF_SIZE];
 
 	public CipherOutputStream(BlockCipher tc, OutputStream bo)
 	{
@@ -106,6 +107,24 @@ public class CipherOutputStream
 	{
 		while (len > 0)
 		{
+			if (pos == 0 && len >= blockSize && currentCipher instanceof BulkBlockCipher)
+			{
+				/* whole blocks in one call */
+				int n = Math.min(len - (len % blockSize), BUFF_SIZE - (BUFF_SIZE % blockSize));
+				try
+				{
+					((BulkBlockCipher) currentCipher).transformBlocks(src, off, bulk_buffer, 0, n);
+				}
+				catch (Exception e)
+				{
+					throw (IOException) new IOException("Error while encrypting blocks.").initCause(e);
+				}
+				internal_write(bulk_buffer, 0, n);
+				off += n;
+				len -= n;
+				continue;
+			}
+
 			int avail = blockSize - pos;
 			int copy = Math.min(avail, len);
 
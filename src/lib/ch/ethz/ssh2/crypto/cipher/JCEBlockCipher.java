@@ -0,0 +1,81 @@
+package ch.ethz.ssh2.crypto.cipher;
+
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * JCEBlockCipher. A cipher in CBC or CTR mode backed by javax.crypto, so
+ * that the JVM can use its intrinsics (e.g., AES-NI).
+ * 
+ * @author Rasto Levrinc
+ */
+public class JCEBlockCipher implements BulkBlockCipher
+{
+	private final Cipher cipher;
+
+	private final int blockSize;
+
+	/**
+	 * @param algorithm JCE algorithm, e.g., "AES".
+	 * @param mode "CBC" or "CTR".
+	 */
+	public JCEBlockCipher(String algorithm, String mode, boolean encrypt, byte[] key, byte[] iv)
+			throws GeneralSecurityException
+	{
+		cipher = Cipher.getInstance(algorithm + "/" + mode + "/NoPadding");
+		blockSize = cipher.getBlockSize();
+		byte[] blockIv = new byte[blockSize];
+		System.arraycopy(iv, 0, blockIv, 0, blockSize);
+		/* CTR mode is symmetric */
+		int opmode = (encrypt || "CTR".equals(mode)) ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE;
+		cipher.init(opmode, new SecretKeySpec(key, algorithm), new IvParameterSpec(blockIv));
+	}
+
+	/**
+	 * Returns whether the JCE provides the algorithm in the mode.
+	 */
+	public static boolean isAvailable(String algorithm, String mode, int keySize)
+	{
+		try
+		{
+			Cipher c = Cipher.getInstance(algorithm + "/" + mode + "/NoPadding");
+			return Cipher.getMaxAllowedKeyLength(algorithm) >= keySize * 8 && c != null;
+		}
+		catch (GeneralSecurityException e)
+		{
+			return false;
+		}
+	}
+
+	public void init(boolean forEncryption, byte[] key)
+	{
+		/* initialized in the constructor */
+	}
+
+	public int getBlockSize()
+	{
+		return blockSize;
+	}
+
+	public void transformBlock(byte[] src, int srcoff, byte[] dst, int dstoff)
+	{
+		transformBlocks(src, srcoff, dst, dstoff, blockSize);
+	}
+
+	public void transformBlocks(byte[] src, int srcoff, byte[] dst, int dstoff, int len)
+	{
+		try
+		{
+			if (cipher.update(src, srcoff, len, dst, dstoff) != len)
+				throw new IllegalStateException("Cipher did not transform all blocks.");
+		}
+		catch (ShortBufferException e)
+		{
+			throw new IllegalArgumentException(e);
+		}
+	}
+}
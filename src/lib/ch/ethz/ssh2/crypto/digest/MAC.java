@@ -1,8 +1,13 @@
-
 package ch.ethz.ssh2.crypto.digest;
 
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
 /**
- * MAC.
+ * MAC. Uses javax.crypto if it provides the algorithm, the pure Java
+ * implementation otherwise.
  * 
  * @author Christian Plattner
  * @version 2.50, 03/15/10
@@ -10,12 +15,21 @@ package ch.ethz.ssh2.crypto.digest;
 public final class MAC
 {
 	Digest mac;
+	Mac jceMac;
+	byte[] jceBuffer;
 	int size;
 
+	/**
+	 * Whether the JCE implementations are used, if they are available.
+	 */
+	private static volatile boolean useJCE = true;
+
 	public final static String[] getMacList()
 	{
 		/* Higher Priority First */
 
+		if (isJCEAvailable("HmacSHA256"))
+			return new String[] { "hmac-sha2-256", "hmac-sha1-96", "hmac-sha1", "hmac-md5-96", "hmac-md5" };
 		return new String[] { "hmac-sha1-96", "hmac-sha1", "hmac-md5-96", "hmac-md5" };
 	}
 
@@ -25,8 +39,18 @@ public final class MAC
 			getKeyLen(macs[i]);
 	}
 
+	/**
+	 * Sets whether the JCE implementations should be used for the new MACs.
+	 */
+	public static void setUseJCE(boolean use)
+	{
+		useJCE = use;
+	}
+
 	public final static int getKeyLen(String type)
 	{
+		if (type.equals("hmac-sha2-256"))
+			return 32;
 		if (type.equals("hmac-sha1"))
 			return 20;
 		if (type.equals("hmac-sha1-96"))
@@ -40,30 +64,80 @@ public final class MAC
 
 	public MAC(String type, byte[] key)
 	{
-		if (type.equals("hmac-sha1"))
+		if (type.equals("hmac-sha2-256"))
 		{
-			mac = new HMAC(new SHA1(), key, 20);
+			initJCE("HmacSHA256", key, 32);
+			if (jceMac == null)
+				throw new IllegalArgumentException("Cannot instantiate " + type);
+		}
+		else if (type.equals("hmac-sha1"))
+		{
+			if (!useJCE || !initJCE("HmacSHA1", key, 20))
+				mac = new HMAC(new SHA1(), key, 20);
 		}
 		else if (type.equals("hmac-sha1-96"))
 		{
-			mac = new HMAC(new SHA1(), key, 12);
+			if (!useJCE || !initJCE("HmacSHA1", key, 12))
+				mac = new HMAC(new SHA1(), key, 12);
 		}
 		else if (type.equals("hmac-md5"))
 		{
-			mac = new HMAC(new MD5(), key, 16);
+			if (!useJCE || !initJCE("HmacMD5", key, 16))
+				mac = new HMAC(new MD5(), key, 16);
 		}
 		else if (type.equals("hmac-md5-96"))
 		{
-			mac = new HMAC(new MD5(), key, 12);
+			if (!useJCE || !initJCE("HmacMD5", key, 12))
+				mac = new HMAC(new MD5(), key, 12);
 		}
 		else
 			throw new IllegalArgumentException("Unkown algorithm " + type);
 
-		size = mac.getDigestLength();
+		if (mac != null)
+			size = mac.getDigestLength();
+	}
+
+	private static boolean isJCEAvailable(String algorithm)
+	{
+		try
+		{
+			Mac.getInstance(algorithm);
+			return true;
+		}
+		catch (GeneralSecurityException e)
+		{
+			return false;
+		}
+	}
+
+	private boolean initJCE(String algorithm, byte[] key, int size)
+	{
+		try
+		{
+			Mac m = Mac.getInstance(algorithm);
+			m.init(new SecretKeySpec(key, algorithm));
+			jceMac = m;
+			jceBuffer = new byte[m.getMacLength()];
+			this.size = size;
+			return true;
+		}
+		catch (GeneralSecurityException e)
+		{
+			return false;
+		}
 	}
 
 	public final void initMac(int seq)
 	{
+		if (jceMac != null)
+		{
+			jceMac.reset();
+			jceMac.update((byte) (seq >> 24));
+			jceMac.update((byte) (seq >> 16));
+			jceMac.update((byte) (seq >> 8));
+			jceMac.update((byte) (seq));
+			return;
+		}
 		mac.reset();
 		mac.update((byte) (seq >> 24));
 		mac.update((byte) (seq >> 16));
@@ -73,11 +147,29 @@ public final class MAC
 
 	public final void update(byte[] packetdata, int off, int len)
 	{
+		if (jceMac != null)
+		{
+			jceMac.update(packetdata, off, len);
+			return;
+		}
 		mac.update(packetdata, off, len);
 	}
 
 	public final void getMac(byte[] out, int off)
 	{
+		if (jceMac != null)
+		{
+			try
+			{
+				jceMac.doFinal(jceBuffer, 0);
+			}
+			catch (GeneralSecurityException e)
+			{
+				throw new IllegalStateException(e);
+			}
+			System.arraycopy(jceBuffer, 0, out, off, size);
+			return;
+		}
 		mac.digest(out, off);
 	}
 
@@ -7,8 +7,10 @@ import java.security.SecureRandom;
 import ch.ethz.ssh2.ConnectionInfo;
 import ch.ethz.ssh2.DHGexParameters;
 import ch.ethz.ssh2.ServerHostKeyVerifier;
+import ch.ethz.ssh2.compression.CompressionFactory;
 import ch.ethz.ssh2.crypto.CryptoWishList;
 import ch.ethz.ssh2.crypto.KeyMaterial;
+import ch.ethz.ssh2.crypto.cipher.AEADCipher;
 import ch.ethz.ssh2.crypto.cipher.BlockCipher;
 import ch.ethz.ssh2.crypto.cipher.BlockCipherFactory;
 import ch.ethz.ssh2.crypto.dh.DhExchange;
@@ -253,11 +255,11 @@ public class KexManager
 		{
 			int mac_cs_key_len = MAC.getKeyLen(kxs.np.mac_algo_client_to_server);
 			int enc_cs_key_len = BlockCipherFactory.getKeySize(kxs.np.enc_algo_client_to_server);
-			int enc_cs_block_len = BlockCipherFactory.getBlockSize(kxs.np.enc_algo_client_to_server);
+			int enc_cs_block_len = BlockCipherFactory.getIVSize(kxs.np.enc_algo_client_to_server);
 
 			int mac_sc_key_len = MAC.getKeyLen(kxs.np.mac_algo_server_to_client);
 			int enc_sc_key_len = BlockCipherFactory.getKeySize(kxs.np.enc_algo_server_to_client);
-			int enc_sc_block_len = BlockCipherFactory.getBlockSize(kxs.np.enc_algo_server_to_client);
+			int enc_sc_block_len = BlockCipherFactory.getIVSize(kxs.np.enc_algo_server_to_client);
 
 			km = KeyMaterial.create("SHA1", kxs.H, kxs.K, sessionId, enc_cs_key_len, enc_cs_block_len, mac_cs_key_len,
 					enc_sc_key_len, enc_sc_block_len, mac_sc_key_len);
@@ -281,23 +283,45 @@ public class KexManager
 		PacketNewKeys ign = new PacketNewKeys();
 		tm.sendKexMessage(ign.getPayload());
 
-		BlockCipher cbc;
-		MAC mac;
-
-		try
+		/* aead ciphers have no separate mac */
+		if (BlockCipherFactory.isAEAD(kxs.np.enc_algo_client_to_server))
 		{
-			cbc = BlockCipherFactory.createCipher(kxs.np.enc_algo_client_to_server, true, km.enc_key_client_to_server,
-					km.initial_iv_client_to_server);
+			AEADCipher aead;
 
-			mac = new MAC(kxs.np.mac_algo_client_to_server, km.integrity_key_client_to_server);
+			try
+			{
+				aead = BlockCipherFactory.createAEADCipher(kxs.np.enc_algo_client_to_server, true,
+						km.enc_key_client_to_server, km.initial_iv_client_to_server);
+			}
+			catch (IllegalArgumentException e1)
+			{
+				throw new IOException("Fatal error during cipher startup!");
+			}
 
+			tm.changeSendCipher(aead);
 		}
-		catch (IllegalArgumentException e1)
+		else
 		{
-			throw new IOException("Fatal error during MAC startup!");
-		}
+			BlockCipher cbc;
+			MAC mac;
 
-		tm.changeSendCipher(cbc, mac);
+			try
+			{
+				cbc = BlockCipherFactory.createCipher(kxs.np.enc_algo_client_to_server, true,
+						km.enc_key_client_to_server, km.initial_iv_client_to_server);
+
+				mac = new MAC(kxs.np.mac_algo_client_to_server, km.integrity_key_client_to_server);
+
+			}
+			catch (IllegalArgumentException e1)
+			{
+				throw new IOException("Fatal error during MAC startup!");
+			}
+
+			tm.changeSendCipher(cbc, mac);
+		}
+		tm.changeSendCompression(CompressionFactory.createCompressor(kxs.np.comp_algo_client_to_server, true),
+				CompressionFactory.isDelayed(kxs.np.comp_algo_client_to_server));
 		tm.kexFinished();
 	}
 
@@ -462,23 +486,44 @@ public class KexManager
 			if (km == null)
 				throw new IOException("Peer sent SSH_MSG_NEWKEYS, but I have no key material ready!");
 
-			BlockCipher cbc;
-			MAC mac;
-
-			try
+			if (BlockCipherFactory.isAEAD(kxs.np.enc_algo_server_to_client))
 			{
-				cbc = BlockCipherFactory.createCipher(kxs.np.enc_algo_server_to_client, false,
-						km.enc_key_server_to_client, km.initial_iv_server_to_client);
+				AEADCipher aead;
 
-				mac = new MAC(kxs.np.mac_algo_server_to_client, km.integrity_key_server_to_client);
+				try
+				{
+					aead = BlockCipherFactory.createAEADCipher(kxs.np.enc_algo_server_to_client, false,
+							km.enc_key_server_to_client, km.initial_iv_server_to_client);
+				}
+				catch (IllegalArgumentException e1)
+				{
+					throw new IOException("Fatal error during cipher startup!");
+				}
 
+				tm.changeRecvCipher(aead);
 			}
-			catch (IllegalArgumentException e1)
+			else
 			{
-				throw new IOException("Fatal error during MAC startup!");
-			}
+				BlockCipher cbc;
+				MAC mac;
+
+				try
+				{
+					cbc = BlockCipherFactory.createCipher(kxs.np.enc_algo_server_to_client, false,
+							km.enc_key_server_to_client, km.initial_iv_server_to_client);
+
+					mac = new MAC(kxs.np.mac_algo_server_to_client, km.integrity_key_server_to_client);
 
-			tm.changeRecvCipher(cbc, mac);
+				}
+				catch (IllegalArgumentException e1)
+				{
+					throw new IOException("Fatal error during MAC startup!");
+				}
+
+				tm.changeRecvCipher(cbc, mac);
+			}
+			tm.changeRecvCompression(CompressionFactory.createCompressor(kxs.np.comp_algo_server_to_client, false),
+					CompressionFactory.isDelayed(kxs.np.comp_algo_server_to_client));
 
 			ConnectionInfo sci = new ConnectionInfo();
 
@@ -490,6 +535,8 @@ public class KexManager
 			sci.serverToClientCryptoAlgorithm = kxs.np.enc_algo_server_to_client;
 			sci.clientToServerMACAlgorithm = kxs.np.mac_algo_client_to_server;
 			sci.serverToClientMACAlgorithm = kxs.np.mac_algo_server_to_client;
+			sci.clientToServerCompressionAlgorithm = kxs.np.comp_algo_client_to_server;
+			sci.serverToClientCompressionAlgorithm = kxs.np.comp_algo_server_to_client;
 			sci.serverHostKeyAlgorithm = kxs.np.server_host_key_algo;
 			sci.serverHostKey = kxs.hostkey;
 
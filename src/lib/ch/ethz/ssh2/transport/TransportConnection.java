@@ -4,8 +4,11 @@ package ch.ethz.ssh2.transport;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
 
+import ch.ethz.ssh2.compression.Zlib;
+import ch.ethz.ssh2.crypto.cipher.AEADCipher;
 import ch.ethz.ssh2.crypto.cipher.BlockCipher;
 import ch.ethz.ssh2.crypto.cipher.CipherInputStream;
 import ch.ethz.ssh2.crypto.cipher.CipherOutputStream;
@@ -24,6 +27,8 @@ public class TransportConnection
 {
 	private static final Logger log = Logger.getLogger(TransportConnection.class);
 
+	private static final int MAX_PACKET_LENGTH = 35000;
+
 	int send_seq_number = 0;
 
 	int recv_seq_number = 0;
@@ -62,6 +67,36 @@ public class TransportConnection
 
 	boolean recv_packet_header_present = false;
 
+	/* AEAD ciphers encrypt and authenticate whole packets, null otherwise */
+
+	AEADCipher send_aead;
+
+	AEADCipher recv_aead;
+
+	byte[] send_aead_buffer;
+
+	byte[] recv_aead_buffer;
+
+	/* decrypted packet (padding_length, payload, padding) */
+
+	byte[] recv_aead_packet;
+
+	int recv_aead_packet_length = -1;
+
+	/* compression of the payloads, null for "none" */
+
+	Zlib send_comp;
+
+	Zlib recv_comp;
+
+	boolean send_comp_delayed = false;
+
+	boolean recv_comp_delayed = false;
+
+	/* delayed compression starts after SSH_MSG_USERAUTH_SUCCESS */
+
+	volatile boolean comp_authenticated = false;
+
 	ClientServerHello csh;
 
 	final SecureRandom rnd;
@@ -75,6 +110,8 @@ public class TransportConnection
 
 	public void changeRecvCipher(BlockCipher bc, MAC mac)
 	{
+		recv_aead = null;
+
 		cis.changeCipher(bc);
 		recv_mac = mac;
 		recv_mac_buffer = (mac != null) ? new byte[mac.size()] : null;
@@ -84,6 +121,19 @@ public class TransportConnection
 			recv_padd_blocksize = 8;
 	}
 
+	/**
+	 * Starts decrypting with the AEAD cipher, that also authenticates the
+	 * packets, so that there is no MAC.
+	 */
+	public void changeRecvCipher(AEADCipher aead)
+	{
+		/* the stream only reads plain bytes */
+		changeRecvCipher(new NullCipher(aead.getBlockSize()), null);
+		recv_aead = aead;
+		recv_aead_buffer = new byte[MAX_PACKET_LENGTH + aead.getTagSize()];
+		recv_aead_packet = new byte[MAX_PACKET_LENGTH + aead.getTagSize()];
+	}
+
 	public void changeSendCipher(BlockCipher bc, MAC mac)
 	{
 		if ((bc instanceof NullCipher) == false)
@@ -93,6 +143,8 @@ public class TransportConnection
 			/* Once we start encrypting, there is no way back */
 		}
 
+		send_aead = null;
+
 		cos.changeCipher(bc);
 		send_mac = mac;
 		send_mac_buffer = (mac != null) ? new byte[mac.size()] : null;
@@ -101,6 +153,19 @@ public class TransportConnection
 			send_padd_blocksize = 8;
 	}
 
+	/**
+	 * Starts encrypting with the AEAD cipher, that also authenticates the
+	 * packets, so that there is no MAC.
+	 */
+	public void changeSendCipher(AEADCipher aead)
+	{
+		/* the stream only writes plain bytes */
+		changeSendCipher(new NullCipher(aead.getBlockSize()), null);
+		useRandomPadding = true;
+		send_aead = aead;
+		send_aead_buffer = new byte[MAX_PACKET_LENGTH + aead.getTagSize()];
+	}
+
 	public void sendMessage(byte[] message) throws IOException
 	{
 		sendMessage(message, 0, message.length, 0);
@@ -111,14 +176,61 @@ public class TransportConnection
 		sendMessage(message, off, len, 0);
 	}
 
+	/**
+	 * Sets the compression for the packets that we send. An active stream
+	 * is kept after a new key exchange, since it spans the whole connection.
+	 */
+	public void changeSendCompression(Zlib comp, boolean delayed)
+	{
+		if (comp == null)
+			send_comp = null;
+		else if (send_comp == null)
+		{
+			send_comp = comp;
+			send_comp_delayed = delayed;
+		}
+	}
+
+	/**
+	 * Sets the compression for the packets that we receive.
+	 */
+	public void changeRecvCompression(Zlib comp, boolean delayed)
+	{
+		if (comp == null)
+			recv_comp = null;
+		else if (recv_comp == null)
+		{
+			recv_comp = comp;
+			recv_comp_delayed = delayed;
+		}
+	}
+
 	public int getPacketOverheadEstimate()
 	{
 		// return an estimate for the paket overhead (for send operations)
-		return 5 + 4 + (send_padd_blocksize - 1) + send_mac_buffer.length;
+		int overhead = 5 + 4 + (send_padd_blocksize - 1);
+		if (send_aead != null)
+			overhead += send_aead.getTagSize();
+		else if (send_mac_buffer != null)
+			overhead += send_mac_buffer.length;
+		/* incompressible data grow a bit */
+		if (send_comp != null)
+			overhead += 64;
+		return overhead;
 	}
 
 	public void sendMessage(byte[] message, int off, int len, int padd) throws IOException
 	{
+		int msg_type = message[off] & 0xff;
+		int payload_len = len;
+
+		if (send_comp != null && (!send_comp_delayed || comp_authenticated))
+		{
+			len = send_comp.compress(message, off, len);
+			message = send_comp.getBuffer();
+			off = 0;
+		}
+
 		if (padd < 4)
 			padd = 4;
 		else if (padd > 64)
@@ -126,7 +238,10 @@ public class TransportConnection
 
 		int packet_len = 5 + len + padd; /* Minimum allowed padding is 4 */
 
-		int slack = packet_len % send_padd_blocksize;
+		/* with aead the packet without the length field is aligned */
+		int aligned_len = (send_aead != null) ? packet_len - 4 : packet_len;
+
+		int slack = aligned_len % send_padd_blocksize;
 
 		if (slack != 0)
 		{
@@ -174,6 +289,13 @@ public class TransportConnection
 		send_packet_header_buffer[3] = (byte) ((packet_len - 4));
 		send_packet_header_buffer[4] = (byte) padd_len;
 
+		if (send_aead != null)
+		{
+			sendAEADPacket(message, off, len, padd_len);
+			logSent(msg_type, payload_len);
+			return;
+		}
+
 		cos.write(send_packet_header_buffer, 0, 5);
 		cos.write(message, off, len);
 		cos.write(send_padding_buffer, 0, padd_len);
@@ -191,16 +313,92 @@ public class TransportConnection
 
 		cos.flush();
 
+		logSent(msg_type, payload_len);
+
+		send_seq_number++;
+	}
+
+	private void logSent(int msg_type, int len)
+	{
 		if (log.isEnabled())
 		{
-			log.log(90, "Sent " + Packets.getMessageName(message[off] & 0xff) + " " + len + " bytes payload");
+			log.log(90, "Sent " + Packets.getMessageName(msg_type) + " " + len + " bytes payload");
 		}
+	}
+
+	private void sendAEADPacket(byte[] message, int off, int len, int padd_len) throws IOException
+	{
+		int plain_len = 1 + len + padd_len;
+
+		send_aead_buffer[0] = send_packet_header_buffer[4];
+		System.arraycopy(message, off, send_aead_buffer, 1, len);
+		System.arraycopy(send_padding_buffer, 0, send_aead_buffer, 1 + len, padd_len);
+
+		int enc_len;
+		try
+		{
+			enc_len = send_aead.transformPacket(send_packet_header_buffer, send_aead_buffer, 0, plain_len,
+					send_aead_buffer, 0);
+		}
+		catch (GeneralSecurityException e)
+		{
+			throw (IOException) new IOException("Error while encrypting packet.").initCause(e);
+		}
+
+		cos.writePlain(send_packet_header_buffer, 0, 4);
+		cos.writePlain(send_aead_buffer, 0, enc_len);
+		cos.flush();
 
 		send_seq_number++;
 	}
 
+	/**
+	 * Reads and decrypts the next AEAD packet, if it was not read yet.
+	 * Returns the payload length.
+	 */
+	private int receiveAEADPacket() throws IOException
+	{
+		if (recv_aead_packet_length >= 0)
+			return recv_aead_packet_length - (recv_aead_packet[0] & 0xff) - 1;
+
+		cis.readPlain(recv_packet_header_buffer, 0, 4);
+
+		int packet_length = ((recv_packet_header_buffer[0] & 0xff) << 24)
+				| ((recv_packet_header_buffer[1] & 0xff) << 16) | ((recv_packet_header_buffer[2] & 0xff) << 8)
+				| ((recv_packet_header_buffer[3] & 0xff));
+
+		if (packet_length > MAX_PACKET_LENGTH || packet_length < 12 || packet_length % recv_padd_blocksize != 0)
+			throw new IOException("Illegal packet size! (" + packet_length + ")");
+
+		int tag_size = recv_aead.getTagSize();
+
+		cis.readPlain(recv_aead_buffer, 0, packet_length + tag_size);
+
+		try
+		{
+			recv_aead.transformPacket(recv_packet_header_buffer, recv_aead_buffer, 0, packet_length + tag_size,
+					recv_aead_packet, 0);
+		}
+		catch (GeneralSecurityException e)
+		{
+			throw (IOException) new IOException("Remote sent corrupt packet.").initCause(e);
+		}
+
+		int padding_length = recv_aead_packet[0] & 0xff;
+		int payload_length = packet_length - padding_length - 1;
+
+		if (payload_length < 0)
+			throw new IOException("Illegal padding_length in packet from remote (" + padding_length + ")");
+
+		recv_aead_packet_length = packet_length;
+		return payload_length;
+	}
+
 	public int peekNextMessageLength() throws IOException
 	{
+		if (recv_aead != null)
+			return receiveAEADPacket();
+
 		if (recv_packet_header_present == false)
 		{
 			cis.read(recv_packet_header_buffer, 0, 5);
@@ -213,7 +411,7 @@ public class TransportConnection
 
 		int padding_length = recv_packet_header_buffer[4] & 0xff;
 
-		if (packet_length > 35000 || packet_length < 12)
+		if (packet_length > MAX_PACKET_LENGTH || packet_length < 12)
 			throw new IOException("Illegal packet size! (" + packet_length + ")");
 
 		int payload_length = packet_length - padding_length - 1;
@@ -226,6 +424,21 @@ public class TransportConnection
 
 	public int receiveMessage(byte buffer[], int off, int len) throws IOException
 	{
+		if (recv_aead != null)
+		{
+			int payload_length = receiveAEADPacket();
+			recv_aead_packet_length = -1;
+
+			if (payload_length >= len)
+				throw new IOException("Receive buffer too small (" + len + ", need " + payload_length + ")");
+
+			System.arraycopy(recv_aead_packet, 1, buffer, off, payload_length);
+
+			recv_seq_number++;
+
+			return receivedPayload(buffer, off, len, payload_length);
+		}
+
 		if (recv_packet_header_present == false)
 		{
 			cis.read(recv_packet_header_buffer, 0, 5);
@@ -239,7 +452,7 @@ public class TransportConnection
 
 		int padding_length = recv_packet_header_buffer[4] & 0xff;
 
-		if (packet_length > 35000 || packet_length < 12)
+		if (packet_length > MAX_PACKET_LENGTH || packet_length < 12)
 			throw new IOException("Illegal packet size! (" + packet_length + ")");
 
 		int payload_length = packet_length - padding_length - 1;
@@ -272,6 +485,30 @@ public class TransportConnection
 
 		recv_seq_number++;
 
+		return receivedPayload(buffer, off, len, payload_length);
+	}
+
+	/**
+	 * Uncompresses the received payload in the buffer, if the compression
+	 * is active, and returns its length.
+	 */
+	private int receivedPayload(byte[] buffer, int off, int len, int payload_length) throws IOException
+	{
+		if (recv_comp != null && (!recv_comp_delayed || comp_authenticated))
+		{
+			payload_length = recv_comp.uncompress(buffer, off, payload_length);
+
+			if (payload_length >= len)
+				throw new IOException("Receive buffer too small (" + len + ", need " + payload_length + ")");
+
+			System.arraycopy(recv_comp.getBuffer(), 0, buffer, off, payload_length);
+		}
+
+		/* the server starts the delayed compression after this message, we
+		 * start it after we have received it. */
+		if (!comp_authenticated && payload_length > 0 && buffer[off] == Packets.SSH_MSG_USERAUTH_SUCCESS)
+			comp_authenticated = true;
+
 		if (log.isEnabled())
 		{
 			log.log(90, "Received " + Packets.getMessageName(buffer[off] & 0xff) + " " + payload_length
@@ -18,8 +18,10 @@ import ch.ethz.ssh2.HTTPProxyData;
 import ch.ethz.ssh2.HTTPProxyException;
 import ch.ethz.ssh2.ProxyData;
 import ch.ethz.ssh2.ServerHostKeyVerifier;
+import ch.ethz.ssh2.compression.Zlib;
 import ch.ethz.ssh2.crypto.Base64;
 import ch.ethz.ssh2.crypto.CryptoWishList;
+import ch.ethz.ssh2.crypto.cipher.AEADCipher;
 import ch.ethz.ssh2.crypto.cipher.BlockCipher;
 import ch.ethz.ssh2.crypto.digest.MAC;
 import ch.ethz.ssh2.log.Logger;
@@ -587,6 +589,26 @@ import ch.ethz.ssh2.util.Tokenizer;
 		tc.changeSendCipher(bc, mac);
 	}
 
+	public void changeRecvCipher(AEADCipher aead)
+	{
+		tc.changeRecvCipher(aead);
+	}
+
+	public void changeSendCipher(AEADCipher aead)
+	{
+		tc.changeSendCipher(aead);
+	}
+
+	public void changeRecvCompression(Zlib comp, boolean delayed)
+	{
+		tc.changeRecvCompression(comp, delayed);
+	}
+
+	public void changeSendCompression(Zlib comp, boolean delayed)
+	{
+		tc.changeSendCompression(comp, delayed);
+	}
+
 	public void sendAsynchronousMessage(byte[] msg) throws IOException
 	{
 		synchronized (asynchronousQueue)
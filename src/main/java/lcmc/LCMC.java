@@ -153,6 +153,8 @@ public final class LCMC extends JPanel {
     private static final String SUDO_OP = "sudo";
     /** The --port option. */
     private static final String PORT_OP = "port";
+    /** The --ssh-compression option. */
+    private static final String SSH_COMPRESSION_OP = "ssh-compression";
     /** The --advanced option. */
     private static final String ADVANCED_OP = "advanced";
     /** The --one-host-cluster option. */
@@ -459,6 +461,11 @@ public final class LCMC extends JPanel {
                           PORT_OP,
                           true,
                           "ssh port, used with --cluster option");
+        options.addOption(null,
+                          SSH_COMPRESSION_OP,
+                          false,
+                          "compress the ssh traffic, for slow links,"
+                          + " used with --cluster option");
         options.addOption(null,
                           ADVANCED_OP,
                           false,
@@ -692,6 +699,15 @@ public final class LCMC extends JPanel {
                 for (final HostOptions ho : hostsOptions) {
                     ho.setSudo(true);
                 }
+            } else if (SSH_COMPRESSION_OP.equals(op)) {
+                if (hostsOptions == null) {
+                    throw new ParseException(SSH_COMPRESSION_OP
+                                             + " must be defined after "
+                                             + HOST_OP);
+                }
+                for (final HostOptions ho : hostsOptions) {
+                    ho.setCompression(true);
+                }
             } else if (USER_OP.equals(op)) {
                 if (hostsOptions == null) {
                     throw new ParseException(
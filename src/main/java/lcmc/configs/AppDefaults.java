@@ -122,6 +122,9 @@ public final class AppDefaults extends java.util.ListResourceBundle {
         {"MainMenu.DrbdGuiFiles.Old",       System.getProperty("user.home")
                                                 + "/"
                                                 + "drbd-gui.drbdg"},
+        {"CRMXML.MetaDataCacheDir",         System.getProperty("user.home")
+                                                + "/"
+                                                + ".lcmc/ra-metadata"},
 
         /*
          * Colors
@@ -414,8 +417,17 @@ public final class AppDefaults extends java.util.ListResourceBundle {
         {"SSH.KexTimeout",           0}, /* milliseconds, 0 no timeout */
         {"SSH.Command.Timeout.Long", 0},     /* milliseconds, 0 no timeout */
         {"SSH.Command.Timeout",      180000}, /* milliseconds */
+        {"SSH.MaxSessions",          8}, /* parallel short commands */
+        {"SSH.IdleShells",           2}, /* reused sessions kept open */
+        {"ConnectPipeline.Threads",  8}, /* hosts connected at once */
+        {"PtestPreviews.CacheSize",  100}, /* cached ptest results */
+        {"PtestPreviews.Interval",   10000}, /* ms between simulations */
         {"ProgressBar.Sleep",        100},   /* milliseconds */
         {"ProgressBar.Delay",        50},    /* milliseconds */
+        {"UpdateScheduler.FrameInterval", 50}, /* ms between ui updates */
+        {"ResourceGraph.TextLayoutCache", 2000}, /* text layouts */
+        {"ResourceGraph.VertexImageCache", 500}, /* rendered vertices */
+        {"TerminalPanel.MaxLines",   10000}, /* lines kept in terminal */
 
         /* score */
         {"Score.Infinity",                    100000},
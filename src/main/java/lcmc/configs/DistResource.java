@@ -221,6 +221,12 @@ public final class DistResource extends java.util.ListResourceBundle {
         {"Heartbeat.getOCFParameters",
          SUDO + "@GUI-HELPER@ get-resource-agents;"},
 
+        {"Heartbeat.getOCFParametersChecksums",
+         SUDO + "@GUI-HELPER@ get-resource-agents checksums;"},
+
+        {"Heartbeat.getOCFParametersList",
+         SUDO + "@GUI-HELPER@ get-resource-agents list@AGENTS@;"},
+
         /* vmxpath env is needed so that vmware meta-data does not hang */
         {"Heartbeat.getClusterMetadata",
          SUDO + "@GUI-HELPER@ get-cluster-metadata"},
@@ -228,6 +234,9 @@ public final class DistResource extends java.util.ListResourceBundle {
         {"Heartbeat.getClStatus",
          SUDO + "@GUI-HELPER@ get-cluster-events"},
 
+        {"Heartbeat.getClusterInfo",
+         SUDO + "@GUI-HELPER@ get-cluster-info"},
+
         {"Heartbeat.startHeartbeat",
          SUDO + "/etc/init.d/heartbeat start"},
 
@@ -230,6 +230,9 @@ public final class TextResource extends java.util.ListResourceBundle {
         {"Dialog.Host.NewHost.UseSudo",
          "Use sudo:"},
 
+        {"Dialog.Host.NewHost.SSHCompression",
+         "Compression:"},
+
         {"Dialog.Host.NewHost.EnterPassword",
          "Password:"},
 
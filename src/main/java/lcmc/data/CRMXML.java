@@ -26,6 +26,7 @@ import lcmc.utilities.Tools;
 import lcmc.utilities.ConvertCmdCallback;
 import lcmc.utilities.SSH;
 import lcmc.utilities.CRM;
+import lcmc.utilities.StringPool;
 import lcmc.robotest.RoboTest;
 import lcmc.gui.resources.Info;
 import lcmc.gui.resources.ServiceInfo;
@@ -35,6 +36,8 @@ import lcmc.Exceptions;
 import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
 import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
 
 import java.util.Map;
 import java.util.HashMap;
@@ -49,7 +52,10 @@ import java.util.LinkedHashSet;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 import java.util.Collections;
+import java.util.Arrays;
 import java.util.Locale;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.concurrent.locks.Lock;
@@ -73,6 +79,13 @@ public final class CRMXML extends XML {
     private static final Logger LOG = LoggerFactory.getLogger(CRMXML.class);
     /** Host. */
     private final Host host;
+    /** Node names, resource ids, parameters etc. of the parsed cibs. */
+    private final StringPool stringPool = new StringPool();
+    /**
+     * Set in the thread, that parses the cib or the status, only these
+     * strings are pooled, not e.g. the long descriptions of the meta-data.
+     */
+    private final ThreadLocal<Boolean> pooling = new ThreadLocal<Boolean>();
     /** List of global parameters. */
     private final List<String> globalParams = new ArrayList<String>();
     /** List of not advanced global parameters. */
@@ -194,6 +207,11 @@ public final class CRMXML extends XML {
     private boolean drbddiskPresent;
     /** Whether linbit::drbd ra is present. */
     private boolean linbitDrbdPresent;
+    /** Local cache of the meta data, null if checksums are not known. */
+    private volatile RAMetaDataCache raMetaDataCache = null;
+    /** Checksums of the resource agents by the cache key. */
+    private final Map<String, String> raChecksums =
+                                    new ConcurrentHashMap<String, String>();
     /** Choices for combo box in stonith hostlists. */
     private final List<String> hostlistChoices = new ArrayList<String>();
     /** Parameters of some RAs that are not advanced. */
@@ -218,6 +236,13 @@ public final class CRMXML extends XML {
     private static final String PARAM_TYPE_TIME = "time";
     /** Fail count prefix. */
     private static final String FAIL_COUNT_PREFIX = "fail-count-";
+    /**
+     * Parts of the cib that are not used and are left out while parsing. The
+     * operation history is the biggest part of the big cibs.
+     */
+    static final Set<String> CIB_SKIP_ELEMENTS =
+                   Collections.unmodifiableSet(
+                        new HashSet<String>(Arrays.asList("lrm_rsc_op")));
     /** Attribute roles. */
     private static final String[] ATTRIBUTE_ROLES = {null,
                                                      "Stopped",
@@ -906,12 +931,19 @@ public final class CRMXML extends XML {
         hbGroup.setMetaDataLoaded(true);
 
         initOCFMetaDataQuick();
-        initOCFMetaDataConfigured();
+        final Map<String, String> notCached = initOCFMetaDataCached();
+        if (notCached == null || !notCached.isEmpty()) {
+            initOCFMetaDataConfigured();
+        }
         LOG.debug("CRMXML: cluster loaded");
         final Thread t = new Thread(new Runnable() {
             @Override
             public void run() {
-                initOCFMetaDataAll();
+                if (notCached == null) {
+                    initOCFMetaDataAll();
+                } else if (!notCached.isEmpty()) {
+                    initOCFMetaDataList(notCached.keySet());
+                }
                 final String hn = host.getName();
                 final String text =
                                 Tools.getString("CRMXML.GetRAMetaData.Done");
@@ -1056,6 +1088,92 @@ public final class CRMXML extends XML {
                                             (ConvertCmdCallback) null));
     }
 
+    /**
+     * Initialize the resource agents with their meta data from the local
+     * cache, if their checksums did not change. Returns the agents, that
+     * are not in the cache with their checksums, or null if the checksums
+     * could not be obtained.
+     */
+    private Map<String, String> initOCFMetaDataCached() {
+        final String command =
+                    host.getDistCommand("Heartbeat.getOCFParametersChecksums",
+                                        (ConvertCmdCallback) null);
+        final SSH.SSHOutput ret = Tools.execCommand(host,
+                                                    command,
+                                                    null,  /* ExecCallback */
+                                                    false, /* outputVisible */
+                                                    60000);
+        if (ret.getExitCode() != 0 || ret.getOutput() == null) {
+            return null;
+        }
+        raMetaDataCache = new RAMetaDataCache(host.getPacemakerVersion());
+        final Map<String, String> notCached =
+                                        new LinkedHashMap<String, String>();
+        final Pattern cp = Pattern.compile("^class:\\s*(.*?)\\s*$");
+        final Pattern pp = Pattern.compile("^provider:\\s*(.*?)\\s*$");
+        final Pattern sp =
+                   Pattern.compile("^ra-checksum:\\s*(\\S+)\\s+(\\S+)\\s*$");
+        String resourceClass = null;
+        String provider = null;
+        int cached = 0;
+        for (final String line : ret.getOutput().split("\\r?\\n")) {
+            final Matcher cm = cp.matcher(line);
+            if (cm.matches()) {
+                resourceClass = cm.group(1);
+                continue;
+            }
+            final Matcher pm = pp.matcher(line);
+            if (pm.matches()) {
+                provider = pm.group(1);
+                continue;
+            }
+            final Matcher sm = sp.matcher(line);
+            if (!sm.matches()) {
+                continue;
+            }
+            final String serviceName = sm.group(1);
+            final String checksum = sm.group(2);
+            final String key = RAMetaDataCache.getKey(resourceClass,
+                                                      provider,
+                                                      serviceName);
+            raChecksums.put(key, checksum);
+            final RAMetaDataCache.Entry entry =
+                                        raMetaDataCache.get(key, checksum);
+            if (entry == null) {
+                notCached.put(key, checksum);
+            } else {
+                parseMetaData(serviceName,
+                              provider,
+                              entry.getXML(),
+                              entry.isMasterSlave());
+                cached++;
+            }
+        }
+        LOG.debug1("initOCFMetaDataCached: " + host.getName() + ": cached: "
+                   + cached + ", not cached: " + notCached.size());
+        return notCached;
+    }
+
+    /** Initialize the specified resource agents with their meta data. */
+    private void initOCFMetaDataList(final Collection<String> keys) {
+        final StringBuilder agents = new StringBuilder(keys.size() * 30);
+        for (final String key : keys) {
+            agents.append(' ');
+            agents.append(key);
+        }
+        initOCFMetaData(host.getDistCommand(
+                               "Heartbeat.getOCFParametersList",
+                               new ConvertCmdCallback() {
+                                   @Override
+                                   public String convert(
+                                                       final String command) {
+                                       return command.replaceAll(
+                                                       "@AGENTS@",
+                                                       agents.toString());
+                                   }
+                               }));
+    }
+
     /** Initialize resource agents with their meta data. */
     private void initOCFMetaData(final String command) {
         final SSH.SSHOutput ret = Tools.execCommand(host,
@@ -1071,6 +1189,7 @@ public final class CRMXML extends XML {
             return;
         }
         final String[] lines = output.split("\\r?\\n");
+        final Pattern cp = Pattern.compile("^class:\\s*(.*?)\\s*$");
         final Pattern pp = Pattern.compile("^provider:\\s*(.*?)\\s*$");
         final Pattern mp = Pattern.compile("^master:\\s*(.*?)\\s*$");
         final Pattern bp =
@@ -1078,6 +1197,7 @@ public final class CRMXML extends XML {
         final Pattern sp = Pattern.compile("^ra-name:\\s*(.*?)\\s*$");
         final Pattern ep = Pattern.compile("</resource-agent>");
         final StringBuilder xml = new StringBuilder("");
+        String resourceClass = null;
         String provider = null;
         String serviceName = null;
         boolean nextRA = false;
@@ -1088,6 +1208,11 @@ public final class CRMXML extends XML {
              ...
             </resource-agent>
             */
+            final Matcher cm = cp.matcher(lines[i]);
+            if (cm.matches()) {
+                resourceClass = cm.group(1);
+                continue;
+            }
             final Matcher pm = pp.matcher(lines[i]);
             if (pm.matches()) {
                 provider = pm.group(1);
@@ -1116,10 +1241,22 @@ public final class CRMXML extends XML {
                 xml.append('\n');
                 final Matcher m2 = ep.matcher(lines[i]);
                 if (m2.matches()) {
+                    final String metaData = xml.toString();
                     parseMetaData(serviceName,
                                   provider,
-                                  xml.toString(),
+                                  metaData,
                                   masterSlave);
+                    final RAMetaDataCache cache = raMetaDataCache;
+                    if (cache != null) {
+                        final String key = RAMetaDataCache.getKey(
+                                                              resourceClass,
+                                                              provider,
+                                                              serviceName);
+                        cache.put(key,
+                                  raChecksums.get(key),
+                                  metaData,
+                                  masterSlave);
+                    }
                     serviceName = null;
                     nextRA = false;
                     xml.delete(0, xml.length());
@@ -2574,150 +2711,29 @@ public final class CRMXML extends XML {
     }
 
     /**
-     * This class holds parsed status of resource, m/s set, or clone set.
+     * Returns the states of the resources. (running_on) The output of
+     * crm_simulate is parsed with SAX straight into the states, it is
+     * parsed on every change of the status.
      */
-    static class ResStatus {
-        /** On which nodes the resource runs, or is master. */
-        private final List<String> runningOnNodes;
-        /** On which nodes the resource is master if it is m/s resource. */
-        private final List<String> masterOnNodes;
-        /** On which nodes the resource is slave if it is m/s resource. */
-        private final List<String> slaveOnNodes;
-        /** Allocation scores. */
-        private final Map<String, String> allocationScores;
-        /** Is managed by CRM. */
-        private final boolean managed;
-
-        /**
-         * Creates a new ResStatus object.
-         */
-        ResStatus(final List<String> runningOnNodes,
-                  final List<String> masterOnNodes,
-                  final List<String> slaveOnNodes,
-                  final Map<String, String> allocationScores,
-                  final boolean managed) {
-            this.runningOnNodes = runningOnNodes;
-            this.masterOnNodes = masterOnNodes;
-            this.slaveOnNodes = slaveOnNodes;
-            this.allocationScores = allocationScores;
-            this.managed = managed;
-        }
-
-        /** Gets on which nodes the resource runs, or is master. */
-        List<String> getRunningOnNodes() {
-            return runningOnNodes;
-        }
-
-        /** Gets on which nodes the resource is master if it is m/s resource. */
-        List<String> getMasterOnNodes() {
-            return masterOnNodes;
-        }
-
-        /** Gets on which nodes the resource is slave if it is m/s resource. */
-        List<String> getSlaveOnNodes() {
-            return slaveOnNodes;
-        }
-
-        /** Returns whether the resoruce is managed. */
-        boolean isManaged() {
-            return managed;
-        }
-
-        /** Returns allocation scores. */
-        Map<String, String> getAllocationScores() {
-            return allocationScores;
-        }
-    }
-
-    /** Parse allocation scores. */
-    private Map<String, String> parseAllocationScores(final NodeList scores) {
-        final Map<String, String> allocationScores =
-                                           new LinkedHashMap<String, String>();
-        for (int i = 0; i < scores.getLength(); i++) {
-            final Node scoreNode = scores.item(i);
-            if (scoreNode.getNodeName().equals("score")) {
-                final String h = getAttribute(scoreNode, "host");
-                final String score = getAttribute(scoreNode, "score");
-                allocationScores.put(h, score);
-            }
-        }
-        return allocationScores;
-    }
-
-    /** Returns a hash with resource information. (running_on) */
-    Map<String, ResStatus> parseResStatus(final String resStatus) {
-        final Map<String, ResStatus> resStatusMap =
-                                           new HashMap<String, ResStatus>();
-        final Document document = getXMLDocument(resStatus);
-        if (document == null) {
-            return null;
-        }
-
-        /* get root <resource_status> */
-        final Node statusNode = getChildNode(document, "resource_status");
-        if (statusNode == null) {
-            return null;
-        }
-        /*      <resource...> */
-        final NodeList resources = statusNode.getChildNodes();
-        for (int i = 0; i < resources.getLength(); i++) {
-            final Node resourceNode = resources.item(i);
-            if (resourceNode.getNodeName().equals("resource")) {
-                final String id = getAttribute(resourceNode, "id");
-                final String isManaged = getAttribute(resourceNode, "managed");
-                final NodeList statusList = resourceNode.getChildNodes();
-                List<String> runningOnList = null;
-                List<String> masterOnList = null;
-                List<String> slaveOnList = null;
-                boolean managed = false;
-                if ("managed".equals(isManaged)) {
-                    managed = true;
-                }
-                Map<String, String> allocationScores =
-                                                new HashMap<String, String>();
-                for (int j = 0; j < statusList.getLength(); j++) {
-                    final Node setNode = statusList.item(j);
-                    if (TARGET_ROLE_STARTED.equalsIgnoreCase(
-                                                    setNode.getNodeName())) {
-                        final String node = getText(setNode);
-                        if (runningOnList == null) {
-                            runningOnList = new ArrayList<String>();
-                        }
-                        runningOnList.add(node);
-                    } else if (TARGET_ROLE_MASTER.equalsIgnoreCase(
-                                                      setNode.getNodeName())) {
-                        final String node = getText(setNode);
-                        if (masterOnList == null) {
-                            masterOnList = new ArrayList<String>();
-                        }
-                        masterOnList.add(node);
-                    } else if (TARGET_ROLE_SLAVE.equalsIgnoreCase(
-                                                      setNode.getNodeName())) {
-                        final String node = getText(setNode);
-                        if (slaveOnList == null) {
-                            slaveOnList = new ArrayList<String>();
-                        }
-                        slaveOnList.add(node);
-                    } else if ("scores".equals(setNode.getNodeName())) {
-                        allocationScores =
-                                parseAllocationScores(setNode.getChildNodes());
-                    }
-                }
-                resStatusMap.put(id, new ResStatus(runningOnList,
-                                                   masterOnList,
-                                                   slaveOnList,
-                                                   allocationScores,
-                                                   managed));
+    ResourceStates parseResStatus(final String resStatus) {
+        final boolean started = startPooling();
+        try {
+            final ResStatusHandler handler = new ResStatusHandler();
+            if (!parseXML(resStatus, handler)
+                || !handler.isResourceStatus()) {
+                return null;
             }
+            return handler.getStates();
+        } finally {
+            stopPooling(started);
         }
-        return resStatusMap;
     }
 
     /** Parses the transient attributes. */
     private void parseTransientAttributes(
                       final String uname,
                       final Node transientAttrNode,
-                      final MultiKeyMap<String, String> failedMap,
+                      final ResourceStates.Builder failCounts,
                       final MultiKeyMap<String, Set<String>> failedClonesMap,
                       final Map<String, String> pingCountMap) {
         /* <instance_attributes> */
@@ -2743,13 +2759,14 @@ public final class CRMXML extends XML {
                     if ("pingd".equals(name)) {
                         pingCountMap.put(uname, value);
                     } else if (name.indexOf(FAIL_COUNT_PREFIX) == 0) {
-                        final String resId =
-                                    name.substring(FAIL_COUNT_PREFIX.length());
+                        final String resId = intern(
+                                   name.substring(FAIL_COUNT_PREFIX.length()));
                         final String unameLowerCase =
-                                                uname.toLowerCase(Locale.US);
-                        failedMap.put(unameLowerCase, resId, value);
-                        final Pattern p = Pattern.compile("(.*):(\\d+)$");
-                        final Matcher m = p.matcher(resId);
+                                                internLowerCase(uname);
+                        failCounts.putFailCount(resId, uname, value);
+                        final Matcher m =
+                                  ResourceStates.CLONE_INSTANCE_PATTERN
+                                                .matcher(resId);
                         if (m.matches()) {
                             final String crmId = m.group(1);
                             Set<String> clones =
@@ -2761,9 +2778,7 @@ public final class CRMXML extends XML {
                                                     clones);
                             }
                             clones.add(m.group(2));
-                            failedMap.put(uname.toLowerCase(Locale.US),
-                                          crmId,
-                                          value);
+                            failCounts.putFailCount(crmId, uname, value);
                         }
                     }
                 }
@@ -2794,7 +2809,7 @@ public final class CRMXML extends XML {
                 if (optionNode.getNodeName().equals("nvpair")) {
                     final String name = getAttribute(optionNode, "name");
                     final String value = getAttribute(optionNode, "value");
-                    nodeParametersMap.put(node.toLowerCase(Locale.US),
+                    nodeParametersMap.put(internLowerCase(node),
                                           name,
                                           value);
                 }
@@ -2890,14 +2905,79 @@ public final class CRMXML extends XML {
         }
     }
 
+    /**
+     * Returns the pooled instance of the string, while the cib or the
+     * status is parsed, otherwise the string itself.
+     */
+    @Override
+    protected String intern(final String s) {
+        if (pooling.get() == null) {
+            return s;
+        }
+        return stringPool.intern(s);
+    }
+
+    /**
+     * Starts pooling the strings in this thread. Returns false, if they are
+     * pooled already, e.g. in a nested call.
+     */
+    private boolean startPooling() {
+        if (pooling.get() != null) {
+            return false;
+        }
+        pooling.set(Boolean.TRUE);
+        return true;
+    }
+
+    /** Stops pooling the strings in this thread, if it was started. */
+    private void stopPooling(final boolean started) {
+        if (started) {
+            pooling.remove();
+        }
+    }
+
+    /** Returns the pooled instance of the string in lower case. */
+    private String internLowerCase(final String s) {
+        return intern(s.toLowerCase(Locale.US));
+    }
+
+    /**
+     * Parses the cib without the operation history and returns the document
+     * or null, if it could not be parsed.
+     */
+    Document parseCibDocument(final String query) {
+        final Document document = getXMLDocument(query, CIB_SKIP_ELEMENTS);
+        if (document == null) {
+            LOG.appWarning("parseCibDocument: cib error: " + query);
+        }
+        return document;
+    }
+
     /** Returns CibQuery object with information from the cib node. */
     CibQuery parseCibQuery(final String query) {
-        final Document document = getXMLDocument(query);
-        final CibQuery cibQueryData = new CibQuery();
+        return parseCibQuery(parseCibDocument(query));
+    }
+
+    /** Returns CibQuery object with information from the cib document. */
+    CibQuery parseCibQuery(final Document document) {
         if (document == null) {
-            LOG.appWarning("parseCibQuery: cib error: " + query);
-            return cibQueryData;
+            return new CibQuery();
         }
+        stringPool.newGeneration();
+        final boolean started = startPooling();
+        try {
+            return parseCibQueryPooled(document);
+        } finally {
+            stopPooling(started);
+        }
+    }
+
+    /**
+     * Returns CibQuery object with information from the cib document, the
+     * strings are pooled.
+     */
+    private CibQuery parseCibQueryPooled(final Document document) {
+        final CibQuery cibQueryData = new CibQuery();
         /* get root <pacemaker> */
         final Node pcmkNode = getChildNode(document, "pcmk");
         if (pcmkNode == null) {
@@ -2915,7 +2995,7 @@ public final class CRMXML extends XML {
                 if (hostNode.getNodeName().equals("node")) {
                     final String h = getText(hostNode);
                     if (h != null) {
-                        fencedNodes.add(h.toLowerCase(Locale.US));
+                        fencedNodes.add(internLowerCase(h));
                     }
                 }
             }
@@ -2929,6 +3009,13 @@ public final class CRMXML extends XML {
         }
         /* Designated Co-ordinator */
         final String dcUuid = getAttribute(cibNode, "dc-uuid");
+        final String adminEpoch = getAttribute(cibNode, "admin_epoch");
+        final String epoch = getAttribute(cibNode, "epoch");
+        final String numUpdates = getAttribute(cibNode, "num_updates");
+        if (adminEpoch != null && epoch != null && numUpdates != null) {
+            cibQueryData.setCibVersion(adminEpoch + "." + epoch + "."
+                                       + numUpdates);
+        }
         //TODO: more attributes are here
 
         /* <configuration> */
@@ -3021,7 +3108,7 @@ public final class CRMXML extends XML {
                     }
                     parseNode(uname, nodeNode, nodeParametersMap);
                     if (!nodeOnline.containsKey(uname.toLowerCase(Locale.US))) {
-                        nodeOnline.put(uname.toLowerCase(Locale.US), "no");
+                        nodeOnline.put(internLowerCase(uname), "no");
                     }
                 }
             }
@@ -3061,8 +3148,8 @@ public final class CRMXML extends XML {
         final Map<String, String> cloneToResourceMap =
                                                  new HashMap<String, String>();
         final List<String> masterList = new ArrayList<String>();
-        final MultiKeyMap<String, String> failedMap =
-                                            new MultiKeyMap<String, String>();
+        final ResourceStates.Builder failCounts =
+                                              new ResourceStates.Builder();
         final MultiKeyMap<String, Set<String>> failedClonesMap =
                                         new MultiKeyMap<String, Set<String>>();
         final Map<String, String> pingCountMap = new HashMap<String, String>();
@@ -3350,11 +3437,11 @@ public final class CRMXML extends XML {
                     }
                     if (node != null) {
                         resHostToLocIdMap.put(rsc,
-                                              node.toLowerCase(Locale.US),
+                                              internLowerCase(node),
                                               locId);
                     }
                     if (score != null) {
-                        hostScoreMap.put(node.toLowerCase(Locale.US),
+                        hostScoreMap.put(internLowerCase(node),
                                          new HostLocation(score,
                                                           "eq",
                                                           null,
@@ -3386,14 +3473,14 @@ public final class CRMXML extends XML {
                                  || "and".equals(booleanOp))
                                 && "#uname".equals(attr)
                                 && value != null) {
-                                hostScoreMap.put(value.toLowerCase(Locale.US),
+                                hostScoreMap.put(internLowerCase(value),
                                                  new HostLocation(score2,
                                                                   op,
                                                                   null,
                                                                   role));
                                 resHostToLocIdMap.put(
                                                   rsc,
-                                                  value.toLowerCase(Locale.US),
+                                                  internLowerCase(value),
                                                   locId);
                             } else if ((booleanOp == null
                                         || "and".equals(booleanOp))
@@ -3435,12 +3522,12 @@ public final class CRMXML extends XML {
                     if ("member".equals(join)
                         && "true".equals(inCCM)
                         && !"offline".equals(crmd)) {
-                        nodeOnline.put(uname.toLowerCase(Locale.US), "yes");
+                        nodeOnline.put(internLowerCase(uname), "yes");
                     } else {
-                        nodeOnline.put(uname.toLowerCase(Locale.US), "no");
+                        nodeOnline.put(internLowerCase(uname), "no");
                     }
                     if ("pending".equals(join)) {
-                        nodePending.add(uname.toLowerCase(Locale.US));
+                        nodePending.add(internLowerCase(uname));
                     }
                     final NodeList nodeStates = nodeStateNode.getChildNodes();
                     /* transient attributes. */
@@ -3450,7 +3537,7 @@ public final class CRMXML extends XML {
                                                nodeStateChild.getNodeName())) {
                             parseTransientAttributes(uname,
                                                      nodeStateChild,
-                                                     failedMap,
+                                                     failCounts,
                                                      failedClonesMap,
                                                      pingCountMap);
                         }
@@ -3460,7 +3547,7 @@ public final class CRMXML extends XML {
                     for (int j = 0; j < nodeStates.getLength(); j++) {
                         final Node nodeStateChild = nodeStates.item(j);
                         if ("lrm".equals(nodeStateChild.getNodeName())) {
-                            parseLRM(uname.toLowerCase(Locale.US),
+                            parseLRM(internLowerCase(uname),
                                      nodeStateChild,
                                      resList,
                                      resourceTypeMap,
@@ -3507,7 +3594,7 @@ public final class CRMXML extends XML {
         cibQueryData.setGroupsToResources(groupsToResourcesMap);
         cibQueryData.setCloneToResource(cloneToResourceMap);
         cibQueryData.setMasterList(masterList);
-        cibQueryData.setFailed(failedMap);
+        cibQueryData.setFailCounts(failCounts.build());
         cibQueryData.setFailedClones(failedClonesMap);
         cibQueryData.setPingCount(pingCountMap);
         cibQueryData.setRscDefaultsId(rscDefaultsId);
@@ -3841,8 +3928,8 @@ public final class CRMXML extends XML {
             final Node rscNode = lrmResources.item(j);
             if ("lrm_resource".equals(rscNode.getNodeName())) {
                 final String resId = getAttribute(rscNode, "id");
-                final Pattern p = Pattern.compile("(.*):(\\d+)$");
-                final Matcher m = p.matcher(resId);
+                final Matcher m =
+                     ResourceStates.CLONE_INSTANCE_PATTERN.matcher(resId);
                 String crmId;
                 if (m.matches()) {
                     crmId = m.group(1);
@@ -4356,4 +4443,104 @@ public final class CRMXML extends XML {
             return s.toString();
         }
     }
+    /**
+     * Builds the resource states from the SAX events of the resource
+     * status:
+     *
+     * <resource_status>
+     *   <resource id="r1" running="running" managed="managed">
+     *     <started>node1</started>
+     *     <scores><score host="node1" score="100"/></scores>
+     *   </resource>
+     * </resource_status>
+     */
+    private final class ResStatusHandler extends DefaultHandler {
+        /** The states, that are built. */
+        private final ResourceStates.Builder states =
+                                                new ResourceStates.Builder();
+        /** Whether the root is resource_status. */
+        private boolean resourceStatus = false;
+        /** Depth of the current element, the root is 1. */
+        private int depth = 0;
+        /** Current resource or null. */
+        private String resource = null;
+        /** Current role element: started, master or slave or null. */
+        private String role = null;
+        /** Text of the role element. */
+        private final StringBuilder text = new StringBuilder();
+
+        /** Returns whether the root was resource_status. */
+        boolean isResourceStatus() {
+            return resourceStatus;
+        }
+
+        /** Returns the states. */
+        ResourceStates getStates() {
+            return states.build();
+        }
+
+        @Override
+        public void startElement(final String uri,
+                                 final String localName,
+                                 final String qName,
+                                 final Attributes attributes) {
+            depth++;
+            if (depth == 1) {
+                resourceStatus = "resource_status".equals(qName);
+            } else if (!resourceStatus) {
+                return;
+            } else if (depth == 2 && "resource".equals(qName)) {
+                resource = attributes.getValue("id");
+                if (resource != null) {
+                    resource = intern(resource);
+                    states.setManaged(
+                            resource,
+                            "managed".equals(attributes.getValue("managed")));
+                }
+            } else if (depth == 3 && resource != null
+                       && (TARGET_ROLE_STARTED.equalsIgnoreCase(qName)
+                           || TARGET_ROLE_MASTER.equalsIgnoreCase(qName)
+                           || TARGET_ROLE_SLAVE.equalsIgnoreCase(qName))) {
+                role = qName;
+                text.setLength(0);
+            } else if (depth == 4 && resource != null
+                       && "score".equals(qName)) {
+                final String h = attributes.getValue("host");
+                final String score = attributes.getValue("score");
+                states.putAllocationScore(resource,
+                                          h == null ? null : intern(h),
+                                          score == null ? null
+                                                        : intern(score));
+            }
+        }
+
+        @Override
+        public void endElement(final String uri,
+                               final String localName,
+                               final String qName) {
+            if (depth == 3 && role != null) {
+                final String on = intern(text.toString());
+                if (TARGET_ROLE_STARTED.equalsIgnoreCase(role)) {
+                    states.addRunning(resource, on);
+                } else if (TARGET_ROLE_MASTER.equalsIgnoreCase(role)) {
+                    states.addMaster(resource, on);
+                } else {
+                    states.addSlave(resource, on);
+                }
+                role = null;
+            } else if (depth == 2) {
+                resource = null;
+            }
+            depth--;
+        }
+
+        @Override
+        public void characters(final char[] ch,
+                               final int start,
+                               final int length) {
+            if (role != null) {
+                text.append(ch, start, length);
+            }
+        }
+    }
 }
@@ -0,0 +1,461 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2013, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import lcmc.utilities.Logger;
+import lcmc.utilities.LoggerFactory;
+
+/**
+ * Cib patchset from the cluster events. It has the v2 diffs, that cibmon
+ * logged, and the fenced nodes, if crm_simulate ran:
+ *
+ * <patchset>
+ *   <fenced>...</fenced>
+ *   <diff format="2" from="0.12.5" to="0.12.6">
+ *     <change operation="create|delete|modify|move" path="..."/>
+ *   </diff>
+ * </patchset>
+ *
+ * The diffs are applied to the cached cib document, so that the whole cib
+ * doesn't have to be read and parsed again for every change. It also finds
+ * out, which resources changed.
+ *
+ * @author Rasto Levrinc
+ *
+ */
+final class CibPatch extends XML {
+    /** Logger. */
+    private static final Logger LOG = LoggerFactory.getLogger(CibPatch.class);
+    /** Elements in the resources section, whose ids are resource ids. */
+    private static final Set<String> RESOURCE_ELEMENTS =
+                Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+                                                            "primitive",
+                                                            "group",
+                                                            "clone",
+                                                            "master",
+                                                            "master_slave")));
+    /** Elements, in which the order of the children matters. */
+    private static final Set<String> ORDERED_ELEMENTS =
+                Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+                                                            "group",
+                                                            "resource_set")));
+    /** One step of the path: element name and optional id. */
+    private static final Pattern STEP_PATTERN =
+                          Pattern.compile("^([\\w-]+)(?:\\[@id='([^']*)'\\])?$");
+    /** The patchset or null, if it could not be parsed. */
+    private final Node patchsetNode;
+    /** Elements, that are not in the cib document. */
+    private final Set<String> skipElements;
+    /** Resources, whose configuration changed. */
+    private final Set<String> changedResources = new HashSet<String>();
+    /** Whether the configuration other than resource parameters changed. */
+    private boolean configurationChanged = false;
+    /** Whether the cib document changed. */
+    private boolean changed = false;
+
+    /**
+     * Prepares a new <code>CibPatch</code> object. The elements from
+     * skipElements are left out, like they are left out of the cib
+     * document.
+     */
+    CibPatch(final String patchset, final Set<String> skipElements) {
+        super();
+        this.skipElements = skipElements;
+        final Document document = getXMLDocument(patchset, skipElements);
+        if (document == null) {
+            patchsetNode = null;
+        } else {
+            patchsetNode = getChildNode(document, "patchset");
+        }
+    }
+
+    /**
+     * Applies the diffs to the cib document, its root is the pcmk element.
+     * Diffs, that are older than the cib, are skipped. Returns false, if
+     * the patchset doesn't apply, because some diff is missing or a path
+     * is not in the cib. The cib document may be changed partly then and
+     * it must be read again.
+     */
+    boolean apply(final Document cib) {
+        if (patchsetNode == null) {
+            LOG.appWarning("apply: could not parse the cib patch");
+            return false;
+        }
+        final Node pcmkNode = getChildNode(cib, "pcmk");
+        if (pcmkNode == null) {
+            return false;
+        }
+        final Node cibNode = getChildNode(pcmkNode, "cib");
+        if (cibNode == null) {
+            return false;
+        }
+        for (Node n = patchsetNode.getFirstChild();
+             n != null;
+             n = n.getNextSibling()) {
+            if ("fenced".equals(n.getNodeName())) {
+                final Node oldFenced = getChildNode(pcmkNode, "fenced");
+                final Node fenced = cib.importNode(n, true);
+                if (oldFenced == null) {
+                    pcmkNode.insertBefore(fenced, cibNode);
+                } else {
+                    pcmkNode.replaceChild(fenced, oldFenced);
+                }
+                changed = true;
+            } else if ("diff".equals(n.getNodeName())
+                       && !applyDiff(cib, (Element) cibNode, (Element) n)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns whether the cib document changed. */
+    boolean isChanged() {
+        return changed;
+    }
+
+    /**
+     * Returns whether the configuration changed, so that resources,
+     * constraints or other options have to be updated, not only the
+     * parameters of some resources.
+     */
+    boolean isConfigurationChanged() {
+        return configurationChanged;
+    }
+
+    /** Returns resources, whose parameters or operations changed. */
+    Set<String> getChangedResources() {
+        return changedResources;
+    }
+
+    /** Applies one diff. Returns false if it doesn't apply. */
+    private boolean applyDiff(final Document cib,
+                              final Element cibNode,
+                              final Element diffNode) {
+        final int[] cibVersion = getCibVersion(cibNode);
+        final int[] from = parseVersion(diffNode.getAttribute("from"));
+        final int[] to = parseVersion(diffNode.getAttribute("to"));
+        if (cibVersion == null || from == null || to == null) {
+            return false;
+        }
+        if (compareVersions(to, cibVersion) <= 0) {
+            /* already in the cib */
+            return true;
+        }
+        if (compareVersions(from, cibVersion) != 0) {
+            LOG.debug1("applyDiff: cib version: "
+                       + Arrays.toString(cibVersion)
+                       + ", diff from: " + diffNode.getAttribute("from"));
+            return false;
+        }
+        for (Node n = diffNode.getFirstChild();
+             n != null;
+             n = n.getNextSibling()) {
+            if ("change".equals(n.getNodeName())
+                && !applyChange(cib, cibNode, (Element) n)) {
+                return false;
+            }
+        }
+        cibNode.setAttribute("admin_epoch", Integer.toString(to[0]));
+        cibNode.setAttribute("epoch", Integer.toString(to[1]));
+        cibNode.setAttribute("num_updates", Integer.toString(to[2]));
+        changed = true;
+        return true;
+    }
+
+    /** Applies one change. Returns false if it doesn't apply. */
+    private boolean applyChange(final Document cib,
+                                final Element cibNode,
+                                final Element change) {
+        final String operation = change.getAttribute("operation");
+        final List<String> path = splitPath(change.getAttribute("path"));
+        if (path == null) {
+            LOG.appWarning("applyChange: could not parse path: "
+                           + change.getAttribute("path"));
+            return false;
+        }
+        if (isSkipped(path)) {
+            /* the changes in the operation history */
+            return true;
+        }
+        final Node node = findNode(cibNode, path);
+        if (node == null) {
+            LOG.debug1("applyChange: not in the cib: "
+                       + change.getAttribute("path"));
+            return false;
+        }
+        if ("create".equals(operation)) {
+            int position = -1;
+            if (change.hasAttribute("position")) {
+                try {
+                    position = Integer.parseInt(
+                                             change.getAttribute("position"));
+                } catch (final NumberFormatException e) {
+                    return false;
+                }
+            } else if (ORDERED_ELEMENTS.contains(node.getNodeName())) {
+                /* appended at the end, it could be in the wrong place */
+                LOG.debug1("applyChange: no position in: "
+                           + change.getAttribute("path"));
+                return false;
+            }
+            for (Node n = change.getFirstChild();
+                 n != null;
+                 n = n.getNextSibling()) {
+                if (n.getNodeType() != Node.ELEMENT_NODE) {
+                    continue;
+                }
+                final Element created = (Element) cib.importNode(n, true);
+                final Node old = findChild(node,
+                                           created.getNodeName(),
+                                           getId(created));
+                if (old == null) {
+                    node.appendChild(created);
+                } else {
+                    node.replaceChild(created, old);
+                }
+                if (position >= 0) {
+                    moveNode(created, position);
+                }
+                noteChange(path, created.getNodeName());
+            }
+        } else if ("delete".equals(operation)) {
+            node.getParentNode().removeChild(node);
+            noteChange(path.subList(0, path.size() - 1), node.getNodeName());
+        } else if ("modify".equals(operation)) {
+            final Element element = (Element) node;
+            final Node changeList = getChildNode(change, "change-list");
+            if (changeList != null) {
+                for (Node n = changeList.getFirstChild();
+                     n != null;
+                     n = n.getNextSibling()) {
+                    if (!"change-attr".equals(n.getNodeName())) {
+                        continue;
+                    }
+                    final Element attr = (Element) n;
+                    if ("unset".equals(attr.getAttribute("operation"))) {
+                        element.removeAttribute(attr.getAttribute("name"));
+                    } else {
+                        element.setAttribute(attr.getAttribute("name"),
+                                             attr.getAttribute("value"));
+                    }
+                }
+            }
+            noteChange(path.subList(0, path.size() - 1), node.getNodeName());
+        } else if ("move".equals(operation)) {
+            final int position;
+            try {
+                position = Integer.parseInt(change.getAttribute("position"));
+            } catch (final NumberFormatException e) {
+                return false;
+            }
+            moveNode(node, position);
+            noteChange(path.subList(0, path.size() - 1), node.getNodeName());
+        } else {
+            LOG.appWarning("applyChange: unknown operation: " + operation);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Notes, what changed. The parent is the path to the parent of the
+     * changed element, that has the specified name.
+     */
+    private void noteChange(final List<String> parent, final String name) {
+        if (parent.size() < 2 || !"configuration".equals(parent.get(1))) {
+            /* the cib element itself or the status */
+            if (parent.size() == 1 && "configuration".equals(name)) {
+                configurationChanged = true;
+            }
+            return;
+        }
+        if (parent.size() < 3 || !parent.get(2).equals("resources")) {
+            configurationChanged = true;
+            return;
+        }
+        if (RESOURCE_ELEMENTS.contains(name)) {
+            /* new, removed or moved resource or its type changed */
+            configurationChanged = true;
+            return;
+        }
+        String resource = null;
+        for (final String step : parent.subList(3, parent.size())) {
+            final Matcher m = STEP_PATTERN.matcher(step);
+            if (!m.matches() || !RESOURCE_ELEMENTS.contains(m.group(1))) {
+                break;
+            }
+            resource = m.group(2);
+        }
+        if (resource == null) {
+            configurationChanged = true;
+        } else {
+            changedResources.add(resource);
+        }
+    }
+
+    /**
+     * Splits the path to the steps without the leading cib step. Returns
+     * null if it is not a path in the cib.
+     */
+    private static List<String> splitPath(final String path) {
+        final List<String> steps = new ArrayList<String>();
+        if (!path.startsWith("/")) {
+            return null;
+        }
+        int start = 1;
+        boolean inPredicate = false;
+        for (int i = 1; i <= path.length(); i++) {
+            if (i == path.length()
+                || (!inPredicate && path.charAt(i) == '/')) {
+                steps.add(path.substring(start, i));
+                start = i + 1;
+            } else if (path.charAt(i) == '[') {
+                inPredicate = true;
+            } else if (path.charAt(i) == ']') {
+                inPredicate = false;
+            }
+        }
+        if (steps.isEmpty() || !"cib".equals(steps.get(0))) {
+            return null;
+        }
+        return steps;
+    }
+
+    /** Returns whether the path goes through a skipped element. */
+    private boolean isSkipped(final List<String> path) {
+        if (skipElements == null) {
+            return false;
+        }
+        for (final String step : path) {
+            final Matcher m = STEP_PATTERN.matcher(step);
+            if (m.matches() && skipElements.contains(m.group(1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns the node on the path or null if it is not there. */
+    private Node findNode(final Node cibNode, final List<String> path) {
+        Node node = cibNode;
+        for (final String step : path.subList(1, path.size())) {
+            final Matcher m = STEP_PATTERN.matcher(step);
+            if (!m.matches()) {
+                return null;
+            }
+            node = findChild(node, m.group(1), m.group(2));
+            if (node == null) {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Returns the child element with the name and the id or the first one
+     * with the name, if the id is null.
+     */
+    private static Node findChild(final Node node,
+                                  final String name,
+                                  final String id) {
+        for (Node n = node.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (name.equals(n.getNodeName())
+                && (id == null || id.equals(getId(n)))) {
+                return n;
+            }
+        }
+        return null;
+    }
+
+    /** Returns the id attribute of the element or null. */
+    private static String getId(final Node node) {
+        final Element element = (Element) node;
+        if (element.hasAttribute("id")) {
+            return element.getAttribute("id");
+        }
+        return null;
+    }
+
+    /** Moves the element to the position among the element siblings. */
+    private static void moveNode(final Node node, final int position) {
+        final Node parent = node.getParentNode();
+        parent.removeChild(node);
+        int i = 0;
+        for (Node n = parent.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n.getNodeType() == Node.ELEMENT_NODE) {
+                if (i == position) {
+                    parent.insertBefore(node, n);
+                    return;
+                }
+                i++;
+            }
+        }
+        parent.appendChild(node);
+    }
+
+    /** Returns the version of the cib: admin_epoch, epoch, num_updates. */
+    private static int[] getCibVersion(final Element cibNode) {
+        return parseVersion(cibNode.getAttribute("admin_epoch")
+                            + "." + cibNode.getAttribute("epoch")
+                            + "." + cibNode.getAttribute("num_updates"));
+    }
+
+    /** Parses the cib version, e.g. 0.12.5. Returns null on error. */
+    private static int[] parseVersion(final String version) {
+        final String[] parts = version.split("\\.");
+        if (parts.length != 3) {
+            return null;
+        }
+        final int[] v = new int[3];
+        try {
+            for (int i = 0; i < 3; i++) {
+                v[i] = Integer.parseInt(parts[i]);
+            }
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+        return v;
+    }
+
+    /** Compares the cib versions. */
+    private static int compareVersions(final int[] v1, final int[] v2) {
+        for (int i = 0; i < 3; i++) {
+            if (v1[i] != v2[i]) {
+                return v1[i] < v2[i] ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+}
@@ -112,7 +112,8 @@ final class CibQuery {
     private Map<String, Map<String, String>> resOpIds =
                                     new HashMap<String, Map<String, String>>();
     /** If node is online. */
-    private Map<String, String> nodeOnline = new HashMap<String, String>();
+    private volatile Map<String, String> nodeOnline =
+                                                new HashMap<String, String>();
     /** If node is pending. */
     private Set<String> nodePending = new HashSet<String>();
     /** If node is fenced. */
@@ -126,10 +127,11 @@ final class CibQuery {
     /** List of mater resources. */
     private List<String> masterList = new ArrayList<String>();
     /** Designated co-ordinator. */
-    private String dc = null;
-    /** Map from nodename and resource to the fail-count. */
-    private MultiKeyMap<String, String> failed =
-                                             new MultiKeyMap<String, String>();
+    private volatile String dc = null;
+    /** Cib version: admin_epoch.epoch.num_updates or null. */
+    private String cibVersion = null;
+    /** Fail counts of the resources on the nodes. */
+    private ResourceStates failCounts = ResourceStates.EMPTY;
     /** Map from rsc id to list of clone ids for failed clones. */
     private MultiKeyMap<String, Set<String>> failedClones =
                                       new MultiKeyMap<String, Set<String>>();
@@ -518,14 +520,19 @@ final class CibQuery {
         return dc;
     }
 
-    /** Sets failed map. */
-    void setFailed(final MultiKeyMap<String, String> failed) {
-        this.failed = failed;
+    /** Sets the cib version. */
+    void setCibVersion(final String cibVersion) {
+        this.cibVersion = cibVersion;
+    }
+
+    /** Gets the cib version or null if not known. */
+    String getCibVersion() {
+        return cibVersion;
     }
 
-    /** Returns failed map. */
-    MultiKeyMap<String, String> getFailed() {
-        return failed;
+    /** Sets fail counts. */
+    void setFailCounts(final ResourceStates failCounts) {
+        this.failCounts = failCounts;
     }
 
     /** Sets node ping map. */
@@ -550,7 +557,12 @@ final class CibQuery {
 
     /** Returns fail-count. It can be "INFINITY" */
     String getFailCount(final String node, final String res) {
-        return failed.get(node, res);
+        return failCounts.getFailCount(node, res);
+    }
+
+    /** Returns resources, that failed on some node. */
+    List<String> getFailedResources() {
+        return failCounts.getFailedResources();
     }
 
     /** Returns ping count. */
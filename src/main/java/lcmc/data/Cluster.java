@@ -24,12 +24,12 @@ package lcmc.data;
 
 import lcmc.gui.ClusterTab;
 import lcmc.gui.ClusterBrowser;
-import lcmc.gui.SSHGui;
 import lcmc.data.resources.BlockDevice;
 import lcmc.data.resources.Network;
 import lcmc.utilities.Tools;
 import lcmc.Exceptions;
 
+import java.util.Collections;
 import java.util.Set;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -77,6 +77,13 @@ public final class Cluster implements Comparable<Cluster> {
      * Proxy hosts. More can be added in the DRBD config
      * wizard. */
     private final Set<Host> proxyHosts = new LinkedHashSet<Host>();
+    /** Health summary of the started cluster or null. */
+    private volatile ClusterHealth health = null;
+    /**
+     * Whether the cluster was stopped, the status threads, that still run,
+     * don't set the health anymore. Guarded by this.
+     */
+    private boolean stopped = false;
 
 
     /** Prepares a new <code>Cluster</code> object. */
@@ -91,6 +98,9 @@ public final class Cluster implements Comparable<Cluster> {
 
     /** Creates a new cluster browser object. */
     public void createClusterBrowser() {
+        synchronized (this) {
+            stopped = false;
+        }
         clusterBrowser = new ClusterBrowser(this);
     }
 
@@ -104,6 +114,23 @@ public final class Cluster implements Comparable<Cluster> {
         return clusterBrowser;
     }
 
+    /** Returns health summary of the started cluster or null. */
+    public ClusterHealth getHealth() {
+        return health;
+    }
+
+    /**
+     * Sets health summary of the cluster. Returns false, if the cluster was
+     * stopped and the health was not set.
+     */
+    public synchronized boolean setHealth(final ClusterHealth health) {
+        if (stopped) {
+            return false;
+        }
+        this.health = health;
+        return true;
+    }
+
     /** Removes the cluster. */
     public void removeCluster() {
         final ClusterBrowser cb = clusterBrowser;
@@ -112,6 +139,10 @@ public final class Cluster implements Comparable<Cluster> {
             clusterBrowser.stopDrbdStatus();
             clusterBrowser.stopClStatus();
         }
+        synchronized (this) {
+            stopped = true;
+            health = null;
+        }
     }
 
     /** Adds host to hosts, that are part of this cluster. */
@@ -290,46 +321,17 @@ public final class Cluster implements Comparable<Cluster> {
         return null;
     }
 
-    /** Connect all hosts in the cluster. Returns false, if it was canceled. */
+    /**
+     * Connect all hosts in the cluster concurrently. Returns false, if it
+     * was canceled.
+     */
     public boolean connect(final Window rootPane,
                            final boolean progressIndicator,
                            final int index) {
-        boolean first = true;
-        String dsaKey = null;
-        String rsaKey = null;
-        String pwd = null;
-        for (final Host host : getHosts()) {
-            host.setIsLoading();
-            if (host.isConnected()) {
-                host.setLoadingDone();
-                continue;
-            }
-            if (!first) {
-                host.getSSH().setPasswords(dsaKey, rsaKey, pwd);
-            }
-            if (rootPane == null) {
-                host.connect(null, progressIndicator, index);
-            } else {
-                host.connect(new SSHGui(rootPane, host, null),
-                             progressIndicator,
-                             index);
-            }
-            host.getSSH().waitForConnection();
-            if (first) {
-                /* wait till it's connected and try the others with the
-                 * same password/key. */
-                if (host.getSSH().isConnectionCanceled()) {
-                    return false;
-                }
-                if (host.isConnected()) {
-                    dsaKey = host.getSSH().getLastDSAKey();
-                    rsaKey = host.getSSH().getLastRSAKey();
-                    pwd = host.getSSH().getLastPassword();
-                }
-            }
-            first = false;
-        }
-        return true;
+        final Set<Cluster> canceled =
+                    new ConnectPipeline(rootPane, progressIndicator, index)
+                                    .connect(Collections.singletonList(this));
+        return !canceled.contains(this);
     }
 
     /**
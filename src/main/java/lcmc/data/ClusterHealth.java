@@ -0,0 +1,251 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2013, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.data;
+
+import lcmc.data.resources.BlockDevice;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable summary of the health of one cluster: online nodes, the DC,
+ * failed resources and the states of the DRBD devices.
+ *
+ * It is computed from the cluster status and the DRBD events without any
+ * gui objects, so that it can be shown in the clusters overview also for
+ * the clusters, whose tabs are not open.
+ *
+ * @author Rasto Levrinc
+ *
+ */
+public final class ClusterHealth {
+    /** Disk state of a healthy DRBD device. */
+    private static final String UP_TO_DATE = "UpToDate";
+    /** How many nodes are in the cluster. */
+    private final int nodes;
+    /** How many nodes are online. */
+    private final int onlineNodes;
+    /** DC or null if there is none. */
+    private final String dc;
+    /** Resources, that failed on some node. */
+    private final List<String> failedResources;
+    /** How many DRBD devices are on all nodes. */
+    private final int drbdDevices;
+    /** How many DRBD devices are syncing. */
+    private final int drbdSyncing;
+    /** How many DRBD devices are not connected or not up to date. */
+    private final int drbdDegraded;
+
+    /** Prepares a new <code>ClusterHealth</code> object. */
+    private ClusterHealth(final int nodes,
+                          final int onlineNodes,
+                          final String dc,
+                          final List<String> failedResources,
+                          final int drbdDevices,
+                          final int drbdSyncing,
+                          final int drbdDegraded) {
+        this.nodes = nodes;
+        this.onlineNodes = onlineNodes;
+        this.dc = dc;
+        this.failedResources = Collections.unmodifiableList(failedResources);
+        this.drbdDevices = drbdDevices;
+        this.drbdSyncing = drbdSyncing;
+        this.drbdDegraded = drbdDegraded;
+    }
+
+    /**
+     * Returns the health of the cluster from its status and the DRBD
+     * devices of the hosts. The cluster status can be null, if it was not
+     * read yet.
+     */
+    public static ClusterHealth of(final Host[] hosts,
+                                   final ClusterStatus clusterStatus) {
+        final List<String> online = new ArrayList<String>();
+        final List<BlockDevice> drbdBlockDevices = new ArrayList<BlockDevice>();
+        for (final Host host : hosts) {
+            if (clusterStatus == null) {
+                online.add(null);
+            } else {
+                online.add(clusterStatus.isOnlineNode(host.getName()));
+            }
+            drbdBlockDevices.addAll(host.getDrbdBlockDevices());
+        }
+        if (clusterStatus == null) {
+            return of(online,
+                      null,
+                      Collections.<String>emptyList(),
+                      drbdBlockDevices);
+        }
+        return of(online,
+                  clusterStatus.getDC(),
+                  clusterStatus.getFailedResources(),
+                  drbdBlockDevices);
+    }
+
+    /**
+     * Returns the health from the online states of the nodes, "yes", "no"
+     * or null if it is unknown, the DC, the failed resources and the DRBD
+     * devices of all nodes.
+     */
+    static ClusterHealth of(final List<String> online,
+                            final String dc,
+                            final List<String> failedResources,
+                            final Collection<BlockDevice> drbdBlockDevices) {
+        int onlineNodes = 0;
+        for (final String o : online) {
+            if ("yes".equals(o)) {
+                onlineNodes++;
+            }
+        }
+        int drbdDevices = 0;
+        int drbdSyncing = 0;
+        int drbdDegraded = 0;
+        for (final BlockDevice bd : drbdBlockDevices) {
+            drbdDevices++;
+            if (bd.isSyncing()) {
+                drbdSyncing++;
+            } else if (!bd.isConnected()
+                       || !UP_TO_DATE.equals(bd.getDiskState())) {
+                drbdDegraded++;
+            }
+        }
+        return new ClusterHealth(online.size(),
+                                 onlineNodes,
+                                 dc,
+                                 failedResources,
+                                 drbdDevices,
+                                 drbdSyncing,
+                                 drbdDegraded);
+    }
+
+    /** Returns how many nodes are in the cluster. */
+    public int getNodes() {
+        return nodes;
+    }
+
+    /** Returns how many nodes are online. */
+    public int getOnlineNodes() {
+        return onlineNodes;
+    }
+
+    /** Returns the DC or null. */
+    public String getDC() {
+        return dc;
+    }
+
+    /** Returns resources, that failed on some node. */
+    public List<String> getFailedResources() {
+        return failedResources;
+    }
+
+    /** Returns how many DRBD devices are on all nodes. */
+    public int getDrbdDevices() {
+        return drbdDevices;
+    }
+
+    /** Returns how many DRBD devices are syncing. */
+    public int getDrbdSyncing() {
+        return drbdSyncing;
+    }
+
+    /** Returns how many DRBD devices are not connected or not up to date. */
+    public int getDrbdDegraded() {
+        return drbdDegraded;
+    }
+
+    /** Returns whether no node is online. */
+    public boolean isDown() {
+        return onlineNodes == 0;
+    }
+
+    /**
+     * Returns whether all nodes are online, no resource failed and all DRBD
+     * devices are connected and up to date.
+     */
+    public boolean isHealthy() {
+        return onlineNodes == nodes
+               && failedResources.isEmpty()
+               && drbdSyncing == 0
+               && drbdDegraded == 0;
+    }
+
+    /** Returns the summary, e.g. "2/2 online, DC: node1, 1 failed". */
+    @Override
+    public String toString() {
+        final StringBuilder s = new StringBuilder(60);
+        s.append(onlineNodes);
+        s.append('/');
+        s.append(nodes);
+        s.append(" online");
+        if (dc != null) {
+            s.append(", DC: ");
+            s.append(dc);
+        }
+        if (!failedResources.isEmpty()) {
+            s.append(", ");
+            s.append(failedResources.size());
+            s.append(" failed");
+        }
+        if (drbdDevices > 0) {
+            s.append(", drbd: ");
+            s.append(drbdDevices - drbdSyncing - drbdDegraded);
+            s.append('/');
+            s.append(drbdDevices);
+            s.append(" ok");
+            if (drbdSyncing > 0) {
+                s.append(", ");
+                s.append(drbdSyncing);
+                s.append(" syncing");
+            }
+        }
+        return s.toString();
+    }
+
+    /** Returns whether the health is the same. */
+    @Override
+    public boolean equals(final Object o) {
+        if (!(o instanceof ClusterHealth)) {
+            return false;
+        }
+        final ClusterHealth other = (ClusterHealth) o;
+        return nodes == other.nodes
+               && onlineNodes == other.onlineNodes
+               && (dc == null ? other.dc == null : dc.equals(other.dc))
+               && failedResources.equals(other.failedResources)
+               && drbdDevices == other.drbdDevices
+               && drbdSyncing == other.drbdSyncing
+               && drbdDegraded == other.drbdDegraded;
+    }
+
+    /** Returns the hash code. */
+    @Override
+    public int hashCode() {
+        int h = nodes;
+        h = h * 31 + onlineNodes;
+        h = h * 31 + (dc == null ? 0 : dc.hashCode());
+        h = h * 31 + failedResources.hashCode();
+        h = h * 31 + drbdDevices;
+        h = h * 31 + drbdSyncing;
+        return h * 31 + drbdDegraded;
+    }
+}
@@ -26,15 +26,22 @@ package lcmc.data;
 import lcmc.utilities.Tools;
 import lcmc.utilities.ConvertCmdCallback;
 import lcmc.utilities.SSH;
-import lcmc.data.CRMXML.ResStatus;
 
 import java.util.Map;
 import java.util.List;
 import java.util.Set;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Collections;
 import java.util.Locale;
+import java.io.StringWriter;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
 import org.apache.commons.collections15.map.MultiKeyMap;
+import org.w3c.dom.Document;
 
 import lcmc.utilities.Logger;
 import lcmc.utilities.LoggerFactory;
@@ -57,7 +64,7 @@ public final class ClusterStatus {
     /** CRMXML object. */
     private final CRMXML crmXML;
     /** On which node the resource is running or is a slave. */
-    private volatile Map<String, ResStatus> resStateMap = null;
+    private volatile ResourceStates resourceStates = ResourceStates.EMPTY;
     /** Results from ptest. */
     private volatile PtestData ptestData = null;
     /** Old status in string. */
@@ -66,6 +73,17 @@ public final class ClusterStatus {
     private String oldCib = null;
     /** Old advanced mode. */
     private boolean oldAdvancedMode = false;
+    /** How many times the cib changed. */
+    private volatile int cibGeneration = 0;
+    /** The cib without the operation history, the patches apply to it. */
+    private volatile Document cibDocument = null;
+    /** Whether a patch didn't apply, so that the whole cib is needed. */
+    private volatile boolean fullCibNeeded = false;
+    /**
+     * Resources, whose configuration changed in the last update, or null
+     * if all resources have to be updated.
+     */
+    private volatile Set<String> changedResources = null;
     /** Host. */
     private final Host host;
 
@@ -153,6 +171,19 @@ public final class ClusterStatus {
         cibQueryMap.setDC(dc);
     }
 
+    /**
+     * Returns the version of the cib, that changes with every change of the
+     * configuration or the status.
+     */
+    public String getCibVersion() {
+        final String cibVersion = cibQueryMap.getCibVersion();
+        if (cibVersion == null) {
+            /* cib.xml from the disk */
+            return "generation " + cibGeneration;
+        }
+        return cibVersion;
+    }
+
     /** Returns a map from parameter to its values for rsc defaults. */
     public Map<String, String> getRscDefaultsValuePairs() {
         return cibQueryMap.getRscDefaultsParams();
@@ -427,14 +458,7 @@ public final class ClusterStatus {
         if (testOnly && pd != null) {
             return pd.isManaged(hbId);
         }
-        if (resStateMap == null) {
-            return true;
-        }
-        final ResStatus resStatus = resStateMap.get(hbId);
-        if (resStatus == null) {
-            return true;
-        }
-        return resStatus.isManaged();
+        return resourceStates.isManaged(hbId);
     }
 
 
@@ -449,15 +473,8 @@ public final class ClusterStatus {
                 return ron;
             }
         }
-        if (resStateMap == null) {
-            return null;
-        }
-        final ResStatus resStatus = resStateMap.get(hbId);
-        if (resStatus == null) {
-            return null;
-        }
         /* this one is already sorted. */
-        return resStatus.getRunningOnNodes();
+        return resourceStates.getRunningOnNodes(hbId);
     }
 
     /** Returns on which nodes the resource is slave. */
@@ -471,14 +488,7 @@ public final class ClusterStatus {
                 return son;
             }
         }
-        if (resStateMap == null) {
-            return null;
-        }
-        final ResStatus resStatus = resStateMap.get(hbId);
-        if (resStatus == null) {
-            return null;
-        }
-        return resStatus.getSlaveOnNodes();
+        return resourceStates.getSlaveOnNodes(hbId);
     }
 
     /** Returns on which nodes the resource is master. */
@@ -492,26 +502,12 @@ public final class ClusterStatus {
                 return mon;
             }
         }
-        if (resStateMap == null) {
-            return null;
-        }
-        final ResStatus resStatus = resStateMap.get(hbId);
-        if (resStatus == null) {
-            return null;
-        }
-        return resStatus.getMasterOnNodes();
+        return resourceStates.getMasterOnNodes(hbId);
     }
 
     public Map<String, String> getAllocationScores(final String crmId,
                                                    final boolean testOnly) {
-        if (resStateMap == null) {
-            return Collections.<String, String>emptyMap();
-        }
-        final ResStatus resStatus = resStateMap.get(crmId);
-        if (resStatus == null) {
-            return Collections.<String, String>emptyMap();
-        }
-        return resStatus.getAllocationScores();
+        return resourceStates.getAllocationScores(crmId);
     }
 
 
@@ -528,7 +524,12 @@ public final class ClusterStatus {
      * "yes", "no" or null if it is unknown.
      */
     public void setOnlineNode(final String node, final String online) {
-        cibQueryMap.getNodeOnline().put(node.toLowerCase(Locale.US), online);
+        /* the readers don't lock, the map is replaced, not changed */
+        final CibQuery cibQuery = cibQueryMap;
+        final Map<String, String> nodeOnline =
+                         new HashMap<String, String>(cibQuery.getNodeOnline());
+        nodeOnline.put(node.toLowerCase(Locale.US), online);
+        cibQuery.setNodeOnline(nodeOnline);
     }
 
     /** Returns true if if node is pending. */
@@ -550,6 +551,11 @@ public final class ClusterStatus {
         return cibQueryMap.getFailCount(node.toLowerCase(Locale.US), res);
     }
 
+    /** Returns resources, that failed on some node, sorted by id. */
+    public List<String> getFailedResources() {
+        return cibQueryMap.getFailedResources();
+    }
+
     /** Returns ping count of the specified node. */
     public String getPingCount(final String node, final boolean testOnly) {
         if (testOnly && ptestData != null) {
@@ -585,7 +591,7 @@ public final class ClusterStatus {
 
     /** Parses the command with data. */
     private boolean parseCommand(final String command,
-                                 final List<String> data) {
+                                 final String data) {
         final String[] commands = command.split("<<<>>>");
         final String cmd = commands[0];
 
@@ -593,8 +599,7 @@ public final class ClusterStatus {
             if ("fenced_nodes".equals(cmd)) {
 
             } else if ("res_status".equals(cmd)) {
-                final String status = Tools.join("\n", data.toArray(
-                                                     new String[data.size()]));
+                final String status = data;
                 if (!status.equals(oldStatus)) {
                     LOG.debug1("parseCommand: status update: "
                                + host.getName());
@@ -603,17 +608,9 @@ public final class ClusterStatus {
                     return true;
                 }
             } else if ("cibadmin".equals(cmd)) {
-                final String cib =
-                       Tools.join("\n", data.toArray(new String[data.size()]));
-                final boolean advancedMode =
-                                        Tools.getConfigData().isAdvancedMode();
-                if (!cib.equals(oldCib) || oldAdvancedMode != advancedMode) {
-                    LOG.debug1("parseCommand: cib update: " + host.getName());
-                    oldCib = cib;
-                    oldAdvancedMode = advancedMode;
-                    parseCibQuery(cib);
-                    return true;
-                }
+                return updateCib(data);
+            } else if ("cib_patch".equals(cmd)) {
+                return applyCibPatch(data);
             }
         } else {
             LOG.appError("parseCommand: unknown command: " + command);
@@ -621,33 +618,164 @@ public final class ClusterStatus {
         return false;
     }
 
-    /** Parses status. */
+    /** Parses the cib, if it changed. Returns whether it changed. */
+    private boolean updateCib(final String cib) {
+        final boolean advancedMode = Tools.getConfigData().isAdvancedMode();
+        if (!cib.equals(oldCib) || oldAdvancedMode != advancedMode) {
+            LOG.debug1("updateCib: cib update: " + host.getName());
+            oldCib = cib;
+            oldAdvancedMode = advancedMode;
+            final Document document = crmXML.parseCibDocument(cib);
+            cibDocument = document;
+            cibQueryMap = crmXML.parseCibQuery(document);
+            changedResources = null;
+            cibGeneration++;
+            fullCibNeeded = false;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether a cib patch didn't apply and the patches can't be
+     * applied till the whole cib is read again.
+     */
+    public boolean isFullCibNeeded() {
+        return fullCibNeeded;
+    }
+
+    /**
+     * Applies the cib patch to the cib from the previous updates. If it
+     * doesn't apply, the whole cib is needed, that the status command
+     * sends, after it is started again. Returns whether the cib changed.
+     */
+    private boolean applyCibPatch(final String data) {
+        final Document document = cibDocument;
+        if (document != null) {
+            final CibPatch patch = new CibPatch(data,
+                                                CRMXML.CIB_SKIP_ELEMENTS);
+            final boolean applied;
+            synchronized (document) {
+                applied = patch.apply(document);
+            }
+            if (applied) {
+                if (!patch.isChanged()) {
+                    return false;
+                }
+                /* the cib string is not the same anymore */
+                oldCib = null;
+                final CibQuery oldCibQuery = cibQueryMap;
+                cibQueryMap = crmXML.parseCibQuery(document);
+                changedResources = getChangedResources(patch,
+                                                       oldCibQuery,
+                                                       cibQueryMap);
+                cibGeneration++;
+                return true;
+            }
+        }
+        LOG.debug1("applyCibPatch: " + host.getName()
+                   + ": the whole cib is needed");
+        cibDocument = null;
+        /* the same cib must be parsed again */
+        oldCib = null;
+        fullCibNeeded = true;
+        return false;
+    }
+
+    /**
+     * Returns resources, whose configuration changed with the patch, and
+     * the resources, that refer to them, or null, if the resources or
+     * other parts of the configuration changed, so that all have to be
+     * updated.
+     */
+    private static Set<String> getChangedResources(final CibPatch patch,
+                                                   final CibQuery oldCibQuery,
+                                                   final CibQuery cibQuery) {
+        if (patch.isConfigurationChanged()
+            || !Tools.areEqual(oldCibQuery.getGroupsToResources(),
+                               cibQuery.getGroupsToResources())
+            || !Tools.areEqual(oldCibQuery.getOrphaned(),
+                               cibQuery.getOrphaned())) {
+            return null;
+        }
+        final Set<String> changed =
+                                new HashSet<String>(patch.getChangedResources());
+        addReferringResources(changed, cibQuery.getOperationsRefs());
+        addReferringResources(changed, cibQuery.getMetaAttrsRefs());
+        return changed;
+    }
+
+    /** Adds the resources, that refer to the changed resources. */
+    private static void addReferringResources(final Set<String> changed,
+                                              final Map<String, String> refs) {
+        if (refs == null) {
+            return;
+        }
+        for (final Map.Entry<String, String> ref : refs.entrySet()) {
+            if (changed.contains(ref.getValue())) {
+                changed.add(ref.getKey());
+            }
+        }
+    }
+
+    /**
+     * Returns resources, whose configuration changed in the last update of
+     * the status, or null if all resources have to be updated. It is
+     * empty, if only the status of the cluster changed.
+     */
+    public Set<String> getChangedResources() {
+        return changedResources;
+    }
+
+    /**
+     * Parses status. The lines are not split into an array, the data lines
+     * are appended to the data of the command as they are.
+     */
     public boolean parseStatus(final String status) {
-        final String[] lines = status.split("\n");
-        String command    = null;
-        List<String> data = null;
+        changedResources = Collections.emptySet();
+        String command = null;
+        StringBuilder data = null;
+        boolean firstDataLine = true;
 
         boolean failed = false;
 
         /* remove all hashes */
         boolean updated = false;
-        for (String line : lines) {
-            line = line.trim();
-            if ("---start---".equals(line)
-                || "init".equals(line)
-                || "evt:cib_changed".equals(line)) {
+        int pos = 0;
+        while (pos < status.length()) {
+            int end = status.indexOf('\n', pos);
+            if (end < 0) {
+                end = status.length();
+            }
+            /* trimmed line is from s to e */
+            int s = pos;
+            int e = end;
+            pos = end + 1;
+            while (s < e && status.charAt(s) <= ' ') {
+                s++;
+            }
+            while (e > s && status.charAt(e - 1) <= ' ') {
+                e--;
+            }
+            if (isLine(status, s, e, "---start---")
+                || isLine(status, s, e, "init")
+                || isLine(status, s, e, "evt:cib_changed")) {
                 continue;
             }
-            if ("---done---".equals(line)) {
+            if (isLine(status, s, e, "---done---")) {
                 break;
             }
             if (command == null) { /* start of command */
-                command = line;
+                command = status.substring(s, e);
                 data = null;
                 continue;
             }
-            if (line.equals(">>>" + command)) { /* end of command */
-                if (!failed  && parseCommand(command, data)) {
+            if (e - s == command.length() + 3
+                && status.startsWith(">>>", s)
+                && status.startsWith(command, s + 3)) { /* end of command */
+                if (!failed
+                    && data != null
+                    && parseCommand(command, data.toString())) {
                     updated = true;
                 }
                 command = null;
@@ -655,31 +783,47 @@ public final class ClusterStatus {
             }
 
             /* first comes 'ok' */
-            if ("ok".equals(line)) {
-                data = new ArrayList<String>();
+            if (isLine(status, s, e, "ok")) {
+                data = new StringBuilder(100);
+                firstDataLine = true;
                 failed = false;
-            } else if ("fail".equals(line) || "None".equals(line)) {
+            } else if (isLine(status, s, e, "fail")
+                       || isLine(status, s, e, "None")) {
                 failed = true;
-                data = new ArrayList<String>();
+                data = new StringBuilder();
             } else if (data != null) {
                 if (!failed) {
-                    data.add(line);
+                    if (!firstDataLine) {
+                        data.append('\n');
+                    }
+                    data.append(status, s, e);
+                    firstDataLine = false;
                 }
             } else {
-                LOG.appWarning("parseStatus: error parsing heartbeat status, line not ok: " + line + "\n" + status);
+                LOG.appWarning("parseStatus: error parsing heartbeat status,"
+                               + " line not ok: " + status.substring(s, e)
+                               + "\n" + status);
             }
         }
         return updated;
     }
 
-    /** Parses output from crm_mon. */
-    private void parseResStatus(final String resStatus) {
-        resStateMap = crmXML.parseResStatus(resStatus);
+    /** Returns whether the text from s to e is the line. */
+    private static boolean isLine(final String text,
+                                  final int s,
+                                  final int e,
+                                  final String line) {
+        return e - s == line.length() && text.startsWith(line, s);
     }
 
-    /** Parses output from cibadmin command. */
-    private void parseCibQuery(final String query) {
-        cibQueryMap = crmXML.parseCibQuery(query);
+    /** Parses output from crm_mon. */
+    private void parseResStatus(final String resStatus) {
+        final ResourceStates states = crmXML.parseResStatus(resStatus);
+        if (states == null) {
+            resourceStates = ResourceStates.EMPTY;
+        } else {
+            resourceStates = states;
+        }
     }
 
     /** Sets data from ptest. */
@@ -693,8 +837,30 @@ public final class ClusterStatus {
         }
     }
 
-    /** Return last known raw cib. */
+    /**
+     * Return last known raw cib. After the patches it is the cib from the
+     * patched document, without the operation history.
+     */
     public String getCibXml() {
-        return oldCib;
+        final String cib = oldCib;
+        if (cib != null) {
+            return cib;
+        }
+        final Document document = cibDocument;
+        if (document == null) {
+            return null;
+        }
+        final StringWriter writer = new StringWriter();
+        try {
+            synchronized (document) {
+                TransformerFactory.newInstance().newTransformer().transform(
+                                                  new DOMSource(document),
+                                                  new StreamResult(writer));
+            }
+        } catch (final TransformerException e) {
+            LOG.appWarning("getCibXml: " + e.getMessage());
+            return null;
+        }
+        return writer.toString();
     }
 }
@@ -289,8 +289,16 @@ public final class ConfigData {
         clusters.removeCluster(cluster);
     }
 
-    /** Disconnects all hosts. */
+    /**
+     * Disconnects all hosts. It is called before the exit, so the call site
+     * errors of the session are reported here.
+     */
     public void disconnectAllHosts() {
+        final long callSiteErrors = LoggerFactory.getCallSiteErrors();
+        if (callSiteErrors > 0) {
+            LOG.debug1("disconnectAllHosts: call site errors: "
+                       + callSiteErrors);
+        }
         hosts.disconnectAllHosts();
     }
 
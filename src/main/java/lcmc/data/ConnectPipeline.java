@@ -0,0 +1,347 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2013, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.data;
+
+import lcmc.gui.SSHGui;
+import lcmc.utilities.Logger;
+import lcmc.utilities.LoggerFactory;
+import lcmc.utilities.Tools;
+
+import java.awt.Container;
+import java.awt.Window;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Connects the hosts of one or more clusters concurrently.
+ *
+ * The first host is connected alone, so that the user can enter the
+ * password or the key passphrase once. The first hosts of the other
+ * clusters try the same credentials first, the rest of the hosts try the
+ * credentials of the first host of their cluster. Every host runs its
+ * stages, ssh connect, sudo, helper install and host info, on its own, so
+ * that the helper install on one host overlaps with the connect and the
+ * host info of the others. At most ConnectPipeline.Threads hosts are
+ * connected at once. The password and passphrase dialogs are shown one at
+ * a time.
+ *
+ * @author Rasto Levrinc
+ *
+ */
+public final class ConnectPipeline {
+    /** Logger. */
+    private static final Logger LOG =
+                                LoggerFactory.getLogger(ConnectPipeline.class);
+    /** How many hosts are connected at once. */
+    private static final int THREADS =
+                            Tools.getDefaultInt("ConnectPipeline.Threads");
+    /** Stages of the connect of one host. */
+    public enum Stage {
+        /** Ssh connect and authentication. */
+        CONNECT("connect"),
+        /** Sudo activation. */
+        SUDO("sudo"),
+        /** Installation of the gui helper. */
+        HELPER("helper install"),
+        /** Host info from the gui helper. */
+        HOST_INFO("host info");
+
+        /** Name in the report. */
+        private final String name;
+
+        /** Prepares a new <code>Stage</code> object. */
+        Stage(final String name) {
+            this.name = name;
+        }
+
+        /** Returns name in the report. */
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+    /** Window for the ssh dialogs or null for the main frame. */
+    private final Window rootPane;
+    /** Whether to show the progress indicator. */
+    private final boolean progressIndicator;
+    /** Index of the connect attempt, that is shown in the progress. */
+    private final int index;
+    /** Times of the stages. */
+    private final Timings timings = new Timings();
+    /**
+     * Lock of the ssh dialogs of all hosts, so that the hosts, that are
+     * connected at once, don't ask for the password at the same time.
+     */
+    private final Object dialogLock = new Object();
+
+    /** Prepares a new <code>ConnectPipeline</code> object. */
+    public ConnectPipeline(final Window rootPane,
+                           final boolean progressIndicator,
+                           final int index) {
+        this.rootPane = rootPane;
+        this.progressIndicator = progressIndicator;
+        this.index = index;
+    }
+
+    /**
+     * Connects all hosts of the clusters and waits till they are connected
+     * or failed. Returns the clusters, whose connection was canceled.
+     */
+    public Set<Cluster> connect(final Collection<Cluster> clusters) {
+        final long start = System.currentTimeMillis();
+        final Map<Cluster, List<Host>> toConnect =
+                                   new LinkedHashMap<Cluster, List<Host>>();
+        int hostCount = 0;
+        for (final Cluster cluster : clusters) {
+            final List<Host> hosts = new ArrayList<Host>();
+            for (final Host host : cluster.getHosts()) {
+                host.setIsLoading();
+                if (host.isConnected()) {
+                    host.setLoadingDone();
+                } else {
+                    hosts.add(host);
+                }
+            }
+            if (!hosts.isEmpty()) {
+                toConnect.put(cluster, hosts);
+                hostCount += hosts.size();
+            }
+        }
+        final Set<Cluster> canceled = new HashSet<Cluster>();
+        if (toConnect.isEmpty()) {
+            return canceled;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(
+            THREADS,
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    final Thread t = new Thread(r, "ConnectPipeline");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        try {
+            /* the first host alone, the user may have to enter something */
+            final Cluster firstCluster = toConnect.keySet().iterator().next();
+            final Host firstHost = toConnect.get(firstCluster).get(0);
+            connectHost(firstHost, null);
+            final Credentials credentials = Credentials.of(firstHost);
+            final Map<Cluster, Credentials> clusterCredentials =
+                                   new LinkedHashMap<Cluster, Credentials>();
+            clusterCredentials.put(firstCluster, credentials);
+
+            /* the first hosts of the other clusters */
+            final Map<Cluster, Future<?>> firstConnects =
+                                     new LinkedHashMap<Cluster, Future<?>>();
+            for (final Map.Entry<Cluster, List<Host>> clusterEntry
+                                                   : toConnect.entrySet()) {
+                if (clusterEntry.getKey() != firstCluster) {
+                    firstConnects.put(clusterEntry.getKey(),
+                                      submit(executor,
+                                             clusterEntry.getValue().get(0),
+                                             credentials));
+                }
+            }
+            waitFor(firstConnects.values());
+            for (final Map.Entry<Cluster, List<Host>> clusterEntry
+                                                   : toConnect.entrySet()) {
+                final Cluster cluster = clusterEntry.getKey();
+                final Host host = clusterEntry.getValue().get(0);
+                if (host.getSSH().isConnectionCanceled()) {
+                    canceled.add(cluster);
+                } else if (cluster != firstCluster) {
+                    final Credentials own = Credentials.of(host);
+                    clusterCredentials.put(cluster,
+                                           own == null ? credentials : own);
+                }
+            }
+
+            /* the rest with the credentials of their first host */
+            final List<Future<?>> connects = new ArrayList<Future<?>>();
+            for (final Map.Entry<Cluster, List<Host>> clusterEntry
+                                                   : toConnect.entrySet()) {
+                final Cluster cluster = clusterEntry.getKey();
+                if (canceled.contains(cluster)) {
+                    continue;
+                }
+                final List<Host> hosts = clusterEntry.getValue();
+                for (final Host host : hosts.subList(1, hosts.size())) {
+                    connects.add(submit(executor,
+                                        host,
+                                        clusterCredentials.get(cluster)));
+                }
+            }
+            waitFor(connects);
+            firstHost.waitOnLoading();
+        } finally {
+            executor.shutdown();
+        }
+        LOG.info("connect: " + hostCount + " hosts in "
+                 + (System.currentTimeMillis() - start) + " ms, "
+                 + timings);
+        return canceled;
+    }
+
+    /** Connects the host in the executor. */
+    private Future<?> submit(final ExecutorService executor,
+                             final Host host,
+                             final Credentials credentials) {
+        return executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                connectHost(host, credentials);
+                /* the connection thread may be gone before the stages are
+                 * done */
+                host.waitOnLoading();
+            }
+        });
+    }
+
+    /**
+     * Connects the host, trying the credentials first, and waits till it
+     * is authenticated. The other stages may still run.
+     */
+    private void connectHost(final Host host, final Credentials credentials) {
+        if (credentials != null) {
+            credentials.setTo(host);
+        }
+        final Container window;
+        if (rootPane == null) {
+            window = Tools.getGUIData().getMainFrame();
+        } else {
+            window = rootPane;
+        }
+        host.connect(new SSHGui(window, host, null, dialogLock),
+                     progressIndicator,
+                     index,
+                     timings);
+        host.getSSH().waitForConnection();
+    }
+
+    /** Waits till the connects are done. */
+    private static void waitFor(final Collection<Future<?>> futures) {
+        for (final Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (final ExecutionException e) {
+                LOG.appError("waitFor: connect failed", e.getCause());
+            }
+        }
+    }
+
+    /** Ssh credentials of a connected host. */
+    private static final class Credentials {
+        /** Last successful dsa key. */
+        private final String dsaKey;
+        /** Last successful rsa key. */
+        private final String rsaKey;
+        /** Last successful password. */
+        private final String password;
+
+        /** Prepares a new <code>Credentials</code> object. */
+        private Credentials(final String dsaKey,
+                            final String rsaKey,
+                            final String password) {
+            this.dsaKey = dsaKey;
+            this.rsaKey = rsaKey;
+            this.password = password;
+        }
+
+        /** Returns the credentials of the host or null if not connected. */
+        static Credentials of(final Host host) {
+            if (!host.isConnected()) {
+                return null;
+            }
+            return new Credentials(host.getSSH().getLastDSAKey(),
+                                   host.getSSH().getLastRSAKey(),
+                                   host.getSSH().getLastPassword());
+        }
+
+        /** Sets the credentials to be tried first on the host. */
+        void setTo(final Host host) {
+            host.getSSH().setPasswords(dsaKey, rsaKey, password);
+        }
+    }
+
+    /** Total and maximum times of the stages of all hosts. */
+    public static final class Timings {
+        /** Total times in ms by stage. */
+        private final long[] total = new long[Stage.values().length];
+        /** Maximum times in ms by stage. */
+        private final long[] max = new long[Stage.values().length];
+        /** How many times the stage ran. */
+        private final int[] count = new int[Stage.values().length];
+
+        /**
+         * Adds the time of the stage, that started at the start time in
+         * ms, and returns the current time, that is the start of the next
+         * stage.
+         */
+        public long add(final Stage stage, final long start) {
+            final long now = System.currentTimeMillis();
+            final long time = now - start;
+            synchronized (this) {
+                final int i = stage.ordinal();
+                total[i] += time;
+                if (time > max[i]) {
+                    max[i] = time;
+                }
+                count[i]++;
+            }
+            return now;
+        }
+
+        /** Returns the times of the stages for the log. */
+        @Override
+        public synchronized String toString() {
+            final StringBuilder s = new StringBuilder(150);
+            for (final Stage stage : Stage.values()) {
+                final int i = stage.ordinal();
+                if (s.length() > 0) {
+                    s.append(", ");
+                }
+                s.append(stage);
+                s.append(": ");
+                s.append(count[i]);
+                s.append(" x, total ");
+                s.append(total[i]);
+                s.append(" ms, max ");
+                s.append(max[i]);
+                s.append(" ms");
+            }
+            return s.toString();
+        }
+    }
+}
@@ -0,0 +1,523 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2013, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.data;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One event from the drbdsetup events or events2 command.
+ *
+ * The lines are parsed by a tokenizer without regular expressions, since
+ * there can be thousands of them per second during resync:
+ *
+ * 19 ST 0 { cs:Connected ro:Primary/Secondary ds:UpToDate/UpToDate r--- }
+ * 19 SP 0 16.9
+ * 19 UH 1 split-brain
+ *
+ * Since drbd 8.4 the device is "minor,resource[volume]". Before 8.3 there
+ * is st: instead of ro:.
+ *
+ * Drbd 9 events2 lines are the action, the object and key:value pairs,
+ * optionally with a timestamp in front:
+ *
+ * change peer-device name:r0 peer-node-id:1 conn-name:b volume:0
+ *        replication:SyncSource peer-disk:Inconsistent done:16.90
+ *
+ * @author Rasto Levrinc
+ *
+ */
+public final class DrbdEvent {
+    /** Type of the event. */
+    public enum Type {
+        /** State change. */
+        STATE,
+        /** Sync progress. */
+        SYNC_PROGRESS,
+        /** User mode helper was called. */
+        HELPER,
+        /** Drbd 9 resource. */
+        RESOURCE,
+        /** Drbd 9 connection to a peer. */
+        CONNECTION,
+        /** Drbd 9 volume on this node. */
+        DEVICE,
+        /** Drbd 9 volume towards a peer. */
+        PEER_DEVICE
+    }
+    /** What happened to the drbd 9 object. */
+    public enum Action {
+        /** Initial state. */
+        EXISTS,
+        /** Created. */
+        CREATE,
+        /** Changed. */
+        CHANGE,
+        /** Destroyed. */
+        DESTROY,
+        /** Helper called. */
+        CALL,
+        /** Helper returned. */
+        RESPONSE
+    }
+    /** Type of the event. */
+    private final Type type;
+    /** Drbd 9 action or null. */
+    private Action action = null;
+    /** Drbd 9 key:value pairs. */
+    private Map<String, String> properties = Collections.emptyMap();
+    /** Minor number of the device. */
+    private final String minor;
+    /** Resource name, only since drbd 8.4, or null. */
+    private final String resource;
+    /** Volume number. */
+    private final String volumeNr;
+    /** Connection state. */
+    private String connectionState;
+    /** Role of this node. */
+    private String role;
+    /** Role of the other node. */
+    private String roleOther;
+    /** Disk state of this node. */
+    private String diskState;
+    /** Disk state of the other node. */
+    private String diskStateOther;
+    /** Flags. */
+    private String flags;
+    /** Synced percent. */
+    private String synced;
+    /** Name of the helper, e.g. split-brain. */
+    private String helper;
+
+    /** Prepares a new <code>DrbdEvent</code> object. */
+    private DrbdEvent(final Type type,
+                      final String minor,
+                      final String resource,
+                      final String volumeNr) {
+        this.type = type;
+        this.minor = minor;
+        this.resource = resource;
+        this.volumeNr = volumeNr;
+    }
+
+    /**
+     * Parses one line from the drbdsetup events. Returns null, if it is not
+     * a state, sync progress or helper event.
+     */
+    public static DrbdEvent parse(final CharSequence line) {
+        final Tokenizer t = new Tokenizer(line);
+        if (!t.next()) {
+            return null;
+        }
+        if (!t.isNumber()) {
+            return parseEvents2(t);
+        }
+        /* counter */
+        if (!t.next()) {
+            return null;
+        }
+        final Type type;
+        if (t.is("ST")) {
+            type = Type.STATE;
+        } else if (t.is("SP")) {
+            type = Type.SYNC_PROGRESS;
+        } else if (t.is("UH")) {
+            type = Type.HELPER;
+        } else {
+            return null;
+        }
+        if (!t.next()) {
+            return null;
+        }
+        final DrbdEvent event = createEvent(type, t);
+        if (!t.next()) {
+            return null;
+        }
+        switch (type) {
+            case STATE:
+                return event.parseState(t) ? event : null;
+            case SYNC_PROGRESS:
+                event.synced = t.numberPrefix();
+                return event.synced == null ? null : event;
+            case HELPER:
+                event.helper = t.helperPrefix();
+                return event.helper == null ? null : event;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Parses the drbd 9 events2 line, the tokenizer is at the first token.
+     * Returns null, if it is not a resource, connection, device,
+     * peer-device or helper event, e.g. "exists -".
+     */
+    private static DrbdEvent parseEvents2(final Tokenizer t) {
+        Action action = getAction(t);
+        if (action == null) {
+            /* timestamp */
+            if (!t.next()) {
+                return null;
+            }
+            action = getAction(t);
+            if (action == null) {
+                return null;
+            }
+        }
+        if (!t.next()) {
+            return null;
+        }
+        final Type type;
+        if (t.is("resource")) {
+            type = Type.RESOURCE;
+        } else if (t.is("connection")) {
+            type = Type.CONNECTION;
+        } else if (t.is("device")) {
+            type = Type.DEVICE;
+        } else if (t.is("peer-device")) {
+            type = Type.PEER_DEVICE;
+        } else if (t.is("helper")) {
+            type = Type.HELPER;
+        } else {
+            return null;
+        }
+        final Map<String, String> properties = new HashMap<String, String>();
+        while (t.next()) {
+            final int colon = t.indexOf(':');
+            if (colon > t.start) {
+                properties.put(t.substring(t.start, colon),
+                               t.substring(colon + 1, t.end));
+            }
+        }
+        final String resource = properties.get("name");
+        if (resource == null) {
+            return null;
+        }
+        final DrbdEvent event = new DrbdEvent(type,
+                                              properties.get("minor"),
+                                              resource,
+                                              properties.get("volume"));
+        event.action = action;
+        event.properties = properties;
+        event.helper = properties.get("helper");
+        event.synced = properties.get("done");
+        return event;
+    }
+
+    /** Returns the drbd 9 action of the token or null. */
+    private static Action getAction(final Tokenizer t) {
+        if (t.is("change")) {
+            return Action.CHANGE;
+        } else if (t.is("exists")) {
+            return Action.EXISTS;
+        } else if (t.is("create")) {
+            return Action.CREATE;
+        } else if (t.is("destroy")) {
+            return Action.DESTROY;
+        } else if (t.is("call")) {
+            return Action.CALL;
+        } else if (t.is("response")) {
+            return Action.RESPONSE;
+        }
+        return null;
+    }
+
+    /** Creates the event for the device, the tokenizer is at the device. */
+    private static DrbdEvent createEvent(final Type type, final Tokenizer t) {
+        /* 8.4: minor,resource[volume] */
+        final int comma = t.indexOf(',');
+        if (comma > t.start
+            && t.charAt(t.end - 1) == ']'
+            && t.isDigits(t.start, comma)) {
+            final int bracket = t.lastIndexOf('[');
+            if (bracket > comma + 1 && t.isDigits(bracket + 1, t.end - 1)) {
+                return new DrbdEvent(type,
+                                     t.substring(t.start, comma),
+                                     t.substring(comma + 1, bracket),
+                                     t.substring(bracket + 1, t.end - 1));
+            }
+        }
+        return new DrbdEvent(type, t.substring(t.start, t.end), null, "0");
+    }
+
+    /**
+     * Parses "{ cs:.. ro:../.. ds:../.. flags", the tokenizer is at the
+     * first token.
+     */
+    private boolean parseState(final Tokenizer t) {
+        if (!t.is("{") || !t.next() || !t.startsWith("cs:")) {
+            return false;
+        }
+        connectionState = t.substring(t.start + 3, t.end);
+        if (!t.next() || !(t.startsWith("ro:") || t.startsWith("st:"))) {
+            return false;
+        }
+        final int roSlash = t.lastIndexOf('/');
+        if (roSlash <= t.start + 3 || roSlash >= t.end - 1) {
+            return false;
+        }
+        role = t.substring(t.start + 3, roSlash);
+        roleOther = t.substring(roSlash + 1, t.end);
+        if (!t.next() || !t.startsWith("ds:")) {
+            return false;
+        }
+        final int dsSlash = t.lastIndexOf('/');
+        if (dsSlash <= t.start + 3 || dsSlash >= t.end - 1) {
+            return false;
+        }
+        diskState = t.substring(t.start + 3, dsSlash);
+        diskStateOther = t.substring(dsSlash + 1, t.end);
+        if (!t.next()) {
+            return false;
+        }
+        flags = t.substring(t.start, t.end);
+        return true;
+    }
+
+    /** Returns type of the event. */
+    public Type getType() {
+        return type;
+    }
+
+    /** Returns drbd 9 action or null with drbd 8. */
+    public Action getAction() {
+        return action;
+    }
+
+    /** Returns the drbd 9 value of the key or null. */
+    public String getProperty(final String key) {
+        return properties.get(key);
+    }
+
+    /** Returns the drbd 9 value of the key as a number or -1. */
+    public long getLongProperty(final String key) {
+        final String value = properties.get(key);
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (final NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /** Returns minor number of the device, with drbd 9 only for devices. */
+    public String getMinor() {
+        return minor;
+    }
+
+    /** Returns resource name or null before drbd 8.4. */
+    public String getResource() {
+        return resource;
+    }
+
+    /**
+     * Returns volume number, with drbd 9 null for resources and
+     * connections.
+     */
+    public String getVolumeNr() {
+        return volumeNr;
+    }
+
+    /** Returns connection state. */
+    public String getConnectionState() {
+        return connectionState;
+    }
+
+    /** Returns role of this node. */
+    public String getRole() {
+        return role;
+    }
+
+    /** Returns role of the other node. */
+    public String getRoleOther() {
+        return roleOther;
+    }
+
+    /** Returns disk state of this node. */
+    public String getDiskState() {
+        return diskState;
+    }
+
+    /** Returns disk state of the other node. */
+    public String getDiskStateOther() {
+        return diskStateOther;
+    }
+
+    /** Returns flags. */
+    public String getFlags() {
+        return flags;
+    }
+
+    /** Returns synced percent. */
+    public String getSynced() {
+        return synced;
+    }
+
+    /** Returns name of the helper. */
+    public String getHelper() {
+        return helper;
+    }
+
+    /** Splits the line to tokens separated by white space. */
+    private static final class Tokenizer {
+        /** The line. */
+        private final CharSequence line;
+        /** Start of the current token. */
+        private int start = 0;
+        /** End of the current token. */
+        private int end = 0;
+
+        /** Prepares a new <code>Tokenizer</code> object. */
+        Tokenizer(final CharSequence line) {
+            this.line = line;
+        }
+
+        /** Moves to the next token, returns false if there is none. */
+        boolean next() {
+            final int length = line.length();
+            start = end;
+            while (start < length && isSpace(line.charAt(start))) {
+                start++;
+            }
+            end = start;
+            while (end < length && !isSpace(line.charAt(end))) {
+                end++;
+            }
+            return start < end;
+        }
+
+        /** Returns whether the character is white space like \s. */
+        private static boolean isSpace(final char c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\r'
+                   || c == '\f' || c == '\u000B';
+        }
+
+        /** Returns whether the token equals the string. */
+        boolean is(final String s) {
+            return end - start == s.length() && startsWith(s);
+        }
+
+        /** Returns whether the token starts with the string. */
+        boolean startsWith(final String s) {
+            if (end - start < s.length()) {
+                return false;
+            }
+            for (int i = 0; i < s.length(); i++) {
+                if (line.charAt(start + i) != s.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** Returns whether the token has only digits. */
+        boolean isNumber() {
+            return isDigits(start, end);
+        }
+
+        /** Returns whether there are only digits from..to, at least one. */
+        boolean isDigits(final int from, final int to) {
+            if (from >= to) {
+                return false;
+            }
+            for (int i = from; i < to; i++) {
+                if (!isDigit(line.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** Returns whether the character is a digit like \d. */
+        private static boolean isDigit(final char c) {
+            return c >= '0' && c <= '9';
+        }
+
+        /** Returns the first index of the character in the token or -1. */
+        int indexOf(final char c) {
+            for (int i = start; i < end; i++) {
+                if (line.charAt(i) == c) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /** Returns the last index of the character in the token or -1. */
+        int lastIndexOf(final char c) {
+            for (int i = end - 1; i >= start; i--) {
+                if (line.charAt(i) == c) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /** Returns the character. */
+        char charAt(final int i) {
+            return line.charAt(i);
+        }
+
+        /** Returns part of the line. */
+        String substring(final int from, final int to) {
+            return line.subSequence(from, to).toString();
+        }
+
+        /** Returns the "digits.digits" prefix of the token or null. */
+        String numberPrefix() {
+            int i = start;
+            while (i < end && isDigit(line.charAt(i))) {
+                i++;
+            }
+            if (i == start || i >= end - 1 || line.charAt(i) != '.') {
+                return null;
+            }
+            final int dot = i;
+            i++;
+            while (i < end && isDigit(line.charAt(i))) {
+                i++;
+            }
+            if (i == dot + 1) {
+                return null;
+            }
+            return substring(start, i);
+        }
+
+        /** Returns the [a-z-] prefix of the token or null. */
+        String helperPrefix() {
+            int i = start;
+            while (i < end) {
+                final char c = line.charAt(i);
+                if ((c < 'a' || c > 'z') && c != '-') {
+                    break;
+                }
+                i++;
+            }
+            if (i == start) {
+                return null;
+            }
+            return substring(start, i);
+        }
+    }
+}
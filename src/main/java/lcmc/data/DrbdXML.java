@@ -25,6 +25,7 @@ package lcmc.data;
 
 import lcmc.gui.DrbdGraph;
 import lcmc.gui.resources.BlockDevInfo;
+import lcmc.data.resources.BlockDevice;
 import lcmc.gui.resources.ProxyNetInfo;
 import lcmc.utilities.Tools;
 import lcmc.utilities.ConvertCmdCallback;
@@ -36,6 +37,7 @@ import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
 import org.w3c.dom.Node;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.Set;
@@ -49,6 +51,7 @@ import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 
 import java.math.BigInteger;
+import java.nio.CharBuffer;
 import org.apache.commons.collections15.map.MultiKeyMap;
 import org.apache.commons.collections15.map.LinkedMap;
 import org.apache.commons.collections15.keyvalue.MultiKey;
@@ -69,6 +72,8 @@ import lcmc.utilities.LoggerFactory;
 public final class DrbdXML extends XML {
     /** Logger. */
     private static final Logger LOG = LoggerFactory.getLogger(DrbdXML.class);
+    /** Drbd device without the minor number. */
+    private static final String DRBD_DEVICE_PREFIX = "/dev/drbd";
     // TODO: should that not be per host?
     /** Drbd config filename. */
     private String configFile = "unknown";
@@ -912,7 +917,7 @@ public final class DrbdXML extends XML {
                 String device = getText(option);
                 if (device != null && "".equals(device)) {
                     final String minor = getAttribute(option, "minor");
-                    device = "/dev/drbd" + minor;
+                    device = DRBD_DEVICE_PREFIX + minor;
                 }
                 resourceDeviceMap.put(resName, volumeNr, device);
                 deviceResourceMap.put(device, resName);
@@ -1316,8 +1321,12 @@ public final class DrbdXML extends XML {
     private BlockDevInfo getBlockDevInfo(final String devNr,
                                          final String hostName,
                                          final DrbdGraph drbdGraph) {
-        BlockDevInfo bdi = null;
-        final String device = "/dev/drbd" + devNr;
+        BlockDevInfo bdi = drbdGraph.findBlockDevInfoByMinor(hostName, devNr);
+        if (bdi != null) {
+            return bdi;
+        }
+        /* not in the GUI yet */
+        final String device = DRBD_DEVICE_PREFIX + devNr;
         final String resName = deviceResourceMap.get(device);
         String volumeNr = deviceVolumeMap.get(device);
         if (volumeNr == null) {
@@ -1347,11 +1356,14 @@ public final class DrbdXML extends XML {
 
     /**
      * Parses events from drbd kernel module obtained via drbdsetup .. events
-     * command and stores the values in the BlockDevice object.
+     * or events2 command and stores the values in the BlockDevice object.
+     * There can be more events2 lines in the output. The time in ms is used
+     * for the drbd 9 send and receive rates.
      */
     public boolean parseDrbdEvent(final String hostName,
                                   final DrbdGraph drbdGraph,
-                                  final String rawOutput) {
+                                  final String rawOutput,
+                                  final long time) {
         if (rawOutput == null || hostName == null) {
             return false;
         }
@@ -1371,118 +1383,238 @@ public final class DrbdXML extends XML {
         } else {
             hostDrbdLoadedMap.put(hostName, true);
         }
-        /* since drbd 8.3 there is ro: instead of st: */
-        /* since drbd 8.4 there is ro: instead of st: */
-        Pattern p =
-            Pattern.compile(
-                "^(\\d+)\\s+ST\\s+(\\S+)\\s+\\{\\s+cs:(\\S+)\\s+"
-                + "(?:st|ro):(\\S+)/(\\S+)\\s+ds:(\\S+)/(\\S+)\\s+(\\S+).*?");
-        Matcher m = p.matcher(output);
-        final Pattern pDev = Pattern.compile("^(\\d+),(\\S+)\\[(\\d+)\\]$");
-        if (m.matches()) {
-            /* String counter      = m.group(1); // not used */
-            final String devNrString  = m.group(2);
-            final String cs           = m.group(3);
-            final String ro1          = m.group(4);
-            final String ro2          = m.group(5);
-            final String ds1          = m.group(6);
-            final String ds2          = m.group(7);
-            final String flags        = m.group(8);
-
-            final Matcher mDev = pDev.matcher(devNrString);
-            String devNr = devNrString;
-            String res = ""; // TODO: unused */
-            String volumeNr = "0";
-            if (mDev.matches()) { /* since 8.4 */
-                devNr = mDev.group(1);
-                res = mDev.group(2);
-                volumeNr = mDev.group(3);
+        boolean changed = false;
+        int start = 0;
+        while (start < output.length()) {
+            int end = output.indexOf('\n', start);
+            if (end < 0) {
+                end = output.length();
             }
-            /* get blockdevice object from device */
-            final BlockDevInfo bdi =
-                                  getBlockDevInfo(devNr, hostName, drbdGraph);
-            if (bdi != null) {
-                if (bdi.getBlockDevice().isDifferent(cs, ro1, ds1, flags)) {
-                    bdi.getBlockDevice().setConnectionState(cs);
-                    bdi.getBlockDevice().setNodeState(ro1);
-                    bdi.getBlockDevice().setDiskState(ds1);
-                    bdi.getBlockDevice().setNodeStateOther(ro2);
-                    bdi.getBlockDevice().setDiskStateOther(ds2);
-                    bdi.getBlockDevice().setDrbdFlags(flags);
-                    bdi.updateInfo();
-                    return true;
+            final DrbdEvent event =
+                           DrbdEvent.parse(CharBuffer.wrap(output, start, end));
+            if (event != null) {
+                if (event.getAction() == null) {
+                    changed |= parseDrbdEvent(hostName, drbdGraph, event);
                 } else {
-                    return false;
+                    changed |= parseDrbd9Event(hostName,
+                                               drbdGraph,
+                                               event,
+                                               time);
                 }
             }
+            start = end + 1;
+        }
+        return changed;
+    }
+
+    /** Stores the drbd 8 event in the BlockDevice object. */
+    private boolean parseDrbdEvent(final String hostName,
+                                   final DrbdGraph drbdGraph,
+                                   final DrbdEvent event) {
+        /* get blockdevice object from device */
+        final BlockDevInfo bdi =
+                      getBlockDevInfo(event.getMinor(), hostName, drbdGraph);
+        if (bdi == null) {
             return false;
         }
-        /* 19 SP 0 16.9 */
-        p = Pattern.compile("^(\\d+)\\s+SP\\s+(\\S+)\\s(\\d+\\.\\d+).*");
-        m = p.matcher(output);
-        if (m.matches()) {
-            /* String counter      = m.group(1); // not used */
-            final String devNrString = m.group(2);
-            final String synced = m.group(3);
-
-            final Matcher mDev = pDev.matcher(devNrString);
-            String devNr = devNrString;
-            String res = ""; // TODO: unused */
-            String volumeNr = "0";
-            if (mDev.matches()) { /* since 8.4 */
-                devNr = mDev.group(1);
-                res = mDev.group(2);
-                volumeNr = mDev.group(3);
-            }
-            final BlockDevInfo bdi =
-                                   getBlockDevInfo(devNr, hostName, drbdGraph);
-            if (bdi != null && bdi.getBlockDevice().isDrbd()) {
-                if (Tools.areEqual(bdi.getBlockDevice().getSyncedProgress(),
-                                   synced)) {
-                    return false;
-                } else {
-                    bdi.getBlockDevice().setSyncedProgress(synced);
+        final BlockDevice bd = bdi.getBlockDevice();
+        switch (event.getType()) {
+            case STATE:
+                if (bd.isDifferent(event.getConnectionState(),
+                                   event.getRole(),
+                                   event.getDiskState(),
+                                   event.getFlags())) {
+                    bd.setConnectionState(event.getConnectionState());
+                    bd.setNodeState(event.getRole());
+                    bd.setDiskState(event.getDiskState());
+                    bd.setNodeStateOther(event.getRoleOther());
+                    bd.setDiskStateOther(event.getDiskStateOther());
+                    bd.setDrbdFlags(event.getFlags());
                     bdi.updateInfo();
                     return true;
                 }
-            }
-            return false;
+                return false;
+            case SYNC_PROGRESS:
+                if (!bd.isDrbd()
+                    || Tools.areEqual(bd.getSyncedProgress(),
+                                      event.getSynced())) {
+                    return false;
+                }
+                bd.setSyncedProgress(event.getSynced());
+                bdi.updateInfo();
+                return true;
+            case HELPER:
+                LOG.debug("parseDrbdEvent: event: " + event.getMinor()
+                          + " - " + event.getHelper());
+                if (!"split-brain".equals(event.getHelper())
+                    || !bd.isDrbd()
+                    || bd.isSplitBrain()) {
+                    return false;
+                }
+                bd.setSplitBrain(true);
+                bdi.updateInfo();
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Stores the drbd 9 events2 event in the BlockDevice objects. The
+     * resource and connection events apply to all volumes of the resource,
+     * the state of every peer is kept separately.
+     */
+    private boolean parseDrbd9Event(final String hostName,
+                                    final DrbdGraph drbdGraph,
+                                    final DrbdEvent event,
+                                    final long time) {
+        final List<BlockDevInfo> bdis;
+        if (event.getMinor() != null) {
+            final BlockDevInfo bdi =
+                      getBlockDevInfo(event.getMinor(), hostName, drbdGraph);
+            bdis = bdi == null ? Collections.<BlockDevInfo>emptyList()
+                               : Collections.singletonList(bdi);
+        } else {
+            bdis = getBlockDevInfos(event.getResource(),
+                                    event.getVolumeNr(),
+                                    hostName,
+                                    drbdGraph);
         }
-        /* 19 UH 1 split-brain */
-        p = Pattern.compile("^(\\d+)\\s+UH\\s+(\\S+)\\s([a-z-]+).*");
-        m = p.matcher(output);
-        if (m.matches()) {
-            /* String counter      = m.group(1); // not used */
-            final String devNrString = m.group(2);
-            final String what = m.group(3);
-            final Matcher mDev = pDev.matcher(devNrString);
-            String devNr = devNrString;
-            String res = ""; // TODO: unused */
-            String volumeNr = "0";
-            if (mDev.matches()) { /* since 8.4 */
-                devNr = mDev.group(1);
-                res = mDev.group(2);
-                volumeNr = mDev.group(3);
+        boolean changed = false;
+        for (final BlockDevInfo bdi : bdis) {
+            if (updateBlockDevice(bdi.getBlockDevice(), event, time)) {
+                bdi.updateInfo();
+                changed = true;
             }
-            LOG.debug("parseDrbdEvent: event: " + devNr + " - " + what);
-            if ("split-brain".equals(what)) {
-                final BlockDevInfo bdi = getBlockDevInfo(devNr,
-                                                       hostName,
-                                                       drbdGraph);
-
-                if (bdi != null && bdi.getBlockDevice().isDrbd()) {
-                    if (bdi.getBlockDevice().isSplitBrain()) {
-                        return false;
-                    } else {
-                        bdi.getBlockDevice().setSplitBrain(true);
-                        bdi.updateInfo();
-                        return true;
+        }
+        return changed;
+    }
+
+    /**
+     * Stores the drbd 9 events2 event in the BlockDevice object. Returns
+     * whether something changed.
+     */
+    static boolean updateBlockDevice(final BlockDevice bd,
+                                     final DrbdEvent event,
+                                     final long time) {
+        final boolean destroy =
+                          event.getAction() == DrbdEvent.Action.DESTROY;
+        final String peerNodeId = event.getProperty("peer-node-id");
+        boolean bdChanged = false;
+        switch (event.getType()) {
+            case RESOURCE:
+                if (destroy) {
+                    bd.resetDrbd();
+                    bdChanged = true;
+                } else {
+                    bdChanged = bd.setDrbdResourceState(
+                                         event.getProperty("role"),
+                                         event.getProperty("suspended"));
+                }
+                break;
+            case DEVICE:
+                if (destroy) {
+                    bd.resetDrbd();
+                    bdChanged = true;
+                } else {
+                    final String disk = event.getProperty("disk");
+                    if (disk != null
+                        && !disk.equals(bd.getDiskState())) {
+                        bd.setDiskState(disk);
+                        bdChanged = true;
                     }
                 }
+                break;
+            case CONNECTION:
+                if (peerNodeId == null) {
+                    break;
+                }
+                if (destroy) {
+                    bdChanged = bd.removeDrbdPeer(peerNodeId);
+                } else {
+                    bdChanged = bd.setDrbdPeerConnection(
+                                        peerNodeId,
+                                        event.getProperty("conn-name"),
+                                        event.getProperty("connection"),
+                                        event.getProperty("role"));
+                }
+                break;
+            case PEER_DEVICE:
+                if (peerNodeId == null || destroy) {
+                    break;
+                }
+                final String connName = event.getProperty("conn-name");
+                bdChanged = bd.setDrbdPeerDeviceState(
+                                    peerNodeId,
+                                    connName,
+                                    event.getProperty("replication"),
+                                    event.getProperty("peer-disk"),
+                                    event.getProperty("resync-suspended"),
+                                    event.getSynced());
+                bdChanged |= bd.setDrbdPeerStatistics(
+                                    peerNodeId,
+                                    connName,
+                                    event.getLongProperty("out-of-sync"),
+                                    event.getLongProperty("sent"),
+                                    event.getLongProperty("received"),
+                                    time);
+                break;
+            case HELPER:
+                if (event.getAction() != DrbdEvent.Action.CALL) {
+                    break;
+                }
+                LOG.debug("updateBlockDevice: event: "
+                          + event.getResource()
+                          + " - " + event.getHelper());
+                if ("split-brain".equals(event.getHelper())
+                    && !bd.isSplitBrain()) {
+                    bd.setSplitBrain(true);
+                    bdChanged = true;
+                }
+                break;
+            default:
+                break;
+        }
+        return bdChanged;
+    }
+
+    /**
+     * Returns block devices of the volume of the resource or of all volumes
+     * of the resource, if the volume is null.
+     */
+    private List<BlockDevInfo> getBlockDevInfos(final String resName,
+                                                final String volumeNr,
+                                                final String hostName,
+                                                final DrbdGraph drbdGraph) {
+        final List<BlockDevInfo> bdis = new ArrayList<BlockDevInfo>();
+        for (final String minor : getMinors(resName, volumeNr)) {
+            final BlockDevInfo bdi =
+                               getBlockDevInfo(minor, hostName, drbdGraph);
+            if (bdi != null) {
+                bdis.add(bdi);
             }
-            return false;
         }
-        return false;
+        return bdis;
+    }
+
+    /**
+     * Returns minor numbers of the volume of the resource or of all
+     * volumes of the resource, if the volume is null.
+     */
+    List<String> getMinors(final String resName, final String volumeNr) {
+        final List<String> minors = new ArrayList<String>();
+        for (final Map.Entry<String, String> deviceEntry
+                                            : deviceResourceMap.entrySet()) {
+            final String device = deviceEntry.getKey();
+            if (!resName.equals(deviceEntry.getValue())
+                || (volumeNr != null
+                    && !volumeNr.equals(deviceVolumeMap.get(device)))
+                || !device.startsWith(DRBD_DEVICE_PREFIX)) {
+                continue;
+            }
+            minors.add(device.substring(DRBD_DEVICE_PREFIX.length()));
+        }
+        return minors;
     }
 
     /** Removes the resource from resources, so that it does not reappear. */
@@ -243,6 +243,8 @@ public final class Host implements Comparable<Host> {
     private String sshPort = null;
     /** Whether sudo should be used. */
     private Boolean useSudo = null;
+    /** Whether the ssh traffic should be compressed. */
+    private boolean sshCompression = false;
     /** Sudo password. */
     private String sudoPassword = "";
     /** Browser panel (the one with menus and all the logic) of this host. */
@@ -280,6 +282,10 @@ public final class Host implements Comparable<Host> {
     /** String that is displayed as a tool tip for disabled menu item. */
     public static final String PROXY_NOT_CONNECTED_STRING =
                                              "not connected to the proxy host";
+    /** Stream of the info blocks from the hw info daemon. */
+    public static final String HW_INFO_STREAM = "hw-info";
+    /** Stream of the info blocks from the drbd events. */
+    public static final String DRBD_EVENTS_STREAM = "drbd-events";
     /** Block device with number pattern. */
     public static final Pattern BDP = Pattern.compile("(\\D+)\\d+");
     /** DRBD bd pattern. */
@@ -299,11 +305,20 @@ public final class Host implements Comparable<Host> {
     private final Lock mDRBDStatusLock = new ReentrantLock();
     /** Update VMS lock. */
     private final Lock mUpdateVMSlock = new ReentrantLock();
+    /** Whether the full vms is being fetched after a lost vms-update. */
+    private final AtomicBoolean vmsFetching = new AtomicBoolean(false);
     /** Time stamp lock. */
     private final Lock mInfoTimestampLock = new ReentrantLock();
-    /** Time stamp hash. */
+    /** Time stamps of the last info blocks, by the stream and type. */
     private final Map<String, Double> infoTimestamp =
                                                 new HashMap<String, Double>();
+    /** Content hashes of the last applied info blocks, by the stream and
+     * type. */
+    private final Map<String, String> infoHash =
+                                                new HashMap<String, String>();
+    /** Content hashes of the last parsed hw info sections, by the type. */
+    private final Map<String, String> hwSectionHash =
+                                                new HashMap<String, String>();
     /** Whether the host is member of the cluster. */
     private boolean inCluster = false;
     /** Whether dist info was already logged. */
@@ -1020,6 +1035,13 @@ public final class Host implements Comparable<Host> {
             ssh.forceDisconnect();
         }
         setVMInfoMD5(null);
+        mInfoTimestampLock.lock();
+        try {
+            infoHash.clear();
+            hwSectionHash.clear();
+        } finally {
+            mInfoTimestampLock.unlock();
+        }
     }
 
     /**
@@ -1252,6 +1274,11 @@ public final class Host implements Comparable<Host> {
         serverStatusThread = null;
     }
 
+    /** Returns whether the server (hw) status background process runs. */
+    public boolean isServerStatusRunning() {
+        return serverStatusThread != null;
+    }
+
     /** Stops drbd status background process. */
     public void stopDrbdStatus() {
         final ExecCommandThread dst = drbdStatusThread;
@@ -1601,11 +1628,17 @@ public final class Host implements Comparable<Host> {
         }
     }
 
-    /** Make an ssh connection to the host. */
+    /**
+     * Make an ssh connection to the host, activate sudo, install the gui
+     * helper and get the host info. The times of the stages are added to
+     * the timings.
+     */
     void connect(SSHGui sshGui,
                  final boolean progressIndicator,
-                 final int index) {
+                 final int index,
+                 final ConnectPipeline.Timings timings) {
         if (!isConnected()) {
+            final long connectStart = System.currentTimeMillis();
             final String hostName = getName();
             if (progressIndicator) {
                 Tools.startProgressIndicator(
@@ -1624,12 +1657,21 @@ public final class Host implements Comparable<Host> {
                         @Override
                         public void done(final int flag) {
                             setConnected();
+                            long start = timings.add(
+                                                ConnectPipeline.Stage.CONNECT,
+                                                connectStart);
                             getSSH().execCommandAndWait(":", /* activate sudo */
                                     false,
                                     false,
                                     10000);
+                            start = timings.add(ConnectPipeline.Stage.SUDO,
+                                                start);
                             getSSH().installGuiHelper();
+                            start = timings.add(ConnectPipeline.Stage.HELPER,
+                                                start);
                             getAllInfo();
+                            timings.add(ConnectPipeline.Stage.HOST_INFO,
+                                        start);
                             if (progressIndicator) {
                                 Tools.stopProgressIndicator(
                                   hostName,
@@ -1724,36 +1766,157 @@ public final class Host implements Comparable<Host> {
         }
     }
 
+    /**
+     * Returns the next info block of the specified type from the hw info
+     * buffer and removes it from the buffer. Blocks with an older time
+     * stamp are dropped. Returns null if there is no complete block in the
+     * buffer.
+     */
     public String getOutput(final String type, final StringBuffer buffer) {
+        final InfoBlockReader.Block block = getOutput(type, buffer, false);
+        if (block == null) {
+            return null;
+        }
+        return block.getContent();
+    }
+
+    /**
+     * Returns the next info block of the specified type from the hw info
+     * buffer like getOutput, but blocks whose content hash is the same as
+     * of the last applied block are dropped without being copied out of the
+     * buffer. Returns null if there is no complete changed block in the
+     * buffer. After the block is applied, setOutputApplied must be called.
+     */
+    public InfoBlockReader.Block getChangedOutput(final String type,
+                                                  final StringBuffer buffer) {
+        return getOutput(type, buffer, true);
+    }
+
+    /**
+     * Returns the content of the info block from the InfoBlockReader of the
+     * stream, if it is not older than the last block of the same type, and
+     * if onlyChanged is set, if its content hash is not the same as of the
+     * last applied block, otherwise it returns null.
+     */
+    public String getOutput(final String stream,
+                            final InfoBlockReader.Block block,
+                            final boolean onlyChanged) {
+        if (isNewOutput(stream,
+                        block.getType(),
+                        block.getTimestamp(),
+                        block.getHash(),
+                        onlyChanged)) {
+            return block.getContent();
+        }
+        return null;
+    }
+
+    /**
+     * Stores the content hash of the info block, after it was applied, so
+     * that the same blocks are dropped later.
+     */
+    public void setOutputApplied(final String stream,
+                                 final InfoBlockReader.Block block) {
+        if (block.getHash() == null) {
+            return;
+        }
+        mInfoTimestampLock.lock();
+        try {
+            infoHash.put(stream + ':' + block.getType(), block.getHash());
+        } finally {
+            mInfoTimestampLock.unlock();
+        }
+    }
+
+    /** Returns the next hw info block, optionally only the changed one. */
+    private InfoBlockReader.Block getOutput(final String type,
+                                            final StringBuffer buffer,
+                                            final boolean onlyChanged) {
         final String infoStart = "--" + type + "-info-start--";
         final String infoEnd = "--" + type + "-info-end--";
         final int infoStartLength = infoStart.length();
         final int infoEndLength = infoEnd.length();
-        final int s = buffer.indexOf(infoStart);
-        final int s2 = buffer.indexOf("\r\n", s);
-        final int e = buffer.indexOf(infoEnd, s);
-        String out = null;
-        if (s > -1 && s < s2 && s2 <= e) {
-            Double timestamp = null;
-            final String ts = buffer.substring(s + infoStartLength, s2);
-            try {
-                timestamp = Double.parseDouble(ts);
-            }  catch (final NumberFormatException nfe) {
-                LOG.debug("getOutput: could not parse: " + ts + " " + nfe);
-            }
-            mInfoTimestampLock.lock();
-            if (timestamp != null
-                && (!infoTimestamp.containsKey(type)
-                    || timestamp >= infoTimestamp.get(type))) {
-                infoTimestamp.put(type, timestamp);
-                mInfoTimestampLock.unlock();
-                out = buffer.substring(s2 + 2, e);
-            } else {
-                mInfoTimestampLock.unlock();
+        while (true) {
+            final int s = buffer.indexOf(infoStart);
+            final int s2 = buffer.indexOf("\r\n", s);
+            final int e = buffer.indexOf(infoEnd, s);
+            if (s < 0 || s >= s2 || s2 > e) {
+                return null;
+            }
+            /* header: timestamp [content hash] */
+            final String header = buffer.substring(s + infoStartLength, s2);
+            final InfoBlockReader.Block block =
+                                    new InfoBlockReader.Block(type, header, "");
+            InfoBlockReader.Block out = null;
+            if (isNewOutput(HW_INFO_STREAM,
+                            type,
+                            block.getTimestamp(),
+                            block.getHash(),
+                            onlyChanged)) {
+                out = new InfoBlockReader.Block(type,
+                                                header,
+                                                buffer.substring(s2 + 2, e));
+            }
+            /* only this block, the blocks of the other types before it
+             * may not be read yet */
+            buffer.delete(s, e + infoEndLength + 2);
+            if (out != null || !onlyChanged) {
+                return out;
             }
-            buffer.delete(0, e + infoEndLength + 2);
         }
-        return out;
+    }
+
+    /**
+     * Removes the text before the first info block, that is still in the
+     * buffer, or all whole lines if there is none, after the blocks were
+     * read.
+     */
+    private static void removeTextBeforeBlocks(final StringBuffer buffer) {
+        final int marker = buffer.indexOf("-info-start--");
+        if (marker < 0) {
+            /* the unfinished line may be the start of a block */
+            buffer.delete(0, buffer.lastIndexOf("\n") + 1);
+        } else {
+            buffer.delete(0, buffer.lastIndexOf("\n", marker) + 1);
+        }
+    }
+
+    /**
+     * Returns whether the info block with the timestamp is not older than
+     * the last one of the same stream and type and if onlyChanged is set,
+     * whether its content hash is not the same as of the last applied one.
+     */
+    private boolean isNewOutput(final String stream,
+                                final String type,
+                                final String ts,
+                                final String hash,
+                                final boolean onlyChanged) {
+        Double timestamp = null;
+        try {
+            timestamp = Double.parseDouble(ts);
+        }  catch (final NumberFormatException nfe) {
+            LOG.debug("getOutput: could not parse: " + ts + " " + nfe);
+        }
+        final String key = stream + ':' + type;
+        mInfoTimestampLock.lock();
+        try {
+            if (timestamp == null
+                || (infoTimestamp.containsKey(key)
+                    && timestamp < infoTimestamp.get(key))) {
+                return false;
+            }
+            infoTimestamp.put(key, timestamp);
+            if (onlyChanged
+                && hash != null
+                && hash.equals(infoHash.get(key))) {
+                LOG.debug2("getOutput: " + getName() + ": " + key
+                           + " info unchanged");
+                return false;
+            }
+            return true;
+        } finally {
+            mInfoTimestampLock.unlock();
+        }
     }
 
     public void startPing() {
@@ -1846,26 +2009,44 @@ public final class Host implements Comparable<Host> {
                                  final ClusterBrowser cb =
                                               getBrowser().getClusterBrowser();
                                  int i = 0;
-                                 String hw, vm, drbdConfig;
-                                 String hwUpdate = null;
-                                 String vmUpdate = null;
-                                 String drbdUpdate = null;
+                                 String hw;
+                                 InfoBlockReader.Block vm = null;
+                                 InfoBlockReader.Block drbdConfig;
+                                 final List<String> hwUpdates =
+                                                    new ArrayList<String>();
+                                 final List<String> vmUpdates =
+                                                    new ArrayList<String>();
+                                 InfoBlockReader.Block lastVM = null;
+                                 InfoBlockReader.Block drbdUpdate = null;
                                  do {
                                      i++;
                                      hw = getOutput("hw", outputBuffer);
                                      if (hw != null) {
-                                         hwUpdate = hw;
+                                         /* only the changed sections */
+                                         hwUpdates.add(hw);
                                      }
-                                     vm = getOutput("vm", outputBuffer);
+                                     /* the vm block stays in the buffer, if
+                                      * it can't be applied now */
+                                     vm = null;
                                      if (vmStatusTryLock()) {
+                                         vm = getChangedOutput("vm",
+                                                               outputBuffer);
                                          if (vm != null) {
-                                             vmUpdate = vm;
+                                             if (!VMSXML.isUpdate(
+                                                        vm.getContent())) {
+                                                 /* full vms replaces all the
+                                                  * updates before it */
+                                                 vmUpdates.clear();
+                                             }
+                                             vmUpdates.add(vm.getContent());
+                                             lastVM = vm;
                                          }
                                          vmStatusUnlock();
                                      }
                                      drbdStatusLock();
-                                     drbdConfig = getOutput("drbd",
-                                                            outputBuffer);
+                                     drbdConfig = getChangedOutput(
+                                                                "drbd",
+                                                                outputBuffer);
                                      if (drbdConfig != null) {
                                          drbdUpdate = drbdConfig;
                                      }
@@ -1874,29 +2055,31 @@ public final class Host implements Comparable<Host> {
                                           || vm != null
                                           || drbdConfig != null);
 
-                                 Tools.chomp(outputBuffer);
-                                 if (hwUpdate != null) {
-                                     parseHostInfo(hwUpdate);
+                                 removeTextBeforeBlocks(outputBuffer);
+                                 if (!hwUpdates.isEmpty()) {
+                                     for (final String hwUpdate : hwUpdates) {
+                                         parseHostInfo(hwUpdate);
+                                     }
                                      for (final ResourceGraph g : graphs) {
                                          if (g != null) {
                                              g.repaint();
                                          }
                                      }
                                  }
-                                 if (vmUpdate != null) {
-                                     final VMSXML newVMSXML =
-                                                        new VMSXML(host);
-                                     if (newVMSXML.update(vmUpdate)) {
-                                         cb.vmsXMLPut(host, newVMSXML);
-                                         cb.updateVMS();
-                                     }
+                                 if (updateVMS(cb, vmUpdates)) {
+                                     cb.updateVMS();
+                                 }
+                                 if (lastVM != null) {
+                                     setOutputApplied(HW_INFO_STREAM, lastVM);
                                  }
                                  if (drbdUpdate != null) {
                                      final DrbdXML dxml =
                                            new DrbdXML(cluster.getHostsArray(),
                                                        cb.getDrbdParameters());
-                                     dxml.update(drbdUpdate);
+                                     dxml.update(drbdUpdate.getContent());
                                      cb.setDrbdXML(dxml);
+                                     setOutputApplied(HW_INFO_STREAM,
+                                                      drbdUpdate);
                                      Tools.invokeLater(new Runnable() {
                                          @Override
                                          public void run() {
@@ -1906,7 +2089,7 @@ public final class Host implements Comparable<Host> {
                                      });
                                  }
                                  if (drbdUpdate != null
-                                     || vmUpdate != null) {
+                                     || !vmUpdates.isEmpty()) {
                                      cb.updateHWInfo(host);
                                  }
                                  if (drbdUpdate != null) {
@@ -1931,6 +2114,75 @@ public final class Host implements Comparable<Host> {
         }
     }
 
+    /**
+     * Applies the vm info blocks in order, the full ones are parsed, the
+     * updates are merged into the last vms. Returns whether anything
+     * changed.
+     */
+    private boolean updateVMS(final ClusterBrowser cb,
+                              final List<String> vmUpdates) {
+        boolean changed = false;
+        boolean lost = false;
+        for (final String vm : vmUpdates) {
+            if (VMSXML.isUpdate(vm)) {
+                final VMSXML oldVMSXML = cb.getVMSXML(this);
+                if (oldVMSXML == null) {
+                    continue;
+                }
+                if (!VMSXML.isUpdateOf(vm, getVMInfoMD5())) {
+                    /* an update before it was lost, the helper won't
+                     * send it again */
+                    LOG.debug1("updateVMS: " + getName()
+                               + ": vms-update of an other vms");
+                    lost = true;
+                    continue;
+                }
+                lost = false;
+                final VMSXML newVMSXML = oldVMSXML.merge(vm);
+                if (newVMSXML != null) {
+                    cb.vmsXMLPut(this, newVMSXML);
+                    changed = true;
+                }
+            } else {
+                lost = false;
+                final VMSXML newVMSXML = new VMSXML(this);
+                if (newVMSXML.update(vm)) {
+                    cb.vmsXMLPut(this, newVMSXML);
+                    changed = true;
+                }
+            }
+        }
+        if (lost) {
+            fetchVMS(cb);
+        }
+        return changed;
+    }
+
+    /**
+     * Fetches the full vms in an other thread, after a vms-update could
+     * not be merged. The vm blocks of the hw info daemon stay in the
+     * buffer meanwhile and the updates made on top of the fetched vms are
+     * merged after it.
+     */
+    private void fetchVMS(final ClusterBrowser cb) {
+        if (!vmsFetching.compareAndSet(false, true)) {
+            return;
+        }
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                vmStatusLock();
+                try {
+                    cb.periodicalVMSUpdate(Host.this);
+                } finally {
+                    vmStatusUnlock();
+                    vmsFetching.set(false);
+                }
+            }
+        });
+        thread.start();
+    }
+
     /** Starts connection status. */
     public void startConnectionStatus() {
         final Thread thread = new Thread(new Runnable() {
@@ -2122,8 +2374,26 @@ public final class Host implements Comparable<Host> {
             } else if (line.indexOf("WARNING:") == 0) {
                 continue;
             }
-            if (INFO_TYPES.contains(line)) {
-                type = line;
+            /* section header: type [md5] */
+            final int hashPos = line.indexOf(' ');
+            final String lineType =
+                            hashPos < 0 ? line : line.substring(0, hashPos);
+            if (INFO_TYPES.contains(lineType)) {
+                type = lineType;
+                if (hashPos > -1) {
+                    final String hash = line.substring(hashPos + 1).trim();
+                    mInfoTimestampLock.lock();
+                    try {
+                        if (hash.equals(hwSectionHash.get(type))) {
+                            /* already have it, skip the lines */
+                            type = "";
+                            continue;
+                        }
+                        hwSectionHash.put(type, hash);
+                    } finally {
+                        mInfoTimestampLock.unlock();
+                    }
+                }
                 changedTypes.add(type);
                 continue;
             }
@@ -2252,6 +2522,10 @@ public final class Host implements Comparable<Host> {
                    + ", drbd: "        + drbdVersion
                    + ", drbd module: " + drbdModuleVersion);
 
+        if (changedTypes.isEmpty()) {
+            return;
+        }
+
         if (changedTypes.contains(NET_INFO)) {
             netInterfaces = newNetInterfaces;
             bridges = newBridges;
@@ -2717,6 +2991,10 @@ public final class Host implements Comparable<Host> {
     /** Sets sudo password. */
     public void setSudoPassword(final String sudoPassword) {
         this.sudoPassword = sudoPassword;
+        if (sudoPassword != null) {
+            /* the gui helper server may not have started without it */
+            ssh.retryGuiHelperServer();
+        }
     }
 
     /** Returns whether sudo is used. */
@@ -2729,6 +3007,22 @@ public final class Host implements Comparable<Host> {
         this.useSudo = useSudo;
     }
 
+    /** Returns whether the ssh traffic is compressed. */
+    public boolean isSSHCompression() {
+        return sshCompression;
+    }
+
+    /**
+     * Sets whether the ssh traffic should be compressed. It pays off on
+     * slow links, the host is reconnected, if it changes.
+     */
+    public void setSSHCompression(final boolean sshCompression) {
+        if (sshCompression != this.sshCompression) {
+            ssh.disconnect();
+        }
+        this.sshCompression = sshCompression;
+    }
+
     /** Sets openais/pacemaker installation method index. */
     public void setPmInstallMethod(final String pmInstallMethod) {
         this.pmInstallMethod = pmInstallMethod;
@@ -0,0 +1,204 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2013, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.data;
+
+/**
+ * Reads the info blocks from the output of the gui helper, in the order
+ * they come:
+ *
+ * --type-info-start--timestamp [content hash]
+ * content
+ * --type-info-end--
+ *
+ * The output is appended as it comes, every block is scanned once and the
+ * buffer is compacted once per appended chunk, not once per block.
+ *
+ * @author Rasto Levrinc
+ *
+ */
+public final class InfoBlockReader {
+    /** Start of the start and end markers. */
+    private static final String MARKER = "--";
+    /** End of the start marker. */
+    private static final String START_SUFFIX = "-info-start--";
+    /** End of the end marker. */
+    private static final String END_SUFFIX = "-info-end--";
+    /** Unread output. */
+    private final StringBuilder buffer = new StringBuilder(300);
+    /** Position, where the next block is searched. */
+    private int pos = 0;
+
+    /** Appends the output. */
+    public void append(final String output) {
+        buffer.append(output);
+    }
+
+    /**
+     * Returns the next complete block or null. Text outside of the blocks is
+     * skipped.
+     */
+    public Block next() {
+        while (true) {
+            final int s = buffer.indexOf(MARKER, pos);
+            if (s < 0) {
+                compact(Math.max(pos, buffer.length() - MARKER.length()));
+                return null;
+            }
+            final int lineEnd = buffer.indexOf("\n", s);
+            if (lineEnd < 0) {
+                compact(s);
+                return null;
+            }
+            final int typeEnd = buffer.indexOf(START_SUFFIX, s);
+            if (typeEnd < 0 || typeEnd > lineEnd) {
+                /* not a start of a block */
+                pos = lineEnd + 1;
+                continue;
+            }
+            final int typeStart = s + MARKER.length();
+            final int e = indexOfEnd(typeStart, typeEnd, lineEnd);
+            if (e < 0) {
+                compact(s);
+                return null;
+            }
+            final String type = buffer.substring(typeStart, typeEnd);
+            int headerEnd = lineEnd;
+            if (headerEnd > s && buffer.charAt(headerEnd - 1) == '\r') {
+                headerEnd--;
+            }
+            final String header = buffer.substring(
+                                            typeEnd + START_SUFFIX.length(),
+                                            headerEnd);
+            final String content = buffer.substring(lineEnd + 1, e);
+            pos = e + MARKER.length() + type.length() + END_SUFFIX.length();
+            while (pos < buffer.length()
+                   && (buffer.charAt(pos) == '\r'
+                       || buffer.charAt(pos) == '\n')) {
+                pos++;
+            }
+            return new Block(type, header, content);
+        }
+    }
+
+    /**
+     * Returns the position of the end marker of the type, that is in the
+     * buffer from typeStart to typeEnd, or -1. It does not create the
+     * marker string for every block.
+     */
+    private int indexOfEnd(final int typeStart,
+                           final int typeEnd,
+                           final int from) {
+        final int typeLength = typeEnd - typeStart;
+        int suffix = buffer.indexOf(END_SUFFIX, from);
+        while (suffix >= 0) {
+            final int e = suffix - typeLength - MARKER.length();
+            if (e >= from && isEndMarker(e, typeStart, typeLength)) {
+                return e;
+            }
+            suffix = buffer.indexOf(END_SUFFIX, suffix + 1);
+        }
+        return -1;
+    }
+
+    /** Returns whether there is "--" and the type at the position. */
+    private boolean isEndMarker(final int e,
+                                final int typeStart,
+                                final int typeLength) {
+        for (int i = 0; i < MARKER.length(); i++) {
+            if (buffer.charAt(e + i) != MARKER.charAt(i)) {
+                return false;
+            }
+        }
+        final int t = e + MARKER.length();
+        for (int i = 0; i < typeLength; i++) {
+            if (buffer.charAt(t + i) != buffer.charAt(typeStart + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Removes the read output before the position. */
+    private void compact(final int to) {
+        if (to > 0) {
+            buffer.delete(0, to);
+        }
+        pos = 0;
+    }
+
+    /** One info block. */
+    public static final class Block {
+        /** Type of the block, e.g. drbd, event. */
+        private final String type;
+        /** Timestamp. */
+        private final String timestamp;
+        /** Content hash or null. */
+        private final String hash;
+        /** Content. */
+        private final String content;
+
+        /** Prepares a new <code>Block</code> object. */
+        Block(final String type, final String header, final String content) {
+            this.type = type;
+            final int hashPos = header.indexOf(' ');
+            if (hashPos > -1) {
+                timestamp = header.substring(0, hashPos);
+                hash = header.substring(hashPos + 1).trim();
+            } else {
+                timestamp = header;
+                hash = null;
+            }
+            this.content = content;
+        }
+
+        /** Returns type of the block. */
+        public String getType() {
+            return type;
+        }
+
+        /** Returns the timestamp. */
+        public String getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * Returns the timestamp in ms, or -1 if it is not in ns, e.g. if
+         * date on the host does not know %N.
+         */
+        public long getTimeMillis() {
+            try {
+                return Long.parseLong(timestamp) / 1000000;
+            } catch (final NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        /** Returns the content hash or null. */
+        public String getHash() {
+            return hash;
+        }
+
+        /** Returns the content. */
+        public String getContent() {
+            return content;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2013, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.data;
+
+import lcmc.utilities.Tools;
+import lcmc.utilities.Logger;
+import lcmc.utilities.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Local cache of the resource agent meta-data.
+ *
+ * The meta-data are stored in one file per agent in a directory per
+ * pacemaker version. Every file has the md5 of the agent, so that the
+ * meta-data of a changed agent are fetched again.
+ *
+ * @author Rasto Levrinc
+ *
+ */
+final class RAMetaDataCache {
+    /** Logger. */
+    private static final Logger LOG =
+                                LoggerFactory.getLogger(RAMetaDataCache.class);
+    /** Checksum, that means that the agent cannot be cached. */
+    static final String NO_CHECKSUM = "-";
+    /** Start of the checksum line. */
+    private static final String CHECKSUM_LINE = "checksum:";
+    /** Start of the master line. */
+    private static final String MASTER_LINE = "master:";
+    /** Cache directory for this pacemaker version. */
+    private final File dir;
+
+    /** Prepares a new <code>RAMetaDataCache</code> object. */
+    RAMetaDataCache(final String pacemakerVersion) {
+        dir = new File(Tools.getDefault("CRMXML.MetaDataCacheDir"),
+                       fileName(pacemakerVersion == null ? "unknown"
+                                                         : pacemakerVersion));
+    }
+
+    /** Returns the key of the agent. */
+    static String getKey(final String resourceClass,
+                         final String provider,
+                         final String name) {
+        return resourceClass + ':' + provider + ':' + name;
+    }
+
+    /**
+     * Returns the cached meta-data of the agent, if the checksum did not
+     * change, or null.
+     */
+    Entry get(final String key, final String checksum) {
+        if (checksum == null || NO_CHECKSUM.equals(checksum)) {
+            return null;
+        }
+        final File file = new File(dir, fileName(key));
+        if (!file.exists()) {
+            return null;
+        }
+        BufferedReader in = null;
+        try {
+            in = new BufferedReader(new InputStreamReader(
+                                               new FileInputStream(file),
+                                               "UTF-8"));
+            final String checksumLine = in.readLine();
+            if (!(CHECKSUM_LINE + checksum).equals(checksumLine)) {
+                return null;
+            }
+            final String masterLine = in.readLine();
+            if (masterLine == null || !masterLine.startsWith(MASTER_LINE)) {
+                return null;
+            }
+            final StringBuilder xml = new StringBuilder(2000);
+            String line;
+            while ((line = in.readLine()) != null) {
+                xml.append(line);
+                xml.append('\n');
+            }
+            return new Entry(xml.toString(),
+                             "true".equals(masterLine.substring(
+                                                    MASTER_LINE.length())));
+        } catch (final IOException e) {
+            LOG.appWarning("get: could not read: " + file + ": " + e);
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    /** Stores the meta-data of the agent. */
+    void put(final String key,
+             final String checksum,
+             final String xml,
+             final boolean masterSlave) {
+        if (checksum == null || NO_CHECKSUM.equals(checksum)) {
+            return;
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            LOG.appWarning("put: could not create: " + dir);
+            return;
+        }
+        final File file = new File(dir, fileName(key));
+        final File tmpFile = new File(dir, fileName(key) + ".tmp");
+        Writer out = null;
+        try {
+            out = new OutputStreamWriter(new FileOutputStream(tmpFile),
+                                         "UTF-8");
+            out.write(CHECKSUM_LINE + checksum + '\n');
+            out.write(MASTER_LINE + masterSlave + '\n');
+            out.write(xml);
+            out.close();
+            out = null;
+            if (!tmpFile.renameTo(file)) {
+                /* windows does not replace files */
+                if (!file.delete() || !tmpFile.renameTo(file)) {
+                    LOG.appWarning("put: could not write: " + file);
+                }
+            }
+        } catch (final IOException e) {
+            LOG.appWarning("put: could not write: " + file + ": " + e);
+        } finally {
+            close(out);
+        }
+    }
+
+    /** Returns file name with only safe characters. */
+    private static String fileName(final String name) {
+        return name.replaceAll("[^\\w.-]", "_");
+    }
+
+    /** Closes the stream and ignores errors. */
+    private static void close(final java.io.Closeable c) {
+        if (c != null) {
+            try {
+                c.close();
+            } catch (final IOException e) {
+                LOG.debug("close: " + e);
+            }
+        }
+    }
+
+    /** Cached meta-data of one agent. */
+    static final class Entry {
+        /** Meta-data xml. */
+        private final String xml;
+        /** Whether the agent can be master/slave. */
+        private final boolean masterSlave;
+
+        /** Prepares a new <code>Entry</code> object. */
+        Entry(final String xml, final boolean masterSlave) {
+            this.xml = xml;
+            this.masterSlave = masterSlave;
+        }
+
+        /** Returns the meta-data xml. */
+        String getXML() {
+            return xml;
+        }
+
+        /** Returns whether the agent can be master/slave. */
+        boolean isMasterSlave() {
+            return masterSlave;
+        }
+    }
+}
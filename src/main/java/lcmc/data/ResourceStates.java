@@ -0,0 +1,394 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2013, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.data;
+
+import lcmc.utilities.Logger;
+import lcmc.utilities.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable state of the resources on the nodes: where they run, are
+ * masters or slaves, the allocation scores and the fail counts.
+ *
+ * The nodes and the resources are numbered and the states are kept in
+ * arrays indexed by the resource and the node number, instead of maps of
+ * lists and maps for every resource. The nodes are sorted by name.
+ *
+ * @author Rasto Levrinc
+ *
+ */
+final class ResourceStates {
+    /** Logger. */
+    private static final Logger LOG =
+                                LoggerFactory.getLogger(ResourceStates.class);
+    /** The INFINITY score. */
+    private static final int INFINITY = 1000000;
+    /** The INFINITY score as string. */
+    private static final String INFINITY_STRING = "INFINITY";
+    /** Value, that is not set. */
+    private static final int NONE = Integer.MIN_VALUE;
+    /** Managed resource. */
+    private static final byte MANAGED = 1;
+    /** Unmanaged resource. */
+    private static final byte UNMANAGED = 2;
+    /** Clone resource id with the instance number. */
+    static final Pattern CLONE_INSTANCE_PATTERN =
+                                            Pattern.compile("(.*):(\\d+)$");
+    /** States without any resources. */
+    static final ResourceStates EMPTY = new Builder().build();
+    /** Node name in lower case to the node number. */
+    private final Map<String, Integer> nodeIndex;
+    /** Node names by number. */
+    private final String[] nodes;
+    /** Resource id to the resource number. */
+    private final Map<String, Integer> resourceIndex;
+    /** How many instances run on the node, by resource and node. */
+    private final byte[] running;
+    /** How many instances are master on the node, by resource and node. */
+    private final byte[] master;
+    /** How many instances are slave on the node, by resource and node. */
+    private final byte[] slave;
+    /** Whether the resource is managed, 0 if not known, by resource. */
+    private final byte[] managed;
+    /** Allocation scores or NONE, by resource and node. */
+    private final int[] scores;
+    /** Fail counts or NONE, by resource and node. */
+    private final int[] failCounts;
+
+    /** Prepares a new <code>ResourceStates</code> object. */
+    private ResourceStates(final Map<String, Integer> nodeIndex,
+                           final String[] nodes,
+                           final Map<String, Integer> resourceIndex) {
+        this.nodeIndex = nodeIndex;
+        this.nodes = nodes;
+        this.resourceIndex = resourceIndex;
+        final int size = nodes.length * resourceIndex.size();
+        running = new byte[size];
+        master = new byte[size];
+        slave = new byte[size];
+        managed = new byte[resourceIndex.size()];
+        scores = new int[size];
+        failCounts = new int[size];
+        Arrays.fill(scores, NONE);
+        Arrays.fill(failCounts, NONE);
+    }
+
+    /**
+     * Returns nodes, where the resource runs, or null if it doesn't run
+     * anywhere.
+     */
+    List<String> getRunningOnNodes(final String res) {
+        return getNodes(running, res);
+    }
+
+    /**
+     * Returns nodes, where the resource is master, or null if it is master
+     * nowhere.
+     */
+    List<String> getMasterOnNodes(final String res) {
+        return getNodes(master, res);
+    }
+
+    /**
+     * Returns nodes, where the resource is slave, or null if it is slave
+     * nowhere.
+     */
+    List<String> getSlaveOnNodes(final String res) {
+        return getNodes(slave, res);
+    }
+
+    /** Returns whether the resource is managed, true if not known. */
+    boolean isManaged(final String res) {
+        final Integer r = resourceIndex.get(res);
+        return r == null || managed[r] != UNMANAGED;
+    }
+
+    /** Returns allocation scores by node. */
+    Map<String, String> getAllocationScores(final String res) {
+        final Integer r = resourceIndex.get(res);
+        if (r == null) {
+            return Collections.<String, String>emptyMap();
+        }
+        final Map<String, String> nodeScores =
+                                           new LinkedHashMap<String, String>();
+        for (int n = 0; n < nodes.length; n++) {
+            final int score = scores[r * nodes.length + n];
+            if (score != NONE) {
+                nodeScores.put(nodes[n], formatScore(score));
+            }
+        }
+        return nodeScores;
+    }
+
+    /** Returns fail count of the resource on the node or null. */
+    String getFailCount(final String node, final String res) {
+        final Integer r = resourceIndex.get(res);
+        final Integer n = nodeIndex.get(node.toLowerCase(Locale.US));
+        if (r == null || n == null) {
+            return null;
+        }
+        final int failCount = failCounts[r * nodes.length + n];
+        if (failCount == NONE) {
+            return null;
+        }
+        return formatScore(failCount);
+    }
+
+    /**
+     * Returns resources, that failed on some node, sorted by id. The clone
+     * instances, e.g. cl1:0, are returned as the clone, once.
+     */
+    List<String> getFailedResources() {
+        final Set<String> failed = new TreeSet<String>();
+        for (final Map.Entry<String, Integer> resEntry
+                                                : resourceIndex.entrySet()) {
+            final int r = resEntry.getValue();
+            for (int n = 0; n < nodes.length; n++) {
+                if (failCounts[r * nodes.length + n] > 0) {
+                    final Matcher m =
+                         CLONE_INSTANCE_PATTERN.matcher(resEntry.getKey());
+                    failed.add(m.matches() ? m.group(1) : resEntry.getKey());
+                    break;
+                }
+            }
+        }
+        return new ArrayList<String>(failed);
+    }
+
+    /** Returns the nodes, that have count of the resource set. */
+    private List<String> getNodes(final byte[] counts, final String res) {
+        final Integer r = resourceIndex.get(res);
+        if (r == null) {
+            return null;
+        }
+        List<String> list = null;
+        for (int n = 0; n < nodes.length; n++) {
+            for (int i = 0; i < counts[r * nodes.length + n]; i++) {
+                if (list == null) {
+                    list = new ArrayList<String>();
+                }
+                list.add(nodes[n]);
+            }
+        }
+        return list;
+    }
+
+    /** Returns the score as number, INFINITY or -INFINITY. */
+    private static String formatScore(final int score) {
+        if (score >= INFINITY) {
+            return INFINITY_STRING;
+        } else if (score <= -INFINITY) {
+            return "-" + INFINITY_STRING;
+        }
+        return Integer.toString(score);
+    }
+
+    /** Returns the score from a string or NONE if it is not a score. */
+    private static int parseScore(final String value) {
+        if (value == null) {
+            return NONE;
+        }
+        final String v = value.trim();
+        if (INFINITY_STRING.equals(v) || ("+" + INFINITY_STRING).equals(v)) {
+            return INFINITY;
+        } else if (("-" + INFINITY_STRING).equals(v)) {
+            return -INFINITY;
+        }
+        try {
+            final long score = Long.parseLong(v);
+            return (int) Math.max(-INFINITY, Math.min(INFINITY, score));
+        } catch (final NumberFormatException e) {
+            LOG.appWarning("parseScore: not a score: " + value);
+            return NONE;
+        }
+    }
+
+    /** Collects the states and builds the <code>ResourceStates</code>. */
+    static final class Builder {
+        /** Node name in lower case to the node name. */
+        private final Map<String, String> nodeNames =
+                                                new TreeMap<String, String>();
+        /** Resource ids in the order they came. */
+        private final Map<String, Integer> resourceIndex =
+                                                new HashMap<String, Integer>();
+        /** Collected states. */
+        private final List<State> states = new ArrayList<State>();
+        /** Managed states by resource. */
+        private final Map<String, Boolean> managedResources =
+                                                new HashMap<String, Boolean>();
+
+        /** Adds a node, where the resource runs. */
+        void addRunning(final String res, final String node) {
+            add(State.RUNNING, res, node, 0);
+        }
+
+        /** Adds a node, where the resource is master. */
+        void addMaster(final String res, final String node) {
+            add(State.MASTER, res, node, 0);
+        }
+
+        /** Adds a node, where the resource is slave. */
+        void addSlave(final String res, final String node) {
+            add(State.SLAVE, res, node, 0);
+        }
+
+        /** Sets the allocation score of the resource on the node. */
+        void putAllocationScore(final String res,
+                                final String node,
+                                final String score) {
+            final int s = parseScore(score);
+            if (s != NONE) {
+                add(State.SCORE, res, node, s);
+            }
+        }
+
+        /** Sets the fail count of the resource on the node. */
+        void putFailCount(final String res,
+                          final String node,
+                          final String failCount) {
+            final int f = parseScore(failCount);
+            if (f != NONE) {
+                add(State.FAIL_COUNT, res, node, f);
+            }
+        }
+
+        /** Sets whether the resource is managed. */
+        void setManaged(final String res, final boolean isManaged) {
+            addResource(res);
+            managedResources.put(res, isManaged);
+        }
+
+        /** Adds the state. */
+        private void add(final int type,
+                         final String res,
+                         final String node,
+                         final int value) {
+            if (res == null || node == null) {
+                return;
+            }
+            addResource(res);
+            final String nodeLowerCase = node.toLowerCase(Locale.US);
+            final String name = nodeNames.get(nodeLowerCase);
+            if (name == null || name.equals(nodeLowerCase)) {
+                /* the names from the status win over the lower case ones */
+                nodeNames.put(nodeLowerCase, node);
+            }
+            states.add(new State(type, res, nodeLowerCase, value));
+        }
+
+        /** Numbers the resource. */
+        private void addResource(final String res) {
+            if (!resourceIndex.containsKey(res)) {
+                resourceIndex.put(res, resourceIndex.size());
+            }
+        }
+
+        /** Returns the immutable states. */
+        ResourceStates build() {
+            final Map<String, Integer> nodeIndex =
+                                                new HashMap<String, Integer>();
+            final String[] nodes = new String[nodeNames.size()];
+            for (final Map.Entry<String, String> nodeEntry
+                                                     : nodeNames.entrySet()) {
+                nodes[nodeIndex.size()] = nodeEntry.getValue();
+                nodeIndex.put(nodeEntry.getKey(), nodeIndex.size());
+            }
+            final ResourceStates rs = new ResourceStates(nodeIndex,
+                                                         nodes,
+                                                         resourceIndex);
+            for (final State state : states) {
+                final int i = resourceIndex.get(state.res) * nodes.length
+                              + nodeIndex.get(state.node);
+                switch (state.type) {
+                    case State.RUNNING:
+                        rs.running[i]++;
+                        break;
+                    case State.MASTER:
+                        rs.master[i]++;
+                        break;
+                    case State.SLAVE:
+                        rs.slave[i]++;
+                        break;
+                    case State.SCORE:
+                        rs.scores[i] = state.value;
+                        break;
+                    case State.FAIL_COUNT:
+                        rs.failCounts[i] = state.value;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            for (final Map.Entry<String, Boolean> managedEntry
+                                              : managedResources.entrySet()) {
+                rs.managed[resourceIndex.get(managedEntry.getKey())] =
+                                  managedEntry.getValue() ? MANAGED : UNMANAGED;
+            }
+            return rs;
+        }
+    }
+
+    /** One collected state of a resource on a node. */
+    private static final class State {
+        /** Resource runs on the node. */
+        static final int RUNNING = 0;
+        /** Resource is master on the node. */
+        static final int MASTER = 1;
+        /** Resource is slave on the node. */
+        static final int SLAVE = 2;
+        /** Allocation score. */
+        static final int SCORE = 3;
+        /** Fail count. */
+        static final int FAIL_COUNT = 4;
+        /** Type of the state. */
+        private final int type;
+        /** Resource id. */
+        private final String res;
+        /** Node name in lower case. */
+        private final String node;
+        /** Score or fail count. */
+        private final int value;
+
+        /** Prepares a new <code>State</code> object. */
+        State(final int type,
+              final String res,
+              final String node,
+              final int value) {
+            this.type = type;
+            this.res = res;
+            this.node = node;
+            this.value = value;
+        }
+    }
+}
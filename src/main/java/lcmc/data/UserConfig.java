@@ -68,6 +68,8 @@ public final class UserConfig extends XML {
     private static final String HOST_COLOR_ATTR = "color";
     /** Host use sudo attribute string. */
     private static final String HOST_USESUDO_ATTR = "sudo";
+    /** Host ssh compression attribute string. */
+    private static final String HOST_COMPRESSION_ATTR = "compression";
     /** Cluster name attribute string. */
     private static final String CLUSTER_NAME_ATTR = "name";
     /** Name of the host node. */
@@ -172,55 +174,61 @@ public final class UserConfig extends XML {
 
     /**
      * Starts specified clusters and connects to the hosts of this clusters.
+     * The hosts of all clusters are connected at once.
      */
     public void startClusters(final List<Cluster> selectedClusters) {
         final Set<Cluster> clusters =
                         Tools.getConfigData().getClusters().getClusterSet();
-        if (clusters != null) {
-            /* clusters */
-            for (final Cluster cluster : clusters) {
-                if (selectedClusters != null
-                    && !selectedClusters.contains(cluster)) {
-                    continue;
+        if (clusters == null) {
+            return;
+        }
+        final List<Cluster> clustersToConnect = new ArrayList<Cluster>();
+        for (final Cluster cluster : clusters) {
+            if (selectedClusters != null
+                && !selectedClusters.contains(cluster)) {
+                continue;
+            }
+            Tools.invokeLater(new Runnable() {
+                public void run() {
+                    Tools.getGUIData().addClusterTab(cluster);
                 }
+            });
+            if (!cluster.getHosts().isEmpty()) {
+                clustersToConnect.add(cluster);
+            }
+        }
+        final Set<Cluster> canceled =
+                            new ConnectPipeline(null, true, 1).connect(
+                                                         clustersToConnect);
+        for (final Cluster cluster : clustersToConnect) {
+            if (canceled.contains(cluster)) {
                 Tools.invokeLater(new Runnable() {
                     public void run() {
-                        Tools.getGUIData().addClusterTab(cluster);
+                        Tools.getGUIData().getClustersPanel().removeTab(
+                                                                   cluster);
                     }
                 });
-                if (cluster.getHosts().isEmpty()) {
-                    continue;
-                }
-                final boolean ok = cluster.connect(null, true, 1);
-                if (!ok) {
+                continue;
+            }
+            final Runnable runnable = new Runnable() {
+                @Override
+                public void run() {
+                    for (final Host host : cluster.getHosts()) {
+                        host.waitOnLoading();
+                    }
                     Tools.invokeLater(new Runnable() {
                         public void run() {
-                            Tools.getGUIData().getClustersPanel().removeTab(
-                                                                       cluster);
+                            final ClusterTab ct = cluster.getClusterTab();
+                            if (ct != null) {
+                                ct.addClusterView();
+                                ct.requestFocus();
+                            }
                         }
                     });
-                    continue;
                 }
-                final Runnable runnable = new Runnable() {
-                    @Override
-                    public void run() {
-                        for (final Host host : cluster.getHosts()) {
-                            host.waitOnLoading();
-                        }
-                        Tools.invokeLater(new Runnable() {
-                            public void run() {
-                                final ClusterTab ct = cluster.getClusterTab();
-                                if (ct != null) {
-                                    ct.addClusterView();
-                                    ct.requestFocus();
-                                }
-                            }
-                        });
-                    }
-                };
-                final Thread thread = new Thread(runnable);
-                thread.start();
-            }
+            };
+            final Thread thread = new Thread(runnable);
+            thread.start();
         }
     }
 
@@ -267,6 +275,9 @@ public final class UserConfig extends XML {
                             final String useSudo =
                                                 getAttribute(hostNode,
                                                              HOST_USESUDO_ATTR);
+                            final String compression =
+                                            getAttribute(hostNode,
+                                                         HOST_COMPRESSION_ATTR);
                             final Node ipNode = getChildNode(hostNode, "ip");
                             String ip = null;
                             if (ipNode != null) {
@@ -282,6 +293,7 @@ public final class UserConfig extends XML {
                                     sshPort,
                                     color,
                                     "true".equals(useSudo),
+                                    "true".equals(compression),
                                     true);
                         }
                     }
@@ -318,6 +330,7 @@ public final class UserConfig extends XML {
                         String sshPort,
                         final String color,
                         final boolean sudo,
+                        final boolean compression,
                         final boolean savable) {
         Tools.getConfigData().setLastEnteredUser(username);
         final Host host = new Host();
@@ -333,6 +346,7 @@ public final class UserConfig extends XML {
         }
         host.setUseSudo(sudo);
         Tools.getConfigData().setLastEnteredUseSudo(sudo);
+        host.setSSHCompression(compression);
         Tools.getConfigData().addHostToHosts(host);
 
         new TerminalPanel(host);
@@ -417,6 +431,9 @@ public final class UserConfig extends XML {
         if (useSudo != null && useSudo) {
             hostNode.setAttribute(HOST_USESUDO_ATTR, "true");
         }
+        if (host.isSSHCompression()) {
+            hostNode.setAttribute(HOST_COMPRESSION_ATTR, "true");
+        }
         if (ip != null) {
             final Node ipNode = (Element) hostNode.appendChild(
                                                    doc.createElement("ip"));
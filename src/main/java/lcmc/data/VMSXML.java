@@ -141,6 +141,14 @@ public final class VMSXML extends XML {
     /** Pattern that maches display e.g. :4. */
     private static final Pattern DISPLAY_PATTERN =
                                                  Pattern.compile(".*:(\\d+)$");
+    /** Root element of the full vm info. */
+    private static final String VMS_ELEMENT = "vms";
+    /** Root element of the vm info with only the changed domains. */
+    private static final String VMS_UPDATE_ELEMENT = "vms-update";
+    /** Attribute with the md5 of the whole vms. */
+    private static final String VMS_MD5_ATTR = "md5";
+    /** Attribute with the md5 of the vms, the vms-update was made on. */
+    private static final String VMS_BASE_ATTR = "base";
     /** Host on which the vm is defined. */
     private final Host host;
     /** VM field: name. */
@@ -1358,7 +1366,15 @@ public final class VMSXML extends XML {
         return update(output);
     }
 
+    /**
+     * Updates the vms from the output of the get-vm-info. If the md5 in the
+     * vms element did not change, nothing is parsed.
+     */
     public boolean update(final String output) {
+        final String md5 = getVMSAttribute(output, VMS_ELEMENT, VMS_MD5_ATTR);
+        if (md5 != null && md5.equals(host.getVMInfoMD5())) {
+            return false;
+        }
         oldConfig = output;
         final Document document = getXMLDocument(output);
         mXMLDocumentWriteLock.lock();
@@ -1368,11 +1384,11 @@ public final class VMSXML extends XML {
             return false;
         }
         final Node vmsNode = getChildNode(document, "vms");
-        final String md5 = getAttribute(vmsNode, "md5");
-        if (md5 == null || md5.equals(host.getVMInfoMD5())) {
+        final String vmsMD5 = getAttribute(vmsNode, "md5");
+        if (vmsMD5 == null || vmsMD5.equals(host.getVMInfoMD5())) {
             return false;
         }
-        host.setVMInfoMD5(md5);
+        host.setVMInfoMD5(vmsMD5);
         final NodeList vms = vmsNode.getChildNodes();
         for (int i = 0; i < vms.getLength(); i++) {
             final Node node = vms.item(i);
@@ -1387,6 +1403,231 @@ public final class VMSXML extends XML {
         return true;
     }
 
+    /**
+     * Returns whether the output of the hw info daemon is a vms-update with
+     * only the changed domains, that must be merged with the last vms.
+     */
+    public static boolean isUpdate(final String output) {
+        return output.indexOf("<" + VMS_UPDATE_ELEMENT + " ") > -1;
+    }
+
+    /**
+     * Returns whether the vms-update was made on top of the vms with the
+     * md5, so that it can be merged into it. An update without the base
+     * md5 is merged into any vms.
+     */
+    public static boolean isUpdateOf(final String update, final String md5) {
+        final String base = getVMSAttribute(update,
+                                            VMS_UPDATE_ELEMENT,
+                                            VMS_BASE_ATTR);
+        return base == null || base.equals(md5);
+    }
+
+    /**
+     * Returns a new VMSXML with the domains from the vms-update applied to
+     * the domains of this VMSXML. Only the changed domains are parsed, the
+     * rest is copied. Returns null, if nothing changed or if there is
+     * nothing to merge into, in which case the full vms will come with the
+     * next resync.
+     */
+    public VMSXML merge(final String update) {
+        final String md5 = getVMSAttribute(update,
+                                           VMS_UPDATE_ELEMENT,
+                                           VMS_MD5_ATTR);
+        if (md5 == null || md5.equals(host.getVMInfoMD5())) {
+            return null;
+        }
+        mXMLDocumentReadLock.lock();
+        final Document oldDocument = xmlDocument;
+        mXMLDocumentReadLock.unlock();
+        if (oldDocument == null) {
+            LOG.debug1("merge: " + host.getName() + ": no vms to merge into");
+            return null;
+        }
+        final Document updateDocument = getXMLDocument(update);
+        if (updateDocument == null) {
+            return null;
+        }
+        final Node updateNode = getChildNode(updateDocument,
+                                             VMS_UPDATE_ELEMENT);
+        final Document document = (Document) oldDocument.cloneNode(true);
+        final Node vmsNode = getChildNode(document, VMS_ELEMENT);
+        if (updateNode == null || vmsNode == null) {
+            return null;
+        }
+        final VMSXML merged = new VMSXML(host);
+        merged.copyDomains(this);
+        final NodeList nodes = updateNode.getChildNodes();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            final Node node = nodes.item(i);
+            final String nodeName = node.getNodeName();
+            if ("vm".equals(nodeName)) {
+                final String name = getAttribute(node, VM_PARAM_NAME);
+                merged.removeDomainData(name);
+                final Node newNode = document.importNode(node, true);
+                final Node oldNode = getNamedChild(vmsNode, "vm", name);
+                if (oldNode == null) {
+                    vmsNode.appendChild(newNode);
+                } else {
+                    vmsNode.replaceChild(newNode, oldNode);
+                }
+                merged.updateVM(newNode);
+                LOG.debug1("merge: " + host.getName() + ": vm: " + name);
+            } else if ("vm-removed".equals(nodeName)) {
+                final String name = getAttribute(node, VM_PARAM_NAME);
+                merged.removeDomainData(name);
+                merged.domainNames.remove(name);
+                final Node oldNode = getNamedChild(vmsNode, "vm", name);
+                if (oldNode != null) {
+                    vmsNode.removeChild(oldNode);
+                }
+                LOG.debug1("merge: " + host.getName() + ": removed: " + name);
+            } else if ("networks-changed".equals(nodeName)) {
+                /* all networks follow */
+                merged.removeNetworks(vmsNode);
+            } else if ("net".equals(nodeName)) {
+                final Node newNode = document.importNode(node, true);
+                vmsNode.appendChild(newNode);
+                merged.updateNetworks(newNode);
+            } else if ("version".equals(nodeName)) {
+                host.setLibvirtVersion(getText(node));
+            }
+        }
+        merged.rebuildDomainSets();
+        if (vmsNode instanceof Element) {
+            ((Element) vmsNode).setAttribute("md5", md5);
+        }
+        merged.mXMLDocumentWriteLock.lock();
+        merged.xmlDocument = document;
+        merged.mXMLDocumentWriteLock.unlock();
+        host.setVMInfoMD5(md5);
+        return merged;
+    }
+
+    /** Copies the domain and network data from the other VMSXML. */
+    private void copyDomains(final VMSXML other) {
+        domainNames.addAll(other.domainNames);
+        configsMap.putAll(other.configsMap);
+        namesConfigsMap.putAll(other.namesConfigsMap);
+        netConfigsMap.putAll(other.netConfigsMap);
+        netNamesConfigsMap.putAll(other.netNamesConfigsMap);
+        parameterValues.putAll(other.parameterValues);
+        remotePorts.putAll(other.remotePorts);
+        autoports.putAll(other.autoports);
+        runningMap.putAll(other.runningMap);
+        suspendedMap.putAll(other.suspendedMap);
+        disksMap.putAll(other.disksMap);
+        filesystemsMap.putAll(other.filesystemsMap);
+        interfacesMap.putAll(other.interfacesMap);
+        inputDevsMap.putAll(other.inputDevsMap);
+        graphicsDevsMap.putAll(other.graphicsDevsMap);
+        soundsMap.putAll(other.soundsMap);
+        serialsMap.putAll(other.serialsMap);
+        parallelsMap.putAll(other.parallelsMap);
+        videosMap.putAll(other.videosMap);
+        networkMap.putAll(other.networkMap);
+    }
+
+    /**
+     * Rebuilds the mac addresses and the source file directories from the
+     * interfaces and disks of the domains, after some domains were changed
+     * or removed.
+     */
+    private void rebuildDomainSets() {
+        macAddresses.clear();
+        for (final Map<String, InterfaceData> macMap
+                                                : interfacesMap.values()) {
+            macAddresses.addAll(macMap.keySet());
+        }
+        sourceFileDirs.clear();
+        for (final Map<String, DiskData> devMap : disksMap.values()) {
+            for (final DiskData diskData : devMap.values()) {
+                final String dir =
+                          Tools.getDirectoryPart(diskData.getSourceFile());
+                if (dir != null) {
+                    sourceFileDirs.add(dir);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the parsed data of one domain, but leaves it in the domain
+     * names, so that it keeps its position.
+     */
+    private void removeDomainData(final String name) {
+        parameterValues.removeAll(name);
+        remotePorts.remove(name);
+        autoports.remove(name);
+        runningMap.remove(name);
+        suspendedMap.remove(name);
+        disksMap.remove(name);
+        filesystemsMap.remove(name);
+        interfacesMap.remove(name);
+        inputDevsMap.remove(name);
+        graphicsDevsMap.remove(name);
+        soundsMap.remove(name);
+        serialsMap.remove(name);
+        parallelsMap.remove(name);
+        videosMap.remove(name);
+        final String configName = namesConfigsMap.remove(name);
+        if (configName != null) {
+            configsMap.remove(configName);
+        }
+    }
+
+    /** Removes all networks from the data and from the vms node. */
+    private void removeNetworks(final Node vmsNode) {
+        netConfigsMap.clear();
+        netNamesConfigsMap.clear();
+        networkMap.clear();
+        Node netNode;
+        while ((netNode = getChildNode(vmsNode, "net")) != null) {
+            vmsNode.removeChild(netNode);
+        }
+    }
+
+    /** Returns the child with the specified name attribute or null. */
+    private Node getNamedChild(final Node parent,
+                               final String tag,
+                               final String name) {
+        final NodeList children = parent.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            final Node child = children.item(i);
+            if (tag.equals(child.getNodeName())
+                && name != null
+                && name.equals(getAttribute(child, VM_PARAM_NAME))) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the attribute of the specified element without parsing the
+     * document, or null if it is not there.
+     */
+    private static String getVMSAttribute(final String output,
+                                          final String element,
+                                          final String attribute) {
+        final int vmsStart = output.indexOf("<" + element + " ");
+        if (vmsStart < 0) {
+            return null;
+        }
+        final String attrStart = " " + attribute + "=\"";
+        final int vmsEnd = output.indexOf('>', vmsStart);
+        final int start = output.indexOf(attrStart, vmsStart);
+        if (start < 0 || vmsEnd < start) {
+            return null;
+        }
+        final int valueStart = start + attrStart.length();
+        final int valueEnd = output.indexOf('"', valueStart);
+        if (valueEnd < 0 || vmsEnd < valueEnd) {
+            return null;
+        }
+        return output.substring(valueStart, valueEnd);
+    }
+
     /** Updates one network. */
     private void updateNetworks(final Node netNode) {
         /* one vm */
@@ -3191,7 +3432,27 @@ public final class VMSXML extends XML {
         return macAddresses;
     }
 
+    /** Returns the vms xml, that this object was created from. */
     public String getConfig() {
-        return oldConfig;
+        if (oldConfig != null) {
+            return oldConfig;
+        }
+        /* merged from updates */
+        mXMLDocumentReadLock.lock();
+        final Document document = xmlDocument;
+        mXMLDocumentReadLock.unlock();
+        if (document == null) {
+            return null;
+        }
+        try {
+            final Transformer transformer =
+                            TransformerFactory.newInstance().newTransformer();
+            final StreamResult res = new StreamResult(new StringWriter());
+            transformer.transform(new DOMSource(document), res);
+            return res.getWriter().toString();
+        } catch (final javax.xml.transform.TransformerException e) {
+            LOG.appWarning("getConfig: could not transform: " + e);
+            return null;
+        }
     }
 }
@@ -25,14 +25,21 @@ package lcmc.data;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
 
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.ext.DefaultHandler2;
+import org.xml.sax.helpers.DefaultHandler;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.StringReader;
+import java.util.Set;
 
 import org.w3c.dom.Document;
-import org.w3c.dom.NodeList;
+import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
 import lcmc.utilities.Logger;
@@ -48,11 +55,43 @@ import lcmc.utilities.LoggerFactory;
 abstract class XML {
     /** Logger. */
     private static final Logger LOG = LoggerFactory.getLogger(XML.class);
+    /** SAX property for comments and CDATA sections. */
+    private static final String LEXICAL_HANDLER_PROPERTY =
+                            "http://xml.org/sax/properties/lexical-handler";
+    /** Document builder for every thread, the factory is expensive. */
+    private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER =
+        new ThreadLocal<DocumentBuilder>() {
+            @Override
+            protected DocumentBuilder initialValue() {
+                try {
+                    return DocumentBuilderFactory.newInstance()
+                                                 .newDocumentBuilder();
+                } catch (final ParserConfigurationException pce) {
+                    LOG.appError("initialValue: no xml parser", "", pce);
+                    return null;
+                }
+            }
+        };
+    /** SAX parser for every thread. */
+    private static final ThreadLocal<SAXParser> SAX_PARSER =
+        new ThreadLocal<SAXParser>() {
+            @Override
+            protected SAXParser initialValue() {
+                try {
+                    return SAXParserFactory.newInstance().newSAXParser();
+                } catch (final ParserConfigurationException pce) {
+                    LOG.appError("initialValue: no sax parser", "", pce);
+                    return null;
+                } catch (final SAXException sxe) {
+                    LOG.appError("initialValue: no sax parser", "", sxe);
+                    return null;
+                }
+            }
+        };
+
     /** Returns child node of the node identified by the tag. */
     protected final Node getChildNode(final Node node, final String tag) {
-        final NodeList nodeList = node.getChildNodes();
-        for (int i = 0; i < nodeList.getLength(); i++) {
-            final Node n = nodeList.item(i);
+        for (Node n = node.getFirstChild(); n != null; n = n.getNextSibling()) {
             if (n.getNodeName().equals(tag)) {
                 return n;
             }
@@ -65,10 +104,8 @@ abstract class XML {
     protected final Node getChildNode(final Node node,
                                       final String tag,
                                       final int pos) {
-        final NodeList nodeList = node.getChildNodes();
         int foundPos = 0;
-        for (int i = 0; i < nodeList.getLength(); i++) {
-            final Node n = nodeList.item(i);
+        for (Node n = node.getFirstChild(); n != null; n = n.getNextSibling()) {
             if (n.getNodeName().equals(tag)) {
                 if (pos == foundPos) {
                     return n;
@@ -84,7 +121,8 @@ abstract class XML {
         if (node.getAttributes().getNamedItem(name) == null) {
             return null;
         } else {
-            return node.getAttributes().getNamedItem(name).getNodeValue();
+            return intern(
+                    node.getAttributes().getNamedItem(name).getNodeValue());
         }
     }
 
@@ -100,7 +138,15 @@ abstract class XML {
         if (ch == null) {
             return "";
         }
-        return ch.getNodeValue();
+        return intern(ch.getNodeValue());
+    }
+
+    /**
+     * Returns the same instance for the equal attribute values and texts,
+     * if the subclass keeps them. This one returns the string itself.
+     */
+    protected String intern(final String s) {
+        return s;
     }
 
     /**
@@ -108,38 +154,205 @@ abstract class XML {
      * the tree.
      */
     protected final Document getXMLDocument(final String xmlraw) {
+        return getXMLDocument(xmlraw, null);
+    }
+
+    /**
+     * Parses xml passed as a string and returns document object with
+     * the tree. Elements with names in skipElements are left out with
+     * everything in them, they are not built at all. It is for the big parts
+     * of the xml, that are not used, like the operation history in the cib.
+     */
+    protected final Document getXMLDocument(final String xmlraw,
+                                            final Set<String> skipElements) {
         if (xmlraw == null) {
             return null;
         }
         final String xml = xmlraw.trim();
-        final DocumentBuilderFactory factory =
-            DocumentBuilderFactory.newInstance();
-        if (factory == null
-            || xml.equals("")
-            || xml.equals("no resources defined!")) {
+        if (xml.equals("") || xml.equals("no resources defined!")) {
+            return null;
+        }
+        final DocumentBuilder builder = DOCUMENT_BUILDER.get();
+        if (builder == null) {
             return null;
         }
         Document document;
         try {
-            final DocumentBuilder builder = factory.newDocumentBuilder();
-            document = builder.parse(new ByteArrayInputStream(xml.getBytes()));
+            final InputSource source = new InputSource(new StringReader(xml));
+            if (skipElements == null || skipElements.isEmpty()) {
+                document = builder.parse(source);
+            } else {
+                final SAXParser parser = SAX_PARSER.get();
+                if (parser == null) {
+                    return null;
+                }
+                document = builder.newDocument();
+                final DocumentHandler handler =
+                                    new DocumentHandler(document, skipElements);
+                try {
+                    parser.setProperty(LEXICAL_HANDLER_PROPERTY, handler);
+                    parser.parse(source, handler);
+                } finally {
+                    parser.reset();
+                }
+            }
         } catch (SAXException sxe) {
             // Error generated during parsing)
-            Exception  x = sxe;
-            if (sxe.getException() != null) {
-                x = sxe.getException();
-            }
             LOG.appWarning("getXMLDocument: could not parse: " + xml);
             return null;
-        } catch (ParserConfigurationException pce) {
-            // Parser with specified options can't be built
-            pce.printStackTrace();
-            return null;
         } catch (IOException ioe) {
             // I/O error
             ioe.printStackTrace();
             return null;
+        } finally {
+            builder.reset();
         }
         return document;
     }
+
+    /**
+     * Parses xml passed as a string with the SAX handler, without building
+     * the DOM tree. Returns false, if it could not be parsed.
+     */
+    protected final boolean parseXML(final String xmlraw,
+                                     final DefaultHandler handler) {
+        if (xmlraw == null) {
+            return false;
+        }
+        final String xml = xmlraw.trim();
+        if (xml.equals("")) {
+            return false;
+        }
+        final SAXParser parser = SAX_PARSER.get();
+        if (parser == null) {
+            return false;
+        }
+        try {
+            parser.parse(new InputSource(new StringReader(xml)), handler);
+        } catch (SAXException sxe) {
+            LOG.appWarning("parseXML: could not parse: " + xml);
+            return false;
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            return false;
+        } finally {
+            parser.reset();
+        }
+        return true;
+    }
+
+    /**
+     * Builds the DOM tree from the SAX events, without the skipped
+     * elements.
+     */
+    private static final class DocumentHandler extends DefaultHandler2 {
+        /** The document. */
+        private final Document document;
+        /** Names of the elements, that are left out. */
+        private final Set<String> skipElements;
+        /** Node to which the new nodes are added. */
+        private Node current;
+        /** Depth in the skipped element, 0 if not in one. */
+        private int skipDepth = 0;
+        /** Text, that is not added yet. */
+        private final StringBuilder text = new StringBuilder();
+        /** Whether we are in the CDATA section. */
+        private boolean inCDATA = false;
+
+        /** Prepares a new <code>DocumentHandler</code> object. */
+        DocumentHandler(final Document document,
+                        final Set<String> skipElements) {
+            super();
+            this.document = document;
+            this.skipElements = skipElements;
+            current = document;
+        }
+
+        /** Adds the collected text as one node. */
+        private void flushText() {
+            if (text.length() > 0) {
+                if (current != document) {
+                    current.appendChild(
+                                 document.createTextNode(text.toString()));
+                }
+                text.setLength(0);
+            }
+        }
+
+        @Override
+        public void startElement(final String uri,
+                                 final String localName,
+                                 final String qName,
+                                 final Attributes attributes) {
+            if (skipDepth > 0 || skipElements.contains(qName)) {
+                skipDepth++;
+                return;
+            }
+            flushText();
+            final Element element = document.createElement(qName);
+            for (int i = 0; i < attributes.getLength(); i++) {
+                element.setAttribute(attributes.getQName(i),
+                                     attributes.getValue(i));
+            }
+            current.appendChild(element);
+            current = element;
+        }
+
+        @Override
+        public void endElement(final String uri,
+                               final String localName,
+                               final String qName) {
+            if (skipDepth > 0) {
+                skipDepth--;
+                return;
+            }
+            flushText();
+            current = current.getParentNode();
+        }
+
+        @Override
+        public void characters(final char[] ch,
+                               final int start,
+                               final int length) {
+            if (skipDepth == 0) {
+                text.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void ignorableWhitespace(final char[] ch,
+                                        final int start,
+                                        final int length) {
+            characters(ch, start, length);
+        }
+
+        @Override
+        public void startCDATA() {
+            if (skipDepth == 0) {
+                flushText();
+                inCDATA = true;
+            }
+        }
+
+        @Override
+        public void endCDATA() {
+            if (skipDepth == 0 && inCDATA) {
+                current.appendChild(
+                            document.createCDATASection(text.toString()));
+                text.setLength(0);
+                inCDATA = false;
+            }
+        }
+
+        @Override
+        public void comment(final char[] ch,
+                            final int start,
+                            final int length) {
+            if (skipDepth == 0 && !inCDATA) {
+                flushText();
+                current.appendChild(
+                        document.createComment(new String(ch, start, length)));
+            }
+        }
+    }
 }
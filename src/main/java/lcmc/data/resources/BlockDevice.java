@@ -28,6 +28,7 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.Arrays;
@@ -85,6 +86,14 @@ public final class BlockDevice extends Resource {
     private String syncedProgress = null;
     /** Drbd flags. */
     private String drbdFlags = null;
+    /** Whether the drbd 9 resource is suspended. */
+    private boolean drbdSuspended = false;
+    /**
+     * Drbd 9 peers of this volume by the peer node id, in the order they
+     * came. Empty with drbd 8.
+     */
+    private final Map<String, DrbdPeerDevice> drbdPeerDevices =
+                                new LinkedHashMap<String, DrbdPeerDevice>();
     /** How much of the file system is used in percents. */
     private int used = -1;
     /** LVM group. */
@@ -203,6 +212,10 @@ public final class BlockDevice extends Resource {
         diskState       = null;
         syncedProgress  = null;
         drbdFlags       = null;
+        drbdSuspended   = false;
+        synchronized (drbdPeerDevices) {
+            drbdPeerDevices.clear();
+        }
     }
 
     /** Returns true if this device is used by CRM. */
@@ -242,6 +255,9 @@ public final class BlockDevice extends Resource {
             diskState             = null;
             syncedProgress        = null;
             drbdFlags             = null;
+            synchronized (drbdPeerDevices) {
+                drbdPeerDevices.clear();
+            }
             if (metaDisk != null) {
                 metaDisk.removeMetadiskOfBlockDevice(this);
                 metaDisk              = null;
@@ -365,6 +381,192 @@ public final class BlockDevice extends Resource {
         return syncedProgress;
     }
 
+    /** Returns the drbd 9 peers of this volume, empty with drbd 8. */
+    public List<DrbdPeerDevice> getDrbdPeerDevices() {
+        synchronized (drbdPeerDevices) {
+            return new ArrayList<DrbdPeerDevice>(drbdPeerDevices.values());
+        }
+    }
+
+    /**
+     * Sets the drbd 9 resource state, that applies to all volumes. Null
+     * values are not changed. Returns whether something changed.
+     */
+    public boolean setDrbdResourceState(final String role,
+                                        final String suspended) {
+        boolean changed = false;
+        if (role != null && !role.equals(nodeState)) {
+            nodeState = role;
+            changed = true;
+        }
+        if (suspended != null && drbdSuspended != !"no".equals(suspended)) {
+            drbdSuspended = !drbdSuspended;
+            changed = true;
+        }
+        if (changed) {
+            updateFromDrbdPeers();
+        }
+        return changed;
+    }
+
+    /**
+     * Sets the connection state and the role of the drbd 9 peer. Null
+     * values are not changed. Returns whether something changed.
+     */
+    public boolean setDrbdPeerConnection(final String peerNodeId,
+                                         final String connectionName,
+                                         final String peerConnectionState,
+                                         final String peerRole) {
+        synchronized (drbdPeerDevices) {
+            final DrbdPeerDevice peer = getDrbdPeer(peerNodeId,
+                                                    connectionName);
+            boolean changed = false;
+            if (peerConnectionState != null
+                && !peerConnectionState.equals(peer.getConnectionState())) {
+                peer.setConnectionState(peerConnectionState);
+                changed = true;
+            }
+            if (peerRole != null && !peerRole.equals(peer.getRole())) {
+                peer.setRole(peerRole);
+                changed = true;
+            }
+            if (changed) {
+                updateFromDrbdPeers();
+            }
+            return changed;
+        }
+    }
+
+    /**
+     * Sets the replication state, the peer disk state and the sync
+     * progress of the drbd 9 peer. Null values are not changed. Returns
+     * whether something changed.
+     */
+    public boolean setDrbdPeerDeviceState(final String peerNodeId,
+                                          final String connectionName,
+                                          final String replicationState,
+                                          final String peerDiskState,
+                                          final String resyncSuspended,
+                                          final String synced) {
+        synchronized (drbdPeerDevices) {
+            final DrbdPeerDevice peer = getDrbdPeer(peerNodeId,
+                                                    connectionName);
+            boolean changed = false;
+            if (replicationState != null
+                && !replicationState.equals(peer.getReplicationState())) {
+                peer.setReplicationState(replicationState);
+                changed = true;
+            }
+            if (peerDiskState != null
+                && !peerDiskState.equals(peer.getDiskState())) {
+                peer.setDiskState(peerDiskState);
+                changed = true;
+            }
+            if (resyncSuspended != null
+                && !resyncSuspended.equals(peer.getResyncSuspended())) {
+                peer.setResyncSuspended(resyncSuspended);
+                changed = true;
+            }
+            if (synced != null
+                && peer.isSyncing()
+                && !synced.equals(peer.getSyncedProgress())) {
+                peer.setSyncedProgress(synced);
+                changed = true;
+            }
+            if (changed) {
+                updateFromDrbdPeers();
+            }
+            return changed;
+        }
+    }
+
+    /**
+     * Sets the statistics of the drbd 9 peer. The values are in KiB, -1 if
+     * they are not known. The time in ms is used for the rates. Returns
+     * whether something changed.
+     */
+    public boolean setDrbdPeerStatistics(final String peerNodeId,
+                                         final String connectionName,
+                                         final long outOfSync,
+                                         final long sent,
+                                         final long received,
+                                         final long time) {
+        synchronized (drbdPeerDevices) {
+            final DrbdPeerDevice peer = getDrbdPeer(peerNodeId,
+                                                    connectionName);
+            final long oldSendRate = peer.getSendRate();
+            final long oldReceiveRate = peer.getReceiveRate();
+            boolean changed = false;
+            if (outOfSync >= 0 && outOfSync != peer.getOutOfSync()) {
+                peer.setOutOfSync(outOfSync);
+                changed = true;
+            }
+            if (sent >= 0 && received >= 0) {
+                peer.setTraffic(sent, received, time);
+                changed |= oldSendRate != peer.getSendRate()
+                           || oldReceiveRate != peer.getReceiveRate();
+            }
+            return changed;
+        }
+    }
+
+    /** Removes the drbd 9 peer. Returns whether it was there. */
+    public boolean removeDrbdPeer(final String peerNodeId) {
+        synchronized (drbdPeerDevices) {
+            if (drbdPeerDevices.remove(peerNodeId) == null) {
+                return false;
+            }
+            updateFromDrbdPeers();
+            return true;
+        }
+    }
+
+    /** Returns the drbd 9 peer, it is created if it is not there. */
+    private DrbdPeerDevice getDrbdPeer(final String peerNodeId,
+                                       final String connectionName) {
+        DrbdPeerDevice peer = drbdPeerDevices.get(peerNodeId);
+        if (peer == null) {
+            peer = new DrbdPeerDevice(peerNodeId, connectionName);
+            drbdPeerDevices.put(peerNodeId, peer);
+        }
+        return peer;
+    }
+
+    /**
+     * Sets the drbd 8 connection state, peer states, sync progress and
+     * flags from the drbd 9 peer, that syncs, or from the first one. The
+     * rest of the GUI knows only one peer.
+     */
+    private void updateFromDrbdPeers() {
+        DrbdPeerDevice main = null;
+        synchronized (drbdPeerDevices) {
+            for (final DrbdPeerDevice peer : drbdPeerDevices.values()) {
+                if (main == null || (peer.isSyncing() && !main.isSyncing())) {
+                    main = peer;
+                }
+            }
+        }
+        final StringBuilder flags = new StringBuilder(4);
+        flags.append(drbdSuspended ? 's' : 'r');
+        if (main == null) {
+            connectionState = "StandAlone";
+            nodeStateOther = null;
+            diskStateOther = null;
+            syncedProgress = null;
+            flags.append("---");
+        } else {
+            connectionState = main.getLegacyConnectionState();
+            nodeStateOther = main.getRole();
+            diskStateOther = main.getDiskState();
+            syncedProgress = main.getSyncedProgress();
+            final String suspended = main.getResyncSuspended();
+            flags.append("dependency".equals(suspended) ? 'a' : '-');
+            flags.append("peer".equals(suspended) ? 'p' : '-');
+            flags.append("user".equals(suspended) ? 'u' : '-');
+        }
+        drbdFlags = flags.toString();
+    }
+
     /** Returns whether this block device is attached. */
     public boolean isAttached() {
         if (!drbd) {
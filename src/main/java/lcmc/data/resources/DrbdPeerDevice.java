@@ -0,0 +1,229 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2013, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.data.resources;
+
+import java.io.Serializable;
+
+/**
+ * State of one DRBD 9 volume towards one peer, as it comes from the
+ * drbdsetup events2 connection and peer-device events. The sizes are in
+ * KiB, the rates in KiB per second.
+ *
+ * @author Rasto Levrinc
+ *
+ */
+public final class DrbdPeerDevice implements Serializable {
+    /** Serial version UID. */
+    private static final long serialVersionUID = 1L;
+    /** Node id of the peer. */
+    private final String peerNodeId;
+    /** Name of the connection, usually the host name of the peer. */
+    private final String connectionName;
+    /** Connection state, e.g. Connected, Connecting, StandAlone. */
+    private String connectionState = null;
+    /** Role of the peer. */
+    private String role = null;
+    /** Replication state, e.g. Established, SyncSource. */
+    private String replicationState = null;
+    /** Disk state of the peer. */
+    private String diskState = null;
+    /** How the resync is suspended: no, user, peer, dependency. */
+    private String resyncSuspended = null;
+    /** The sync progress in percent as String or null. */
+    private String syncedProgress = null;
+    /** Data, that is not in sync with the peer. */
+    private long outOfSync = -1;
+    /** Data sent to the peer. */
+    private long sent = -1;
+    /** Data received from the peer. */
+    private long received = -1;
+    /** Send rate. */
+    private long sendRate = 0;
+    /** Receive rate. */
+    private long receiveRate = 0;
+    /** When were the sent and received values updated, in ms. */
+    private long statisticsTime = -1;
+
+    /** Prepares a new <code>DrbdPeerDevice</code> object. */
+    public DrbdPeerDevice(final String peerNodeId,
+                          final String connectionName) {
+        this.peerNodeId = peerNodeId;
+        this.connectionName = connectionName;
+    }
+
+    /** Returns node id of the peer. */
+    public String getPeerNodeId() {
+        return peerNodeId;
+    }
+
+    /** Returns name of the connection. */
+    public String getConnectionName() {
+        return connectionName;
+    }
+
+    /** Returns connection state. */
+    public String getConnectionState() {
+        return connectionState;
+    }
+
+    /** Sets connection state. */
+    void setConnectionState(final String connectionState) {
+        this.connectionState = connectionState;
+    }
+
+    /** Returns role of the peer. */
+    public String getRole() {
+        return role;
+    }
+
+    /** Sets role of the peer. */
+    void setRole(final String role) {
+        this.role = role;
+    }
+
+    /** Returns replication state. */
+    public String getReplicationState() {
+        return replicationState;
+    }
+
+    /** Sets replication state. */
+    void setReplicationState(final String replicationState) {
+        this.replicationState = replicationState;
+        if (!isSyncing()) {
+            syncedProgress = null;
+        }
+    }
+
+    /** Returns disk state of the peer. */
+    public String getDiskState() {
+        return diskState;
+    }
+
+    /** Sets disk state of the peer. */
+    void setDiskState(final String diskState) {
+        this.diskState = diskState;
+    }
+
+    /** Returns how the resync is suspended. */
+    public String getResyncSuspended() {
+        return resyncSuspended;
+    }
+
+    /** Sets how the resync is suspended. */
+    void setResyncSuspended(final String resyncSuspended) {
+        this.resyncSuspended = resyncSuspended;
+    }
+
+    /** Returns the sync progress in percent or null. */
+    public String getSyncedProgress() {
+        return syncedProgress;
+    }
+
+    /** Sets the sync progress in percent. */
+    void setSyncedProgress(final String syncedProgress) {
+        this.syncedProgress = syncedProgress;
+    }
+
+    /** Returns data, that is out of sync, or -1 if not known. */
+    public long getOutOfSync() {
+        return outOfSync;
+    }
+
+    /** Sets data, that is out of sync. */
+    void setOutOfSync(final long outOfSync) {
+        this.outOfSync = outOfSync;
+    }
+
+    /** Returns data sent to the peer or -1 if not known. */
+    public long getSent() {
+        return sent;
+    }
+
+    /** Returns data received from the peer or -1 if not known. */
+    public long getReceived() {
+        return received;
+    }
+
+    /** Returns send rate. */
+    public long getSendRate() {
+        return sendRate;
+    }
+
+    /** Returns receive rate. */
+    public long getReceiveRate() {
+        return receiveRate;
+    }
+
+    /**
+     * Sets the sent and received counters and computes the rates from the
+     * previous values. The counters start from zero after reconnect, the
+     * rate is zero then.
+     */
+    void setTraffic(final long newSent,
+                    final long newReceived,
+                    final long time) {
+        if (statisticsTime >= 0 && time > statisticsTime) {
+            final long interval = time - statisticsTime;
+            sendRate = rate(sent, newSent, interval);
+            receiveRate = rate(received, newReceived, interval);
+        }
+        sent = newSent;
+        received = newReceived;
+        statisticsTime = time;
+    }
+
+    /** Returns the rate per second from the counter change in interval ms. */
+    private static long rate(final long from,
+                             final long to,
+                             final long interval) {
+        if (from < 0 || to < from) {
+            return 0;
+        }
+        return (to - from) * 1000 / interval;
+    }
+
+    /** Returns whether the volume is syncing with this peer. */
+    public boolean isSyncing() {
+        return replicationState != null
+               && (replicationState.startsWith("Sync")
+                   || replicationState.startsWith("PausedSync"));
+    }
+
+    /**
+     * Returns the connection state in the drbd 8 terms, so that the rest
+     * of the GUI can treat the peer like the only peer of drbd 8.
+     */
+    String getLegacyConnectionState() {
+        if (connectionState == null) {
+            return null;
+        }
+        if ("Connecting".equals(connectionState)) {
+            return "WFConnection";
+        }
+        if (!"Connected".equals(connectionState)
+            || replicationState == null
+            || "Established".equals(replicationState)
+            || "Off".equals(replicationState)) {
+            return connectionState;
+        }
+        return replicationState;
+    }
+}
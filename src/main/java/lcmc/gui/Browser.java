@@ -23,6 +23,7 @@
 package lcmc.gui;
 
 import lcmc.utilities.Tools;
+import lcmc.utilities.UpdateScheduler;
 import lcmc.gui.resources.Info;
 import lcmc.gui.resources.CategoryInfo;
 
@@ -124,7 +125,12 @@ public class Browser {
     public final void repaintTree() {
         final JTree t = tree;
         if (t != null) {
-            t.repaint();
+            UpdateScheduler.markDirty(t, "repaint", new Runnable() {
+                @Override
+                public void run() {
+                    t.repaint();
+                }
+            });
         }
     }
 
@@ -187,8 +193,8 @@ public class Browser {
 
     /** Sets the node change for the node. */
     public final void nodeChanged(final DefaultMutableTreeNode node) {
-        final String stacktrace = Tools.getStackTrace();
-        Tools.invokeLater(!Tools.CHECK_SWING_THREAD, new Runnable() {
+        final Throwable callSite = Tools.getCallSite();
+        UpdateScheduler.markDirty(node, "nodeChanged", new Runnable() {
             @Override
             public void run() {
                 try {
@@ -196,7 +202,8 @@ public class Browser {
                 } catch (Exception e) {
                     LOG.appError("nodeChangedAndWait: " + node.getUserObject()
                                  + " node changed error:\n"
-                                 + stacktrace + "\n\n", e);
+                                 + Tools.getCallSiteStackTrace(callSite)
+                                 + "\n\n", e);
                 }
             }
         });
@@ -210,8 +217,14 @@ public class Browser {
 
     /** Repaints the split pane. */
     protected final void repaintSplitPane() {
-        if (infoPanelSplitPane != null) {
-            infoPanelSplitPane.repaint();
+        final JSplitPane sp = infoPanelSplitPane;
+        if (sp != null) {
+            UpdateScheduler.markDirty(sp, "repaint", new Runnable() {
+                @Override
+                public void run() {
+                    sp.repaint();
+                }
+            });
         }
     }
 
@@ -23,6 +23,7 @@ package lcmc.gui;
 
 import lcmc.utilities.Tools;
 import lcmc.utilities.MyMenuItem;
+import lcmc.utilities.UpdateScheduler;
 import lcmc.gui.resources.Info;
 import lcmc.gui.resources.ServiceInfo;
 import lcmc.gui.resources.GroupInfo;
@@ -44,6 +45,7 @@ import java.awt.Shape;
 import java.awt.Graphics2D;
 import java.awt.geom.Point2D;
 import java.awt.Color;
+import java.util.Arrays;
 import java.awt.Paint;
 import java.awt.geom.RoundRectangle2D;
 import java.awt.GradientPaint;
@@ -121,6 +123,9 @@ public final class CRMGraph extends ResourceGraph {
     private final Map<Info, Vertex> constraintPHToVertexMap =
                                          new HashMap<Info, Vertex>();
 
+    /** Vertices without saved position, that wait for the layout. */
+    private final Set<Vertex> unplacedVertices = new HashSet<Vertex>();
+
     /** The first X position of the host. */
     private int hostDefaultXPos = 10;
     /** Interval beetween two animation frames. */
@@ -139,6 +144,12 @@ public final class CRMGraph extends ResourceGraph {
     private static final int MAX_Y_POS = 2600;
     /** Height of the vertices. */
     private static final int VERTEX_HEIGHT = 50;
+    /** X position, where the automatic layout starts. */
+    private static final int LAYOUT_X_POS = 10;
+    /** Horizontal space between the vertices in the automatic layout. */
+    private static final int LAYOUT_VERTEX_SPACING = 30;
+    /** Vertical space between the layers in the automatic layout. */
+    private static final int LAYOUT_LAYER_SPACING = 40;
     /** Host standby icon. */
     private static final ImageIcon HOST_STANDBY_ICON =
      Tools.createImageIcon(Tools.getDefault("CRMGraph.HostStandbyIcon"));
@@ -388,6 +399,7 @@ public final class CRMGraph extends ResourceGraph {
                                              new Point2D.Float(BD_X_POS,
                                                                maxYPos + 40));
                     putVertexLocations();
+                    addUnplacedVertex(v);
                 } else {
                     getVertexLocations().put(v, newPos);
                     putVertexLocations();
@@ -850,6 +862,114 @@ public final class CRMGraph extends ResourceGraph {
         return getClusterBrowser().getServicesInfo().getPopup(pos);
     }
 
+    /**
+     * Adds the vertex, that has only a temporary position, and schedules the
+     * layout. The vertices that are added at once are laid out together.
+     */
+    private void addUnplacedVertex(final Vertex v) {
+        synchronized (unplacedVertices) {
+            unplacedVertices.add(v);
+        }
+        UpdateScheduler.markDirty(this, "layout", new Runnable() {
+            @Override
+            public void run() {
+                startLayout();
+            }
+        });
+    }
+
+    /**
+     * Takes a snapshot of the constraint graph and computes the layout of
+     * the unplaced vertices in the background. It is called in the swing
+     * thread. The placed vertices stay, where they are, only if all vertices
+     * are unplaced, e.g. a new cluster, the whole graph is laid out.
+     */
+    private void startLayout() {
+        final Set<Vertex> unplaced;
+        synchronized (unplacedVertices) {
+            unplaced = new HashSet<Vertex>(unplacedVertices);
+            unplacedVertices.clear();
+        }
+        final LayeredLayout<Vertex> layered =
+                                new LayeredLayout<Vertex>(LAYOUT_VERTEX_SPACING,
+                                                          LAYOUT_LAYER_SPACING,
+                                                          MAX_X_POS);
+        lockGraph();
+        try {
+            for (final Vertex v : getGraph().getVertices()) {
+                if (!vertexToHostMap.containsKey(v)) {
+                    layered.addNode(v, getVertexWidth(v), getVertexHeight(v));
+                }
+            }
+            for (final Edge e : getGraph().getEdges()) {
+                layered.addEdge(e.getSource(), e.getDest());
+            }
+        } finally {
+            unlockGraph();
+        }
+        final Map<Vertex, Point2D> tempPositions =
+                                            new HashMap<Vertex, Point2D>();
+        final Map<Vertex, Point2D> vl = getVertexLocations();
+        try {
+            for (final Map.Entry<Vertex, Point2D> e : vl.entrySet()) {
+                if (unplaced.contains(e.getKey())) {
+                    tempPositions.put(e.getKey(),
+                                      (Point2D) e.getValue().clone());
+                } else {
+                    layered.setFixedPosition(e.getKey(),
+                                             (Point2D) e.getValue().clone());
+                }
+            }
+        } finally {
+            putVertexLocations();
+        }
+        if (tempPositions.isEmpty()) {
+            return;
+        }
+        UpdateScheduler.markDirtyInBackground(this, "layout", new Runnable() {
+            @Override
+            public void run() {
+                final Map<Vertex, Point2D> positions =
+                       layered.layout(LAYOUT_X_POS,
+                                      HOST_Y_POS + VERTEX_HEIGHT / 2
+                                      + LAYOUT_LAYER_SPACING);
+                Tools.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        applyLayout(positions, tempPositions);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Moves the vertices to the computed positions, but not the vertices,
+     * that were moved or removed in the meantime.
+     */
+    private void applyLayout(final Map<Vertex, Point2D> positions,
+                             final Map<Vertex, Point2D> tempPositions) {
+        final Map<Vertex, Point2D> vl = getVertexLocations();
+        try {
+            for (final Map.Entry<Vertex, Point2D> e : positions.entrySet()) {
+                final Vertex v = e.getKey();
+                final Point2D temp = tempPositions.get(v);
+                if (temp == null || !temp.equals(vl.get(v))) {
+                    continue;
+                }
+                /* not clamped to the maximum position, the graph grows in
+                   scale(), so that the vertices do not pile up on its edge */
+                final Point2D pos = e.getValue();
+                vl.put(v, pos);
+                getLayout().setLocation(v, pos);
+            }
+        } finally {
+            putVertexLocations();
+        }
+        scale();
+        repaint();
+    }
+
     /**
      * After service vertex v was released in position pos, set its location
      * there, so that it doesn't jump back. If position is outside of the view,
@@ -861,10 +981,15 @@ public final class CRMGraph extends ResourceGraph {
         double y = pos.getY();
         final double minPos = (getVertexWidth(v)
                                - getDefaultVertexWidth(v)) / 2;
+        /* the graph can be bigger after the layout */
+        final double maxX = Math.max(MAX_X_POS,
+                                     getLayout().getSize().getWidth());
+        final double maxY = Math.max(MAX_Y_POS,
+                                     getLayout().getSize().getHeight());
         x = x < minPos ? minPos : x;
-        x = x > MAX_X_POS ? MAX_X_POS : x;
+        x = x > maxX ? maxX : x;
         y = y < MIN_Y_POS ? MIN_Y_POS : y;
-        y = y > MAX_Y_POS ? MAX_Y_POS : y;
+        y = y > maxY ? maxY : y;
         pos.setLocation(x, y);
         getVertexLocations().put(v, pos);
         putVertexLocations();
@@ -1879,6 +2004,24 @@ public final class CRMGraph extends ResourceGraph {
         g2d.draw(shape);
     }
 
+    /** Returns the state of the vertex, that is painted in drawInside. */
+    @Override
+    protected String getVertexRenderState(final Vertex v) {
+        if (vertexToHostMap.containsKey(v)) {
+            final HostInfo hi = (HostInfo) getInfo(v);
+            if (hi != null) {
+                return Arrays.toString(hi.getHost().getPmColors());
+            }
+        } else if (!vertexToConstraintPHMap.containsKey(v)) {
+            final ServiceInfo si = (ServiceInfo) getInfo(v);
+            if (si != null) {
+                return si.getHostColors(isTestOnly()).toString()
+                       + getUsed(v);
+            }
+        }
+        return "";
+    }
+
     /** Returns all crm connections. */
     List<HbConnectionInfo> getAllHbConnections() {
         final List<HbConnectionInfo> allConnections =
@@ -1931,6 +2074,7 @@ public final class CRMGraph extends ResourceGraph {
                                         new Point2D.Float(BD_X_POS,
                                                           maxYPos + 40));
                 putVertexLocations();
+                addUnplacedVertex(v);
             } else {
                 getVertexLocations().put(v, newPos);
                 putVertexLocations();
@@ -27,8 +27,10 @@ import lcmc.data.PtestData;
 import lcmc.data.DRBDtestData;
 
 import lcmc.data.Host;
+import lcmc.data.InfoBlockReader;
 import lcmc.data.Cluster;
 import lcmc.data.ClusterStatus;
+import lcmc.data.ClusterHealth;
 import lcmc.data.CRMXML;
 import lcmc.data.DrbdXML;
 import lcmc.data.VMSXML;
@@ -76,12 +78,13 @@ import javax.swing.tree.DefaultMutableTreeNode;
 import java.awt.Color;
 import java.awt.geom.Point2D;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
-import java.util.TreeMap;
 import java.util.Set;
+import java.util.HashSet;
 import java.util.TreeSet;
 import java.util.Map;
 import java.util.HashMap;
@@ -142,27 +145,11 @@ public final class ClusterBrowser extends Browser {
     /** Common mount points on all cluster nodes. */
     private String[] commonMountPoints;
 
-    /** name (hb type) + id to service info hash. */
-    private final Map<String, Map<String, ServiceInfo>> nameToServiceInfoHash =
-                                new TreeMap<String, Map<String, ServiceInfo>>(
-                                                String.CASE_INSENSITIVE_ORDER);
-    /** Name to service hash lock. */
-    private final Lock mNameToServiceLock = new ReentrantLock();
-    /** DRBD resource hash lock. */
-    private final Lock mDrbdResHashLock = new ReentrantLock();
-    /** DRBD resource name string to drbd resource info hash. */
-    private final Map<String, DrbdResourceInfo> drbdResHash =
-                                new HashMap<String, DrbdResourceInfo>();
-    /** DRBD device hash lock. */
-    private final Lock mDrbdDevHashLock = new ReentrantLock();
-    /** DRBD resource device string to drbd resource info hash. */
-    private final Map<String, DrbdVolumeInfo> drbdDevHash =
-                                new HashMap<String, DrbdVolumeInfo>();
-    /** Heartbeat id to service lock. */
-    private final Lock mHeartbeatIdToService = new ReentrantLock();
-    /** Heartbeat id to service info hash. */
-    private final Map<String, ServiceInfo> heartbeatIdToServiceInfo =
-                                          new HashMap<String, ServiceInfo>();
+    /**
+     * Services by crm id and by name and id, DRBD resources, volumes and
+     * block devices.
+     */
+    private final ResourceRegistry resourceRegistry = new ResourceRegistry();
     /** Heartbeat graph. */
     private final CRMGraph crmGraph;
     /** Drbd graph. */
@@ -189,12 +176,34 @@ public final class ClusterBrowser extends Browser {
     private boolean drbdStatusCanceled = false;
     /** Whether hb status was canceled by user. */
     private boolean clStatusCanceled = false;
+    /**
+     * Whether hb status is being started again, because the whole cib is
+     * needed.
+     */
+    private volatile boolean clStatusRestarted = false;
     /** Ptest lock. */
     private final Lock mPtestLock = new ReentrantLock();
+    /** Cached and in advance computed ptest results of the menu items. */
+    private final PtestPreviews ptestPreviews = new PtestPreviews(this);
+    /** Service, that was selected last, its actions are simulated. */
+    private volatile ServiceInfo previewService = null;
     /** DRBD test data lock. */
     private final Lock mDRBDtestdataLock = new ReentrantLock();
     /** Can be used to cancel server status. */
     private volatile boolean serverStatusCanceled = false;
+    /** Whether the server status was started after the cluster loaded. */
+    private volatile boolean serverStatusStarted = false;
+    /** Hosts, whose server status loop runs. */
+    private final Set<Host> serverStatusHosts = new HashSet<Host>();
+    /**
+     * Whether the tab of the cluster is not shown. Only the health summary
+     * of the cluster is updated then, not the resources, graphs and tree.
+     */
+    private volatile boolean summaryMode = false;
+    /** Whether the cluster status changed in the summary mode. */
+    private volatile boolean crmStatusDirty = false;
+    /** Whether the drbd status changed in the summary mode. */
+    private volatile boolean drbdStatusDirty = false;
     /** last dc host detected. */
     private Host lastDcHost = null;
     /** dc host as reported by crm. */
@@ -518,29 +527,21 @@ public final class ClusterBrowser extends Browser {
 
     /** Returns whether there is at least one drbddisk resource. */
     public boolean atLeastOneDrbddisk() {
-        mHeartbeatIdToServiceLock();
-        for (final String id : heartbeatIdToServiceInfo.keySet()) {
-            final ServiceInfo si = heartbeatIdToServiceInfo.get(id);
+        for (final ServiceInfo si : getHeartbeatIdToServiceInfo().values()) {
             if (si.getResourceAgent().isDrbddisk()) {
-                mHeartbeatIdToServiceUnlock();
                 return true;
             }
         }
-        mHeartbeatIdToServiceUnlock();
         return false;
     }
 
     /** Returns whether there is at least one drbddisk resource. */
     public boolean isOneLinbitDrbd() {
-        mHeartbeatIdToServiceLock();
-        for (final String id : heartbeatIdToServiceInfo.keySet()) {
-            final ServiceInfo si = heartbeatIdToServiceInfo.get(id);
+        for (final ServiceInfo si : getHeartbeatIdToServiceInfo().values()) {
             if (si.getResourceAgent().isLinbitDrbd()) {
-                mHeartbeatIdToServiceUnlock();
                 return true;
             }
         }
-        mHeartbeatIdToServiceUnlock();
         return false;
     }
 
@@ -795,8 +796,15 @@ public final class ClusterBrowser extends Browser {
      * devices.
      */
     void startServerStatus() {
+        serverStatusStarted = true;
         final Host[] hosts = cluster.getHostsArray();
         for (final Host host : hosts) {
+            synchronized (serverStatusHosts) {
+                if (!serverStatusHosts.add(host)) {
+                    /* still running */
+                    continue;
+                }
+            }
             final Thread thread = new Thread(new Runnable() {
                 @Override
                 public void run() {
@@ -832,16 +840,113 @@ public final class ClusterBrowser extends Browser {
             host.setIsLoading();
             host.startHWInfoDaemon(infosToUpdate,
                                    new ResourceGraph[]{drbdGraph, crmGraph});
-            if (serverStatusCanceled) {
+            if (isServerStatusDone(host)) {
                 break;
             }
             Tools.sleep(10000);
-            if (serverStatusCanceled) {
+            if (isServerStatusDone(host)) {
                 break;
             }
         }
     }
 
+    /**
+     * Returns whether the server status loop of the host ends, because it
+     * was canceled or the tab of the cluster is not shown. The first server
+     * status is always finished, the cluster is loading till then.
+     */
+    private boolean isServerStatusDone(final Host host) {
+        synchronized (serverStatusHosts) {
+            if (serverStatusCanceled
+                || (summaryMode && !host.isServerStatusLatch())) {
+                serverStatusHosts.remove(host);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Sets whether only the health summary of the cluster is updated,
+     * because its tab is not shown. In the summary mode the server status of
+     * the hosts is stopped and the cluster and drbd status update only the
+     * health. When the tab is shown again, the server status is restarted
+     * and the resources, graphs and tree are updated from the latest status.
+     */
+    public void setSummaryMode(final boolean summaryMode) {
+        synchronized (serverStatusHosts) {
+            if (this.summaryMode == summaryMode) {
+                return;
+            }
+            this.summaryMode = summaryMode;
+        }
+        LOG.debug1("setSummaryMode: " + cluster.getName() + ": "
+                   + summaryMode);
+        if (summaryMode) {
+            for (final Host host : cluster.getHostsArray()) {
+                if (!host.isServerStatusLatch()
+                    && host.isServerStatusRunning()) {
+                    host.stopServerStatus();
+                }
+            }
+            return;
+        }
+        if (serverStatusStarted && !serverStatusCanceled) {
+            startServerStatus();
+        }
+        /* a status, that is parsed now, is still in the summary mode */
+        clStatusLock();
+        try {
+            final ClusterStatus clStatus = clusterStatus;
+            if (crmStatusDirty && !clStatusCanceled && clStatus != null) {
+                crmStatusDirty = false;
+                updateAllResources(clStatus, false, true);
+            }
+        } finally {
+            clStatusUnlock();
+        }
+        if (drbdStatusDirty) {
+            drbdStatusDirty = false;
+            Tools.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    getDrbdGraph().getDrbdInfo().setParameters();
+                    updateDrbdResources();
+                }
+            });
+            drbdGraph.repaint();
+            clusterHostsInfo.updateTable(ClusterHostsInfo.MAIN_TABLE);
+            repaintSplitPane();
+            drbdGraph.scheduleUpdatePopupMenus();
+            repaintTree();
+        }
+    }
+
+    /** Returns whether only the health summary of the cluster is updated. */
+    public boolean isSummaryMode() {
+        return summaryMode;
+    }
+
+    /**
+     * Updates the health summary of the cluster from the latest cluster and
+     * drbd status and shows it in the clusters overview, if it changed.
+     */
+    void updateHealth() {
+        if (clStatusCanceled) {
+            return;
+        }
+        final ClusterHealth health = ClusterHealth.of(cluster.getHostsArray(),
+                                                      clusterStatus);
+        if (health.equals(cluster.getHealth())) {
+            return;
+        }
+        if (!cluster.setHealth(health)) {
+            /* the cluster was stopped meanwhile */
+            return;
+        }
+        Tools.getGUIData().getEmptyBrowser().updateClusterHealth(cluster);
+    }
+
     public void updateServerStatus(final Host host) {
         final String hostName = host.getName();
         Tools.invokeAndWait(new Runnable() {
@@ -865,7 +970,7 @@ public final class ClusterBrowser extends Browser {
         for (final ResourceGraph g : new ResourceGraph[]{drbdGraph, crmGraph}) {
             if (g != null) {
                 g.repaint();
-                g.updatePopupMenus();
+                g.scheduleUpdatePopupMenus();
             }
         }
     }
@@ -1032,8 +1137,8 @@ public final class ClusterBrowser extends Browser {
                    },
 
                    new NewOutputCallback() {
-                       private StringBuffer outputBuffer =
-                                                        new StringBuffer(300);
+                       private final InfoBlockReader blockReader =
+                                                        new InfoBlockReader();
                        @Override
                        public void output(final String output) {
                            if ("--nm--".equals(output.trim())) {
@@ -1056,36 +1161,62 @@ public final class ClusterBrowser extends Browser {
                                clusterHostsInfo.updateTable(
                                                   ClusterHostsInfo.MAIN_TABLE);
                            }
-                           outputBuffer.append(output);
-                           String drbdConfig, event;
+                           blockReader.append(output);
                            boolean drbdUpdate = false;
                            boolean eventUpdate = false;
-                           do {
-                               host.drbdStatusLock();
-                               drbdConfig =
-                                        host.getOutput("drbd", outputBuffer);
-                               if (drbdConfig != null) {
-                                   final DrbdXML newDrbdXML =
+                           InfoBlockReader.Block block;
+                           /* in the order they come, so that events
+                            * are not dropped */
+                           while ((block = blockReader.next()) != null) {
+                               if ("drbd".equals(block.getType())) {
+                                   host.drbdStatusLock();
+                                   final String drbdConfig =
+                                        host.getOutput(Host.DRBD_EVENTS_STREAM,
+                                                       block,
+                                                       true);
+                                   if (drbdConfig != null) {
+                                       final DrbdXML newDrbdXML =
                                             new DrbdXML(cluster.getHostsArray(),
                                                         drbdParameters);
-                                   newDrbdXML.update(drbdConfig);
-                                   drbdXML = newDrbdXML;
-                                   drbdUpdate = true;
-                                   firstTime.countDown();
-                               }
-                               host.drbdStatusUnlock();
-                               event = host.getOutput("event", outputBuffer);
-                               if (event != null) {
-                                   if (drbdXML.parseDrbdEvent(host.getName(),
-                                                              drbdGraph,
-                                                              event)) {
+                                       newDrbdXML.update(drbdConfig);
+                                       drbdXML = newDrbdXML;
+                                       host.setOutputApplied(
+                                                      Host.DRBD_EVENTS_STREAM,
+                                                      block);
+                                       drbdUpdate = true;
+                                       firstTime.countDown();
+                                   }
+                                   host.drbdStatusUnlock();
+                               } else if ("event".equals(block.getType())) {
+                                   final String event =
+                                        host.getOutput(Host.DRBD_EVENTS_STREAM,
+                                                       block,
+                                                       false);
+                                   long time = block.getTimeMillis();
+                                   if (time < 0) {
+                                       time = System.currentTimeMillis();
+                                   }
+                                   if (event != null
+                                       && drbdXML.parseDrbdEvent(
+                                                             host.getName(),
+                                                             drbdGraph,
+                                                             event,
+                                                             time)) {
                                        host.setDrbdStatus(true);
                                        eventUpdate = true;
                                    }
                                }
-                           } while (event != null || drbdConfig != null);
-                           Tools.chomp(outputBuffer);
-                           if (drbdUpdate) {
+                           }
+                           if (drbdUpdate || eventUpdate) {
+                               updateHealth();
+                           }
+                           final boolean summary = summaryMode;
+                           if (summary) {
+                               if (drbdUpdate || eventUpdate) {
+                                   drbdStatusDirty = true;
+                                   firstTime.countDown();
+                               }
+                           } else if (drbdUpdate) {
                                Tools.invokeLater(new Runnable() {
                             @Override
                                    public void run() {
@@ -1094,29 +1225,15 @@ public final class ClusterBrowser extends Browser {
                                    }
                                });
                            }
-                           if (eventUpdate) {
+                           if (eventUpdate && !summary) {
                                drbdGraph.repaint();
                                LOG.debug1("drbd status update: " + host.getName());
                                clusterHostsInfo.updateTable(
                                                 ClusterHostsInfo.MAIN_TABLE);
                                firstTime.countDown();
-                               final Thread thread = new Thread(
-                                   new Runnable() {
-                                       @Override
-                                       public void run() {
-                                           repaintSplitPane();
-                                           drbdGraph.updatePopupMenus();
-                                           Tools.invokeLater(
-                                               new Runnable() {
-                                                   @Override
-                                                   public void run() {
-                                                       repaintTree();
-                                                   }
-                                               }
-                                           );
-                                       }
-                                   });
-                               thread.start();
+                               repaintSplitPane();
+                               drbdGraph.scheduleUpdatePopupMenus();
+                               repaintTree();
                            }
                        }
                    });
@@ -1217,6 +1334,7 @@ public final class ClusterBrowser extends Browser {
         if (output == null || "".equals(output)) {
             clStatus.setOnlineNode(host.getName(), "no");
             setClStatus(host, false);
+            updateHealth();
             firstTime.countDown();
         } else {
             // TODO: if we get ERROR:... show it somewhere
@@ -1251,21 +1369,29 @@ public final class ClusterBrowser extends Browser {
                                    crmGraph.repaint();
                                 }
                             } else {
-                                if (clStatus.parseStatus(status)) {
+                                final boolean changed =
+                                                clStatus.parseStatus(status);
+                                if (clStatus.isFullCibNeeded()
+                                    && !clStatusRestarted) {
+                                    /* the status command sends the whole
+                                     * cib first, after it is started again */
+                                    LOG.debug1("processClusterOutput: host: "
+                                               + host.getName()
+                                               + ": restart status");
+                                    clStatusRestarted = true;
+                                    host.stopClStatus();
+                                }
+                                if (changed) {
                                     LOG.debug1("processClusterOutput: host: "
                                                + host.getName());
-                                    final ServicesInfo ssi = servicesInfo;
-                                    rscDefaultsInfo.setParameters(
-                                      clStatus.getRscDefaultsValuePairs());
-                                    ssi.setGlobalConfig(clStatus);
-                                    ssi.setAllResources(clStatus, testOnly);
-                                    if (firstTime.getCount() == 1) {
-                                        /* one more time so that id-refs work.*/
-                                        ssi.setAllResources(clStatus, testOnly);
+                                    if (summaryMode) {
+                                        crmStatusDirty = true;
+                                    } else {
+                                        updateAllResources(
+                                                clStatus,
+                                                testOnly,
+                                                firstTime.getCount() == 1);
                                     }
-                                    repaintTree();
-                                    clusterHostsInfo.updateTable(
-                                                ClusterHostsInfo.MAIN_TABLE);
                                 }
                                 final String online =
                                     clStatus.isOnlineNode(host.getName());
@@ -1276,6 +1402,7 @@ public final class ClusterBrowser extends Browser {
                                     setClStatus(host, false);
                                 }
                             }
+                            updateHealth();
                         }
                         firstTime.countDown();
                     }
@@ -1286,6 +1413,29 @@ public final class ClusterBrowser extends Browser {
         clStatusUnlock();
     }
 
+    /**
+     * Updates the resources, the tree and the hosts table from the cluster
+     * status. If only some resources or only the status changed, only
+     * these resources are updated, unless all is true.
+     */
+    private void updateAllResources(final ClusterStatus clStatus,
+                                    final boolean testOnly,
+                                    final boolean all) {
+        final ServicesInfo ssi = servicesInfo;
+        final Set<String> changedResources = clStatus.getChangedResources();
+        if (all || changedResources == null) {
+            rscDefaultsInfo.setParameters(
+                                      clStatus.getRscDefaultsValuePairs());
+            ssi.setGlobalConfig(clStatus);
+            ssi.setAllResources(clStatus, testOnly);
+        } else {
+            ssi.updateResources(clStatus, changedResources, testOnly);
+        }
+        repaintTree();
+        clusterHostsInfo.updateTable(ClusterHostsInfo.MAIN_TABLE);
+        precomputePtestPreviews();
+    }
+
     /** Starts hb status. */
     void startClStatus() {
         final CountDownLatch firstTime = new CountDownLatch(1);
@@ -1342,6 +1492,10 @@ public final class ClusterBrowser extends Browser {
                      @Override
                      public void doneError(final String ans,
                                            final int exitCode) {
+                         if (clStatusRestarted) {
+                             /* stopped for the whole cib, not offline */
+                             return;
+                         }
                          if (firstTime.getCount() == 1) {
                              LOG.debug2("startClStatus: status failed: "
                                         + host.getName()
@@ -1379,6 +1533,10 @@ public final class ClusterBrowser extends Browser {
             if (clStatusCanceled) {
                 break;
             }
+            if (clStatusRestarted) {
+                clStatusRestarted = false;
+                continue;
+            }
             try {
                 Thread.sleep(5000);
             } catch (InterruptedException ex) {
@@ -1619,10 +1777,8 @@ public final class ClusterBrowser extends Browser {
                 if (bdi == null) {
                     if (getDrbdDevHash().containsKey(disk)) {
                         /* TODO: ignoring stacked device */
-                        putDrbdDevHash();
                         continue;
                     } else {
-                        putDrbdDevHash();
                         LOG.appWarning("updateDrbdResources: could not find disk: " + disk + " on host: " + hostName);
                         continue;
                     }
@@ -1637,7 +1793,6 @@ public final class ClusterBrowser extends Browser {
             if (bd1 != null && bd2 != null) {
                 /* add DRBD resource */
                 DrbdResourceInfo dri = getDrbdResHash().get(resName);
-                putDrbdResHash();
                 final List<BlockDevInfo> bdis =
                                 new ArrayList<BlockDevInfo>(Arrays.asList(bd1,
                                                                           bd2));
@@ -1692,8 +1847,7 @@ public final class ClusterBrowser extends Browser {
                 getDrbdGraph().removeDrbdVolume(dvi);
                 final boolean lastVolume =
                             dvi.getDrbdResourceInfo().removeDrbdVolume(dvi);
-                getDrbdDevHash().remove(dvi.getDevice());
-                putDrbdDevHash();
+                removeDrbdDevice(dvi.getDevice());
                 for (final BlockDevInfo bdi : dvi.getBlockDevInfos()) {
                     bdi.removeFromDrbd();
                     bdi.removeMyself(DRBD.LIVE);
@@ -1875,75 +2029,53 @@ public final class ClusterBrowser extends Browser {
 
     /** Returns ServiceInfo object from crm id. */
     public ServiceInfo getServiceInfoFromCRMId(final String crmId) {
-        mHeartbeatIdToServiceLock();
-        final ServiceInfo si = heartbeatIdToServiceInfo.get(crmId);
-        mHeartbeatIdToServiceUnlock();
-        return si;
+        return resourceRegistry.getSnapshot().getServiceByCRMId(crmId);
     }
 
     /** Returns if the crm id is already taken. */
     public boolean isCRMId(final String crmId) {
-        mHeartbeatIdToServiceLock();
-        final boolean ret = heartbeatIdToServiceInfo.containsKey(crmId);
-        mHeartbeatIdToServiceUnlock();
-        return ret;
-    }
-
-    /** Locks heartbeatIdToServiceInfo hash. */
-    public void mHeartbeatIdToServiceLock() {
-        mHeartbeatIdToService.lock();
+        return getHeartbeatIdToServiceInfo().containsKey(crmId);
     }
 
-    /** Unlocks heartbeatIdToServiceInfo hash. */
-    public void mHeartbeatIdToServiceUnlock() {
-        mHeartbeatIdToService.unlock();
+    /**
+     * Returns unmodifiable heartbeatIdToServiceInfo hash. It does not change,
+     * when the services are added or removed.
+     */
+    public Map<String, ServiceInfo> getHeartbeatIdToServiceInfo() {
+        return resourceRegistry.getSnapshot().getCRMIdToService();
     }
 
-    /** Returns heartbeatIdToServiceInfo hash. You have to lock it. */
-    public Map<String, ServiceInfo> getHeartbeatIdToServiceInfo() {
-        return heartbeatIdToServiceInfo;
+    /** Removes the service with the heartbeat id from the hash. */
+    public void removeHeartbeatId(final String heartbeatId) {
+        resourceRegistry.removeCRMId(heartbeatId);
     }
 
     /** Returns ServiceInfo object identified by name and id. */
     public ServiceInfo getServiceInfoFromId(final String name,
                                             final String id) {
-        lockNameToServiceInfo();
         final Map<String, ServiceInfo> idToInfoHash =
-                                               nameToServiceInfoHash.get(name);
+                                               getNameToServiceInfoHash(name);
         if (idToInfoHash == null) {
-            unlockNameToServiceInfo();
             return null;
         }
-        final ServiceInfo si = idToInfoHash.get(id);
-        unlockNameToServiceInfo();
-        return si;
+        return idToInfoHash.get(id);
     }
 
-    /** Returns the name, id to service info hash. */
+    /**
+     * Returns the unmodifiable name, id to service info hash. It does not
+     * change, when the services are added or removed.
+     */
     public Map<String, Map<String, ServiceInfo>> getNameToServiceInfoHash() {
-        return nameToServiceInfoHash;
-    }
-
-    /** Locks the nameToServiceInfoHash. */
-    public void lockNameToServiceInfo() {
-        mNameToServiceLock.lock();
-    }
-
-    /** Unlocks the nameToServiceInfoHash. */
-    public void unlockNameToServiceInfo() {
-        mNameToServiceLock.unlock();
+        return resourceRegistry.getSnapshot().getNameToServices();
     }
 
     /** Returns 'existing service' list for graph popup menu. */
     public List<ServiceInfo> getExistingServiceList(final ServiceInfo p) {
         final List<ServiceInfo> existingServiceList =
                                                   new ArrayList<ServiceInfo>();
-        lockNameToServiceInfo();
-        for (final String name : nameToServiceInfoHash.keySet()) {
-            final Map<String, ServiceInfo> idHash =
-                                            nameToServiceInfoHash.get(name);
-            for (final String id : idHash.keySet()) {
-                final ServiceInfo si = idHash.get(id);
+        for (final Map<String, ServiceInfo> idHash
+                                  : getNameToServiceInfoHash().values()) {
+            for (final ServiceInfo si : idHash.values()) {
                 if (si.getService().isOrphaned()) {
                     continue;
                 }
@@ -1958,7 +2090,6 @@ public final class ClusterBrowser extends Browser {
                 }
             }
         }
-        unlockNameToServiceInfo();
         return existingServiceList;
     }
 
@@ -1972,23 +2103,16 @@ public final class ClusterBrowser extends Browser {
     public void removeFromServiceInfoHash(final ServiceInfo serviceInfo) {
         // TODO: it comes here twice sometimes
         final Service service = serviceInfo.getService();
-        lockNameToServiceInfo();
-        final Map<String, ServiceInfo> idToInfoHash =
-                                 nameToServiceInfoHash.get(service.getName());
-        if (idToInfoHash != null) {
-            idToInfoHash.remove(service.getId());
-            if (idToInfoHash.isEmpty()) {
-                nameToServiceInfoHash.remove(service.getName());
-            }
-        }
-        unlockNameToServiceInfo();
+        resourceRegistry.removeService(service.getName(), service.getId());
     }
 
-    /** Returns nameToServiceInfoHash for the specified service.
-     *  You must lock it when you use it. */
+    /**
+     * Returns unmodifiable nameToServiceInfoHash for the specified service
+     * or null.
+     */
     public Map<String, ServiceInfo> getNameToServiceInfoHash(
                                                         final String name) {
-        return nameToServiceInfoHash.get(name);
+        return getNameToServiceInfoHash().get(name);
     }
 
     /**
@@ -2026,15 +2150,9 @@ public final class ClusterBrowser extends Browser {
                 newPmId = pmId + id;
                 si.getService().setHeartbeatId(newPmId);
             }
-            mHeartbeatIdToServiceLock();
-            heartbeatIdToServiceInfo.put(newPmId, si);
-            mHeartbeatIdToServiceUnlock();
+            resourceRegistry.putCRMId(newPmId, si);
         } else {
-            mHeartbeatIdToServiceLock();
-            if (heartbeatIdToServiceInfo.get(pmId) == null) {
-                heartbeatIdToServiceInfo.put(pmId, si);
-            }
-            mHeartbeatIdToServiceUnlock();
+            resourceRegistry.putCRMIdIfAbsent(pmId, si);
         }
     }
 
@@ -2043,14 +2161,11 @@ public final class ClusterBrowser extends Browser {
      * This is usefull if something have changed.
      */
     public void resetFilesystems() {
-        mHeartbeatIdToServiceLock();
-        for (String hbId : heartbeatIdToServiceInfo.keySet()) {
-            final ServiceInfo si = heartbeatIdToServiceInfo.get(hbId);
+        for (final ServiceInfo si : getHeartbeatIdToServiceInfo().values()) {
             if (si.getName().equals("Filesystem")) {
                 si.setInfoPanel(null);
             }
         }
-        mHeartbeatIdToServiceUnlock();
     }
 
     /** Check if the id exists for the service already, if so add _$index
@@ -2061,19 +2176,14 @@ public final class ClusterBrowser extends Browser {
             return id;
         }
         String newId = id;
-        lockNameToServiceInfo();
-        try {
-            final Map<String, ServiceInfo> idToInfoHash =
-                                     nameToServiceInfoHash.get(serviceName);
-            int index = 2;
-            if (idToInfoHash != null) {
-                while (idToInfoHash.containsKey(newId)) {
-                    newId = id + "_" + index;
-                    index++;
-                }
+        final Map<String, ServiceInfo> idToInfoHash =
+                                       getNameToServiceInfoHash(serviceName);
+        int index = 2;
+        if (idToInfoHash != null) {
+            while (idToInfoHash.containsKey(newId)) {
+                newId = id + "_" + index;
+                index++;
             }
-        } finally {
-            unlockNameToServiceInfo();
         }
         return newId;
     }
@@ -2084,19 +2194,24 @@ public final class ClusterBrowser extends Browser {
      * contains a hash with id as a key and ServiceInfo as a value.
      */
     public void addNameToServiceInfoHash(final ServiceInfo serviceInfo) {
+        /* the new id depends on the ids, that are already in the hash */
+        synchronized (resourceRegistry) {
+            addNameToServiceInfoHashLocked(serviceInfo);
+        }
+    }
+
+    /** Adds ServiceInfo in the name to ServiceInfo hash, with the lock. */
+    private void addNameToServiceInfoHashLocked(final ServiceInfo serviceInfo) {
         /* add to the hash with service name and id as keys */
         final Service service = serviceInfo.getService();
-        lockNameToServiceInfo();
-        Map<String, ServiceInfo> idToInfoHash =
-                                  nameToServiceInfoHash.get(service.getName());
+        final Map<String, ServiceInfo> idToInfoHash =
+                             getNameToServiceInfoHash(service.getName());
         String csPmId = null;
         final ServiceInfo cs = serviceInfo.getContainedService();
         if (cs != null) {
             csPmId = cs.getService().getName() + "_" + cs.getService().getId();
         }
         if (idToInfoHash == null) {
-            idToInfoHash = new TreeMap<String, ServiceInfo>(
-                                                String.CASE_INSENSITIVE_ORDER);
             if (service.getId() == null) {
                 if (csPmId == null) {
                     service.setId("1");
@@ -2146,9 +2261,9 @@ public final class ClusterBrowser extends Browser {
                 }
             }
         }
-        idToInfoHash.put(service.getId(), serviceInfo);
-        nameToServiceInfoHash.put(service.getName(), idToInfoHash);
-        unlockNameToServiceInfo();
+        resourceRegistry.putService(service.getName(),
+                                    service.getId(),
+                                    serviceInfo);
     }
 
     /**
@@ -2214,6 +2329,15 @@ public final class ClusterBrowser extends Browser {
             this.menuHost = menuHost;
         }
 
+        /**
+         * Returns the key of the action, under which the ptest result is
+         * cached. It can be overwritten, so that the result can be computed
+         * in advance by another callback with the same key.
+         */
+        protected Object getPreviewKey() {
+            return this;
+        }
+
         /** Can be overwritten to disable the whole thing. */
         @Override
         public boolean isEnabled() {
@@ -2261,15 +2385,24 @@ public final class ClusterBrowser extends Browser {
                                             startTestLatch);
                 ptestLockAcquire();
                 try {
-                    clusterStatus.setPtestData(null);
                     Host h;
                     if (menuHost == null) {
                         h = getDCHost();
                     } else {
                         h = menuHost;
                     }
-                    action(h);
-                    final PtestData ptestData = new PtestData(CRM.getPtest(h));
+                    final String cibVersion = clusterStatus.getCibVersion();
+                    PtestData ptestData =
+                           ptestPreviews.get(h, cibVersion, getPreviewKey());
+                    if (ptestData == null) {
+                        clusterStatus.setPtestData(null);
+                        action(h);
+                        ptestData = new PtestData(CRM.getPtest(h));
+                        ptestPreviews.put(h,
+                                          cibVersion,
+                                          getPreviewKey(),
+                                          ptestData);
+                    }
                     component.setToolTipText(ptestData.getToolTip());
                     clusterStatus.setPtestData(ptestData);
                 } finally {
@@ -2407,6 +2540,32 @@ public final class ClusterBrowser extends Browser {
         drbdtestdataLockRelease();
     }
 
+    /**
+     * Computes the ptest results of the likely actions of the selected
+     * service in the background, so that they are ready, when the mouse
+     * gets over the menu items. It is called on the EDT, when the service
+     * is selected.
+     */
+    public void precomputePtestPreviews(final ServiceInfo si) {
+        previewService = si;
+        precomputePtestPreviews();
+    }
+
+    /**
+     * Computes the ptest results of the last selected service again, e.g.
+     * after the cib changed.
+     */
+    void precomputePtestPreviews() {
+        final ServiceInfo si = previewService;
+        if (si == null || si.getService().isRemoved()) {
+            return;
+        }
+        final List<ClMenuItemCallback> actions = si.getPreviewCallbacks();
+        if (!actions.isEmpty()) {
+            ptestPreviews.precompute(actions);
+        }
+    }
+
     /** Acquire ptest lock. */
     public void ptestLockAcquire() {
         mPtestLock.lock();
@@ -2468,16 +2627,45 @@ public final class ClusterBrowser extends Browser {
     }
 
     /**
-     * Returns a hash from drbd device to drbd volume info. putDrbdDevHash
-     * must follow after you're done. */
+     * Returns the indexes of the resources. The changes, that depend on the
+     * current indexes, are done while holding its lock.
+     */
+    public ResourceRegistry getResourceRegistry() {
+        return resourceRegistry;
+    }
+
+    /**
+     * Returns an unmodifiable hash from drbd device to drbd volume info. It
+     * does not change, when the volumes are added or removed.
+     */
     public Map<String, DrbdVolumeInfo> getDrbdDevHash() {
-        mDrbdDevHashLock.lock();
-        return drbdDevHash;
+        return resourceRegistry.getSnapshot().getDrbdDevices();
     }
 
-    /** Unlock drbd dev hash. */
-    public void putDrbdDevHash() {
-        mDrbdDevHashLock.unlock();
+    /** Adds the drbd volume info with the drbd device to the hash. */
+    public void putDrbdDevice(final String device, final DrbdVolumeInfo dvi) {
+        resourceRegistry.putDrbdDevice(device, dvi);
+    }
+
+    /** Removes the drbd device from the hash. */
+    public void removeDrbdDevice(final String device) {
+        resourceRegistry.removeDrbdDevice(device);
+    }
+
+    /** Returns volume info object from the drbd minor number or null. */
+    public DrbdVolumeInfo getDrbdVolumeFromMinor(final String minor) {
+        return resourceRegistry.getSnapshot().getDrbdVolumeByMinor(minor);
+    }
+
+    /** Returns the block device on the host or null. */
+    BlockDevInfo getBlockDevInfo(final String hostName, final String disk) {
+        return resourceRegistry.getSnapshot().getBlockDevInfo(hostName, disk);
+    }
+
+    /** Replaces the block devices of the host in the index. */
+    void putBlockDevInfos(final String hostName,
+                          final Collection<BlockDevInfo> bdis) {
+        resourceRegistry.putBlockDevInfos(hostName, bdis);
     }
 
     /**
@@ -2499,51 +2687,50 @@ public final class ClusterBrowser extends Browser {
             } else {
                 vol = "0";
             }
-            final DrbdResourceInfo dri = getDrbdResHash().get(res);
-            putDrbdResHash();
-            if (dri != null) {
-                return dri.getDrbdVolumeInfo(vol);
-            }
+            return resourceRegistry.getSnapshot().getDrbdVolume(res, vol);
         }
         return null;
     }
 
     /**
-     * Returns a hash from resource name to drbd resource info hash.
-     * Get locks the hash and put unlocks it
+     * Returns an unmodifiable hash from resource name to drbd resource info.
+     * It does not change, when the resources are added or removed.
      */
     public Map<String, DrbdResourceInfo> getDrbdResHash() {
-        mDrbdResHashLock.lock();
-        return drbdResHash;
+        return resourceRegistry.getSnapshot().getDrbdResources();
+    }
+
+    /** Returns drbd resource info with the name or null. */
+    public DrbdResourceInfo getDrbdResourceInfo(final String name) {
+        return resourceRegistry.getSnapshot().getDrbdResource(name);
+    }
+
+    /** Adds the drbd resource info with the name to the hash. */
+    public void putDrbdResource(final String name,
+                                final DrbdResourceInfo dri) {
+        resourceRegistry.putDrbdResource(name, dri);
     }
 
-    /** Done using drbdResHash. */
-    public void putDrbdResHash() {
-        mDrbdResHashLock.unlock();
+    /** Removes the drbd resource from the hash and returns it or null. */
+    public DrbdResourceInfo removeDrbdResource(final String name) {
+        return resourceRegistry.removeDrbdResource(name);
     }
 
     /** Returns (shallow) copy of all drbdresource info objects. */
     public List<DrbdResourceInfo> getDrbdResHashValues() {
-        final List<DrbdResourceInfo> values =
-                   new ArrayList<DrbdResourceInfo>(getDrbdResHash().values());
-        putDrbdResHash();
-        return values;
+        return new ArrayList<DrbdResourceInfo>(getDrbdResHash().values());
     }
 
     /** Reloads all combo boxes that need to be reloaded. */
     public void reloadAllComboBoxes(final ServiceInfo exceptThisOne) {
-        lockNameToServiceInfo();
-        for (final String name : nameToServiceInfoHash.keySet()) {
-            final Map<String, ServiceInfo> idToInfoHash =
-                                             nameToServiceInfoHash.get(name);
-            for (final String id : idToInfoHash.keySet()) {
-                final ServiceInfo si = idToInfoHash.get(id);
+        for (final Map<String, ServiceInfo> idToInfoHash
+                                  : getNameToServiceInfoHash().values()) {
+            for (final ServiceInfo si : idToInfoHash.values()) {
                 if (si != exceptThisOne) {
                     si.reloadComboBoxes();
                 }
             }
         }
-        unlockNameToServiceInfo();
     }
 
     /** Returns object that holds data of all VMs. */
@@ -2664,9 +2851,7 @@ public final class ClusterBrowser extends Browser {
         promoted. */
     public boolean isOneMaster(final List<String> rscs) {
         for (final String id : rscs) {
-            mHeartbeatIdToServiceLock();
-            final ServiceInfo si = heartbeatIdToServiceInfo.get(id);
-            mHeartbeatIdToServiceUnlock();
+            final ServiceInfo si = getServiceInfoFromCRMId(id);
             if (si == null) {
                 continue;
             }
@@ -130,6 +130,7 @@ public final class ClustersPanel extends JPanel {
                 final ClusterTab source = prevSelected;
                 final JTabbedPane prevSource = (JTabbedPane) evt.getSource();
                 prevSelected = (ClusterTab) prevSource.getSelectedComponent();
+                updateSummaryModes();
                 String sourceName = null;
                 if (source != null) {
                     sourceName = source.getName();
@@ -152,6 +153,45 @@ public final class ClustersPanel extends JPanel {
         });
     }
 
+    /**
+     * Sets the clusters, whose tabs are not shown, to the summary mode, in
+     * which only their health is updated, and the shown one to the full
+     * mode.
+     */
+    private void updateSummaryModes() {
+        final Component selected = tabbedPane.getSelectedComponent();
+        final Map<ClusterBrowser, Boolean> modes =
+                                        new HashMap<ClusterBrowser, Boolean>();
+        for (int i = 0; i < tabbedPane.getTabCount(); i++) {
+            final Component tab = tabbedPane.getComponentAt(i);
+            if (!(tab instanceof ClusterTab)) {
+                continue;
+            }
+            final Cluster cluster = ((ClusterTab) tab).getCluster();
+            if (cluster == null) {
+                continue;
+            }
+            final ClusterBrowser cb = cluster.getBrowser();
+            final boolean summaryMode = tab != selected;
+            if (cb != null && cb.isSummaryMode() != summaryMode) {
+                modes.put(cb, summaryMode);
+            }
+        }
+        if (modes.isEmpty()) {
+            return;
+        }
+        final Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (final Map.Entry<ClusterBrowser, Boolean> modeEntry
+                                                        : modes.entrySet()) {
+                    modeEntry.getKey().setSummaryMode(modeEntry.getValue());
+                }
+            }
+        });
+        t.start();
+    }
+
     /** Adds a new cluster tab. */
     void addTab(final Cluster cluster) {
         LOG.debug2("addTab: cluster: " + cluster.getName());
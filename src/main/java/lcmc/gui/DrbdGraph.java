@@ -39,6 +39,7 @@ import java.awt.Graphics2D;
 import java.awt.geom.Point2D;
 import java.awt.Paint;
 import java.awt.Color;
+import java.util.Arrays;
 import java.awt.BasicStroke;
 
 import edu.uci.ics.jung.graph.DirectedSparseGraph;
@@ -276,6 +277,8 @@ public final class DrbdGraph extends ResourceGraph {
             }
             prevBdi = bdi;
         }
+        getClusterBrowser().putBlockDevInfos(hostDrbdInfo.toString(),
+                                             blockDevInfos);
     }
 
     /** Scale and add hosts if they appeared. */
@@ -899,6 +902,12 @@ public final class DrbdGraph extends ResourceGraph {
      */
     public BlockDevInfo findBlockDevInfo(final String hostName,
                                          final String disk) {
+        final BlockDevInfo indexed =
+                          getClusterBrowser().getBlockDevInfo(hostName, disk);
+        if (indexed != null) {
+            return indexed;
+        }
+        /* the device the disk links to could change since the last update */
         HostDrbdInfo hi = null;
         for (final HostDrbdInfo h : hostBDVerticesMap.keySet()) {
             hi = h;
@@ -922,6 +931,25 @@ public final class DrbdGraph extends ResourceGraph {
         return null;
     }
 
+    /**
+     * Finds BlockDevInfo object of the drbd device with the minor number on
+     * the specified host and returns it or null.
+     */
+    public BlockDevInfo findBlockDevInfoByMinor(final String hostName,
+                                                final String minor) {
+        final DrbdVolumeInfo dvi =
+                            getClusterBrowser().getDrbdVolumeFromMinor(minor);
+        if (dvi == null) {
+            return null;
+        }
+        for (final BlockDevInfo bdi : dvi.getBlockDevInfos()) {
+            if (hostName.equals(bdi.getHost().getName())) {
+                return bdi;
+            }
+        }
+        return null;
+    }
+
     /** Returns tool tip when mouse is over a block device vertex. */
     @Override
     String getVertexToolTip(final Vertex v) {
@@ -1107,34 +1135,56 @@ public final class DrbdGraph extends ResourceGraph {
             } else {
                 g2d.setColor(Color.BLACK);
             }
+        } else if (tOnly && isPickedResource(v)) {
+            g2d.setColor(Color.RED);
         } else {
-            boolean pickedResource = false;
-            if (tOnly) {
-                lockGraph();
-                for (final Edge e : getGraph().getInEdges(v)) {
-                    if (isPicked(e)) {
-                        pickedResource = true;
-                        break;
-                    }
+            g2d.setColor(Color.WHITE);
+        }
+        g2d.setStroke(new BasicStroke(1.5f));
+        g2d.draw(shape);
+    }
+
+    /** Returns whether an edge of the vertex is picked. */
+    private boolean isPickedResource(final Vertex v) {
+        lockGraph();
+        try {
+            for (final Edge e : getGraph().getInEdges(v)) {
+                if (isPicked(e)) {
+                    return true;
                 }
-                if (!pickedResource) {
-                    for (final Edge e : getGraph().getOutEdges(v)) {
-                        if (isPicked(e)) {
-                            pickedResource = true;
-                            break;
-                        }
-                    }
+            }
+            for (final Edge e : getGraph().getOutEdges(v)) {
+                if (isPicked(e)) {
+                    return true;
                 }
-                unlockGraph();
             }
-            if (pickedResource) {
-                g2d.setColor(Color.RED);
-            } else {
-                g2d.setColor(Color.WHITE);
+            return false;
+        } finally {
+            unlockGraph();
+        }
+    }
+
+    /** Returns the state of the vertex, that is painted in drawInside. */
+    @Override
+    protected String getVertexRenderState(final Vertex v) {
+        final StringBuilder state = new StringBuilder(50);
+        state.append(getUsed(v));
+        if (isVertexBlockDevice(v)) {
+            final BlockDevInfo bdi = (BlockDevInfo) getInfo(v);
+            if (bdi != null && bdi.getBlockDevice().isDrbdMetaDisk()) {
+                state.append(getVertexFillColor(blockDeviceToVertexMap.get(
+                    bdi.getBlockDevice().getMetaDiskOfBlockDevices().get(0))));
+            }
+        } else {
+            final HostDrbdInfo hi = (HostDrbdInfo) getInfo(v);
+            if (hi != null) {
+                state.append(Arrays.toString(hi.getHost().getDrbdColors()));
             }
         }
-        g2d.setStroke(new BasicStroke(1.5f));
-        g2d.draw(shape);
+        if (isTestOnly() && !isPicked(v)) {
+            state.append(isPickedResource(v));
+        }
+        return state.toString();
     }
 
     /** Returns whether to show a hollow arrow. */
@@ -77,6 +77,11 @@ public final class EmptyBrowser extends Browser {
         allHostsInfo.setDisconnected(cluster);
     }
 
+    /** Shows the health summary of the cluster in its box. */
+    public void updateClusterHealth(final Cluster cluster) {
+        allHostsInfo.updateClusterHealth(cluster);
+    }
+
     /** Sets the empty view panel. */
     void setEmptyViewPanel(final EmptyViewPanel emptyViewPanel) {
         this.emptyViewPanel = emptyViewPanel;
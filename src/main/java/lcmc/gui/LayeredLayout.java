@@ -0,0 +1,886 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2013, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.gui;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Layered (Sugiyama style) layout of a directed graph, e.g. of the order
+ * and colocation constraints.
+ *
+ * The cycles are broken by reversing the back edges, the nodes are
+ * assigned to the layers by the longest path, the long edges get dummy
+ * nodes, the crossings are reduced by the barycenter heuristic and the
+ * nodes are moved towards their neighbours. The weakly connected
+ * components are laid out separately and packed in rows, that are not
+ * wider than the maximum width.
+ *
+ * Nodes with fixed positions are not moved, the other nodes are placed
+ * near their fixed neighbours, so that adding a node to an arranged graph
+ * does not change it.
+ *
+ * It does not use any swing or graph objects, so that it can run in a
+ * background thread on a snapshot of the graph. The positions are the
+ * centers of the nodes.
+ *
+ * @author Rasto Levrinc
+ *
+ */
+final class LayeredLayout<N> {
+    /** Number of the barycenter sweeps, down and up. */
+    private static final int ORDER_SWEEPS = 12;
+    /** Number of the passes, that move the nodes towards the neighbours. */
+    private static final int POSITION_PASSES = 8;
+    /** Width of the dummy nodes. */
+    private static final int DUMMY_WIDTH = 10;
+    /** Horizontal space between the nodes. */
+    private final int nodeSpacing;
+    /** Vertical space between the layers. */
+    private final int layerSpacing;
+    /** Maximum width of a row of components. */
+    private final int maxWidth;
+    /** Nodes and their indexes. */
+    private final Map<N, Integer> nodeIndexes = new LinkedHashMap<N, Integer>();
+    /** Nodes by index. */
+    private final List<N> nodes = new ArrayList<N>();
+    /** Widths of the nodes. */
+    private final List<Integer> widths = new ArrayList<Integer>();
+    /** Heights of the nodes. */
+    private final List<Integer> heights = new ArrayList<Integer>();
+    /** Edges as pairs of the node indexes. */
+    private final List<int[]> edges = new ArrayList<int[]>();
+    /** Fixed positions of the nodes. */
+    private final Map<Integer, Point2D> fixed =
+                                            new HashMap<Integer, Point2D>();
+
+    /** Prepares a new <code>LayeredLayout</code> object. */
+    LayeredLayout(final int nodeSpacing,
+                  final int layerSpacing,
+                  final int maxWidth) {
+        this.nodeSpacing = nodeSpacing;
+        this.layerSpacing = layerSpacing;
+        this.maxWidth = maxWidth;
+    }
+
+    /** Adds the node with its size. */
+    void addNode(final N node, final int width, final int height) {
+        if (nodeIndexes.containsKey(node)) {
+            return;
+        }
+        nodeIndexes.put(node, nodes.size());
+        nodes.add(node);
+        widths.add(width);
+        heights.add(height);
+    }
+
+    /** Adds the edge, the nodes must be added before. */
+    void addEdge(final N from, final N to) {
+        final Integer f = nodeIndexes.get(from);
+        final Integer t = nodeIndexes.get(to);
+        if (f != null && t != null && !f.equals(t)) {
+            edges.add(new int[]{f, t});
+        }
+    }
+
+    /** Fixes the position of the node, the layout will not move it. */
+    void setFixedPosition(final N node, final Point2D pos) {
+        final Integer i = nodeIndexes.get(node);
+        if (i != null && pos != null) {
+            fixed.put(i, pos);
+        }
+    }
+
+    /**
+     * Returns the positions of the nodes, that are not fixed. The layout
+     * starts at the origin, the fixed nodes can be anywhere.
+     */
+    Map<N, Point2D> layout(final double originX, final double originY) {
+        final int n = nodes.size();
+        final int[][] succ = new int[n][];
+        final int[][] pred = new int[n][];
+        removeCycles(n, succ, pred);
+        final int[] layers = assignLayers(n, succ, pred);
+        final Map<N, Point2D> positions = new LinkedHashMap<N, Point2D>();
+        if (fixed.isEmpty()) {
+            layoutComponents(n, succ, pred, layers, originX, originY,
+                             positions);
+        } else {
+            placeIncrementally(n, succ, pred, layers, originX, originY,
+                               positions);
+        }
+        return positions;
+    }
+
+    /**
+     * Fills the successors and predecessors, with the back edges of the
+     * depth first search reversed, so that the graph has no cycles.
+     */
+    private void removeCycles(final int n,
+                              final int[][] succ,
+                              final int[][] pred) {
+        final int[][] out = adjacency(n, edges, true);
+        final List<int[]> dag = new ArrayList<int[]>(edges.size());
+        /* 0 not visited, 1 on stack, 2 done */
+        final byte[] state = new byte[n];
+        final int[] stack = new int[n];
+        final int[] next = new int[n];
+        for (int root = 0; root < n; root++) {
+            if (state[root] != 0) {
+                continue;
+            }
+            int top = 0;
+            stack[top] = root;
+            state[root] = 1;
+            while (top >= 0) {
+                final int u = stack[top];
+                if (next[u] < out[u].length) {
+                    final int v = out[u][next[u]++];
+                    if (state[v] == 0) {
+                        dag.add(new int[]{u, v});
+                        state[v] = 1;
+                        stack[++top] = v;
+                    } else if (state[v] == 1) {
+                        /* back edge */
+                        dag.add(new int[]{v, u});
+                    } else {
+                        dag.add(new int[]{u, v});
+                    }
+                } else {
+                    state[u] = 2;
+                    top--;
+                }
+            }
+        }
+        final int[][] s = adjacency(n, dag, true);
+        final int[][] p = adjacency(n, dag, false);
+        System.arraycopy(s, 0, succ, 0, n);
+        System.arraycopy(p, 0, pred, 0, n);
+    }
+
+    /** Returns the adjacency lists, outgoing or incoming. */
+    private static int[][] adjacency(final int n,
+                                     final List<int[]> edgeList,
+                                     final boolean outgoing) {
+        final int[] counts = new int[n];
+        for (final int[] e : edgeList) {
+            counts[outgoing ? e[0] : e[1]]++;
+        }
+        final int[][] adj = new int[n][];
+        for (int i = 0; i < n; i++) {
+            adj[i] = new int[counts[i]];
+            counts[i] = 0;
+        }
+        for (final int[] e : edgeList) {
+            final int from = outgoing ? e[0] : e[1];
+            final int to = outgoing ? e[1] : e[0];
+            adj[from][counts[from]++] = to;
+        }
+        return adj;
+    }
+
+    /** Returns the layers by the longest path from the sources. */
+    private static int[] assignLayers(final int n,
+                                      final int[][] succ,
+                                      final int[][] pred) {
+        final int[] layers = new int[n];
+        final int[] inDegree = new int[n];
+        final int[] queue = new int[n];
+        int tail = 0;
+        for (int i = 0; i < n; i++) {
+            inDegree[i] = pred[i].length;
+            if (inDegree[i] == 0) {
+                queue[tail++] = i;
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            final int u = queue[head];
+            for (final int v : succ[u]) {
+                if (layers[u] + 1 > layers[v]) {
+                    layers[v] = layers[u] + 1;
+                }
+                if (--inDegree[v] == 0) {
+                    queue[tail++] = v;
+                }
+            }
+        }
+        return layers;
+    }
+
+    /** Returns the weakly connected components, lists of node indexes. */
+    private static List<List<Integer>> components(final int n,
+                                                  final int[][] succ,
+                                                  final int[][] pred) {
+        final List<List<Integer>> components = new ArrayList<List<Integer>>();
+        final boolean[] seen = new boolean[n];
+        final int[] stack = new int[n];
+        for (int root = 0; root < n; root++) {
+            if (seen[root]) {
+                continue;
+            }
+            final List<Integer> component = new ArrayList<Integer>();
+            int top = 0;
+            stack[top] = root;
+            seen[root] = true;
+            while (top >= 0) {
+                final int u = stack[top--];
+                component.add(u);
+                for (final int[] adj : new int[][]{succ[u], pred[u]}) {
+                    for (final int v : adj) {
+                        if (!seen[v]) {
+                            seen[v] = true;
+                            stack[++top] = v;
+                        }
+                    }
+                }
+            }
+            components.add(component);
+        }
+        return components;
+    }
+
+    /**
+     * Lays out every component and packs them in rows, the bigger ones
+     * first.
+     */
+    private void layoutComponents(final int n,
+                                  final int[][] succ,
+                                  final int[][] pred,
+                                  final int[] layers,
+                                  final double originX,
+                                  final double originY,
+                                  final Map<N, Point2D> positions) {
+        final List<List<Integer>> components = components(n, succ, pred);
+        final List<Component> laidOut = new ArrayList<Component>();
+        final List<Integer> singles = new ArrayList<Integer>();
+        for (final List<Integer> component : components) {
+            if (component.size() == 1) {
+                singles.add(component.get(0));
+            } else {
+                laidOut.add(layoutComponent(component, succ, layers));
+            }
+        }
+        if (!singles.isEmpty()) {
+            laidOut.add(gridComponent(singles));
+        }
+        Collections.sort(laidOut, new Comparator<Component>() {
+            @Override
+            public int compare(final Component c1, final Component c2) {
+                return Double.compare(c2.height, c1.height);
+            }
+        });
+        double x = originX;
+        double y = originY;
+        double rowHeight = 0;
+        for (final Component c : laidOut) {
+            if (x > originX && x + c.width > originX + maxWidth) {
+                x = originX;
+                y += rowHeight + layerSpacing;
+                rowHeight = 0;
+            }
+            for (final Map.Entry<Integer, Point2D> e
+                                                : c.positions.entrySet()) {
+                final Point2D p = e.getValue();
+                positions.put(nodes.get(e.getKey()),
+                              new Point2D.Double(x + p.getX(),
+                                                 y + p.getY()));
+            }
+            x += c.width + nodeSpacing * 2;
+            rowHeight = Math.max(rowHeight, c.height);
+        }
+    }
+
+    /** Places the nodes without edges in a grid. */
+    private Component gridComponent(final List<Integer> singles) {
+        final Component c = new Component();
+        double x = 0;
+        double y = 0;
+        double rowHeight = 0;
+        for (final int i : singles) {
+            final int w = widths.get(i);
+            final int h = heights.get(i);
+            if (x > 0 && x + w > maxWidth) {
+                x = 0;
+                y += rowHeight + layerSpacing;
+                rowHeight = 0;
+            }
+            c.positions.put(i, new Point2D.Double(x + w / 2.0, y + h / 2.0));
+            c.width = Math.max(c.width, x + w);
+            c.height = Math.max(c.height, y + h);
+            x += w + nodeSpacing;
+            rowHeight = Math.max(rowHeight, h);
+        }
+        return c;
+    }
+
+    /** Lays out one connected component with the origin at 0, 0. */
+    private Component layoutComponent(final List<Integer> component,
+                                      final int[][] succ,
+                                      final int[] layers) {
+        /* real nodes and dummy nodes of the long edges */
+        final List<Integer> layerOf = new ArrayList<Integer>();
+        final List<Integer> nodeOf = new ArrayList<Integer>();
+        final Map<Integer, Integer> local = new HashMap<Integer, Integer>();
+        int minLayer = Integer.MAX_VALUE;
+        for (final int i : component) {
+            minLayer = Math.min(minLayer, layers[i]);
+        }
+        for (final int i : component) {
+            local.put(i, layerOf.size());
+            layerOf.add(layers[i] - minLayer);
+            nodeOf.add(i);
+        }
+        final List<int[]> segments = new ArrayList<int[]>();
+        for (final int u : component) {
+            for (final int v : succ[u]) {
+                int prev = local.get(u);
+                for (int l = layers[u] + 1; l < layers[v]; l++) {
+                    final int dummy = layerOf.size();
+                    layerOf.add(l - minLayer);
+                    nodeOf.add(-1);
+                    segments.add(new int[]{prev, dummy});
+                    prev = dummy;
+                }
+                segments.add(new int[]{prev, local.get(v)});
+            }
+        }
+        final int size = layerOf.size();
+        int layerCount = 0;
+        for (final int l : layerOf) {
+            layerCount = Math.max(layerCount, l + 1);
+        }
+        final int[][] down = adjacency(size, segments, true);
+        final int[][] up = adjacency(size, segments, false);
+        final int[][] order = initialOrder(size, layerOf, layerCount, down);
+        reduceCrossings(order, down, up);
+        final double[] widthOf = new double[size];
+        final double[] heightOf = new double[size];
+        for (int i = 0; i < size; i++) {
+            if (nodeOf.get(i) < 0) {
+                widthOf[i] = DUMMY_WIDTH;
+            } else {
+                widthOf[i] = widths.get(nodeOf.get(i));
+                heightOf[i] = heights.get(nodeOf.get(i));
+            }
+        }
+        final double[] xs = assignX(order, down, up, widthOf);
+        final Component c = new Component();
+        double y = 0;
+        for (final int[] layer : order) {
+            double layerHeight = 0;
+            for (final int i : layer) {
+                layerHeight = Math.max(layerHeight, heightOf[i]);
+            }
+            for (final int i : layer) {
+                if (nodeOf.get(i) >= 0) {
+                    c.positions.put(nodeOf.get(i),
+                                    new Point2D.Double(xs[i],
+                                                       y + layerHeight / 2));
+                }
+                c.width = Math.max(c.width, xs[i] + widthOf[i] / 2);
+            }
+            y += layerHeight + layerSpacing;
+            c.height = y - layerSpacing;
+        }
+        return c;
+    }
+
+    /** Returns the nodes of every layer in the depth first order. */
+    private static int[][] initialOrder(final int size,
+                                        final List<Integer> layerOf,
+                                        final int layerCount,
+                                        final int[][] down) {
+        final List<List<Integer>> layers = new ArrayList<List<Integer>>();
+        for (int l = 0; l < layerCount; l++) {
+            layers.add(new ArrayList<Integer>());
+        }
+        final boolean[] seen = new boolean[size];
+        final int[] stack = new int[size];
+        for (int root = 0; root < size; root++) {
+            if (seen[root] || layerOf.get(root) != 0) {
+                continue;
+            }
+            int top = 0;
+            stack[top] = root;
+            seen[root] = true;
+            while (top >= 0) {
+                final int u = stack[top--];
+                layers.get(layerOf.get(u)).add(u);
+                for (int k = down[u].length - 1; k >= 0; k--) {
+                    final int v = down[u][k];
+                    if (!seen[v]) {
+                        seen[v] = true;
+                        stack[++top] = v;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            if (!seen[i]) {
+                layers.get(layerOf.get(i)).add(i);
+            }
+        }
+        final int[][] order = new int[layerCount][];
+        for (int l = 0; l < layerCount; l++) {
+            final List<Integer> layer = layers.get(l);
+            order[l] = new int[layer.size()];
+            for (int k = 0; k < order[l].length; k++) {
+                order[l][k] = layer.get(k);
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Reorders the layers by the barycenters of the neighbours, sweeping
+     * down and up, and keeps the order with the least crossings.
+     */
+    private static void reduceCrossings(final int[][] order,
+                                        final int[][] down,
+                                        final int[][] up) {
+        final int size = down.length;
+        final double[] pos = new double[size];
+        final double[] barycenters = new double[size];
+        updatePositions(order, pos);
+        int[][] best = copy(order);
+        long bestCrossings = crossings(order, down, pos);
+        for (int sweep = 0; sweep < ORDER_SWEEPS && bestCrossings > 0;
+             sweep++) {
+            if (sweep % 2 == 0) {
+                for (int l = 1; l < order.length; l++) {
+                    sortByBarycenter(order[l], up, pos, barycenters);
+                }
+            } else {
+                for (int l = order.length - 2; l >= 0; l--) {
+                    sortByBarycenter(order[l], down, pos, barycenters);
+                }
+            }
+            final long c = crossings(order, down, pos);
+            if (c < bestCrossings) {
+                bestCrossings = c;
+                best = copy(order);
+            }
+        }
+        for (int l = 0; l < order.length; l++) {
+            order[l] = best[l];
+        }
+    }
+
+    /** Sorts the layer by the barycenters of the neighbours. */
+    private static void sortByBarycenter(final int[] layer,
+                                         final int[][] neighbours,
+                                         final double[] pos,
+                                         final double[] barycenters) {
+        final Integer[] sorted = new Integer[layer.length];
+        for (int k = 0; k < layer.length; k++) {
+            final int u = layer[k];
+            sorted[k] = u;
+            if (neighbours[u].length == 0) {
+                /* stays where it is */
+                barycenters[u] = pos[u];
+            } else {
+                double sum = 0;
+                for (final int v : neighbours[u]) {
+                    sum += pos[v];
+                }
+                barycenters[u] = sum / neighbours[u].length;
+            }
+        }
+        Arrays.sort(sorted, new Comparator<Integer>() {
+            @Override
+            public int compare(final Integer u, final Integer v) {
+                return Double.compare(barycenters[u], barycenters[v]);
+            }
+        });
+        for (int k = 0; k < layer.length; k++) {
+            layer[k] = sorted[k];
+            pos[sorted[k]] = k;
+        }
+    }
+
+    /** Sets the positions in the layers. */
+    private static void updatePositions(final int[][] order,
+                                        final double[] pos) {
+        for (final int[] layer : order) {
+            for (int k = 0; k < layer.length; k++) {
+                pos[layer[k]] = k;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of crossings between all neighbouring layers. The
+     * inversions are counted with a binary indexed tree.
+     */
+    private static long crossings(final int[][] order,
+                                  final int[][] down,
+                                  final double[] pos) {
+        long crossings = 0;
+        for (int l = 0; l < order.length - 1; l++) {
+            final int lowerSize = order[l + 1].length;
+            final long[] tree = new long[lowerSize + 1];
+            long seen = 0;
+            for (final int u : order[l]) {
+                final int[] targets = new int[down[u].length];
+                for (int k = 0; k < targets.length; k++) {
+                    targets[k] = (int) pos[down[u][k]];
+                }
+                Arrays.sort(targets);
+                for (final int t : targets) {
+                    /* edges seen so far, that end right of t */
+                    long notRight = 0;
+                    for (int i = t + 1; i > 0; i -= i & -i) {
+                        notRight += tree[i];
+                    }
+                    crossings += seen - notRight;
+                }
+                for (final int t : targets) {
+                    for (int i = t + 1; i <= lowerSize; i += i & -i) {
+                        tree[i]++;
+                    }
+                    seen++;
+                }
+            }
+        }
+        return crossings;
+    }
+
+    /** Returns a copy of the order. */
+    private static int[][] copy(final int[][] order) {
+        final int[][] c = new int[order.length][];
+        for (int l = 0; l < order.length; l++) {
+            c[l] = order[l].clone();
+        }
+        return c;
+    }
+
+    /**
+     * Returns the x coordinates. The layers are packed from the left and
+     * then the nodes are moved towards the average of their neighbours,
+     * without changing the order and overlapping.
+     */
+    private double[] assignX(final int[][] order,
+                             final int[][] down,
+                             final int[][] up,
+                             final double[] widthOf) {
+        final double[] xs = new double[down.length];
+        for (final int[] layer : order) {
+            double x = 0;
+            for (final int u : layer) {
+                xs[u] = x + widthOf[u] / 2;
+                x += widthOf[u] + nodeSpacing;
+            }
+        }
+        for (int pass = 0; pass < POSITION_PASSES; pass++) {
+            final boolean goingDown = pass % 2 == 0;
+            for (int k = 0; k < order.length; k++) {
+                final int l = goingDown ? k : order.length - 1 - k;
+                moveTowardsNeighbours(order[l],
+                                      goingDown ? up : down,
+                                      xs,
+                                      widthOf);
+            }
+        }
+        double minX = Double.MAX_VALUE;
+        for (int u = 0; u < xs.length; u++) {
+            minX = Math.min(minX, xs[u] - widthOf[u] / 2);
+        }
+        for (int u = 0; u < xs.length; u++) {
+            xs[u] -= minX;
+        }
+        return xs;
+    }
+
+    /** Moves the nodes of the layer towards their neighbours. */
+    private void moveTowardsNeighbours(final int[] layer,
+                                       final int[][] neighbours,
+                                       final double[] xs,
+                                       final double[] widthOf) {
+        final int size = layer.length;
+        if (size == 0) {
+            return;
+        }
+        final double[] wanted = new double[size];
+        for (int k = 0; k < size; k++) {
+            final int u = layer[k];
+            if (neighbours[u].length == 0) {
+                wanted[k] = xs[u];
+            } else {
+                double sum = 0;
+                for (final int v : neighbours[u]) {
+                    sum += xs[v];
+                }
+                wanted[k] = sum / neighbours[u].length;
+            }
+        }
+        /* from the left, no overlaps */
+        final double[] left = new double[size];
+        for (int k = 0; k < size; k++) {
+            left[k] = wanted[k];
+            if (k > 0) {
+                left[k] = Math.max(left[k],
+                                   left[k - 1] + separation(layer, k, widthOf));
+            }
+        }
+        /* from the right, no overlaps */
+        final double[] right = new double[size];
+        for (int k = size - 1; k >= 0; k--) {
+            right[k] = wanted[k];
+            if (k < size - 1) {
+                right[k] = Math.min(right[k],
+                                    right[k + 1]
+                                    - separation(layer, k + 1, widthOf));
+            }
+        }
+        /* the average of both keeps the order, since both do */
+        for (int k = 0; k < size; k++) {
+            xs[layer[k]] = (left[k] + right[k]) / 2;
+        }
+    }
+
+    /** Returns the minimal distance of the node k from the node k - 1. */
+    private double separation(final int[] layer,
+                              final int k,
+                              final double[] widthOf) {
+        return (widthOf[layer[k - 1]] + widthOf[layer[k]]) / 2
+               + nodeSpacing;
+    }
+
+    /**
+     * Places the nodes, that are not fixed, near their already placed
+     * neighbours: below their predecessors or above their successors. The
+     * nodes without placed neighbours are placed in new rows below the
+     * graph, that are not wider than the maximum width.
+     */
+    private void placeIncrementally(final int n,
+                                    final int[][] succ,
+                                    final int[][] pred,
+                                    final int[] layers,
+                                    final double originX,
+                                    final double originY,
+                                    final Map<N, Point2D> positions) {
+        final Point2D[] placed = new Point2D[n];
+        double bottom = originY;
+        for (final Map.Entry<Integer, Point2D> e : fixed.entrySet()) {
+            placed[e.getKey()] = e.getValue();
+            bottom = Math.max(bottom,
+                              e.getValue().getY()
+                              + heights.get(e.getKey()) / 2.0);
+        }
+        double newRowY = bottom + layerSpacing;
+        double newRowX = originX;
+        double newRowHeight = 0;
+        final PlacedNodes placedNodes = new PlacedNodes(placed);
+        final Integer[] byLayer = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            byLayer[i] = i;
+        }
+        Arrays.sort(byLayer, new Comparator<Integer>() {
+            @Override
+            public int compare(final Integer u, final Integer v) {
+                return layers[u] - layers[v];
+            }
+        });
+        for (final int u : byLayer) {
+            if (placed[u] != null) {
+                continue;
+            }
+            final int w = widths.get(u);
+            final int h = heights.get(u);
+            final Point2D predCenter = center(pred[u], placed, true);
+            final Point2D succCenter = center(succ[u], placed, false);
+            double x;
+            double y;
+            if (predCenter != null) {
+                x = predCenter.getX();
+                y = predCenter.getY() + h + layerSpacing;
+            } else if (succCenter != null) {
+                x = succCenter.getX();
+                y = Math.max(originY + h / 2.0,
+                             succCenter.getY() - h - layerSpacing);
+            } else {
+                /* the new rows are not wider than the maximum width */
+                if (newRowX > originX && newRowX + w > originX + maxWidth) {
+                    newRowX = originX;
+                    newRowY += newRowHeight + layerSpacing;
+                    newRowHeight = 0;
+                }
+                x = newRowX + w / 2.0;
+                y = newRowY + h / 2.0;
+                newRowX += w + nodeSpacing;
+                newRowHeight = Math.max(newRowHeight, h);
+            }
+            x = Math.max(x, originX + w / 2.0);
+            x = placedNodes.freeX(u, x, y);
+            placedNodes.add(u, new Point2D.Double(x, y));
+            positions.put(nodes.get(u), placed[u]);
+        }
+    }
+
+    /**
+     * Returns the average position of the placed neighbours, with the
+     * lowest y for the predecessors and the highest for the successors,
+     * or null.
+     */
+    private static Point2D center(final int[] neighbours,
+                                  final Point2D[] placed,
+                                  final boolean lowest) {
+        double sumX = 0;
+        double y = lowest ? -Double.MAX_VALUE : Double.MAX_VALUE;
+        int count = 0;
+        for (final int v : neighbours) {
+            if (placed[v] != null) {
+                sumX += placed[v].getX();
+                y = lowest ? Math.max(y, placed[v].getY())
+                           : Math.min(y, placed[v].getY());
+                count++;
+            }
+        }
+        if (count == 0) {
+            return null;
+        }
+        return new Point2D.Double(sumX / count, y);
+    }
+
+    /**
+     * Placed nodes in the rows as high as the highest node, sorted by x in
+     * every row, so that the overlapping nodes are found without looking
+     * at all placed nodes.
+     */
+    private final class PlacedNodes {
+        /** Positions of the nodes, null if not placed. */
+        private final Point2D[] placed;
+        /** Height of the rows. */
+        private final double rowHeight;
+        /** Width of the widest node. */
+        private final double maxNodeWidth;
+        /** Placed nodes in the rows, by x. */
+        private final Map<Long, TreeMap<Double, List<Integer>>> rows =
+                          new HashMap<Long, TreeMap<Double, List<Integer>>>();
+
+        /** Prepares a new <code>PlacedNodes</code> object. */
+        PlacedNodes(final Point2D[] placed) {
+            this.placed = placed;
+            int h = 1;
+            int w = 0;
+            for (int i = 0; i < placed.length; i++) {
+                h = Math.max(h, heights.get(i));
+                w = Math.max(w, widths.get(i));
+            }
+            rowHeight = h;
+            maxNodeWidth = w;
+            for (int i = 0; i < placed.length; i++) {
+                if (placed[i] != null) {
+                    index(i);
+                }
+            }
+        }
+
+        /** Places the node. */
+        void add(final int u, final Point2D pos) {
+            placed[u] = pos;
+            index(u);
+        }
+
+        /** Adds the placed node to its row. */
+        private void index(final int u) {
+            final Point2D p = placed[u];
+            final long r = row(p.getY());
+            TreeMap<Double, List<Integer>> row = rows.get(r);
+            if (row == null) {
+                row = new TreeMap<Double, List<Integer>>();
+                rows.put(r, row);
+            }
+            List<Integer> atX = row.get(p.getX());
+            if (atX == null) {
+                atX = new ArrayList<Integer>(1);
+                row.put(p.getX(), atX);
+            }
+            atX.add(u);
+        }
+
+        /** Returns the row of the y coordinate. */
+        private long row(final double y) {
+            return (long) Math.floor(y / rowHeight);
+        }
+
+        /**
+         * Returns x, moved to the right, till the node does not overlap.
+         * Only the nodes in the neighbouring rows and near x are checked.
+         */
+        double freeX(final int u, final double x, final double y) {
+            final double reach = (widths.get(u) + maxNodeWidth) / 2
+                                 + nodeSpacing;
+            double freeX = x;
+            boolean moved = true;
+            while (moved) {
+                moved = false;
+                for (long r = row(y - rowHeight); r <= row(y + rowHeight);
+                     r++) {
+                    final TreeMap<Double, List<Integer>> row = rows.get(r);
+                    if (row == null) {
+                        continue;
+                    }
+                    /* freeX only grows, the walk goes to the right */
+                    for (final Map.Entry<Double, List<Integer>> e
+                               : row.tailMap(freeX - reach, false).entrySet()) {
+                        if (e.getKey() >= freeX + reach) {
+                            break;
+                        }
+                        for (final int v : e.getValue()) {
+                            final Point2D p = placed[v];
+                            final double dx =
+                                        (widths.get(u) + widths.get(v)) / 2.0
+                                        + nodeSpacing;
+                            final double dy =
+                                      (heights.get(u) + heights.get(v)) / 2.0;
+                            if (Math.abs(p.getY() - y) < dy
+                                && Math.abs(p.getX() - freeX) < dx) {
+                                freeX = p.getX() + dx;
+                                moved = true;
+                            }
+                        }
+                    }
+                }
+            }
+            return freeX;
+        }
+    }
+
+    /** Laid out component with its size and origin at 0, 0. */
+    private static final class Component {
+        /** Positions by the node indexes. */
+        private final Map<Integer, Point2D> positions =
+                                        new LinkedHashMap<Integer, Point2D>();
+        /** Width. */
+        private double width = 0;
+        /** Height. */
+        private double height = 0;
+    }
+}
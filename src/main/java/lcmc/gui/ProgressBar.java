@@ -32,8 +32,11 @@ import javax.swing.ImageIcon;
 import java.awt.event.ActionListener;
 import java.awt.event.ActionEvent;
 import java.awt.Dimension;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import lcmc.utilities.Tools;
+import lcmc.utilities.AnimationClock;
 import lcmc.utilities.CancelCallback;
 
 import lcmc.utilities.Logger;
@@ -63,8 +66,22 @@ public final class ProgressBar implements ActionListener {
     private int timeout;
     /** Default timeout. */
     private static final int DEFAULT_TIMEOUT = 50 * 1000;
-    /** Thread with progress bar. */
-    private Thread progressThread = null;
+    /** Progress bar animation, that is registered in the animation clock. */
+    private final AnimationClock.Listener progressAnimation =
+                                            new AnimationClock.Listener() {
+        @Override
+        public void tick(final long now) {
+            tickProgress(now);
+        }
+    };
+    /** This mutex is for protecting the progress animation state. */
+    private final Lock mProgressLock = new ReentrantLock();
+    /** Time of the last step of the progress bar. */
+    private long lastStep = 0;
+    /** Whether the progress bar is visible. */
+    private boolean isVisible = false;
+    /** Time, after which the long running warning is logged. */
+    private int threshold = DEBUG_THRESHOLD;
     /** This is threshold to catch threads that are out of the line.
      * TODO: not for production. */
     private static final int DEBUG_THRESHOLD = 120000;
@@ -150,84 +167,75 @@ public final class ProgressBar implements ActionListener {
         }
     }
 
-    /** Starts progress bar thread. */
+    /** Starts progress bar animation. */
     public void start(final int t) {
-        this.timeout = t;
-        stopNow = false;
-        if (timeout == 0) {
-            timeout = DEFAULT_TIMEOUT;
+        mProgressLock.lock();
+        try {
+            this.timeout = t;
+            stopNow = false;
+            if (timeout == 0) {
+                timeout = DEFAULT_TIMEOUT;
+            }
+            if (AnimationClock.isRegistered(progressAnimation)) {
+                progress = 0;
+                time = 0;
+            } else {
+                LOG.debug2("start: running postgresbar timeout: " + timeout);
+                lastStep = System.currentTimeMillis();
+                isVisible = false;
+                threshold = DEBUG_THRESHOLD;
+                AnimationClock.register(progressAnimation);
+            }
+        } finally {
+            mProgressLock.unlock();
         }
-        if (progressThread == null) {
-            final Runnable runnable = new Runnable() {
-                @Override
-                public void run() {
-                    LOG.debug2("start: running postgresbar timeout: "
-                               + timeout);
-                    int sleepTime = Tools.getDefaultInt("ProgressBar.Sleep");
-                    int progressBarDelay =
-                                    Tools.getDefaultInt("ProgressBar.Delay");
-                    int threshold = DEBUG_THRESHOLD;
-                    boolean isVisible = false;
-                    while (!stopNow) { // && progress <= timeout) {
-                        try {
-                            Thread.sleep(sleepTime);
-                        } catch (InterruptedException ex) {
-                            Thread.currentThread().interrupt();
-                        }
-                        /* show progress bar after delay */
-                        if (time > progressBarDelay && !isVisible) {
-                            isVisible = true;
-                            Tools.invokeLater(new Runnable() {
-                                @Override
-                                public void run() {
-                                    progressBar.setVisible(true);
-                                    if (cancelButton != null) {
-                                        cancelButton.setVisible(true);
-                                    }
-                                }
-                            });
-                        }
-                        if (!holdIt) {
-                            Tools.invokeLater(new Runnable() {
-                                @Override
-                                public void run() {
-                                    progressBar.setValue(
-                                            progress * MAX_PB_VALUE / timeout);
-                                }
-                            });
-                            progress += sleepTime;
-                        }
+    }
+
+    /**
+     * Moves the progress bar, it is called by the animation clock in the
+     * swing thread, but the progress bar moves only every
+     * ProgressBar.Sleep milliseconds.
+     */
+    private void tickProgress(final long now) {
+        mProgressLock.lock();
+        try {
+            if (stopNow) {
+                AnimationClock.unregister(progressAnimation);
+                progressBar.setIndeterminate(false);
+                progressBar.setValue(MAX_PB_VALUE);
+                return;
+            }
+            final int sleepTime = Tools.getDefaultInt("ProgressBar.Sleep");
+            if (now - lastStep < sleepTime) {
+                return;
+            }
+            lastStep = now;
+            /* show progress bar after delay */
+            if (time > Tools.getDefaultInt("ProgressBar.Delay")
+                && !isVisible) {
+                isVisible = true;
+                progressBar.setVisible(true);
+                if (cancelButton != null) {
+                    cancelButton.setVisible(true);
+                }
+            }
+            if (!holdIt) {
+                progressBar.setValue(progress * MAX_PB_VALUE / timeout);
+                progress += sleepTime;
+            }
 
-                        time += sleepTime;
-                        if (time > threshold) {
-                            LOG.appWarning("start: thread with timeout: " + timeout + " is running way too long");
-                            threshold += DEBUG_THRESHOLD;
-                        }
-                        if (progress >= timeout) {
-                            /* premature end */
-                            Tools.invokeLater(new Runnable() {
-                                @Override
-                                public void run() {
-                                    progressBar.setIndeterminate(true);
-                                }
-                            });
-                        }
-                    }
-                    Tools.invokeLater(new Runnable() {
-                        @Override
-                        public void run() {
-                            progressBar.setIndeterminate(false);
-                            progressBar.setValue(MAX_PB_VALUE);
-                        }
-                    });
-                    progressThread = null;
-                };
-            };
-            progressThread = new Thread(runnable);
-            progressThread.start();
-        } else {
-            progress = 0;
-            time = 0;
+            time += sleepTime;
+            if (time > threshold) {
+                LOG.appWarning("tickProgress: progress bar with timeout: "
+                               + timeout + " is running way too long");
+                threshold += DEBUG_THRESHOLD;
+            }
+            if (progress >= timeout) {
+                /* premature end */
+                progressBar.setIndeterminate(true);
+            }
+        } finally {
+            mProgressLock.unlock();
         }
     }
 
@@ -29,6 +29,7 @@
 package lcmc.gui;
 
 import lcmc.utilities.Tools;
+import lcmc.utilities.AnimationClock;
 import lcmc.utilities.MyButton;
 import lcmc.configs.AppDefaults;
 
@@ -100,7 +101,7 @@ public final class ProgressIndicatorPanel extends JComponent
     /** Serial version UID. */
     private static final long serialVersionUID = 1L;
     /** Notifies whether the animation is running or not. */
-    private boolean started    = false;
+    private volatile boolean started = false;
     /** Alpha level of the veil, used for fade in/out. */
     private int alphaLevel = 0;
     /** Duration of the veil's fade in/out. */
@@ -132,8 +133,8 @@ public final class ProgressIndicatorPanel extends JComponent
     /** Cancel button. TODO: not used. */
     private final MyButton cancelButton = new MyButton(
                 Tools.getString("ProgressIndicatorPanel.Cancel"), CANCEL_ICON);
-    /** Animator thread. */
-    private Animator animator;
+    /** Animator, that is registered in the animation clock. */
+    private final Animator animator = new Animator();
 
     /** Old width of the whole frame. */
     private int oldWidth  = getWidth();
@@ -239,17 +240,17 @@ public final class ProgressIndicatorPanel extends JComponent
         if (texts.containsKey(text)) {
             texts.put(text, MAX_ALPHA_LEVEL);
             textsPositions.put(text, position);
+            animator.start();
             mTextsLock.unlock();
-            animator.setRampUp(true);
             mAnimatorLock.unlock();
             return;
         }
         texts.put(text, MAX_ALPHA_LEVEL);
         textsPositions.put(text, position);
+        animator.start();
 
         if (texts.size() > 1) {
             mTextsLock.unlock();
-            animator.setRampUp(true);
             mAnimatorLock.unlock();
             return;
         }
@@ -261,9 +262,6 @@ public final class ProgressIndicatorPanel extends JComponent
         if (!isVisible()) {
             setVisible(true);
         }
-        animator = new Animator();
-        final Thread t = new Thread(animator);
-        t.start();
         mAnimatorLock.unlock();
     }
 
@@ -420,39 +418,50 @@ public final class ProgressIndicatorPanel extends JComponent
 
     }
 
-    /** Animation thread. */
-    private class Animator implements Runnable {
+    /**
+     * Animation of the veil and the texts, it is called by the animation
+     * clock in every frame.
+     */
+    private class Animator implements AnimationClock.Listener {
         /** Whether the alpha level goes up or down. */
-        private volatile boolean rampUp;
-
-        /** Prepares a new <code>Animator</code> object. */
-        protected Animator() {
-            rampUp = true;
-        }
+        private volatile boolean rampUp = true;
+        /** Time of the last frame. */
+        private long start;
 
         /** Sets the rump up. */
         private void setRampUp(final boolean rampUp) {
             this.rampUp = rampUp;
         }
 
-        /** Runs the thread. */
-        @Override
-        public void run() {
-            LOG.debug1("run: animator start");
-            long start = System.currentTimeMillis();
+        /**
+         * Ramps up and registers the animator, if it is not running. Called
+         * with the texts lock.
+         */
+        private void start() {
+            rampUp = true;
+            if (started) {
+                return;
+            }
+            LOG.debug1("start: animator start");
+            start = System.currentTimeMillis();
             if (rampDelay == 0) {
-                alphaLevel = rampUp ? MAX_ALPHA_LEVEL : 0;
+                alphaLevel = MAX_ALPHA_LEVEL;
             }
-
             started = true;
-            while (true) {
-                final boolean lRampUp = rampUp;
-                if (getWidth() != oldWidth || getHeight() != oldHeight) {
-                    oldWidth  = getWidth();
-                    oldHeight = getHeight();
-                }
+            AnimationClock.register(this);
+        }
+
+        /** Moves the animation by one frame. */
+        @Override
+        public void tick(final long time) {
+            final boolean lRampUp = rampUp;
+            if (getWidth() != oldWidth || getHeight() != oldHeight) {
+                oldWidth  = getWidth();
+                oldHeight = getHeight();
+            }
 
-                final long time = System.currentTimeMillis();
+            mTextsLock.lock();
+            try {
                 if (lRampUp) {
                     int newAlphaLevel = alphaLevel
                         + (int) (MAX_ALPHA_LEVEL * (time - start) / rampDelay);
@@ -465,20 +474,16 @@ public final class ProgressIndicatorPanel extends JComponent
                                   * (time - start) / RAMP_DELAY_STOP);
                     if (newAlphaLevel <= 0) {
                         newAlphaLevel = 0;
-                        mTextsLock.lock();
                         if (texts.size() <= 0) {
-                            mTextsLock.unlock();
-                            break;
-                        } else {
-                            mTextsLock.unlock();
+                            alphaLevel = 0;
+                            stopAnimation();
+                            return;
                         }
                     }
                     alphaLevel = newAlphaLevel;
                 }
 
-
                 final ArrayList<String> toRemove = new ArrayList<String>();
-                mTextsLock.lock();
                 for (final String text : texts.keySet()) {
                     int alpha = texts.get(text).intValue();
                     if (alpha < MAX_ALPHA_LEVEL) {
@@ -500,20 +505,20 @@ public final class ProgressIndicatorPanel extends JComponent
                     textsPositions.remove(text);
                     failuresMap.remove(text);
                 }
-
+            } finally {
                 mTextsLock.unlock();
-                try {
-                    Thread.sleep((int) (1000 / FPS));
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                }
-                start = time;
-                repaint();
-                Thread.yield();
             }
+            start = time;
+            repaint();
+        }
+
+        /** Unregisters the animator. Called with the texts lock. */
+        private void stopAnimation() {
+            AnimationClock.unregister(this);
             started = false;
             barWidth = 10;
-            LOG.debug1("run: animator end");
+            repaint();
+            LOG.debug1("stopAnimation: animator end");
         }
     }
 
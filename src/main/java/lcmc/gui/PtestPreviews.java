@@ -0,0 +1,248 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2013, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.gui;
+
+import lcmc.data.ClusterStatus;
+import lcmc.data.Host;
+import lcmc.data.PtestData;
+import lcmc.gui.ClusterBrowser.ClMenuItemCallback;
+import lcmc.utilities.CRM;
+import lcmc.utilities.LRUCache;
+import lcmc.utilities.Logger;
+import lcmc.utilities.LoggerFactory;
+import lcmc.utilities.Tools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Results of the ptest (crm_simulate) of the menu item actions, that are
+ * shown in the tooltips.
+ *
+ * The results are cached by the host, the cib version and the action, so
+ * that the repeated mouse over a menu item doesn't run the policy engine
+ * again, till the cib changes. The likely actions of the selected resource
+ * are simulated in advance in the background, every action in its own test
+ * file and all of them in one command, but not more often than every
+ * PtestPreviews.Interval ms.
+ *
+ * @author Rasto Levrinc
+ *
+ */
+public final class PtestPreviews {
+    /** Logger. */
+    private static final Logger LOG =
+                                 LoggerFactory.getLogger(PtestPreviews.class);
+    /** How many results are cached. */
+    private static final int CACHE_SIZE =
+                                Tools.getDefaultInt("PtestPreviews.CacheSize");
+    /**
+     * Minimum time in ms between the simulations in advance, since every
+     * one runs the policy engine on the DC for every action.
+     */
+    private static final int INTERVAL =
+                                Tools.getDefaultInt("PtestPreviews.Interval");
+    /** Cluster browser. */
+    private final ClusterBrowser browser;
+    /** Results by host, cib version and action. */
+    private final Map<Key, PtestData> cache =
+                                      new LRUCache<Key, PtestData>(CACHE_SIZE);
+    /** Thread, that simulates the actions in advance. */
+    private final ExecutorService executor =
+        Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread t = new Thread(r, "PtestPreviews");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    /** Actions, that wait to be simulated in advance, or null. */
+    private List<ClMenuItemCallback> pendingActions = null;
+    /** Counter for the test file names. */
+    private int testFileIndex = 0;
+    /** Time in ms of the last simulation, used in the executor thread. */
+    private long lastSimulateTime = 0;
+
+    /** Prepares a new <code>PtestPreviews</code> object. */
+    PtestPreviews(final ClusterBrowser browser) {
+        this.browser = browser;
+    }
+
+    /** Returns the cached result or null. */
+    PtestData get(final Host host,
+                  final String cibVersion,
+                  final Object previewKey) {
+        synchronized (cache) {
+            return cache.get(new Key(host, cibVersion, previewKey));
+        }
+    }
+
+    /**
+     * Caches the result, if the cib didn't change, while the action was
+     * simulated.
+     */
+    void put(final Host host,
+             final String cibVersion,
+             final Object previewKey,
+             final PtestData ptestData) {
+        final ClusterStatus clusterStatus = browser.getClusterStatus();
+        if (clusterStatus == null
+            || !cibVersion.equals(clusterStatus.getCibVersion())) {
+            return;
+        }
+        synchronized (cache) {
+            cache.put(new Key(host, cibVersion, previewKey), ptestData);
+        }
+    }
+
+    /**
+     * Simulates the actions in the background, if they are not cached yet.
+     * The actions, that didn't start yet, are replaced. It runs at most once
+     * per PtestPreviews.Interval, the cib changes in between are simulated
+     * together.
+     */
+    void precompute(final List<ClMenuItemCallback> actions) {
+        synchronized (this) {
+            final boolean scheduled = pendingActions != null;
+            pendingActions = actions;
+            if (scheduled) {
+                return;
+            }
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final long wait = lastSimulateTime + INTERVAL
+                                  - System.currentTimeMillis();
+                if (wait > 0) {
+                    Tools.sleep((int) wait);
+                }
+                lastSimulateTime = System.currentTimeMillis();
+                final List<ClMenuItemCallback> next;
+                synchronized (PtestPreviews.this) {
+                    next = pendingActions;
+                    pendingActions = null;
+                }
+                try {
+                    simulate(next);
+                } catch (final RuntimeException e) {
+                    LOG.appWarning("precompute: " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs the actions in test mode, every one in its own test file, and
+     * then the ptest on all the test files in one command.
+     */
+    private void simulate(final List<ClMenuItemCallback> actions) {
+        final ClusterStatus clusterStatus = browser.getClusterStatus();
+        final Host dcHost = browser.getDCHost();
+        if (clusterStatus == null || dcHost == null) {
+            return;
+        }
+        final String cibVersion = clusterStatus.getCibVersion();
+        final List<ClMenuItemCallback> toSimulate =
+                                          new ArrayList<ClMenuItemCallback>();
+        final List<String> testFiles = new ArrayList<String>();
+        for (final ClMenuItemCallback action : actions) {
+            if (!action.isEnabled()
+                || get(dcHost, cibVersion, action.getPreviewKey()) != null) {
+                continue;
+            }
+            final String testFile;
+            synchronized (this) {
+                testFile = CRM.getPreviewTestFile(testFileIndex++);
+            }
+            browser.ptestLockAcquire();
+            try {
+                clusterStatus.setPtestData(null);
+                CRM.setThreadTestFile(testFile);
+                action.action(dcHost);
+            } finally {
+                CRM.setThreadTestFile(null);
+                browser.ptestLockRelease();
+            }
+            toSimulate.add(action);
+            testFiles.add(testFile);
+        }
+        if (toSimulate.isEmpty()) {
+            return;
+        }
+        final long start = System.currentTimeMillis();
+        final List<String> ptests = CRM.getPtests(dcHost, testFiles);
+        LOG.debug1("simulate: " + toSimulate.size() + " actions in "
+                   + (System.currentTimeMillis() - start) + " ms");
+        for (int i = 0; i < toSimulate.size(); i++) {
+            final String ptest = ptests.get(i);
+            if (ptest != null) {
+                put(dcHost,
+                    cibVersion,
+                    toSimulate.get(i).getPreviewKey(),
+                    new PtestData(ptest));
+            }
+        }
+    }
+
+    /** Key of the cached result. */
+    private static final class Key {
+        /** Host, where the ptest ran. */
+        private final Host host;
+        /** Cib version. */
+        private final String cibVersion;
+        /** Action. */
+        private final Object previewKey;
+
+        /** Prepares a new <code>Key</code> object. */
+        Key(final Host host,
+            final String cibVersion,
+            final Object previewKey) {
+            this.host = host;
+            this.cibVersion = cibVersion;
+            this.previewKey = previewKey;
+        }
+
+        /** Returns whether the keys are equal. */
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return host == other.host
+                   && cibVersion.equals(other.cibVersion)
+                   && previewKey.equals(other.previewKey);
+        }
+
+        /** Returns the hash code. */
+        @Override
+        public int hashCode() {
+            return (System.identityHashCode(host) * 31
+                    + cibVersion.hashCode()) * 31 + previewKey.hashCode();
+        }
+    }
+}
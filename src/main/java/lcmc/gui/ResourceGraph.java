@@ -23,6 +23,9 @@
 package lcmc.gui;
 
 import lcmc.utilities.Tools;
+import lcmc.utilities.AnimationClock;
+import lcmc.utilities.LRUCache;
+import lcmc.utilities.UpdateScheduler;
 import lcmc.gui.resources.Info;
 import lcmc.utilities.MyMenuItem;
 import lcmc.data.Host;
@@ -60,10 +63,15 @@ import edu.uci.ics.jung.algorithms.layout.GraphElementAccessor;
 import edu.uci.ics.jung.visualization.decorators.ToStringLabeller;
 import edu.uci.ics.jung.visualization.decorators.AbstractEdgeShapeTransformer;
 import edu.uci.ics.jung.visualization.Layer;
+import edu.uci.ics.jung.visualization.MultiLayerTransformer;
 
 import java.awt.Shape;
 import java.awt.Color;
 import java.awt.geom.Point2D;
+import java.awt.Rectangle;
+import java.awt.FontMetrics;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
 import java.awt.Graphics2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.GradientPaint;
@@ -164,10 +172,23 @@ public abstract class ResourceGraph {
                                                    new ArrayList<JComponent>();
     /** This mutex is for protecting the test animation list. */
     private final Lock mTestAnimationListLock = new ReentrantLock();
-    /** Animation thread. */
-    private volatile Thread animationThread = null;
-    /** This mutex is for protecting the animation thread. */
-    private final Lock mAnimationThreadLock = new ReentrantLock();
+    /** Keys of the looks of vertices and edges from the last repaint. */
+    private Map<Object, String> renderedKeys = new HashMap<Object, String>();
+    /** Areas of vertices and edges from the last repaint. */
+    private Map<Object, Rectangle> renderedBounds =
+                                            new HashMap<Object, Rectangle>();
+    /** Whether the test view was shown in the last repaint. */
+    private boolean renderedTestOnly = false;
+    /** Resources animated in the last frame, used in the swing thread. */
+    private List<Info> lastAnimated = new ArrayList<Info>();
+    /** Animation of the vertices, that are being updated. */
+    private final AnimationClock.Listener animationListener =
+                                            new AnimationClock.Listener() {
+        @Override
+        public void tick(final long now) {
+            tickAnimation();
+        }
+    };
     /** Map from vertex to its width. */
     private final Map<Vertex, Integer> vertexWidth =
                                                new HashMap<Vertex, Integer>();
@@ -181,18 +202,35 @@ public abstract class ResourceGraph {
     private volatile boolean testOnlyFlag = false;
     /** This mutex is for protecting the testOnlyFlag. */
     private final Lock mTestOnlyFlag = new ReentrantLock();
-    /** Test animation thread. */
-    private volatile Thread testAnimationThread = null;
-    /** This mutex is for protecting the test animation thread. */
-    private final Lock mTestAnimationThreadLock = new ReentrantLock();
+    /** Animation, that switches between the test and the real view. */
+    private final AnimationClock.Listener testAnimationListener =
+                                            new AnimationClock.Listener() {
+        @Override
+        public void tick(final long now) {
+            tickTestAnimation(now);
+        }
+    };
+    /** Latch, after which the test animation starts switching the views. */
+    private volatile CountDownLatch testAnimationLatch = null;
+    /** When the test animation switches the view next time. */
+    private long nextTestSwitch = 0;
     /** List of edges that are made only during test. */
     private volatile Edge testEdge = null;
     /** List of edges that are being tested during test. */
     private volatile Edge existingTestEdge = null;
     /** Lock for test edge list. */
     private final Lock mTestEdgeLock = new ReentrantLock();
-    private final int animInterval =
-                             (int) (1000 / Tools.getConfigData().getAnimFPS());
+    /** How long the test animation shows the test view, in ms. */
+    private static final int TEST_ONLY_VIEW_TIME = 1200;
+    /** How long the test animation shows the real view, in ms. */
+    private static final int REAL_VIEW_TIME = 300;
+    /** How long the view must not be zoomed, till the vertices are cached
+     * again, in ms. */
+    private static final int ZOOM_SETTLE_TIME = 300;
+    /** Vertices, that are bigger in the view, are not cached. */
+    private static final int MAX_VERTEX_IMAGE_PIXELS = 1024 * 1024;
+    /** Margin around the vertex, that is repainted. */
+    private static final int VERTEX_REPAINT_MARGIN = 8;
     /** Singleton instance of the Line2D edge shape. */
     private static final Line2D INSTANCE =
                                     new Line2D.Float(0.0f, 0.0f, 1.0f, 0.0f);
@@ -204,9 +242,18 @@ public abstract class ResourceGraph {
     /** Edge picked paint. */
     private static final Paint EDGE_PICKED_PAINT =
                 (Paint) Tools.getDefaultColor("ResourceGraph.EdgePickedPaint");
-    /** Cache for text layouts. */
+    /** Cache for text layouts, the least recently used are removed. */
     private final Map<String, TextLayout> textLayoutCache =
-                                            new HashMap<String, TextLayout>();
+                new LRUCache<String, TextLayout>(
+                       Tools.getDefaultInt("ResourceGraph.TextLayoutCache"));
+    /** Rendered vertices, used in the swing thread. */
+    private final Map<Vertex, VertexImage> vertexImageCache =
+                new LRUCache<Vertex, VertexImage>(
+                       Tools.getDefaultInt("ResourceGraph.VertexImageCache"));
+    /** Scale of the view in the last painted frame. */
+    private double renderScale = 0;
+    /** When the scale of the view changed last time. */
+    private long renderScaleChanged = 0;
 
     static {
         final float d = 0.05f;
@@ -228,43 +275,12 @@ public abstract class ResourceGraph {
     /** Starts the animation if vertex is being updated. */
     public final void startAnimation(final Info info) {
         mAnimationListLock.lock();
-        if (animationList.isEmpty()) {
-            /* start animation thread */
-            mAnimationThreadLock.lock();
-            if (animationThread == null) {
-                animationThread = new Thread(new Runnable() {
-                    @Override
-                    public void run() {
-                        while (true) {
-                            try {
-                                Thread.sleep(animInterval);
-                            } catch (InterruptedException ex) {
-                                Thread.currentThread().interrupt();
-                            }
-
-                            mAnimationListLock.lock();
-                            if (animationList.isEmpty()) {
-                                mAnimationListLock.unlock();
-                                repaint();
-                                mAnimationThreadLock.lock();
-                                animationThread = null;
-                                mAnimationThreadLock.unlock();
-                                break;
-                            }
-                            for (final Info info : animationList) {
-                                info.incAnimationIndex();
-                            }
-                            mAnimationListLock.unlock();
-                            repaint();
-                        }
-                    }
-                });
-                animationThread.start();
-            }
-            mAnimationThreadLock.unlock();
+        try {
+            animationList.add(info);
+            AnimationClock.register(animationListener);
+        } finally {
+            mAnimationListLock.unlock();
         }
-        animationList.add(info);
-        mAnimationListLock.unlock();
     }
 
     /** Stops the animation. */
@@ -277,77 +293,189 @@ public abstract class ResourceGraph {
         }
     }
 
+    /**
+     * Moves the animation of the updated vertices by one frame and repaints
+     * only them and the vertices, whose animation stopped. The clock stops,
+     * when nothing is animated.
+     */
+    private void tickAnimation() {
+        final List<Info> infos;
+        mAnimationListLock.lock();
+        try {
+            if (animationList.isEmpty() && lastAnimated.isEmpty()) {
+                AnimationClock.unregister(animationListener);
+                return;
+            }
+            infos = new ArrayList<Info>(animationList);
+            for (final Info info : infos) {
+                info.incAnimationIndex();
+            }
+        } finally {
+            mAnimationListLock.unlock();
+        }
+        for (final Info info : lastAnimated) {
+            if (!infos.contains(info)) {
+                repaintVertex(getVertex(info));
+            }
+        }
+        for (final Info info : infos) {
+            repaintVertex(getVertex(info));
+        }
+        lastAnimated = infos;
+    }
+
+    /** Repaints the area of the vertex. */
+    private void repaintVertex(final Vertex v) {
+        if (v == null) {
+            return;
+        }
+        final Rectangle bounds = getVertexScreenBounds(v);
+        if (bounds != null) {
+            vv.repaint(bounds);
+        }
+    }
+
+    /** Returns the area of the vertex in the view or null. */
+    private Rectangle getVertexScreenBounds(final Vertex v) {
+        final Point2D pos = layout.transform(v);
+        if (pos == null) {
+            return null;
+        }
+        final Point2D loc = vv.getRenderContext().getMultiLayerTransformer()
+                                            .transform(Layer.LAYOUT, pos);
+        final double w = getVertexWidth(v) / 2.0;
+        final double h = getVertexHeight(v) / 2.0;
+        return getScreenBounds(loc.getX() - w,
+                               loc.getY() - h,
+                               loc.getX() + w,
+                               loc.getY() + h);
+    }
+
+    /**
+     * Returns the area of the edge in the view or null. It is the area
+     * between the vertices and the label in the middle.
+     */
+    private Rectangle getEdgeScreenBounds(final Edge e) {
+        final Rectangle from = getVertexScreenBounds(e.getSource());
+        final Rectangle to = getVertexScreenBounds(e.getDest());
+        if (from == null || to == null) {
+            return null;
+        }
+        final Rectangle bounds = from.union(to);
+        final FontMetrics fm = vv.getFontMetrics(vv.getFont());
+        final double scale = vv.getRenderContext().getMultiLayerTransformer()
+                                        .getTransformer(Layer.VIEW).getScale();
+        final int labelWidth =
+                    (int) (fm.stringWidth(e.toString()) * scale / 2) + 1;
+        final int labelHeight = (int) (fm.getHeight() * scale) + 1;
+        bounds.add(new Rectangle((int) from.getCenterX() / 2
+                                 + (int) to.getCenterX() / 2 - labelWidth,
+                                 (int) from.getCenterY() / 2
+                                 + (int) to.getCenterY() / 2 - labelHeight,
+                                 labelWidth * 2,
+                                 labelHeight * 2));
+        return bounds;
+    }
+
+    /**
+     * Returns the area in the view, from the corners, that are already
+     * transformed by the layout transformer.
+     */
+    private Rectangle getScreenBounds(final double x1,
+                                      final double y1,
+                                      final double x2,
+                                      final double y2) {
+        final MultiLayerTransformer mlt =
+                            vv.getRenderContext().getMultiLayerTransformer();
+        final Rectangle bounds = new Rectangle();
+        bounds.setFrameFromDiagonal(
+                        mlt.transform(Layer.VIEW, new Point2D.Double(x1, y1)),
+                        mlt.transform(Layer.VIEW, new Point2D.Double(x2, y2)));
+        /* rounding, borders and the text, that is wider than the vertex */
+        bounds.grow(VERTEX_REPAINT_MARGIN, VERTEX_REPAINT_MARGIN);
+        return bounds;
+    }
+
     /** Starts the animation if vertex is being tested. */
     public final void startTestAnimation(final JComponent component,
                                          final CountDownLatch startTestLatch) {
-        mTestAnimationListLock.lock();
         mTestOnlyFlag.lock();
+        final boolean wasTestOnly = testOnlyFlag;
         testOnlyFlag = false;
         mTestOnlyFlag.unlock();
+        if (wasTestOnly) {
+            repaint();
+        }
         Tools.invokeLater(new Runnable() {
             @Override
             public void run() {
                 Tools.setMenuOpaque(component, false);
             }
         });
-        if (testAnimationList.isEmpty()) {
-            mTestAnimationThreadLock.lock();
-            if (testAnimationThread == null) {
-                /* start test animation thread */
-                testAnimationThread = new Thread(new Runnable() {
-                    @Override
-                    public void run() {
-                        FOREVER: while (true) {
-                            try {
-                                startTestLatch.await();
-                            } catch (InterruptedException ignored) {
-                                Thread.currentThread().interrupt();
-                            }
-                            mTestOnlyFlag.lock();
-                            testOnlyFlag = !testOnlyFlag;
-                            final boolean testOnlyFlagLast = testOnlyFlag;
-                            mTestOnlyFlag.unlock();
-                            repaint();
-                            int sleep = 300;
-                            if (testOnlyFlag) {
-                                sleep = 1200;
-                            }
-                            for (int s = 0; s < sleep; s += animInterval) {
-                                mTestOnlyFlag.lock();
-                                if (testOnlyFlag == testOnlyFlagLast) {
-                                    mTestOnlyFlag.unlock();
-                                } else {
-                                    mTestOnlyFlag.unlock();
-                                    repaint();
-                                }
-                                if (!component.isShowing()) {
-                                    stopTestAnimation(component);
-                                }
-                                mTestAnimationListLock.lock();
-
-                                if (testAnimationList.isEmpty()) {
-                                    mTestAnimationListLock.unlock();
-                                    mTestOnlyFlag.lock();
-                                    testOnlyFlag = false;
-                                    mTestOnlyFlag.unlock();
-                                    repaint();
-                                    mTestAnimationThreadLock.lock();
-                                    testAnimationThread = null;
-                                    mTestAnimationThreadLock.unlock();
-                                    break FOREVER;
-                                }
-                                mTestAnimationListLock.unlock();
-                                Tools.sleep(animInterval);
-                            }
-                        }
-                    }
-                });
-                testAnimationThread.start();
+        mTestAnimationListLock.lock();
+        try {
+            if (testAnimationList.isEmpty()) {
+                testAnimationLatch = startTestLatch;
             }
-            mTestAnimationThreadLock.unlock();
+            testAnimationList.add(component);
+            AnimationClock.register(testAnimationListener);
+        } finally {
+            mTestAnimationListLock.unlock();
         }
-        testAnimationList.add(component);
-        mTestAnimationListLock.unlock();
+    }
+
+    /**
+     * Switches between the test and the real view, the test view is shown
+     * longer. The clock stops, when no test is running.
+     */
+    private void tickTestAnimation(final long now) {
+        final List<JComponent> hidden = new ArrayList<JComponent>();
+        mTestAnimationListLock.lock();
+        try {
+            if (testAnimationList.isEmpty()) {
+                AnimationClock.unregister(testAnimationListener);
+                testAnimationLatch = null;
+                nextTestSwitch = 0;
+                mTestOnlyFlag.lock();
+                testOnlyFlag = false;
+                mTestOnlyFlag.unlock();
+                repaint();
+                return;
+            }
+            for (final JComponent component : testAnimationList) {
+                if (!component.isShowing()) {
+                    hidden.add(component);
+                }
+            }
+        } finally {
+            mTestAnimationListLock.unlock();
+        }
+        if (!hidden.isEmpty()) {
+            UpdateScheduler.markDirtyInBackground(this,
+                                                  "stopTestAnimation",
+                                                  new Runnable() {
+                @Override
+                public void run() {
+                    for (final JComponent component : hidden) {
+                        stopTestAnimation(component);
+                    }
+                }
+            });
+        }
+        final CountDownLatch latch = testAnimationLatch;
+        if (now < nextTestSwitch || (latch != null && latch.getCount() > 0)) {
+            return;
+        }
+        mTestOnlyFlag.lock();
+        testOnlyFlag = !testOnlyFlag;
+        final boolean testOnly = testOnlyFlag;
+        mTestOnlyFlag.unlock();
+        if (testOnly) {
+            nextTestSwitch = now + TEST_ONLY_VIEW_TIME;
+        } else {
+            nextTestSwitch = now + REAL_VIEW_TIME;
+        }
+        repaint();
     }
 
     /** Stops the test animation. */
@@ -492,9 +620,86 @@ public abstract class ResourceGraph {
             });
     }
 
-    /** Repaints the graph. */
+    /**
+     * Repaints the vertices and edges, whose look changed, in the next
+     * frame.
+     */
     public final void repaint() {
-        vv.repaint();
+        UpdateScheduler.markDirty(this, "repaint", new Runnable() {
+            @Override
+            public void run() {
+                repaintChanged();
+            }
+        });
+    }
+
+    /**
+     * Compares the looks of the vertices and edges with the last check and
+     * repaints only the changed ones. The whole graph is repainted, if
+     * vertices or edges were added or removed, the test view was switched
+     * or most of the graph changed. It is called in the swing thread.
+     */
+    private void repaintChanged() {
+        final Map<Object, String> keys = new HashMap<Object, String>();
+        final Map<Object, Rectangle> bounds =
+                                           new HashMap<Object, Rectangle>();
+        mGraphLock.lock();
+        try {
+            for (final Vertex v : graph.getVertices()) {
+                keys.put(v, getVertexRenderKey(v));
+                bounds.put(v, getVertexScreenBounds(v));
+            }
+            for (final Edge e : graph.getEdges()) {
+                keys.put(e, getEdgeRenderKey(e));
+                bounds.put(e, getEdgeScreenBounds(e));
+            }
+        } finally {
+            mGraphLock.unlock();
+        }
+        final boolean testOnly = isTestOnly();
+        final List<Rectangle> dirty = new ArrayList<Rectangle>();
+        boolean all = testOnly != renderedTestOnly
+                      || !keys.keySet().equals(renderedKeys.keySet());
+        if (!all) {
+            for (final Map.Entry<Object, String> entry : keys.entrySet()) {
+                final Object o = entry.getKey();
+                final Rectangle oldBounds = renderedBounds.get(o);
+                final Rectangle newBounds = bounds.get(o);
+                if (entry.getValue().equals(renderedKeys.get(o))
+                    && newBounds != null
+                    && newBounds.equals(oldBounds)) {
+                    continue;
+                }
+                if (oldBounds == null || newBounds == null) {
+                    all = true;
+                    break;
+                }
+                dirty.add(oldBounds);
+                dirty.add(newBounds);
+            }
+        }
+        renderedKeys = keys;
+        renderedBounds = bounds;
+        renderedTestOnly = testOnly;
+        if (all || dirty.size() > keys.size()) {
+            vv.repaint();
+        } else {
+            for (final Rectangle r : dirty) {
+                vv.repaint(r);
+            }
+        }
+    }
+
+    /** Returns the key, that changes, when the look of the edge changes. */
+    private String getEdgeRenderKey(final Edge e) {
+        final StringBuilder key = new StringBuilder(50);
+        key.append(e.toString()).append('\n');
+        key.append(System.identityHashCode(e.getSource())).append(',');
+        key.append(System.identityHashCode(e.getDest())).append(',');
+        key.append(showEdgeArrow(e)).append(showHollowArrow(e));
+        key.append(isPicked(e)).append(e.isWrongColocation());
+        key.append(getEdgeDrawPaint(e)).append(getEdgePickedPaint(e));
+        return key.toString();
     }
 
     /** Returns the graph object. */
@@ -897,6 +1102,21 @@ public abstract class ResourceGraph {
         }
     }
 
+    /**
+     * Updates the popup menus in the background thread of the update
+     * scheduler, more calls in one frame update them only once.
+     */
+    public final void scheduleUpdatePopupMenus() {
+        UpdateScheduler.markDirtyInBackground(this,
+                                              "popupMenus",
+                                              new Runnable() {
+            @Override
+            public void run() {
+                updatePopupMenus();
+            }
+        });
+    }
+
     /** Updates edge popup. */
     protected final void updatePopupEdge(final Edge edge) {
         final List<MyMenuItem> menus = edgeToMenus.get(edge);
@@ -1431,6 +1651,68 @@ public abstract class ResourceGraph {
                                        final double y,
                                        final Shape shape);
 
+    /**
+     * Vertex rendered in an image with the scale of the view, so that it
+     * does not have to be painted again, till its look changes.
+     */
+    private static final class VertexImage {
+        /** Margin around the vertex for the border. */
+        private static final int MARGIN = 3;
+        /** Key of the look of the vertex. */
+        private final String key;
+        /** Horizontal scale of the view. */
+        private final double scaleX;
+        /** Vertical scale of the view. */
+        private final double scaleY;
+        /** The image. */
+        private final BufferedImage image;
+
+        /** Prepares a new <code>VertexImage</code> object. */
+        VertexImage(final String key,
+                    final AffineTransform t,
+                    final int width,
+                    final int height) {
+            this.key = key;
+            scaleX = t.getScaleX();
+            scaleY = t.getScaleY();
+            image = new BufferedImage(
+                    (int) Math.ceil((width + 2 * MARGIN) * scaleX),
+                    (int) Math.ceil((height + 2 * MARGIN) * scaleY),
+                    BufferedImage.TYPE_INT_ARGB);
+        }
+
+        /** Returns whether the image can be used with this key and scale. */
+        boolean isValid(final String k, final AffineTransform t) {
+            return key.equals(k)
+                   && scaleX == t.getScaleX()
+                   && scaleY == t.getScaleY();
+        }
+
+        /**
+         * Returns graphics, that renders into the image with the same
+         * coordinates, as the vertex has in the view.
+         */
+        Graphics2D createGraphics(final Graphics2D g2d,
+                                  final double x,
+                                  final double y) {
+            final Graphics2D ig = image.createGraphics();
+            ig.setRenderingHints(g2d.getRenderingHints());
+            ig.setFont(g2d.getFont());
+            ig.scale(scaleX, scaleY);
+            ig.translate(MARGIN - x, MARGIN - y);
+            return ig;
+        }
+
+        /** Draws the image at the position of the vertex. */
+        void draw(final Graphics2D g2d, final double x, final double y) {
+            final AffineTransform old = g2d.getTransform();
+            g2d.translate(x - MARGIN, y - MARGIN);
+            g2d.scale(1 / scaleX, 1 / scaleY);
+            g2d.drawImage(image, 0, 0, null);
+            g2d.setTransform(old);
+        }
+    }
+
     /** This class is for rendering of the vertices. */
     class MyPluggableRenderer<V, E> extends BasicVertexRenderer<V, E> {
         /**
@@ -1556,14 +1838,109 @@ public abstract class ResourceGraph {
             }
 
             /* shape */
-            super.paintShapeForVertex(rc, v, shape);
             Point2D loc = layout.transform((Vertex) v);
             loc = rc.getMultiLayerTransformer().transform(Layer.LAYOUT, loc);
             final double x = loc.getX() - getVertexWidth((Vertex) v) / 2;
-            final double height = getDefaultVertexHeight((Vertex) v);
             final double y = loc.getY() - getVertexHeight((Vertex) v) / 2;
-            drawInside((Vertex) v, g2d, x, y, shape);
+            final int imageWidth =
+                         Math.max(shapeWidth, getVertexWidth((Vertex) v));
+            final int imageHeight =
+                         Math.max(shapeHeight, getVertexHeight((Vertex) v));
+            final String renderKey =
+                        getVertexRenderKey((Vertex) v,
+                                           mainText,
+                                           iconText,
+                                           rightCornerText,
+                                           subtexts,
+                                           icons)
+                        + shapeWidth + 'x' + shapeHeight + ','
+                        + getVertexWidth((Vertex) v) + 'x'
+                        + getVertexHeight((Vertex) v);
+            final VertexImage cached = getCachedVertexImage((Vertex) v,
+                                                            g2d,
+                                                            renderKey);
+            if (cached != null) {
+                cached.draw(g2d, x, y);
+            } else {
+                final VertexImage vertexImage = createVertexImage(
+                                                               g2d,
+                                                               renderKey,
+                                                               x,
+                                                               y,
+                                                               imageWidth,
+                                                               imageHeight);
+                Graphics2D target = g2d;
+                if (vertexImage != null) {
+                    target = vertexImage.createGraphics(g2d, x, y);
+                    rc.getGraphicsContext().setDelegate(target);
+                }
+                try {
+                    super.paintShapeForVertex(rc, v, shape);
+                    drawInside((Vertex) v, target, x, y, shape);
+                    drawVertexContents(target,
+                                       (Vertex) v,
+                                       x,
+                                       y,
+                                       shapeWidth,
+                                       shapeHeight,
+                                       icons,
+                                       mainTextLayout,
+                                       iconTextLayout,
+                                       rightCornerText,
+                                       rightCornerTextLayout,
+                                       subtexts,
+                                       subtextLayouts);
+                } finally {
+                    if (vertexImage != null) {
+                        rc.getGraphicsContext().setDelegate(g2d);
+                        target.dispose();
+                        putCachedVertexImage((Vertex) v, vertexImage);
+                        vertexImage.draw(g2d, x, y);
+                    }
+                }
+            }
+
+            final Info info = getInfo((Vertex) v);
+            mAnimationListLock.lock();
+            if (animationList.contains(info)) {
+                /* update animation */
+                final double i = info.getAnimationIndex();
+                mAnimationListLock.unlock();
+                final int barPos =
+                           (int) (i * (shapeWidth) / 100);
+                g2d.setColor(new Color(250, 133, 34,
+                                       50));
+                if (barPos > shapeWidth / 2) {
+                    g2d.fillRect((int) (x + (barPos / 2)),
+                                 (int) y,
+                                 shapeWidth - barPos,
+                                 shapeHeight);
+                } else {
+                    g2d.fillRect((int) (x + shapeWidth / 2 - barPos / 2),
+                                 (int) y,
+                                 barPos,
+                                 shapeHeight);
+                }
+            } else {
+                mAnimationListLock.unlock();
+            }
+        }
 
+        /** Draws the icons and the texts of the vertex. */
+        private void drawVertexContents(final Graphics2D g2d,
+                                        final Vertex v,
+                                        final double x,
+                                        final double y,
+                                        final int shapeWidth,
+                                        final int shapeHeight,
+                                        final List<ImageIcon> icons,
+                                        final TextLayout mainTextLayout,
+                                        final TextLayout iconTextLayout,
+                                        final Subtext rightCornerText,
+                                        final TextLayout rightCornerTextLayout,
+                                        final Subtext[] subtexts,
+                                        final TextLayout[] subtextLayouts) {
+            final double height = getDefaultVertexHeight(v);
             /* icon */
             if (icons != null) {
                 for (final ImageIcon icon : icons) {
@@ -1618,8 +1995,7 @@ public abstract class ResourceGraph {
                         final Paint p =
                            new GradientPaint((float) x + shapeWidth / 2,
                                              (float) y,
-                                             getVertexFillSecondaryColor(
-                                                                   (Vertex) v),
+                                             getVertexFillSecondaryColor(v),
                                              (float) x + shapeWidth / 2,
                                              (float) y + shapeHeight,
                                              color,
@@ -1640,31 +2016,6 @@ public abstract class ResourceGraph {
                     i++;
                 }
             }
-
-            final Info info = getInfo((Vertex) v);
-            mAnimationListLock.lock();
-            if (animationList.contains(info)) {
-                /* update animation */
-                final double i = info.getAnimationIndex();
-                mAnimationListLock.unlock();
-                final int barPos =
-                           (int) (i * (shapeWidth) / 100);
-                g2d.setColor(new Color(250, 133, 34,
-                                       50));
-                if (barPos > shapeWidth / 2) {
-                    g2d.fillRect((int) (x + (barPos / 2)),
-                                 (int) y,
-                                 shapeWidth - barPos,
-                                 shapeHeight);
-                } else {
-                    g2d.fillRect((int) (x + shapeWidth / 2 - barPos / 2),
-                                 (int) y,
-                                 barPos,
-                                 shapeHeight);
-                }
-            } else {
-                mAnimationListLock.unlock();
-            }
         }
     }
 
@@ -1757,6 +2108,131 @@ public abstract class ResourceGraph {
         return tl;
     }
 
+    /**
+     * Returns the key, that changes, when the look of the vertex changes.
+     * The texts are passed, because the renderer has them already.
+     */
+    private String getVertexRenderKey(final Vertex v,
+                                      final String mainText,
+                                      final String iconText,
+                                      final Subtext rightCornerText,
+                                      final Subtext[] subtexts,
+                                      final List<ImageIcon> icons) {
+        final StringBuilder key = new StringBuilder(200);
+        key.append(mainText).append('\n').append(iconText).append('\n');
+        appendSubtext(key, rightCornerText);
+        if (subtexts != null) {
+            for (final Subtext subtext : subtexts) {
+                appendSubtext(key, subtext);
+            }
+        }
+        if (icons != null) {
+            for (final ImageIcon icon : icons) {
+                key.append(System.identityHashCode(icon.getImage()));
+                key.append(',');
+            }
+        }
+        key.append('\n');
+        appendColor(key, getVertexFillColor(v));
+        appendColor(key, getVertexFillSecondaryColor(v));
+        key.append(isPicked(v)).append(isTestOnly()).append('\n');
+        key.append(getVertexRenderState(v)).append('\n');
+        return key.toString();
+    }
+
+    /** Returns the key of the vertex look, for the dirty check. */
+    private String getVertexRenderKey(final Vertex v) {
+        final boolean testOnly = isTestOnly();
+        return getVertexRenderKey(v,
+                                  getMainText(v, testOnly),
+                                  getIconText(v, testOnly),
+                                  getRightCornerText(v, testOnly),
+                                  getSubtexts(v, testOnly),
+                                  getIconsForVertex(v, testOnly));
+    }
+
+    /** Appends the subtext with its colors to the key. */
+    private static void appendSubtext(final StringBuilder key,
+                                      final Subtext subtext) {
+        if (subtext != null) {
+            key.append(subtext.getSubtext());
+            appendColor(key, subtext.getColor());
+            appendColor(key, subtext.getTextColor());
+        }
+        key.append('\n');
+    }
+
+    /** Appends the color to the key. */
+    private static void appendColor(final StringBuilder key,
+                                    final Color color) {
+        if (color == null) {
+            key.append('-');
+        } else {
+            key.append(Integer.toHexString(color.getRGB()));
+        }
+        key.append(',');
+    }
+
+    /**
+     * Returns the state of the vertex, that is painted in drawInside, e.g.
+     * colors of the hosts and how much is used. The rendered vertex is
+     * cached, till this or the texts change.
+     */
+    protected abstract String getVertexRenderState(final Vertex v);
+
+    /**
+     * Returns the rendered vertex, if it was rendered with the same key and
+     * scale, or null.
+     */
+    private VertexImage getCachedVertexImage(final Vertex v,
+                                             final Graphics2D g2d,
+                                             final String key) {
+        final VertexImage vertexImage = vertexImageCache.get(v);
+        if (vertexImage != null
+            && vertexImage.isValid(key, g2d.getTransform())) {
+            return vertexImage;
+        }
+        return null;
+    }
+
+    /** Caches the rendered vertex. */
+    private void putCachedVertexImage(final Vertex v,
+                                      final VertexImage vertexImage) {
+        vertexImageCache.put(v, vertexImage);
+    }
+
+    /**
+     * Returns a new image, that the vertex can be rendered into, or null if
+     * the view is being zoomed or transformed in other way than scaled.
+     */
+    private VertexImage createVertexImage(final Graphics2D g2d,
+                                          final String key,
+                                          final double x,
+                                          final double y,
+                                          final int width,
+                                          final int height) {
+        final AffineTransform t = g2d.getTransform();
+        if ((t.getType() & ~(AffineTransform.TYPE_TRANSLATION
+                             | AffineTransform.TYPE_UNIFORM_SCALE
+                             | AffineTransform.TYPE_GENERAL_SCALE)) != 0) {
+            return null;
+        }
+        final long now = System.currentTimeMillis();
+        if (t.getScaleX() != renderScale) {
+            renderScale = t.getScaleX();
+            renderScaleChanged = now;
+        }
+        if (now - renderScaleChanged < ZOOM_SETTLE_TIME) {
+            /* don't render the images for every step of the zooming */
+            return null;
+        }
+        if (width * t.getScaleX() * height * t.getScaleY()
+            > MAX_VERTEX_IMAGE_PIXELS) {
+            return null;
+        }
+        return new VertexImage(key, t, width, height);
+    }
+
     /** Draws text on the vertex. */
     private void drawVertexText(final Graphics2D g2d,
                                 final TextLayout textLayout,
@@ -0,0 +1,346 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2013, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.gui;
+
+import lcmc.gui.resources.BlockDevInfo;
+import lcmc.gui.resources.DrbdResourceInfo;
+import lcmc.gui.resources.DrbdVolumeInfo;
+import lcmc.gui.resources.ServiceInfo;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Indexes of the services, DRBD resources, DRBD volumes and block devices
+ * of one cluster.
+ *
+ * The indexes are immutable snapshots, that are replaced on every change,
+ * so that the readers, e.g. the status and event handlers, don't lock
+ * anything and always see consistent indexes. The changes are rare
+ * compared to the lookups, they are serialized by this object.
+ *
+ * @author Rasto Levrinc
+ *
+ */
+public final class ResourceRegistry {
+    /** Pattern of the DRBD device with the minor number. */
+    private static final Pattern DRBD_MINOR_PATTERN =
+                                        Pattern.compile("^/dev/drbd(\\d+)$");
+    /** Current snapshot. */
+    private volatile Snapshot snapshot = new Snapshot();
+
+    /** Returns the current snapshot, it never changes. */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /** Adds the service by its crm id, if the id is not taken yet. */
+    public synchronized void putCRMIdIfAbsent(final String crmId,
+                                              final ServiceInfo si) {
+        if (!snapshot.crmIdToService.containsKey(crmId)) {
+            putCRMId(crmId, si);
+        }
+    }
+
+    /** Adds the service by its crm id. */
+    public synchronized void putCRMId(final String crmId,
+                                      final ServiceInfo si) {
+        final Snapshot s = new Snapshot(snapshot);
+        s.crmIdToService = put(s.crmIdToService, crmId, si);
+        snapshot = s;
+    }
+
+    /** Removes the service with the crm id. */
+    public synchronized void removeCRMId(final String crmId) {
+        if (snapshot.crmIdToService.containsKey(crmId)) {
+            final Snapshot s = new Snapshot(snapshot);
+            s.crmIdToService = remove(s.crmIdToService, crmId);
+            snapshot = s;
+        }
+    }
+
+    /** Adds the service by its name (hb type) and id. */
+    public synchronized void putService(final String name,
+                                        final String id,
+                                        final ServiceInfo si) {
+        final Map<String, ServiceInfo> oldIds =
+                                         snapshot.nameToServices.get(name);
+        final Map<String, ServiceInfo> ids =
+                                new TreeMap<String, ServiceInfo>(
+                                                String.CASE_INSENSITIVE_ORDER);
+        if (oldIds != null) {
+            ids.putAll(oldIds);
+        }
+        ids.put(id, si);
+        final Snapshot s = new Snapshot(snapshot);
+        s.nameToServices = putService(s.nameToServices,
+                                      name,
+                                      Collections.unmodifiableMap(ids));
+        snapshot = s;
+    }
+
+    /** Removes the service with the name and id. */
+    public synchronized void removeService(final String name,
+                                           final String id) {
+        final Map<String, ServiceInfo> oldIds =
+                                         snapshot.nameToServices.get(name);
+        if (oldIds == null || !oldIds.containsKey(id)) {
+            return;
+        }
+        final Snapshot s = new Snapshot(snapshot);
+        if (oldIds.size() == 1) {
+            final Map<String, Map<String, ServiceInfo>> services =
+                              new TreeMap<String, Map<String, ServiceInfo>>(
+                                                String.CASE_INSENSITIVE_ORDER);
+            services.putAll(s.nameToServices);
+            services.remove(name);
+            s.nameToServices = Collections.unmodifiableMap(services);
+        } else {
+            final Map<String, ServiceInfo> ids =
+                                new TreeMap<String, ServiceInfo>(
+                                                String.CASE_INSENSITIVE_ORDER);
+            ids.putAll(oldIds);
+            ids.remove(id);
+            s.nameToServices = putService(s.nameToServices,
+                                          name,
+                                          Collections.unmodifiableMap(ids));
+        }
+        snapshot = s;
+    }
+
+    /** Adds the DRBD resource by its name. */
+    public synchronized void putDrbdResource(final String name,
+                                             final DrbdResourceInfo dri) {
+        final Snapshot s = new Snapshot(snapshot);
+        s.drbdResources = put(s.drbdResources, name, dri);
+        snapshot = s;
+    }
+
+    /** Removes the DRBD resource and returns it or null. */
+    public synchronized DrbdResourceInfo removeDrbdResource(final String name) {
+        final DrbdResourceInfo dri = snapshot.drbdResources.get(name);
+        if (snapshot.drbdResources.containsKey(name)) {
+            final Snapshot s = new Snapshot(snapshot);
+            s.drbdResources = remove(s.drbdResources, name);
+            snapshot = s;
+        }
+        return dri;
+    }
+
+    /** Adds the DRBD volume by its device, e.g. /dev/drbd0. */
+    public synchronized void putDrbdDevice(final String device,
+                                           final DrbdVolumeInfo dvi) {
+        final Snapshot s = new Snapshot(snapshot);
+        s.drbdDevices = put(s.drbdDevices, device, dvi);
+        final String minor = getMinor(device);
+        if (minor != null) {
+            s.drbdMinors = put(s.drbdMinors, minor, dvi);
+        }
+        snapshot = s;
+    }
+
+    /** Removes the DRBD volume with the device. */
+    public synchronized void removeDrbdDevice(final String device) {
+        if (!snapshot.drbdDevices.containsKey(device)) {
+            return;
+        }
+        final Snapshot s = new Snapshot(snapshot);
+        s.drbdDevices = remove(s.drbdDevices, device);
+        final String minor = getMinor(device);
+        if (minor != null) {
+            s.drbdMinors = remove(s.drbdMinors, minor);
+        }
+        snapshot = s;
+    }
+
+    /**
+     * Replaces the block devices of the host. They are indexed by the name
+     * and by the device, that the name links to.
+     */
+    public synchronized void putBlockDevInfos(
+                                   final String hostName,
+                                   final Collection<BlockDevInfo> bdis) {
+        final Map<String, BlockDevInfo> disks =
+                                        new HashMap<String, BlockDevInfo>();
+        for (final BlockDevInfo bdi : bdis) {
+            final String readlink = bdi.getBlockDevice().getReadlink();
+            if (readlink != null) {
+                disks.put(readlink, bdi);
+            }
+        }
+        /* the names win */
+        for (final BlockDevInfo bdi : bdis) {
+            disks.put(bdi.getName(), bdi);
+        }
+        final Snapshot s = new Snapshot(snapshot);
+        s.hostDisks = put(s.hostDisks,
+                          hostName,
+                          Collections.unmodifiableMap(disks));
+        snapshot = s;
+    }
+
+    /** Returns the minor number of the DRBD device or null. */
+    private static String getMinor(final String device) {
+        if (device == null) {
+            return null;
+        }
+        final Matcher m = DRBD_MINOR_PATTERN.matcher(device);
+        if (m.matches()) {
+            return m.group(1);
+        }
+        return null;
+    }
+
+    /** Returns an unmodifiable copy of the map with the new entry. */
+    private static <V> Map<String, V> put(final Map<String, V> map,
+                                          final String key,
+                                          final V value) {
+        final Map<String, V> copy = new HashMap<String, V>(map);
+        copy.put(key, value);
+        return Collections.unmodifiableMap(copy);
+    }
+
+    /** Returns an unmodifiable copy of the map without the key. */
+    private static <V> Map<String, V> remove(final Map<String, V> map,
+                                             final String key) {
+        final Map<String, V> copy = new HashMap<String, V>(map);
+        copy.remove(key);
+        return Collections.unmodifiableMap(copy);
+    }
+
+    /** Returns an unmodifiable copy of the services with the new ids. */
+    private static Map<String, Map<String, ServiceInfo>> putService(
+                               final Map<String, Map<String, ServiceInfo>> map,
+                               final String name,
+                               final Map<String, ServiceInfo> ids) {
+        final Map<String, Map<String, ServiceInfo>> copy =
+                              new TreeMap<String, Map<String, ServiceInfo>>(
+                                                String.CASE_INSENSITIVE_ORDER);
+        copy.putAll(map);
+        copy.put(name, ids);
+        return Collections.unmodifiableMap(copy);
+    }
+
+    /**
+     * Immutable indexes. The fields are set only before the snapshot is
+     * published, the unchanged maps are shared with the previous snapshot.
+     */
+    public static final class Snapshot {
+        /** Crm id to service info. */
+        private Map<String, ServiceInfo> crmIdToService;
+        /** Name (hb type) to id to service info. */
+        private Map<String, Map<String, ServiceInfo>> nameToServices;
+        /** DRBD resource name to DRBD resource info. */
+        private Map<String, DrbdResourceInfo> drbdResources;
+        /** DRBD device to DRBD volume info. */
+        private Map<String, DrbdVolumeInfo> drbdDevices;
+        /** DRBD minor number to DRBD volume info. */
+        private Map<String, DrbdVolumeInfo> drbdMinors;
+        /** Host name to disk to block device info. */
+        private Map<String, Map<String, BlockDevInfo>> hostDisks;
+
+        /** Prepares an empty <code>Snapshot</code> object. */
+        private Snapshot() {
+            crmIdToService = Collections.emptyMap();
+            nameToServices = Collections.emptyMap();
+            drbdResources = Collections.emptyMap();
+            drbdDevices = Collections.emptyMap();
+            drbdMinors = Collections.emptyMap();
+            hostDisks = Collections.emptyMap();
+        }
+
+        /** Prepares a copy of the <code>Snapshot</code> object. */
+        private Snapshot(final Snapshot s) {
+            crmIdToService = s.crmIdToService;
+            nameToServices = s.nameToServices;
+            drbdResources = s.drbdResources;
+            drbdDevices = s.drbdDevices;
+            drbdMinors = s.drbdMinors;
+            hostDisks = s.hostDisks;
+        }
+
+        /** Returns the service with the crm id or null. */
+        public ServiceInfo getServiceByCRMId(final String crmId) {
+            return crmIdToService.get(crmId);
+        }
+
+        /** Returns unmodifiable map from the crm ids to the services. */
+        public Map<String, ServiceInfo> getCRMIdToService() {
+            return crmIdToService;
+        }
+
+        /**
+         * Returns unmodifiable map from the service names to the ids to the
+         * services.
+         */
+        public Map<String, Map<String, ServiceInfo>> getNameToServices() {
+            return nameToServices;
+        }
+
+        /** Returns the DRBD resource with the name or null. */
+        public DrbdResourceInfo getDrbdResource(final String name) {
+            return drbdResources.get(name);
+        }
+
+        /** Returns unmodifiable map from names to the DRBD resources. */
+        public Map<String, DrbdResourceInfo> getDrbdResources() {
+            return drbdResources;
+        }
+
+        /** Returns unmodifiable map from devices to the DRBD volumes. */
+        public Map<String, DrbdVolumeInfo> getDrbdDevices() {
+            return drbdDevices;
+        }
+
+        /** Returns the DRBD volume with the minor number or null. */
+        public DrbdVolumeInfo getDrbdVolumeByMinor(final String minor) {
+            return drbdMinors.get(minor);
+        }
+
+        /** Returns the DRBD volume of the resource or null. */
+        public DrbdVolumeInfo getDrbdVolume(final String resName,
+                                            final String volumeNr) {
+            final DrbdResourceInfo dri = drbdResources.get(resName);
+            if (dri == null) {
+                return null;
+            }
+            return dri.getDrbdVolumeInfo(volumeNr);
+        }
+
+        /**
+         * Returns the block device on the host by its name or the device it
+         * links to, or null.
+         */
+        public BlockDevInfo getBlockDevInfo(final String hostName,
+                                            final String disk) {
+            final Map<String, BlockDevInfo> disks = hostDisks.get(hostName);
+            if (disks == null) {
+                return null;
+            }
+            return disks.get(disk);
+        }
+    }
+}
@@ -69,20 +69,39 @@ public final class SSHGui {
     private final ProgressBar progressBar;
     /** Default length of fields. */
     private static final int DEFAULT_FIELD_LENGTH = 20;
+    /**
+     * Lock, that is held while a dialog is shown. The ssh guis, that share
+     * it, show one dialog at a time.
+     */
+    private final Object dialogLock;
 
     /** Prepares a new <code>SSHGui</code> object. */
     public SSHGui(final Container rootPane,
                   final Host host,
                   final ProgressBar progressBar) {
+        this(rootPane, host, progressBar, new Object());
+    }
+
+    /**
+     * Prepares a new <code>SSHGui</code> object, that shows its dialogs
+     * only while holding the dialog lock.
+     */
+    public SSHGui(final Container rootPane,
+                  final Host host,
+                  final ProgressBar progressBar,
+                  final Object dialogLock) {
         this.rootPane = rootPane;
         this.host = host;
         this.progressBar = progressBar;
+        this.dialogLock = dialogLock;
     }
 
     /** Displays Confirm Dialog whith Yes, No, Cancel options. */
     public int getConfirmDialogChoice(final String message) {
         LOG.debug("getConfirmDialogChoice: start");
-        return JOptionPane.showConfirmDialog(rootPane, message);
+        synchronized (dialogLock) {
+            return JOptionPane.showConfirmDialog(rootPane, message);
+        }
     }
 
     /** Checks if choice is yes option. */
@@ -101,21 +120,23 @@ public final class SSHGui {
                                        final String underText,
                                        final String defaultValue,
                                        final boolean isPassword) {
-        EnterSomethingDialog esd;
-        if (rootPane instanceof JDialog) {
-            esd = new EnterSomethingDialog((JDialog) rootPane, title,
-                    content, underText, defaultValue, isPassword);
-        } else if (rootPane instanceof JApplet) {
-            esd = new EnterSomethingDialog((JApplet) rootPane, title,
-                    content, underText, defaultValue, isPassword);
-        } else {
-            esd = new EnterSomethingDialog((Frame) rootPane, title,
-                    content, underText, defaultValue, isPassword);
-        }
+        synchronized (dialogLock) {
+            EnterSomethingDialog esd;
+            if (rootPane instanceof JDialog) {
+                esd = new EnterSomethingDialog((JDialog) rootPane, title,
+                        content, underText, defaultValue, isPassword);
+            } else if (rootPane instanceof JApplet) {
+                esd = new EnterSomethingDialog((JApplet) rootPane, title,
+                        content, underText, defaultValue, isPassword);
+            } else {
+                esd = new EnterSomethingDialog((Frame) rootPane, title,
+                        content, underText, defaultValue, isPassword);
+            }
 
-        esd.setVisible(true);
+            esd.setVisible(true);
 
-        return esd.answer;
+            return esd.answer;
+        }
     }
 
     /**
@@ -28,7 +28,10 @@ import lcmc.utilities.Tools;
 import lcmc.utilities.ExecCallback;
 import lcmc.robotest.RoboTest;
 import lcmc.utilities.SSH;
+import lcmc.utilities.UpdateScheduler;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -44,6 +47,7 @@ import javax.swing.event.CaretEvent;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.AttributeSet;
 import javax.swing.text.DefaultCaret;
+import javax.swing.text.Element;
 import java.awt.Graphics;
 import java.awt.Rectangle;
 import java.awt.Dimension;
@@ -75,6 +79,14 @@ public final class TerminalPanel extends JScrollPane {
                                 LoggerFactory.getLogger(TerminalPanel.class);
     /** Serial version UID. */
     private static final long serialVersionUID = 1L;
+    /** Lines that are kept in the terminal area, older lines are removed. */
+    private static final int MAX_LINES =
+                            Tools.getDefaultInt("TerminalPanel.MaxLines");
+    /**
+     * How many lines over the limit are removed at once, so that the
+     * document is shifted once per this many lines and not for every line.
+     */
+    private static final int TRIM_LINES = Math.max(1, MAX_LINES / 10);
     /** Host data object. */
     private final Host host;
     /** Text pane with terminal area. */
@@ -106,6 +118,18 @@ public final class TerminalPanel extends JScrollPane {
                                             new HashMap<String, Color>();
     /** Default text color of the output in the terminal. */
     private final Color defaultOutputColor;
+    /**
+     * Text, that was not added to the terminal area yet. It is added once
+     * per frame.
+     */
+    private final List<Chunk> pendingChunks = new ArrayList<Chunk>();
+    /** Adds the pending text to the terminal area. */
+    private final Runnable flushPendingChunks = new Runnable() {
+        @Override
+        public void run() {
+            flushPendingChunks();
+        }
+    };
 
     /** Command to list all the cheats. */
     private static final String CHEAT_LIST  = "cheatlist";
@@ -350,7 +374,10 @@ public final class TerminalPanel extends JScrollPane {
     }
 
 
-    /** Appends a text whith specified color to the terminal area. */
+    /**
+     * Appends a text whith specified color to the terminal area. The
+     * characters, that are added at the end, are inserted together.
+     */
     private void append(final String text,
                         final MutableAttributeSet colorAS) {
         userCommand = false;
@@ -359,25 +386,28 @@ public final class TerminalPanel extends JScrollPane {
         final int end = terminalArea.getDocument().getLength();
         pos = end + pos - maxPos;
         maxPos = end;
-        final char[] chars = text.toCharArray();
+        final StringBuilder run = new StringBuilder(text.length());
         StringBuilder colorString = new StringBuilder(10);
         boolean inside = false;
-        for (int i = 0; i < chars.length; i++) {
-            final char c = chars[i];
-            final String s = Character.toString(c);
+        final int length = text.length();
+        for (int i = 0; i < length; i++) {
+            final char c = text.charAt(i);
             boolean printit = true;
             if (c == 8) { /* one position to the left */
+                insertRun(doc, run, colorAS);
                 printit = false;
                 pos--;
-            } else if (i < chars.length - 1
-                       && c == 13 && chars[i + 1] == 10) { /* new line */
+            } else if (i < length - 1
+                       && c == 13 && text.charAt(i + 1) == 10) { /* new line */
                 prevLine = maxPos + 2;
                 pos = maxPos;
             } else if (c == 13) { /* beginning of the same line */
+                insertRun(doc, run, colorAS);
                 pos = prevLine;
                 printit = false;
             } else if (c == 27) {
                 /* funny colors, e.g. in sles */
+                insertRun(doc, run, colorAS);
                 inside = true;
                 printit = false;
                 colorString = new StringBuilder(10);
@@ -411,26 +441,30 @@ public final class TerminalPanel extends JScrollPane {
                         }
                     }
                 } else if (printit) {
-                    colorString.append(s);
+                    colorString.append(c);
                 }
                 printit = false;
             }
 
             if (printit) {
                 if (pos < maxPos) {
+                    insertRun(doc, run, colorAS);
                     try {
                         commandOffset = pos - 1;
                         doc.removeForced(pos, 1);
                     } catch (javax.swing.text.BadLocationException e) {
                         LOG.appError("append: terminalPanel pos: " + pos, e);
                     }
-                }
-                try {
-                    doc.insertString(pos,
-                                     s,
-                                     colorAS);
-                } catch (javax.swing.text.BadLocationException e1) {
-                    LOG.appError("append: terminalPanel pos: " + pos, e1);
+                    try {
+                        doc.insertString(pos,
+                                         Character.toString(c),
+                                         colorAS);
+                    } catch (javax.swing.text.BadLocationException e1) {
+                        LOG.appError("append: terminalPanel pos: " + pos, e1);
+                    }
+                } else {
+                    /* at the end, inserted later with the others */
+                    run.append(c);
                 }
                 pos++;
                 if (maxPos < pos) {
@@ -438,12 +472,93 @@ public final class TerminalPanel extends JScrollPane {
                 }
             }
         }
+        insertRun(doc, run, colorAS);
         commandOffset = terminalArea.getDocument().getLength();
         terminalArea.setCaretPosition(terminalArea.getDocument().getLength());
         mPosLock.unlock();
         userCommand = true;
     }
 
+    /**
+     * Inserts the characters, that were collected by append, at the end of
+     * the document and clears them.
+     */
+    private void insertRun(final MyDocument doc,
+                           final StringBuilder run,
+                           final AttributeSet colorAS) {
+        if (run.length() == 0) {
+            return;
+        }
+        final int end = doc.getLength();
+        try {
+            doc.insertString(end, run.toString(), colorAS);
+        } catch (javax.swing.text.BadLocationException e) {
+            LOG.appError("insertRun: terminalPanel pos: " + end, e);
+        }
+        run.setLength(0);
+    }
+
+    /**
+     * Adds the text to the terminal area in the next frame. The text, that
+     * comes in one frame, is added at once.
+     */
+    private void appendLater(final String text,
+                             final MutableAttributeSet colorAS) {
+        synchronized (pendingChunks) {
+            final int last = pendingChunks.size() - 1;
+            if (last >= 0 && pendingChunks.get(last).colorAS == colorAS) {
+                pendingChunks.get(last).text.append(text);
+            } else {
+                pendingChunks.add(new Chunk(text, colorAS));
+            }
+        }
+        UpdateScheduler.markDirty(this, "output", flushPendingChunks);
+    }
+
+    /** Adds the pending text to the terminal area. */
+    private void flushPendingChunks() {
+        final List<Chunk> chunks;
+        synchronized (pendingChunks) {
+            chunks = new ArrayList<Chunk>(pendingChunks);
+            pendingChunks.clear();
+        }
+        for (final Chunk chunk : chunks) {
+            append(chunk.text.toString(), chunk.colorAS);
+        }
+        trimTerminalArea();
+    }
+
+    /**
+     * Removes the oldest lines, if there are more than MAX_LINES lines.
+     * They are removed TRIM_LINES lines at a time, the line count and the
+     * line offsets come from the document without scanning it.
+     */
+    private void trimTerminalArea() {
+        final MyDocument doc = (MyDocument) terminalArea.getStyledDocument();
+        final Element root = doc.getDefaultRootElement();
+        final int lines = root.getElementCount();
+        if (lines <= MAX_LINES + TRIM_LINES) {
+            return;
+        }
+        final int len = root.getElement(lines - MAX_LINES).getStartOffset();
+        mPosLock.lock();
+        try {
+            final int oldCommandOffset = commandOffset;
+            /* so that the caret listener does not move the caret there */
+            commandOffset = 0;
+            doc.removeForced(0, len);
+            commandOffset = Math.max(0, oldCommandOffset - len);
+            pos = Math.max(0, pos - len);
+            maxPos = Math.max(0, maxPos - len);
+            prevLine = Math.max(0, prevLine - len);
+            terminalArea.setCaretPosition(doc.getLength());
+        } catch (BadLocationException e) {
+            LOG.appError("trimTerminalArea: len: " + len, e);
+        } finally {
+            mPosLock.unlock();
+        }
+    }
+
     /** Sets the terminal area editable. */
     void setEditable(final boolean editable) {
         terminalArea.setEditable(editable);
@@ -506,77 +621,46 @@ public final class TerminalPanel extends JScrollPane {
      * and scrolls the text up.
      */
     public void nextCommand() {
-        Tools.invokeLater(!Tools.CHECK_SWING_THREAD, new Runnable() {
-            @Override
-            public void run() {
-                append(prompt(), promptColor);
-            }
-        });
+        appendLater(prompt(), promptColor);
     }
 
     /** Adds command to the terminal textarea and scrolls up. */
     public void addCommand(final String command) {
         final String[] lines = command.split("\\r?\\n");
 
-        Tools.invokeLater(new Runnable() {
-            @Override
-            public void run() {
-                append(lines[0], commandColor);
-                for (int i = 1; i < lines.length; i++) {
-
-                    append(" \\\n> " + lines[i], commandColor);
-                }
-                append("\n", commandColor);
-            }
-        });
+        appendLater(lines[0], commandColor);
+        for (int i = 1; i < lines.length; i++) {
+            appendLater(" \\\n> " + lines[i], commandColor);
+        }
+        appendLater("\n", commandColor);
     }
 
     /** Adds command output to the terminal textarea and scrolls up. */
     public void addCommandOutput(final String output) {
-        Tools.invokeLater(!Tools.CHECK_SWING_THREAD, new Runnable() {
-            @Override
-            public void run() {
-                append(output, outputColor);
-            }
-        });
+        appendLater(output, outputColor);
     }
 
     /** Adds array of command output to the terminal textarea and scrolls up. */
     void addCommandOutput(final String[] output) {
-        Tools.invokeLater(new Runnable() {
-            @Override
-            public void run() {
-                for (int i = 0; i < output.length; i++) {
-                    if (output[i] != null) {
-                        String newLine = "";
-                        if (i != output.length - 1) {
-                            newLine = "\n";
-                        }
-                        append(output[i] + newLine, outputColor);
-                    }
+        for (int i = 0; i < output.length; i++) {
+            if (output[i] != null) {
+                String newLine = "";
+                if (i != output.length - 1) {
+                    newLine = "\n";
                 }
+                appendLater(output[i] + newLine, outputColor);
             }
-        });
+        }
     }
 
     /** Adds content string (output of a command) to the terminal area. */
     public void addContent(final String c) {
-        Tools.invokeLater(new Runnable() {
-            @Override
-            public void run() {
-                append(c, outputColor);
-            }
-        });
+        appendLater(c, outputColor);
     }
 
     /** Adds content to the terminal textarea and scrolls up. */
     public void addContentErr(final String c) {
-        Tools.invokeLater(new Runnable() {
-            @Override
-            public void run() {
-                append(c, errorColor);
-            }
-        });
+        appendLater(c, errorColor);
     }
 
 
@@ -741,6 +825,9 @@ public final class TerminalPanel extends JScrollPane {
 
     /** Reset the terminal are. */
     public void resetTerminalArea() {
+        synchronized (pendingChunks) {
+            pendingChunks.clear();
+        }
         for (int i = 0; i < 10; i++) { /* try 10 times */
             try {
                 final MyDocument doc =
@@ -760,4 +847,18 @@ public final class TerminalPanel extends JScrollPane {
             }
         }
     }
+
+    /** Text with its color, that waits to be added to the terminal area. */
+    private static final class Chunk {
+        /** The text. */
+        private final StringBuilder text;
+        /** Color of the text. */
+        private final MutableAttributeSet colorAS;
+
+        /** Prepares a new <code>Chunk</code> object. */
+        Chunk(final String text, final MutableAttributeSet colorAS) {
+            this.text = new StringBuilder(text);
+            this.colorAS = colorAS;
+        }
+    }
 }
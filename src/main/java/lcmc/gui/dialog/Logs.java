@@ -184,7 +184,7 @@ class Logs extends ConfigDialog {
         final Map<String, String> replaceHash = getOptionsHash();
 
         int i = 0;
-        final String stacktrace = Tools.getStackTrace();
+        final Throwable callSite = Tools.getCallSite();
         for (final Host host : hosts) {
             final int index = i;
             final String command = host.getDistCommand(logFileCommand(),
@@ -202,6 +202,8 @@ class Logs extends ConfigDialog {
                                  texts[index] = host.getName()
                                                 + ": "
                                                 + ans + "\n";
+                                 final String stacktrace =
+                                        Tools.getCallSiteStackTrace(callSite);
                                  LOG.sshError(host,
                                               command,
                                               ans,
@@ -61,6 +61,8 @@ public class NewHost extends DialogHost {
     private Widget sshPortField;
     /** Whether sudo should be used. */
     private Widget useSudoField;
+    /** Whether the ssh traffic should be compressed. */
+    private Widget compressionField;
     /** Whether the fields are big (if more hops are being used). */
     private boolean bigFields = false;
     /** Normal widths of the fields. */
@@ -94,6 +96,8 @@ public class NewHost extends DialogHost {
         getHost().setUseSudo("true".equals(useSudoString));
         Tools.getConfigData().setLastEnteredUseSudo(
                                                 "true".equals(useSudoString));
+        getHost().setSSHCompression(
+                 "true".equals(compressionField.getStringValue().trim()));
         if (!Tools.getConfigData().existsHost(getHost())) {
             Tools.getConfigData().addHostToHosts(getHost());
             final TerminalPanel terminalPanel = new TerminalPanel(getHost());
@@ -399,8 +403,29 @@ public class NewHost extends DialogHost {
         useSudoField.setBackground(useSudo,
                                    useSudo,
                                    true);
+        /* ssh compression */
+        final JLabel compressionLabel = new JLabel(
+                        Tools.getString("Dialog.Host.NewHost.SSHCompression"));
 
-        SpringUtilities.makeCompactGrid(inputPane, 2, 4,  // rows, cols
+        inputPane.add(compressionLabel);
+        final String compression =
+                             Boolean.toString(getHost().isSSHCompression());
+        compressionField = WidgetFactory.createInstance(
+                                      Widget.GUESS_TYPE,
+                                      compression,
+                                      new String[]{"true", "false"},
+                                      Widget.NO_REGEXP,
+                                      50,
+                                      Widget.NO_ABBRV,
+                                      new AccessMode(ConfigData.AccessType.RO,
+                                                     !AccessMode.ADVANCED),
+                                      Widget.NO_BUTTON);
+        compressionLabel.setLabelFor(compressionField);
+        inputPane.add(compressionField);
+        inputPane.add(new JLabel(""));
+        inputPane.add(new JLabel(""));
+
+        SpringUtilities.makeCompactGrid(inputPane, 3, 4,  // rows, cols
                                                    1, 1,  // initX, initY
                                                    1, 1); // xPad, yPad
         p.add(inputPane, BorderLayout.SOUTH);
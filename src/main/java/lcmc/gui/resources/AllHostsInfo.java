@@ -26,6 +26,7 @@ import lcmc.gui.Browser;
 import lcmc.gui.widget.Widget;
 import lcmc.gui.TerminalPanel;
 import lcmc.data.Cluster;
+import lcmc.data.ClusterHealth;
 import lcmc.data.Clusters;
 import lcmc.data.Host;
 import lcmc.data.ConfigData;
@@ -34,6 +35,7 @@ import lcmc.utilities.UpdatableItem;
 import lcmc.utilities.Tools;
 import lcmc.utilities.MyMenuItem;
 import lcmc.utilities.MyButton;
+import lcmc.utilities.UpdateScheduler;
 
 import javax.swing.JComponent;
 import javax.swing.JPanel;
@@ -89,6 +91,9 @@ public final class AllHostsInfo extends Info {
     /** Backgrounds of the small boxes with clusters. */
     private final Map<Cluster, JPanel> clusterBackgrounds =
                                          new HashMap<Cluster, JPanel>();
+    /** Health summaries in the small boxes with clusters. */
+    private final Map<Cluster, JLabel> clusterHealthLabels =
+                                         new HashMap<Cluster, JLabel>();
     /** Main panel. */
     private final JPanel mainPanel = new JPanel(new GridBagLayout());
     /** Constraints. */
@@ -191,6 +196,7 @@ public final class AllHostsInfo extends Info {
                                                                   cluster);
                             if (p != null) {
                                 clusterBackgrounds.remove(cluster);
+                                clusterHealthLabels.remove(cluster);
                                 allCheckboxes.remove(cluster);
                                 allLoadButtons.remove(cluster);
                                 mainPanel.remove(p);
@@ -363,6 +369,12 @@ public final class AllHostsInfo extends Info {
             nl.setFont(newFont);
             label.add(nl);
         }
+        final JLabel healthLabel = new JLabel();
+        final Font font = healthLabel.getFont();
+        healthLabel.setFont(font.deriveFont(Font.PLAIN,
+                                            (float) (font.getSize() / 1.2)));
+        clusterHealthLabels.put(cluster, healthLabel);
+        label.add(healthLabel);
         final JPanel startPanel = new JPanel(new BorderLayout());
         startPanel.setBackground(Browser.PANEL_BACKGROUND);
         clusterBackgrounds.put(cluster, startPanel);
@@ -620,8 +632,50 @@ public final class AllHostsInfo extends Info {
         });
     }
 
+    /**
+     * Shows the health summary of the started cluster in its box, the box
+     * is green, if the cluster is healthy, orange, if something is
+     * degraded and red, if no node is online. It is called from the status
+     * threads also for the clusters, whose tabs are not shown.
+     */
+    public void updateClusterHealth(final Cluster cluster) {
+        UpdateScheduler.markDirty(cluster, "health", new Runnable() {
+            @Override
+            public void run() {
+                final JLabel healthLabel = clusterHealthLabels.get(cluster);
+                final JPanel startPanel = clusterBackgrounds.get(cluster);
+                if (healthLabel == null || startPanel == null) {
+                    return;
+                }
+                final ClusterHealth health = cluster.getHealth();
+                if (health == null) {
+                    healthLabel.setText("");
+                    healthLabel.setToolTipText(null);
+                    startPanel.setBackground(Browser.PANEL_BACKGROUND);
+                    return;
+                }
+                healthLabel.setText("   " + health);
+                if (health.getFailedResources().isEmpty()) {
+                    healthLabel.setToolTipText(health.toString());
+                } else {
+                    healthLabel.setToolTipText(
+                             health + ": "
+                             + Tools.join(" ", health.getFailedResources()));
+                }
+                if (health.isHealthy()) {
+                    startPanel.setBackground(Color.GREEN);
+                } else if (health.isDown()) {
+                    startPanel.setBackground(Color.RED);
+                } else {
+                    startPanel.setBackground(Color.ORANGE);
+                }
+            }
+        });
+    }
+
     /** Sets this cluster as disconnected. */
     public void setDisconnected(final Cluster cluster) {
+        updateClusterHealth(cluster);
         final MyButton loadButton = allLoadButtons.get(cluster);
         if (loadButton != null) {
             Tools.invokeLater(new Runnable() {
@@ -50,6 +50,7 @@ import lcmc.data.Subtext;
 import lcmc.data.Cluster;
 import lcmc.data.DRBDtestData;
 import lcmc.data.resources.BlockDevice;
+import lcmc.data.resources.DrbdPeerDevice;
 import lcmc.data.AccessMode;
 import lcmc.data.DrbdXML;
 
@@ -365,6 +366,49 @@ public final class BlockDevInfo extends EditableInfo {
         }
     }
 
+    /**
+     * Appends the drbd 9 peers with the replication state, the sync
+     * progress, the out-of-sync data and the rates in KiB.
+     */
+    private void appendDrbdPeers(final BlockDevice bd,
+                                 final StringBuilder tt) {
+        final List<DrbdPeerDevice> peers = bd.getDrbdPeerDevices();
+        if (peers.isEmpty()) {
+            return;
+        }
+        tt.append("<table>");
+        for (final DrbdPeerDevice peer : peers) {
+            tt.append("<tr><td><b>");
+            tt.append(peer.getConnectionName());
+            tt.append(":</b></td><td>");
+            if (peer.getReplicationState() == null) {
+                tt.append(peer.getConnectionState());
+            } else {
+                tt.append(peer.getReplicationState());
+            }
+            tt.append(' ');
+            tt.append(peer.getDiskState());
+            if (peer.getSyncedProgress() != null) {
+                tt.append(' ');
+                tt.append(peer.getSyncedProgress());
+                tt.append('%');
+            }
+            if (peer.getOutOfSync() > 0) {
+                tt.append(" oos:");
+                tt.append(peer.getOutOfSync());
+            }
+            if (peer.getSent() >= 0) {
+                tt.append(" send:");
+                tt.append(peer.getSendRate());
+                tt.append("/s recv:");
+                tt.append(peer.getReceiveRate());
+                tt.append("/s");
+            }
+            tt.append("</td></tr>");
+        }
+        tt.append("</table>");
+    }
+
     /** Returns tool tip for this block device. */
     @Override
     public String getToolTipForGraph(final boolean testOnly) {
@@ -406,6 +450,7 @@ public final class BlockDevInfo extends EditableInfo {
                 tt.append("</td></tr><tr><td><b>ds:</b></td><td>");
                 tt.append(ds);
                 tt.append("</td></tr></table>");
+                appendDrbdPeers(bd, tt);
             } else {
                 tt.append('\n');
                 tt.append(Tools.getString("HostBrowser.Hb.NoInfoAvailable"));
@@ -386,8 +386,7 @@ abstract class DrbdGuiInfo extends EditableInfo {
                             if (!value.equals(Tools.getString(
                                                 "ClusterBrowser.None"))) {
                                 final DrbdResourceInfo v0 =
-                                     getBrowser().getDrbdResHash().get(value);
-                                getBrowser().putDrbdResHash();
+                                     getBrowser().getDrbdResourceInfo(value);
                                 if (v0 != null) {
                                     final String v = v0.getName();
                                     sectionConfig.append("\t\t");
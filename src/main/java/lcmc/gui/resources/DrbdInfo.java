@@ -26,6 +26,7 @@ import lcmc.ProxyHostWizard;
 import lcmc.AddDrbdConfigDialog;
 import lcmc.gui.Browser;
 import lcmc.gui.ClusterBrowser;
+import lcmc.gui.ResourceRegistry;
 import lcmc.gui.widget.Widget;
 import lcmc.data.Host;
 import lcmc.data.DrbdXML;
@@ -653,7 +654,6 @@ public final class DrbdInfo extends DrbdGuiInfo {
                 }
             }
         }
-        getBrowser().putDrbdResHash();
         return index + 1;
     }
 
@@ -749,24 +749,28 @@ public final class DrbdInfo extends DrbdGuiInfo {
     public DrbdVolumeInfo getNewDrbdVolume(
                                     final DrbdResourceInfo dri,
                                     final List<BlockDevInfo> blockDevInfos) {
-        final Map<String, DrbdVolumeInfo> drbdDevHash =
-                                                getBrowser().getDrbdDevHash();
-        int index = 0;
-        String drbdDevStr = "/dev/drbd" + Integer.toString(index);
-
-        while (drbdDevHash.containsKey(drbdDevStr)) {
-            index++;
-            drbdDevStr = "/dev/drbd" + Integer.toString(index);
+        final ResourceRegistry registry = getBrowser().getResourceRegistry();
+        /* the minor is reserved, before an other new volume picks it */
+        synchronized (registry) {
+            final Map<String, DrbdVolumeInfo> drbdDevHash =
+                                    registry.getSnapshot().getDrbdDevices();
+            int index = 0;
+            String drbdDevStr = "/dev/drbd" + Integer.toString(index);
+
+            while (drbdDevHash.containsKey(drbdDevStr)) {
+                index++;
+                drbdDevStr = "/dev/drbd" + Integer.toString(index);
+            }
+            final String volumeNr = dri.getAvailVolumeNumber();
+            final DrbdVolumeInfo dvi =
+                 new DrbdVolumeInfo(volumeNr,
+                                    drbdDevStr,
+                                    dri,
+                                    blockDevInfos,
+                                    getBrowser());
+            getBrowser().putDrbdDevice(drbdDevStr, dvi);
+            return dvi;
         }
-        getBrowser().putDrbdDevHash();
-        final String volumeNr = dri.getAvailVolumeNumber();
-        final DrbdVolumeInfo dvi =
-             new DrbdVolumeInfo(volumeNr,
-                                drbdDevStr,
-                                dri,
-                                blockDevInfos,
-                                getBrowser());
-        return dvi;
     }
 
     /** Add DRBD resource. */
@@ -775,8 +779,7 @@ public final class DrbdInfo extends DrbdGuiInfo {
         dri.getDrbdResource().setDefaultValue(
                                         DrbdResourceInfo.DRBD_RES_PARAM_NAME,
                                         name);
-        getBrowser().getDrbdResHash().put(name, dri);
-        getBrowser().putDrbdResHash();
+        getBrowser().putDrbdResource(name, dri);
 
         final DefaultMutableTreeNode drbdResourceNode =
                                            new DefaultMutableTreeNode(dri);
@@ -912,10 +915,8 @@ public final class DrbdInfo extends DrbdGuiInfo {
     boolean checkResourceFieldsCorrect(final String param,
                                        final String[] params) {
         if (getBrowser().getDrbdResHash().isEmpty()) {
-            getBrowser().putDrbdResHash();
             return false;
         }
-        getBrowser().putDrbdResHash();
         final DrbdXML dxml = getBrowser().getDrbdXML();
         if (dxml != null && dxml.isDrbdDisabled()) {
             return false;
@@ -443,7 +443,6 @@ public final class DrbdResourceInfo extends DrbdGuiInfo {
                     l.add(r);
                 }
             }
-            getBrowser().putDrbdResHash();
             resyncAfterParamWi = WidgetFactory.createInstance(
                                       Widget.Type.COMBOBOX,
                                       defaultItem,
@@ -481,16 +480,14 @@ public final class DrbdResourceInfo extends DrbdGuiInfo {
                 }
             });
             waitForInfoPanel();
-            getBrowser().getDrbdResHash().remove(getName());
-            getBrowser().putDrbdResHash();
+            getBrowser().removeDrbdResource(getName());
             storeComboBoxValues(params);
 
             final String name = getParamSaved(DRBD_RES_PARAM_NAME);
             getDrbdResource().setName(name);
             setName(name);
 
-            getBrowser().getDrbdResHash().put(name, this);
-            getBrowser().putDrbdResHash();
+            getBrowser().putDrbdResource(name, this);
             getBrowser().getDrbdGraph().repaint();
             getDrbdInfo().setAllApplyButtons();
             getDrbdInfo().reloadDRBDResourceComboBoxes();
@@ -696,8 +693,7 @@ public final class DrbdResourceInfo extends DrbdGuiInfo {
 
     /** Remove myself from all hashes. */
     public void removeFromHashes() {
-        getBrowser().getDrbdResHash().remove(getName());
-        getBrowser().putDrbdResHash();
+        getBrowser().removeDrbdResource(getName());
         for (final DrbdVolumeInfo dvi : drbdVolumes) {
             removeDrbdVolumeFromHashes(dvi);
         }
@@ -705,8 +701,7 @@ public final class DrbdResourceInfo extends DrbdGuiInfo {
 
     /** Remove drbd volume from all hashes. */
     public void removeDrbdVolumeFromHashes(final DrbdVolumeInfo drbdVolume) {
-        getBrowser().getDrbdDevHash().remove(drbdVolume.getDevice());
-        getBrowser().putDrbdDevHash();
+        getBrowser().removeDrbdDevice(drbdVolume.getDevice());
         for (final BlockDevInfo bdi : drbdVolume.getBlockDevInfos()) {
             bdi.removeFromDrbd();
         }
@@ -2162,11 +2157,8 @@ public final class DrbdResourceInfo extends DrbdGuiInfo {
                                          outsidePortComboBox.getStringValue());
         }
 
-        final Map<String, DrbdResourceInfo> drbdResHash =
-                                                getBrowser().getDrbdResHash();
-        final DrbdResourceInfo dri = drbdResHash.get(getName());
-        drbdResHash.remove(getName());
-        getBrowser().putDrbdResHash();
+        final DrbdResourceInfo dri =
+                                 getBrowser().removeDrbdResource(getName());
         if (dri != null) {
             dri.setName(null);
         }
@@ -2212,7 +2204,6 @@ public final class DrbdResourceInfo extends DrbdGuiInfo {
                 l.add(r);
             }
         }
-        getBrowser().putDrbdResHash();
 
         if (resyncAfterParamWi != null) {
             final String value = resyncAfterParamWi.getStringValue();
@@ -723,8 +723,7 @@ public final class DrbdVolumeInfo extends EditableInfo
         }
         super.removeMyself(testOnly);
         cb.reload(cb.getDrbdNode(), true);
-        cb.getDrbdDevHash().remove(getDevice());
-        cb.putDrbdDevHash();
+        cb.removeDrbdDevice(getDevice());
         for (final BlockDevInfo bdi : getBlockDevInfos()) {
             bdi.removeFromDrbd();
             bdi.removeMyself(testOnly);
@@ -1191,8 +1190,7 @@ public final class DrbdVolumeInfo extends EditableInfo
                 }
             });
             waitForInfoPanel();
-            getBrowser().getDrbdDevHash().remove(getDevice());
-            getBrowser().putDrbdDevHash();
+            getBrowser().removeDrbdDevice(getDevice());
             storeComboBoxValues(params);
 
             final String volumeNr = getParamSaved(DRBD_VOL_PARAM_NUMBER);
@@ -1201,8 +1199,7 @@ public final class DrbdVolumeInfo extends EditableInfo
             device = drbdDevStr;
             //getDrbdResource().setDevice(drbdDevStr);
 
-            getBrowser().getDrbdDevHash().put(drbdDevStr, this);
-            getBrowser().putDrbdDevHash();
+            getBrowser().putDrbdDevice(drbdDevStr, this);
             getBrowser().getDrbdGraph().repaint();
             getDrbdInfo().setAllApplyButtons();
             getResource().setNew(false);
@@ -1266,10 +1263,8 @@ public final class DrbdVolumeInfo extends EditableInfo
     protected boolean checkParam(final String param, final String newValue) {
         if (getResource().isNew() && DRBD_VOL_PARAM_DEV.equals(param)) {
             if (getBrowser().getDrbdDevHash().containsKey(newValue)) {
-                getBrowser().putDrbdDevHash();
                 return false;
             }
-            getBrowser().putDrbdDevHash();
         }
         return getBrowser().getDrbdXML().checkParam(param, newValue);
     }
@@ -1407,8 +1402,7 @@ public final class DrbdVolumeInfo extends EditableInfo
     /** Sets stored parameters. */
     public void setParameters() {
         Tools.isSwingThread();
-        getBrowser().getDrbdDevHash().put(device, this);
-        getBrowser().putDrbdDevHash();
+        getBrowser().putDrbdDevice(device, this);
         getDrbdVolume().setCommited(true);
     }
 
@@ -80,8 +80,7 @@ final class DrbddiskInfo extends ServiceInfo {
                                       final boolean testOnly) {
         super.removeMyselfNoConfirm(dcHost, testOnly);
         final DrbdResourceInfo dri =
-                        getBrowser().getDrbdResHash().get(getResourceName());
-        getBrowser().putDrbdResHash();
+                        getBrowser().getDrbdResourceInfo(getResourceName());
         if (dri != null) {
             dri.setUsedByCRM(null);
         }
@@ -92,8 +91,7 @@ final class DrbddiskInfo extends ServiceInfo {
     void setParameters(final Map<String, String> resourceNode) {
         super.setParameters(resourceNode);
         final DrbdResourceInfo dri =
-                        getBrowser().getDrbdResHash().get(getResourceName());
-        getBrowser().putDrbdResHash();
+                        getBrowser().getDrbdResourceInfo(getResourceName());
         if (dri != null) {
             if (isManaged(false) && !getService().isOrphaned()) {
                 dri.setUsedByCRM(this);
@@ -254,10 +254,7 @@ public final class GroupInfo extends ServiceInfo {
             getBrowser().removeFromServiceInfoHash(this);
             final String oldHeartbeatId = getHeartbeatId(testOnly);
             if (oldHeartbeatId != null) {
-                getBrowser().mHeartbeatIdToServiceLock();
-                getBrowser().getHeartbeatIdToServiceInfo().remove(
-                                                               oldHeartbeatId);
-                getBrowser().mHeartbeatIdToServiceUnlock();
+                getBrowser().removeHeartbeatId(oldHeartbeatId);
             }
             if (getService().isNew()) {
                 final String id = getComboBoxValue(GUI_ID);
@@ -926,10 +923,8 @@ public final class GroupInfo extends ServiceInfo {
         }
         if (!testOnly) {
             for (final ServiceInfo child : children) {
-                getBrowser().mHeartbeatIdToServiceLock();
-                getBrowser().getHeartbeatIdToServiceInfo().remove(
-                                         child.getService().getHeartbeatId());
-                getBrowser().mHeartbeatIdToServiceUnlock();
+                getBrowser().removeHeartbeatId(
+                                      child.getService().getHeartbeatId());
                 getBrowser().removeFromServiceInfoHash(child);
                 child.cleanup();
                 child.getService().doneRemoving();
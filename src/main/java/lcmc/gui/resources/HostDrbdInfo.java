@@ -142,7 +142,7 @@ public final class HostDrbdInfo extends Info {
         final JTextArea ta = new JTextArea();
         ta.setFont(f);
 
-        final String stacktrace = Tools.getStackTrace();
+        final Throwable callSite = Tools.getCallSite();
         final ExecCallback execCallback =
             new ExecCallback() {
                 @Override
@@ -153,7 +153,11 @@ public final class HostDrbdInfo extends Info {
                 @Override
                 public void doneError(final String ans, final int exitCode) {
                     ta.setText("error");
-                    LOG.sshError(host, "", ans, stacktrace, exitCode);
+                    LOG.sshError(host,
+                                 "",
+                                 ans,
+                                 Tools.getCallSiteStackTrace(callSite),
+                                 exitCode);
                 }
 
             };
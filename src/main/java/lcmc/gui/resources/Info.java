@@ -29,6 +29,7 @@ import lcmc.data.AccessMode;
 import lcmc.utilities.ButtonCallback;
 import lcmc.utilities.Unit;
 import lcmc.utilities.Tools;
+import lcmc.utilities.UpdateScheduler;
 import lcmc.utilities.UpdatableItem;
 import lcmc.utilities.MyCellRenderer;
 import lcmc.utilities.MyButtonCellRenderer;
@@ -74,6 +75,7 @@ import java.util.ArrayList;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.Collections;
+import java.util.Collection;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.Lock;
 
@@ -129,8 +131,8 @@ public class Info implements Comparable<Info> {
     /** Table. */
     private final Map<String, JTable> tables = new HashMap<String, JTable>();
     /** Table models. */
-    private final Map<String, DefaultTableModel> tableModels =
-                                    new HashMap<String, DefaultTableModel>();
+    private final Map<String, RowKeyedTableModel> tableModels =
+                                    new HashMap<String, RowKeyedTableModel>();
     /** Log file icon. */
     public static final ImageIcon LOGFILE_ICON = Tools.createImageIcon(
                                   Tools.getDefault("Info.LogIcon"));
@@ -836,8 +838,8 @@ public class Info implements Comparable<Info> {
         final String[] colNames = getColumnNames(tableName);
         if (colNames != null && colNames.length > 0) {
             final Object[][] data = getTableData(tableName);
-            final DefaultTableModel tableModel =
-                new DefaultTableModel(data, colNames) {
+            final RowKeyedTableModel tableModel =
+                new RowKeyedTableModel(data, colNames) {
                     /** Serial version uid. */
                     private static final long serialVersionUID = 1L;
                 @Override
@@ -845,6 +847,12 @@ public class Info implements Comparable<Info> {
                                                         final int c) {
                         return false;
                     }
+
+                    /** The row color changes, when the status changes. */
+                    @Override
+                    protected Object getRowState(final String key) {
+                        return getTableRowColor(tableName, key);
+                    }
                 };
             tableModels.put(tableName, tableModel);
             final MyButtonCellRenderer bcr = new MyButtonCellRenderer() {
@@ -1099,18 +1107,28 @@ public class Info implements Comparable<Info> {
     public final void updateTable(final String tableName) {
         LOG.debug2("updateTable: " + tableName);
         final JTable table = tables.get(tableName);
-        final DefaultTableModel tableModel = tableModels.get(tableName);
+        final RowKeyedTableModel tableModel = tableModels.get(tableName);
         if (tableModel != null) {
             final String[] colNames = getColumnNames(tableName);
             if (colNames != null && colNames.length > 0) {
-                Tools.invokeLater(!Tools.CHECK_SWING_THREAD, new Runnable() {
+                UpdateScheduler.markDirty(this,
+                                          "table:" + tableName,
+                                          new Runnable() {
                     @Override
                     public void run() {
                         final Object[][] data = getTableData(tableName);
                         LOG.debug2("updateTable: in: " + getName());
-                        tableModel.setDataVector(data, colNames);
-                        tableModel.fireTableDataChanged();
-                        Tools.resizeTable(table, getDefaultWidths(tableName));
+                        final Collection<Integer> changedRows =
+                                                tableModel.updateRows(data);
+                        if (changedRows == null) {
+                            Tools.resizeTable(table,
+                                              getDefaultWidths(tableName));
+                        } else if (!changedRows.isEmpty()) {
+                            Tools.widenTableColumns(
+                                                  table,
+                                                  getDefaultWidths(tableName),
+                                                  changedRows);
+                        }
                     }
                 });
             }
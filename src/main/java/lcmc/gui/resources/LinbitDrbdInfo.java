@@ -87,8 +87,7 @@ final class LinbitDrbdInfo extends ServiceInfo {
     public void removeMyselfNoConfirm(final Host dcHost,
                                       final boolean testOnly) {
         final DrbdResourceInfo dri =
-                        getBrowser().getDrbdResHash().get(getResourceName());
-        getBrowser().putDrbdResHash();
+                        getBrowser().getDrbdResourceInfo(getResourceName());
         super.removeMyselfNoConfirm(dcHost, testOnly);
         if (dri != null) {
             dri.setUsedByCRM(null);
@@ -100,8 +99,7 @@ final class LinbitDrbdInfo extends ServiceInfo {
     void setParameters(final Map<String, String> resourceNode) {
         super.setParameters(resourceNode);
         final DrbdResourceInfo dri =
-                        getBrowser().getDrbdResHash().get(getResourceName());
-        getBrowser().putDrbdResHash();
+                        getBrowser().getDrbdResourceInfo(getResourceName());
         if (dri != null) {
             if (isManaged(false) && !getService().isOrphaned()) {
                 dri.setUsedByCRM(this);
@@ -110,7 +110,7 @@ public final class ProxyHostInfo extends Info {
         final JTextArea ta = new JTextArea();
         ta.setFont(f);
 
-        final String stacktrace = Tools.getStackTrace();
+        final Throwable callSite = Tools.getCallSite();
         final ExecCallback execCallback =
             new ExecCallback() {
                 @Override
@@ -121,7 +121,11 @@ public final class ProxyHostInfo extends Info {
                 @Override
                 public void doneError(final String ans, final int exitCode) {
                     ta.setText("error");
-                    LOG.sshError(host, "", ans, stacktrace, exitCode);
+                    LOG.sshError(host,
+                                 "",
+                                 ans,
+                                 Tools.getCallSiteStackTrace(callSite),
+                                 exitCode);
                 }
 
             };
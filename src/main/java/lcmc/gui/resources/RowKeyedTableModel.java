@@ -0,0 +1,228 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2013, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.gui.resources;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.Vector;
+import javax.swing.AbstractButton;
+import javax.swing.JLabel;
+import javax.swing.table.DefaultTableModel;
+
+/**
+ * Table model, that updates only the rows and cells that changed.
+ *
+ * The rows are identified by the text of the first column, like in the
+ * rowClicked and getTableRowColor methods. The texts of the cells are
+ * remembered, since the Info objects in the cells change their text, not
+ * their identity.
+ *
+ * @author Rasto Levrinc
+ *
+ */
+class RowKeyedTableModel extends DefaultTableModel {
+    /** Serial version uid. */
+    private static final long serialVersionUID = 1L;
+    /** Column names. */
+    private final String[] colNames;
+    /** Texts of the cells from the last update. */
+    private final List<String[]> rowTexts = new ArrayList<String[]>();
+    /** States of the rows, e.g. colors, from the last update. */
+    private final List<Object> rowStates = new ArrayList<Object>();
+
+    /** Prepares a new <code>RowKeyedTableModel</code> object. */
+    RowKeyedTableModel(final Object[][] data, final String[] colNames) {
+        super(data, colNames);
+        this.colNames = colNames;
+        initRows(data);
+    }
+
+    /**
+     * Returns the state of the row, that is not in the cells, but changes
+     * how the row is painted, e.g. its color.
+     */
+    protected Object getRowState(final String key) {
+        return null;
+    }
+
+    /**
+     * Updates the rows with the new data. It fires the events only for the
+     * inserted, deleted and changed rows and cells. Returns the changed or
+     * inserted model rows, or null if the whole table was replaced, because
+     * the rows were reordered.
+     */
+    final Collection<Integer> updateRows(final Object[][] data) {
+        final Set<String> oldKeys = new HashSet<String>();
+        for (int r = 0; r < getRowCount(); r++) {
+            oldKeys.add(getKey(getValueAt(r, 0)));
+        }
+        final Set<String> newKeys = new HashSet<String>();
+        for (final Object[] row : data) {
+            if (row.length != colNames.length
+                || !newKeys.add(getKey(row[0]))) {
+                resetRows(data);
+                return null;
+            }
+        }
+        for (int r = getRowCount() - 1; r >= 0; r--) {
+            if (!newKeys.contains(getKey(getValueAt(r, 0)))) {
+                rowTexts.remove(r);
+                rowStates.remove(r);
+                removeRow(r);
+            }
+        }
+        final Collection<Integer> changedRows = new TreeSet<Integer>();
+        for (int r = 0; r < data.length; r++) {
+            final String key = getKey(data[r][0]);
+            if (r < getRowCount() && key.equals(getKey(getValueAt(r, 0)))) {
+                if (updateRow(r, key, data[r])) {
+                    changedRows.add(r);
+                }
+            } else if (!oldKeys.contains(key)) {
+                rowTexts.add(r, getTexts(data[r]));
+                rowStates.add(r, getRowState(key));
+                insertRow(r, data[r]);
+                changedRows.add(r);
+            } else {
+                resetRows(data);
+                return null;
+            }
+        }
+        return changedRows;
+    }
+
+    /** Updates the changed cells in one row and returns whether it changed. */
+    @SuppressWarnings("unchecked")
+    private boolean updateRow(final int r,
+                              final String key,
+                              final Object[] newRow) {
+        final Vector<Object> oldRow = (Vector<Object>) dataVector.get(r);
+        final String[] texts = rowTexts.get(r);
+        boolean changed = false;
+        for (int c = 0; c < newRow.length; c++) {
+            final Object oldValue = oldRow.get(c);
+            final Object newValue = newRow[c];
+            final String text = getText(newValue);
+            final boolean sameValue = isSameValue(oldValue, newValue);
+            if (sameValue && equals(text, texts[c])) {
+                continue;
+            }
+            if (!sameValue) {
+                oldRow.set(c, newValue);
+            }
+            texts[c] = text;
+            fireTableCellUpdated(r, c);
+            changed = true;
+        }
+        final Object state = getRowState(key);
+        if (!equals(state, rowStates.get(r))) {
+            rowStates.set(r, state);
+            fireTableRowsUpdated(r, r);
+            changed = true;
+        }
+        return changed;
+    }
+
+    /** Replaces all rows. */
+    private void resetRows(final Object[][] data) {
+        setDataVector(data, colNames);
+        initRows(data);
+    }
+
+    /** Remembers the texts and states of the rows. */
+    private void initRows(final Object[][] data) {
+        rowTexts.clear();
+        rowStates.clear();
+        for (final Object[] row : data) {
+            rowTexts.add(getTexts(row));
+            /* not known yet, it is set in the first update */
+            rowStates.add(null);
+        }
+    }
+
+    /** Returns texts of the cells in the row. */
+    private static String[] getTexts(final Object[] row) {
+        final String[] texts = new String[row.length];
+        for (int c = 0; c < row.length; c++) {
+            texts[c] = getText(row[c]);
+        }
+        return texts;
+    }
+
+    /** Returns the key of the row from the value in the first column. */
+    private static String getKey(final Object value) {
+        final String key = getText(value);
+        if (key == null) {
+            return "";
+        }
+        return key;
+    }
+
+    /** Returns the text, that the renderers show for the value. */
+    private static String getText(final Object value) {
+        if (value == null) {
+            return null;
+        } else if (value instanceof AbstractButton) {
+            return ((AbstractButton) value).getText();
+        } else if (value instanceof JLabel) {
+            return ((JLabel) value).getText();
+        }
+        return value.toString();
+    }
+
+    /**
+     * Returns whether the old value can stay in the cell. Buttons and labels
+     * are created again in every getTableData call, the old ones are kept,
+     * if they look the same, since they keep the rollover state.
+     */
+    private static boolean isSameValue(final Object oldValue,
+                                       final Object newValue) {
+        if (oldValue == newValue) {
+            return true;
+        } else if (oldValue == null || newValue == null) {
+            return false;
+        } else if (oldValue instanceof AbstractButton
+                   && newValue instanceof AbstractButton) {
+            final AbstractButton o = (AbstractButton) oldValue;
+            final AbstractButton n = (AbstractButton) newValue;
+            return equals(o.getText(), n.getText())
+                   && o.getIcon() == n.getIcon();
+        } else if (oldValue instanceof JLabel && newValue instanceof JLabel) {
+            final JLabel o = (JLabel) oldValue;
+            final JLabel n = (JLabel) newValue;
+            return equals(o.getText(), n.getText())
+                   && o.getIcon() == n.getIcon();
+        }
+        return oldValue.equals(newValue);
+    }
+
+    /** Returns whether the objects are equal, they can be null. */
+    private static boolean equals(final Object o1, final Object o2) {
+        if (o1 == null) {
+            return o2 == null;
+        }
+        return o1.equals(o2);
+    }
+}
@@ -44,6 +44,7 @@ import lcmc.utilities.Unit;
 import lcmc.utilities.Tools;
 import lcmc.utilities.CRM;
 import lcmc.utilities.ButtonCallback;
+import lcmc.utilities.ComponentWithTest;
 import lcmc.utilities.MyMenuItem;
 import lcmc.utilities.MyList;
 import lcmc.utilities.MyListModel;
@@ -1782,7 +1783,6 @@ public class ServiceInfo extends EditableInfo {
      */
     private boolean isMetaAttrReferenced() {
         final ClusterStatus cs = getBrowser().getClusterStatus();
-        getBrowser().mHeartbeatIdToServiceLock();
         final Map<String, ServiceInfo> services =
                                     getBrowser().getHeartbeatIdToServiceInfo();
         for (final ServiceInfo si : services.values()) {
@@ -1790,11 +1790,9 @@ public class ServiceInfo extends EditableInfo {
                                            si.getService().getHeartbeatId());
             if (refCRMId != null
                 && refCRMId.equals(getService().getHeartbeatId())) {
-                getBrowser().mHeartbeatIdToServiceUnlock();
                 return true;
             }
         }
-        getBrowser().mHeartbeatIdToServiceUnlock();
         return false;
     }
 
@@ -1861,7 +1859,6 @@ public class ServiceInfo extends EditableInfo {
      */
     private boolean isOperationReferenced() {
         final ClusterStatus cs = getBrowser().getClusterStatus();
-        getBrowser().mHeartbeatIdToServiceLock();
         final Map<String, ServiceInfo> services =
                                     getBrowser().getHeartbeatIdToServiceInfo();
         for (final ServiceInfo si : services.values()) {
@@ -1869,11 +1866,9 @@ public class ServiceInfo extends EditableInfo {
                                         si.getService().getHeartbeatId());
             if (refCRMId != null
                 && refCRMId.equals(getService().getHeartbeatId())) {
-                getBrowser().mHeartbeatIdToServiceUnlock();
                 return true;
             }
         }
-        getBrowser().mHeartbeatIdToServiceUnlock();
         return false;
     }
 
@@ -1901,9 +1896,10 @@ public class ServiceInfo extends EditableInfo {
         if (isMetaAttrReferenced() || Tools.versionBeforePacemaker(dcHost)) {
             return sl.toArray(new Info[sl.size()]);
         }
-        getBrowser().lockNameToServiceInfo();
+        final Map<String, Map<String, ServiceInfo>> nameToServiceInfoHash =
+                                        getBrowser().getNameToServiceInfoHash();
         final Map<String, ServiceInfo> idToInfoHash =
-                        getBrowser().getNameToServiceInfoHash().get(getName());
+                                      nameToServiceInfoHash.get(getName());
         final ClusterStatus cs = getBrowser().getClusterStatus();
         if (idToInfoHash != null) {
             for (final ServiceInfo si : new TreeSet<ServiceInfo>(
@@ -1918,10 +1914,8 @@ public class ServiceInfo extends EditableInfo {
             }
         }
         final boolean clone = getResourceAgent().isClone();
-        for (final String name
-                          : getBrowser().getNameToServiceInfoHash().keySet()) {
-            final Map<String, ServiceInfo> idToInfo =
-                             getBrowser().getNameToServiceInfoHash().get(name);
+        for (final Map<String, ServiceInfo> idToInfo
+                                      : nameToServiceInfoHash.values()) {
             for (final ServiceInfo si : new TreeSet<ServiceInfo>(
                                                   idToInfo.values())) {
                 if (si != this
@@ -1936,7 +1930,6 @@ public class ServiceInfo extends EditableInfo {
                 }
             }
         }
-        getBrowser().unlockNameToServiceInfo();
         return sl.toArray(new Info[sl.size()]);
     }
 
@@ -1958,9 +1951,10 @@ public class ServiceInfo extends EditableInfo {
         if (isOperationReferenced() || Tools.versionBeforePacemaker(dcHost)) {
             return sl.toArray(new Info[sl.size()]);
         }
-        getBrowser().lockNameToServiceInfo();
+        final Map<String, Map<String, ServiceInfo>> nameToServiceInfoHash =
+                                        getBrowser().getNameToServiceInfoHash();
         final Map<String, ServiceInfo> idToInfoHash =
-                        getBrowser().getNameToServiceInfoHash().get(getName());
+                                      nameToServiceInfoHash.get(getName());
         final ClusterStatus cs = getBrowser().getClusterStatus();
         if (idToInfoHash != null) {
             for (final ServiceInfo si : new TreeSet<ServiceInfo>(
@@ -1975,10 +1969,8 @@ public class ServiceInfo extends EditableInfo {
             }
         }
         final boolean clone = getResourceAgent().isClone();
-        for (final String name
-                           : getBrowser().getNameToServiceInfoHash().keySet()) {
-            final Map<String, ServiceInfo> idToInfo =
-                             getBrowser().getNameToServiceInfoHash().get(name);
+        for (final Map<String, ServiceInfo> idToInfo
+                                      : nameToServiceInfoHash.values()) {
             for (final ServiceInfo si : new TreeSet<ServiceInfo>(
                                                   idToInfo.values())) {
                 if (si != this
@@ -1993,7 +1985,6 @@ public class ServiceInfo extends EditableInfo {
                 }
             }
         }
-        getBrowser().unlockNameToServiceInfo();
         return sl.toArray(new Info[sl.size()]);
     }
 
@@ -2524,10 +2515,7 @@ public class ServiceInfo extends EditableInfo {
                                     hi, oldCI.getScoreComboBoxHash().get(hi));
             }
             getBrowser().removeFromServiceInfoHash(oldCI);
-            getBrowser().mHeartbeatIdToServiceLock();
-            getBrowser().getHeartbeatIdToServiceInfo().remove(
-                                          oldCI.getService().getHeartbeatId());
-            getBrowser().mHeartbeatIdToServiceUnlock();
+            getBrowser().removeHeartbeatId(oldCI.getService().getHeartbeatId());
             final DefaultMutableTreeNode oldCINode = oldCI.getNode();
             if (oldCINode != null) {
                 oldCINode.setUserObject(null); /* would leak without it*/
@@ -2562,10 +2550,7 @@ public class ServiceInfo extends EditableInfo {
         getBrowser().getServicesNode().add(node);
         getBrowser().reloadAndWait(getBrowser().getServicesNode(), false);
         getBrowser().getCRMGraph().exchangeObjectInTheVertex(this, ci);
-        getBrowser().mHeartbeatIdToServiceLock();
-        getBrowser().getHeartbeatIdToServiceInfo().remove(
-                                            ci.getService().getHeartbeatId());
-        getBrowser().mHeartbeatIdToServiceUnlock();
+        getBrowser().removeHeartbeatId(ci.getService().getHeartbeatId());
         getBrowser().removeFromServiceInfoHash(ci);
         resetInfoPanel();
         infoPanel = null;
@@ -2717,6 +2702,7 @@ public class ServiceInfo extends EditableInfo {
             || getBrowser().getClusterStatus() == null) {
             return new JPanel();
         }
+        getBrowser().precomputePtestPreviews(this);
         final CloneInfo ci = getCloneInfo();
         if (ci == null) {
             getBrowser().getCRMGraph().pickInfo(this);
@@ -3503,10 +3489,7 @@ public class ServiceInfo extends EditableInfo {
             getBrowser().removeFromServiceInfoHash(this);
             final String oldHeartbeatId = getHeartbeatId(testOnly);
             if (oldHeartbeatId != null) {
-                getBrowser().mHeartbeatIdToServiceLock();
-                getBrowser().getHeartbeatIdToServiceInfo().remove(
-                                                               oldHeartbeatId);
-                getBrowser().mHeartbeatIdToServiceUnlock();
+                getBrowser().removeHeartbeatId(oldHeartbeatId);
             }
             if (getService().isNew()) {
                 final String id = getComboBoxValue(GUI_ID);
@@ -4641,10 +4624,7 @@ public class ServiceInfo extends EditableInfo {
 
     /** Removes the service from some global hashes and lists. */
     public void removeInfo() {
-        getBrowser().mHeartbeatIdToServiceLock();
-        getBrowser().getHeartbeatIdToServiceInfo().remove(
-                                                getService().getHeartbeatId());
-        getBrowser().mHeartbeatIdToServiceUnlock();
+        getBrowser().removeHeartbeatId(getService().getHeartbeatId());
         getBrowser().removeFromServiceInfoHash(this);
         final CloneInfo ci = cloneInfo;
         Tools.invokeLater(!Tools.CHECK_SWING_THREAD, new Runnable() {
@@ -5368,14 +5348,8 @@ public class ServiceInfo extends EditableInfo {
                     startResource(getBrowser().getDCHost(), testOnly);
                 }
             };
-        final ClusterBrowser.ClMenuItemCallback startItemCallback =
-                   getBrowser().new ClMenuItemCallback(startMenuItem, null) {
-            @Override
-            public void action(final Host dcHost) {
-                startResource(dcHost, true); /* testOnly */
-            }
-        };
-        addMouseOverListener(startMenuItem, startItemCallback);
+        addMouseOverListener(startMenuItem,
+                             getStartItemCallback(startMenuItem));
         items.add((UpdatableItem) startMenuItem);
 
         /* stop resource */
@@ -5404,14 +5378,8 @@ public class ServiceInfo extends EditableInfo {
                     stopResource(getBrowser().getDCHost(), testOnly);
                 }
             };
-        final ClusterBrowser.ClMenuItemCallback stopItemCallback =
-                    getBrowser().new ClMenuItemCallback(stopMenuItem, null) {
-            @Override
-            public void action(final Host dcHost) {
-                stopResource(dcHost, true); /* testOnly */
-            }
-        };
-        addMouseOverListener(stopMenuItem, stopItemCallback);
+        addMouseOverListener(stopMenuItem,
+                             getStopItemCallback(stopMenuItem));
         items.add((UpdatableItem) stopMenuItem);
 
         /* up group resource */
@@ -5755,6 +5723,98 @@ public class ServiceInfo extends EditableInfo {
         return items;
     }
 
+    /** Returns the key of the cached ptest result of the action. */
+    private Object getPtestPreviewKey(final String action) {
+        return getService().getHeartbeatId() + " " + action;
+    }
+
+    /** Returns callback, that starts the resource in test mode. */
+    private ClusterBrowser.ClMenuItemCallback getStartItemCallback(
+                                         final ComponentWithTest component) {
+        return getBrowser().new ClMenuItemCallback(component, null) {
+            @Override
+            protected Object getPreviewKey() {
+                return getPtestPreviewKey("start");
+            }
+
+            @Override
+            public void action(final Host dcHost) {
+                startResource(dcHost, true); /* testOnly */
+            }
+        };
+    }
+
+    /** Returns callback, that stops the resource in test mode. */
+    private ClusterBrowser.ClMenuItemCallback getStopItemCallback(
+                                         final ComponentWithTest component) {
+        return getBrowser().new ClMenuItemCallback(component, null) {
+            @Override
+            protected Object getPreviewKey() {
+                return getPtestPreviewKey("stop");
+            }
+
+            @Override
+            public void action(final Host dcHost) {
+                stopResource(dcHost, true); /* testOnly */
+            }
+        };
+    }
+
+    /**
+     * Returns callback, that migrates the resource from the host in test
+     * mode.
+     */
+    private ClusterBrowser.ClMenuItemCallback getMigrateFromItemCallback(
+                                         final ComponentWithTest component,
+                                         final String hostName) {
+        return getBrowser().new ClMenuItemCallback(component, null) {
+            @Override
+            protected Object getPreviewKey() {
+                return getPtestPreviewKey("migrate-from " + hostName);
+            }
+
+            @Override
+            public void action(final Host dcHost) {
+                migrateFromResource(dcHost, hostName, true); /* testOnly */
+            }
+        };
+    }
+
+    /**
+     * Returns callbacks of the likely actions, start, stop and migrate,
+     * whose ptest results can be computed in advance.
+     */
+    public List<ClusterBrowser.ClMenuItemCallback> getPreviewCallbacks() {
+        final List<ClusterBrowser.ClMenuItemCallback> callbacks =
+                             new ArrayList<ClusterBrowser.ClMenuItemCallback>();
+        final boolean testOnly = false;
+        if (getService().isNew()
+            || getBrowser().clStatusFailed()
+            || !getService().isAvailable()) {
+            return callbacks;
+        }
+        if (!isStarted(testOnly)) {
+            callbacks.add(getStartItemCallback(null));
+        }
+        if (!isStopped(testOnly)) {
+            callbacks.add(getStopItemCallback(null));
+        }
+        final List<String> runningOnNodes = getRunningOnNodes(testOnly);
+        if (runningOnNodes != null) {
+            for (final Host host : getBrowser().getClusterHosts()) {
+                final String hostName = host.getName();
+                for (final String ron : runningOnNodes) {
+                    if (hostName.equalsIgnoreCase(ron)) {
+                        callbacks.add(getMigrateFromItemCallback(null,
+                                                                 hostName));
+                        break;
+                    }
+                }
+            }
+        }
+        return callbacks;
+    }
+
     /** Adds migrate and unmigrate menu items. */
     protected void addMigrateMenuItems(final List<UpdatableItem> items) {
         /* migrate resource */
@@ -5823,14 +5883,10 @@ public class ServiceInfo extends EditableInfo {
                                             testOnly);
                     }
                 };
-            final ClusterBrowser.ClMenuItemCallback migrateItemCallback =
-               getBrowser().new ClMenuItemCallback(migrateFromMenuItem, null) {
-                @Override
-                public void action(final Host dcHost) {
-                    migrateFromResource(dcHost, hostName, true); /* testOnly */
-                }
-            };
-            addMouseOverListener(migrateFromMenuItem, migrateItemCallback);
+            addMouseOverListener(
+                        migrateFromMenuItem,
+                        getMigrateFromItemCallback(migrateFromMenuItem,
+                                                   hostName));
             items.add(migrateFromMenuItem);
         }
 
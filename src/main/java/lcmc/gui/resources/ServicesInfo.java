@@ -430,18 +430,21 @@ public final class ServicesInfo extends EditableInfo {
         return newGi;
     }
 
-    /** Sets or create all resources. */
+    /**
+     * Sets or create all resources. The parameters of the services are
+     * set later, after all services are created, they are put in the
+     * setParametersHash.
+     */
     private void setGroupResources(
-                               final Set<String> allGroupsAndClones,
-                               final String grpOrCloneId,
-                               final GroupInfo newGi,
-                               final CloneInfo newCi,
-                               final List<ServiceInfo> serviceIsPresent,
-                               final List<ServiceInfo> groupServiceIsPresent,
-                               final ClusterStatus clStatus,
-                               final boolean testOnly) {
-        final Map<ServiceInfo, Map<String, String>> setParametersHash =
-                           new HashMap<ServiceInfo, Map<String, String>>();
+              final Set<String> allGroupsAndClones,
+              final String grpOrCloneId,
+              final GroupInfo newGi,
+              final CloneInfo newCi,
+              final List<ServiceInfo> serviceIsPresent,
+              final List<ServiceInfo> groupServiceIsPresent,
+              final Map<ServiceInfo, Map<String, String>> setParametersHash,
+              final ClusterStatus clStatus,
+              final boolean testOnly) {
         if (newCi != null) {
             setParametersHash.put(
                             newCi,
@@ -480,6 +483,7 @@ public final class ServicesInfo extends EditableInfo {
                                   null,
                                   serviceIsPresent,
                                   groupServiceIsPresent,
+                                  setParametersHash,
                                   clStatus,
                                   testOnly);
                 newSi = (ServiceInfo) gi;
@@ -547,6 +551,11 @@ public final class ServicesInfo extends EditableInfo {
                     }
                     newSi.getService().setHeartbeatId(hbId);
                     getBrowser().addToHeartbeatIdList(newSi);
+                    if (clStatus.getOperationsRef(hbId) != null
+                        || clStatus.getMetaAttrsRef(hbId) != null) {
+                        /* the referred service may not be there yet */
+                        setParametersHash.put(newSi, resourceNode);
+                    }
                     final Point2D p = null;
                     if (newGi != null) {
                         newGi.addGroupServicePanel(newSi, false);
@@ -587,12 +596,6 @@ public final class ServicesInfo extends EditableInfo {
             }
         }
 
-        for (final ServiceInfo newSi : setParametersHash.keySet()) {
-            newSi.setParameters(setParametersHash.get(newSi));
-            if (!testOnly) {
-                newSi.setUpdated(false);
-            }
-        }
         if (newService) {
             Tools.invokeLater(new Runnable() {
                 @Override
@@ -605,6 +608,58 @@ public final class ServicesInfo extends EditableInfo {
         hg.repaint();
     }
 
+    /**
+     * Updates the parameters of the specified resources and the menus of
+     * all services, if only these resources or only the status of the
+     * cluster changed. It doesn't go through the constraints and doesn't
+     * update the graph structure, like setAllResources does, that is
+     * called instead, if some resource is not there yet.
+     */
+    public void updateResources(final ClusterStatus clStatus,
+                                final Set<String> crmIds,
+                                final boolean testOnly) {
+        if (clStatus == null) {
+            return;
+        }
+        final List<ServiceInfo> changed = new ArrayList<ServiceInfo>();
+        for (final String crmId : crmIds) {
+            final ServiceInfo si = getBrowser().getServiceInfoFromCRMId(crmId);
+            if (si == null) {
+                setAllResources(clStatus, testOnly);
+                return;
+            }
+            changed.add(si);
+        }
+        for (final ServiceInfo si : changed) {
+            si.setParameters(clStatus.getParamValuePairs(
+                                       si.getService().getHeartbeatId()));
+            if (!testOnly) {
+                si.setUpdated(false);
+            }
+        }
+        if (!testOnly) {
+            @SuppressWarnings("unchecked")
+            final Enumeration<DefaultMutableTreeNode> e =
+                                                        getNode().children();
+            while (e.hasMoreElements()) {
+                final ServiceInfo g =
+                         (ServiceInfo) e.nextElement().getUserObject();
+                if (g.getResourceAgent().isGroup()
+                    || g.getResourceAgent().isClone()) {
+                    @SuppressWarnings("unchecked")
+                    final Enumeration<DefaultMutableTreeNode> ge =
+                                                    g.getNode().children();
+                    while (ge.hasMoreElements()) {
+                        ((ServiceInfo) ge.nextElement().getUserObject())
+                                                          .updateMenus(null);
+                    }
+                }
+                g.updateMenus(null);
+            }
+        }
+        getBrowser().getCRMGraph().repaint();
+    }
+
     /**
      * This functions goes through all services, constrains etc. in
      * clusterStatus and updates the internal structures and graph.
@@ -619,6 +674,8 @@ public final class ServicesInfo extends EditableInfo {
         final List<ServiceInfo> groupServiceIsPresent =
                                                   new ArrayList<ServiceInfo>();
         final List<ServiceInfo> serviceIsPresent = new ArrayList<ServiceInfo>();
+        final Map<ServiceInfo, Map<String, String>> setParametersHash =
+                      new LinkedHashMap<ServiceInfo, Map<String, String>>();
         for (final String groupOrClone : allGroupsAndClones) {
             CloneInfo newCi = null;
             GroupInfo newGi = null;
@@ -648,9 +705,18 @@ public final class ServicesInfo extends EditableInfo {
                               newCi,
                               serviceIsPresent,
                               groupServiceIsPresent,
+                              setParametersHash,
                               clStatus,
                               testOnly);
         }
+        /* after all services exist, so that the id-refs work */
+        for (final Map.Entry<ServiceInfo, Map<String, String>> entry
+                                               : setParametersHash.entrySet()) {
+            entry.getKey().setParameters(entry.getValue());
+            if (!testOnly) {
+                entry.getKey().setUpdated(false);
+            }
+        }
 
         hg.clearKeepColocationList();
         hg.clearKeepOrderList();
@@ -662,7 +728,6 @@ public final class ServicesInfo extends EditableInfo {
              rdataToCphi =
                          new LinkedHashMap<CRMXML.RscSetConnectionData,
                                            ConstraintPHInfo>();
-            getBrowser().lockNameToServiceInfo();
             final Map<String, ServiceInfo> idToInfoHash =
                  getBrowser().getNameToServiceInfoHash(
                                                 ConstraintPHInfo.NAME);
@@ -687,7 +752,6 @@ public final class ServicesInfo extends EditableInfo {
                     }
                 }
             }
-            getBrowser().unlockNameToServiceInfo();
             final List<ConstraintPHInfo> newCphis =
                                     new ArrayList<ConstraintPHInfo>();
             for (final CRMXML.RscSetConnectionData rdata
@@ -0,0 +1,127 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2013, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.utilities;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import javax.swing.Timer;
+
+/**
+ * One clock for all animations: the graph, the progress indicator and the
+ * progress bars.
+ *
+ * The animated components register a listener, that is called in the swing
+ * thread in every frame. The clock runs only while some listener is
+ * registered, so that nothing wakes up, when nothing is animating.
+ *
+ * @author Rasto Levrinc
+ *
+ */
+public final class AnimationClock {
+    /** Logger. */
+    private static final Logger LOG =
+                                LoggerFactory.getLogger(AnimationClock.class);
+    /** Lock for the listeners. */
+    private static final Object LISTENERS_LOCK = new Object();
+    /** Registered listeners. */
+    private static final Set<Listener> LISTENERS =
+                                            new LinkedHashSet<Listener>();
+    /** Timer that ticks in the swing thread. */
+    private static final Timer TIMER =
+                  new Timer(getFrameInterval(), new ActionListener() {
+                      @Override
+                      public void actionPerformed(final ActionEvent e) {
+                          tick();
+                      }
+                  });
+
+    /** Private constructor, cannot be instantiated. */
+    private AnimationClock() {
+        /* no instantiation possible. */
+    }
+
+    /**
+     * Registers the listener, the clock starts, if it is the first one.
+     * Registering the same listener again does nothing.
+     */
+    public static void register(final Listener listener) {
+        synchronized (LISTENERS_LOCK) {
+            if (LISTENERS.add(listener) && LISTENERS.size() == 1) {
+                final int interval = getFrameInterval();
+                TIMER.setDelay(interval);
+                TIMER.setInitialDelay(interval);
+                TIMER.start();
+                LOG.debug2("register: animation clock started");
+            }
+        }
+    }
+
+    /** Unregisters the listener, the clock stops, if it was the last one. */
+    public static void unregister(final Listener listener) {
+        synchronized (LISTENERS_LOCK) {
+            if (LISTENERS.remove(listener) && LISTENERS.isEmpty()) {
+                TIMER.stop();
+                LOG.debug2("unregister: animation clock stopped");
+            }
+        }
+    }
+
+    /** Returns whether the listener is registered. */
+    public static boolean isRegistered(final Listener listener) {
+        synchronized (LISTENERS_LOCK) {
+            return LISTENERS.contains(listener);
+        }
+    }
+
+    /** Returns time between two frames in milliseconds. */
+    private static int getFrameInterval() {
+        return (int) (1000 / Tools.getConfigData().getAnimFPS());
+    }
+
+    /** Calls all listeners. It is called in the swing thread. */
+    private static void tick() {
+        final List<Listener> listeners;
+        synchronized (LISTENERS_LOCK) {
+            listeners = new ArrayList<Listener>(LISTENERS);
+        }
+        final long now = System.currentTimeMillis();
+        for (final Listener listener : listeners) {
+            try {
+                listener.tick(now);
+            } catch (final RuntimeException e) {
+                LOG.appError("tick: animation failed", e);
+            }
+        }
+    }
+
+    /** Animated component. */
+    public interface Listener {
+        /**
+         * Is called in the swing thread in every frame, with the current
+         * time in milliseconds.
+         */
+        void tick(long now);
+    }
+}
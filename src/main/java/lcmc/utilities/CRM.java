@@ -26,6 +26,7 @@ import lcmc.data.Host;
 import lcmc.data.HostLocation;
 import lcmc.data.CRMXML;
 import lcmc.configs.DistResource;
+import java.util.ArrayList;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -60,6 +61,8 @@ public final class CRM {
     private static final Lock M_PTEST_WRITELOCK = M_PTEST_LOCK.writeLock();
     /** Delimiter that delimits the ptest and test cib part. */
     public static final String PTEST_END_DELIM = "--- PTEST END ---";
+    /** Delimiter that delimits the ptests of more test files. */
+    private static final String PTEST_NEXT_DELIM = "--- PTEST NEXT ---";
     /** Location of lcmc-test.xml file. */
     public static final String LCMC_TEST_FILE = "/tmp/lcmc-test-"
                                                 + UUID.randomUUID()
@@ -68,6 +71,9 @@ public final class CRM {
     public static final boolean TESTONLY = true;
     /** Live boolean variable. */
     public static final boolean LIVE = false;
+    /** Test file of the current thread, if it is not LCMC_TEST_FILE. */
+    private static final ThreadLocal<String> THREAD_TEST_FILE =
+                                                   new ThreadLocal<String>();
 
     /**
      * No instantiation.
@@ -103,10 +109,10 @@ public final class CRM {
         }
         if (testOnly) {
             final String testCmd =
-             "if [ ! -e " + LCMC_TEST_FILE + " ]; "
+             "if [ ! -e " + getTestFile() + " ]; "
              + "then " + DistResource.SUDO + "/usr/sbin/cibadmin -Ql > "
-             + LCMC_TEST_FILE + ";fi;"
-             + "export CIB_file=" + LCMC_TEST_FILE + ";";
+             + getTestFile() + ";fi;"
+             + "export CIB_file=" + getTestFile() + ";";
             final SSHOutput out = Tools.execCommand(
                                                  host,
                                                  testCmd + command,
@@ -126,6 +132,82 @@ public final class CRM {
         }
     }
 
+    /**
+     * Sets the file, that the test commands of the current thread change,
+     * instead of LCMC_TEST_FILE, or null for LCMC_TEST_FILE. So that more
+     * test actions can be simulated at once.
+     */
+    public static void setThreadTestFile(final String testFile) {
+        if (testFile == null) {
+            THREAD_TEST_FILE.remove();
+        } else {
+            THREAD_TEST_FILE.set(testFile);
+        }
+    }
+
+    /** Returns the file, that the test commands change. */
+    private static String getTestFile() {
+        final String testFile = THREAD_TEST_FILE.get();
+        if (testFile == null) {
+            return LCMC_TEST_FILE;
+        }
+        return testFile;
+    }
+
+    /** Returns a test file with the index for setThreadTestFile. */
+    public static String getPreviewTestFile(final int index) {
+        return LCMC_TEST_FILE.replace(".xml", "-" + index + ".xml");
+    }
+
+    /**
+     * Executes the ptest command for every test file in one command and
+     * returns the results in the same order. Missing results are null. The
+     * test files are removed.
+     */
+    public static List<String> getPtests(final Host host,
+                                         final List<String> testFiles) {
+        final StringBuilder files = new StringBuilder(100);
+        for (final String testFile : testFiles) {
+            files.append(' ');
+            files.append(testFile);
+        }
+        final String command =
+                "export PROG=/usr/sbin/crm_simulate;"
+                + "if [ -e /usr/sbin/ptest ];"
+                + " then export PROG=/usr/sbin/ptest; "
+                + "fi;"
+                + "for f in" + files + "; do "
+                + DistResource.SUDO + "$PROG -VVVVV -S -x $f"
+                + " 2>&1;echo '"
+                + PTEST_END_DELIM
+                + "';cat $f 2>/dev/null;"
+                + "rm -f $f;echo '" + PTEST_NEXT_DELIM + "';"
+                + "done";
+        final SSHOutput output = Tools.execCommand(
+                                                host,
+                                                command,
+                                                null,
+                                                false,
+                                                SSH.DEFAULT_COMMAND_TIMEOUT);
+        final List<String> ptests = new ArrayList<String>();
+        final String out = output.getOutput();
+        int start = 0;
+        while (ptests.size() < testFiles.size()) {
+            final int end = out == null ? -1
+                                        : out.indexOf(PTEST_NEXT_DELIM, start);
+            if (end < 0) {
+                ptests.add(null);
+                continue;
+            }
+            ptests.add(out.substring(start, end));
+            start = end + PTEST_NEXT_DELIM.length();
+            if (start < out.length() && out.charAt(start) == '\n') {
+                start++;
+            }
+        }
+        return ptests;
+    }
+
     /** Executes the ptest command and returns results. */
     public static String getPtest(final Host host) {
         M_PTEST_READLOCK.lock();
@@ -0,0 +1,270 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2013, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.utilities;
+
+import lcmc.data.Host;
+import lcmc.configs.DistResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import ch.ethz.ssh2.ChannelCondition;
+import ch.ethz.ssh2.Session;
+
+/**
+ * Client for the lcmc-gui-helper running in the "serve" mode.
+ *
+ * The helper is started once per connection and reads requests from stdin:
+ * "id action [options]\n". It answers every request with a header line
+ * "--lcmc-reply-- id exitcode length\n" followed by length bytes of the
+ * output. Requests are sent one after another.
+ *
+ * @author Rasto Levrinc
+ *
+ */
+final class GuiHelperClient {
+    /** Logger. */
+    private static final Logger LOG =
+                                LoggerFactory.getLogger(GuiHelperClient.class);
+    /** Line that the helper prints, when it is ready to serve. */
+    static final String READY_LINE = "--lcmc-serve-ready--";
+    /** Start of the reply header. */
+    static final String REPLY_HEADER = "--lcmc-reply--";
+    /** Maximum length of the output before the server is ready. */
+    private static final int MAX_START_OUTPUT = 65536;
+    /** Size of the read buffer. */
+    private static final int BUFFER_SIZE = 8192;
+    /**
+     * Gui helper actions, that the server can run. Only the short ones
+     * that don't stream.
+     */
+    private static final String SERVED_ACTIONS =
+                   "all|hw-info|hw-info-lazy|installation-info|get-net-info"
+                   + "|get-disk-info|get-vg-info|get-filesystems-info"
+                   + "|get-crypto-info|get-qemu-keymaps-info|get-cpu-map-info"
+                   + "|get-drbd-proxy-info|get-gui-info|get-mount-point-info"
+                   + "|get-drbd-info|get-resource-agents"
+                   + "|get-old-style-resources|get-lsb-resources"
+                   + "|get-stonith-devices|get-drbd-xml|get-cluster-metadata"
+                   + "|get-cluster-info|get-cluster-versions|get-vm-info"
+                   + "|proc-drbd";
+    /** Gui helper command with a served action and its options. */
+    private static final Pattern HELPER_COMMAND_PATTERN = Pattern.compile(
+             "^\\s*" + Pattern.quote(DistResource.SUDO)
+             + "\\s*/usr/local/bin/lcmc-gui-helper-\\S+(?:\\s+--\\S+)*"
+             + "\\s+((?:" + SERVED_ACTIONS + ")(?:\\s+[\\w-]+)*)\\s*;?\\s*$");
+    /** Reply header. */
+    private static final Pattern REPLY_PATTERN = Pattern.compile(
+                      "^" + REPLY_HEADER + " (\\d+) (\\d+) (\\d+)\\s*$");
+    /** Host, on which the helper runs. */
+    private final Host host;
+    /** Connection of the helper session. */
+    private final SSH.MyConnection conn;
+    /** Session pool of the connection. */
+    private SSHSessionPool sessionPool = null;
+    /** Session in which the helper runs. */
+    private Session session = null;
+    /** Stdout of the helper. */
+    private InputStream stdout = null;
+    /** Stdin of the helper. */
+    private OutputStream stdin = null;
+    /** Read buffer. */
+    private final byte[] buff = new byte[BUFFER_SIZE];
+    /** Position of the next byte in the buffer. */
+    private int buffPos = 0;
+    /** How many bytes are in the buffer. */
+    private int buffLen = 0;
+    /** Id of the last request. */
+    private int lastId = 0;
+
+    /** Prepares a new <code>GuiHelperClient</code> object. */
+    GuiHelperClient(final Host host, final SSH.MyConnection conn) {
+        this.host = host;
+        this.conn = conn;
+    }
+
+    /**
+     * Returns the gui helper action with its options, if the command can be
+     * run by the helper server, or null.
+     */
+    static String getServedAction(final String command) {
+        final Matcher m = HELPER_COMMAND_PATTERN.matcher(command);
+        if (m.matches()) {
+            return m.group(1).trim().replaceAll("\\s+", " ");
+        }
+        return null;
+    }
+
+    /** Returns whether the helper runs on this connection. */
+    boolean isOnConnection(final SSH.MyConnection c) {
+        return conn == c;
+    }
+
+    /** Starts the helper in the serve mode and waits till it is ready. */
+    void start(final SSHSessionPool pool, final int timeout)
+    throws IOException {
+        sessionPool = pool;
+        session = pool.openSession(conn, timeout);
+        /* pty is needed for sudo and hops, the helper turns off echo and
+         * line conversions itself. */
+        session.requestPTY("dumb", 0, 0, 0, 0, null);
+        final String command = host.replaceVars(DistResource.SUDO
+                                                + "@GUI-HELPER@ serve");
+        session.execCommand("bash -c '"
+                            + Tools.escapeSingleQuotes(
+                                "export LC_ALL=C;"
+                                + host.getSudoCommand(
+                                             host.getHoppedCommand(command),
+                                             false), 1) + "'");
+        stdout = session.getStdout();
+        stdin = session.getStdin();
+        final StringBuilder output = new StringBuilder(100);
+        boolean sudoAnswered = false;
+        while (true) {
+            final char c = (char) readByte(timeout);
+            output.append(c);
+            if (output.length() > MAX_START_OUTPUT) {
+                throw new IOException("no ready line from the helper");
+            }
+            if (!sudoAnswered && endsWith(output, SSH.SUDO_PROMPT)) {
+                final String pwd = host.getSudoPassword();
+                if (pwd == null || "".equals(pwd)) {
+                    throw new IOException("sudo password is not known");
+                }
+                stdin.write((pwd + "\n").getBytes("UTF-8"));
+                stdin.flush();
+                sudoAnswered = true;
+            } else if (c == '\n') {
+                final int lineStart =
+                                output.lastIndexOf("\n", output.length() - 2);
+                final String line =
+                           output.substring(lineStart + 1).trim();
+                if (READY_LINE.equals(line)) {
+                    break;
+                }
+                if (line.startsWith(SSH.SUDO_FAIL)) {
+                    throw new IOException("sudo failed");
+                }
+            }
+        }
+        LOG.debug1("start: " + host.getName() + ": gui helper server ready");
+    }
+
+    /** Runs the action on the server and returns its output. */
+    SSH.SSHOutput call(final String action, final int timeout)
+    throws IOException {
+        if (session == null) {
+            throw new IOException("gui helper server is not running");
+        }
+        lastId++;
+        stdin.write((lastId + " " + action + "\n").getBytes("UTF-8"));
+        stdin.flush();
+        String header;
+        do {
+            header = readLine(timeout);
+        } while ("".equals(header.trim()));
+        final Matcher m = REPLY_PATTERN.matcher(header);
+        if (!m.matches()) {
+            throw new IOException("unexpected reply: " + header);
+        }
+        if (Integer.parseInt(m.group(1)) != lastId) {
+            throw new IOException("reply out of order: " + header);
+        }
+        final int exitCode = Integer.parseInt(m.group(2));
+        final byte[] payload = new byte[Integer.parseInt(m.group(3))];
+        int pos = 0;
+        while (pos < payload.length) {
+            if (buffPos >= buffLen) {
+                fill(timeout);
+            }
+            final int len = Math.min(payload.length - pos, buffLen - buffPos);
+            System.arraycopy(buff, buffPos, payload, pos, len);
+            buffPos += len;
+            pos += len;
+        }
+        return new SSH.SSHOutput(new String(payload, "UTF-8"), exitCode);
+    }
+
+    /** Stops the server. */
+    void close() {
+        final Session s = session;
+        session = null;
+        if (s != null) {
+            sessionPool.close(s);
+        }
+    }
+
+    /** Reads one line without the line end. */
+    private String readLine(final int timeout) throws IOException {
+        final StringBuilder line = new StringBuilder(60);
+        while (true) {
+            final int b = readByte(timeout);
+            if (b == '\n') {
+                break;
+            }
+            if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+        return line.toString();
+    }
+
+    /** Reads one byte. */
+    private int readByte(final int timeout) throws IOException {
+        if (buffPos >= buffLen) {
+            fill(timeout);
+        }
+        return buff[buffPos++] & 0xff;
+    }
+
+    /** Waits for the output and fills the buffer. */
+    private void fill(final int timeout) throws IOException {
+        while (stdout.available() == 0) {
+            final int conditions = session.waitForCondition(
+                                                ChannelCondition.STDOUT_DATA
+                                                | ChannelCondition.EOF,
+                                                timeout);
+            if ((conditions & ChannelCondition.TIMEOUT) != 0) {
+                throw new IOException(
+                                "Timeout while waiting for data from peer.");
+            }
+            if ((conditions & ChannelCondition.EOF) != 0
+                && (conditions & ChannelCondition.STDOUT_DATA) == 0) {
+                throw new IOException("gui helper server exited");
+            }
+        }
+        final int len = stdout.read(buff);
+        if (len < 0) {
+            throw new IOException("gui helper server exited");
+        }
+        buffPos = 0;
+        buffLen = len;
+    }
+
+    /** Returns whether the string builder ends with the string. */
+    private static boolean endsWith(final StringBuilder sb, final String s) {
+        final int start = sb.length() - s.length();
+        return start >= 0 && sb.indexOf(s, start) == start;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2013, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.utilities;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Map with limited size, that removes the least recently used entries.
+ * It is not synchronized.
+ *
+ * @author Rasto Levrinc
+ *
+ */
+public final class LRUCache<K, V> extends LinkedHashMap<K, V> {
+    /** Serial version uid. */
+    private static final long serialVersionUID = 1L;
+    /** Maximum number of entries. */
+    private final int maxSize;
+
+    /** Prepares a new <code>LRUCache</code> object. */
+    public LRUCache(final int maxSize) {
+        super(16, 0.75f, true);
+        this.maxSize = maxSize;
+    }
+
+    /** Returns whether the eldest entry should be removed. */
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+        return size() > maxSize;
+    }
+}
@@ -22,6 +22,8 @@ package lcmc.utilities;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.collections15.Buffer;
 import org.apache.commons.collections15.BufferUtils;
 import org.apache.commons.collections15.buffer.CircularFifoBuffer;
@@ -44,6 +46,14 @@ public final class LoggerFactory {
     static final Buffer<String> LOG_BUFFER =
               BufferUtils.synchronizedBuffer(new CircularFifoBuffer<String>(
                                                         CIRCULAR_LOG_SIZE));
+    /** Debug level, from which all call sites are captured. */
+    private static final int CALL_SITE_DEBUG_LEVEL = 2;
+    /** Below the call site debug level every n-th call site is captured. */
+    private static final int CALL_SITE_SAMPLE_RATE = 256;
+    /** Counts the call sites for the sampling. */
+    private static final AtomicInteger CALL_SITE_COUNTER = new AtomicInteger();
+    /** How many times an error was reported for a call site. */
+    private static final AtomicLong CALL_SITE_ERRORS = new AtomicLong();
     /** Increments the debug level. */
     public static void incrementDebugLevel() {
         debugLevel++;
@@ -71,6 +81,27 @@ public final class LoggerFactory {
         debugLevel = level;
     }
 
+    /**
+     * Returns whether the call site (stack trace) should be captured now,
+     * so that it can be shown, if the asynchronous call fails later. It is
+     * always captured in the debug level 2 and sampled otherwise.
+     */
+    public static boolean isCallSiteCaptured() {
+        return debugLevel >= CALL_SITE_DEBUG_LEVEL
+               || CALL_SITE_COUNTER.incrementAndGet()
+                  % CALL_SITE_SAMPLE_RATE == 0;
+    }
+
+    /** Counts an error for a call site and returns the count. */
+    static long callSiteError() {
+        return CALL_SITE_ERRORS.incrementAndGet();
+    }
+
+    /** Returns how many times an error was reported for a call site. */
+    public static long getCallSiteErrors() {
+        return CALL_SITE_ERRORS.get();
+    }
+
     public static void setAppWarning(final boolean aw) {
         appWarning = aw;
     }
@@ -30,6 +30,9 @@ import lcmc.configs.DistResource;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 import ch.ethz.ssh2.Connection;
 import ch.ethz.ssh2.ServerHostKeyVerifier;
@@ -43,6 +46,8 @@ import ch.ethz.ssh2.channel.ChannelManager;
 
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Verifying server hostkeys with an existing known_hosts file
@@ -71,7 +76,7 @@ public final class SSH {
     /** Whether we are disconnected manually and should not reconnect. */
     private volatile boolean disconnectForGood = true;
     /** Exit code if command failed. */
-    private static final int ERROR_EXIT_CODE = 255;
+    static final int ERROR_EXIT_CODE = 255;
     /** Size of the buffer for output of commads. */
     private static final int EXEC_OUTPUT_BUFFER_SIZE = 8192;
     /** Last successful password. */
@@ -86,6 +91,27 @@ public final class SSH {
     private final Lock mConnectionThreadLock = new ReentrantLock();
     /** Local port forwarder. */
     private LocalPortForwarder localPortForwarder = null;
+    /** Sessions of this connection. */
+    private final SSHSessionPool sessionPool = new SSHSessionPool();
+    /** Client of the gui helper running in the serve mode. */
+    private GuiHelperClient guiHelperClient = null;
+    /** The first wait before the failed gui helper server is retried. */
+    private static final long GUI_HELPER_MIN_BACKOFF = 10000;
+    /** The longest wait before the failed gui helper server is retried. */
+    private static final long GUI_HELPER_MAX_BACKOFF = 300000;
+    /** Connection on which the gui helper server could not be started. */
+    private MyConnection guiHelperFailedConnection = null;
+    /** Time in ms, after which the failed gui helper server is retried. */
+    private long guiHelperRetryTime = 0;
+    /** Time in ms till the next retry of the failed gui helper server. */
+    private long guiHelperBackoff = GUI_HELPER_MIN_BACKOFF;
+    /** Gui helper client mutex. */
+    private final Lock mGuiHelperLock = new ReentrantLock();
+    /** Name of the uploaded file in its private remote directory. */
+    private static final String UPLOAD_FILE = "lcmc-upload";
+    /** Pattern of the private upload directory and the user id. */
+    private static final Pattern UPLOAD_DIR_PATTERN =
+                       Pattern.compile("^(/[A-Za-z0-9._/-]+)\\s+(\\d+)$");
     /** Default timeout for SSH commands. */
     public static final int DEFAULT_COMMAND_TIMEOUT =
                                     Tools.getDefaultInt("SSH.Command.Timeout");
@@ -265,6 +291,13 @@ public final class SSH {
             connection.close();
             connection = null;
             mConnectionLock.unlock();
+            mGuiHelperLock.lock();
+            try {
+                closeGuiHelperClient();
+            } finally {
+                mGuiHelperLock.unlock();
+            }
+            sessionPool.closeIdleShells();
             LOG.debug("disconnect: host: " + host.getName());
             host.getTerminalPanel().addCommand("logout");
             host.getTerminalPanel().nextCommand();
@@ -342,6 +375,8 @@ public final class SSH {
         private final Lock mSessionLock = new ReentrantLock();
         /** Execution session object. */
         private Session sess = null;
+        /** Reused shell, that runs the command, or null. */
+        private SSHShell shell = null;
         /** Timeout for ssh command. */
         private final int sshCommandTimeout;
 
@@ -373,6 +408,8 @@ public final class SSH {
                 mConnectionLock.unlock();
             }
             if ("installGuiHelper".equals(command)) {
+                /* scp needs a session slot of its own */
+                closeSession();
                 installGuiHelper();
                 return new SSHOutput("", 0);
             }
@@ -556,8 +593,7 @@ public final class SSH {
                 if (ec != null) {
                     exitCode = ec;
                 }
-                thisSession.close();
-                sess = null;
+                closeSession();
             } catch (IOException e) {
                 LOG.appWarning("execOneCommand: "
                                + host.getName() + ":" + e.getMessage()
@@ -576,13 +612,90 @@ public final class SSH {
         /** Cancel the session. */
         public void cancel() {
             cancelIt = true;
+            closeSession();
+            mSessionLock.lock();
+            final SSHShell thisShell = shell;
+            mSessionLock.unlock();
+            if (thisShell != null) {
+                /* the command still runs in it, it cannot be reused */
+                sessionPool.close(thisShell.getSession());
+            }
+        }
+
+        /** Returns whether the command was canceled. */
+        boolean isCanceled() {
+            return cancelIt;
+        }
+
+        /**
+         * Returns whether the command can run in a reused shell: its output
+         * is not shown, it doesn't hop over other hosts and it doesn't need
+         * the sudo password.
+         */
+        private boolean isShellCommand(final String command) {
+            final String ip = host.getIp();
+            return !outputVisible
+                   && !"installGuiHelper".equals(command)
+                   && ip != null
+                   && ip.indexOf(',') < 0
+                   && !(Boolean.TRUE.equals(host.isUseSudo())
+                        && command.contains(DistResource.SUDO));
+        }
+
+        /**
+         * Executes the command in a reused shell. Throws IOException, if no
+         * session could be opened.
+         */
+        private SSHOutput execInShell(final MyConnection conn,
+                                      final String command)
+        throws IOException {
+            final SSHShell newShell = sessionPool.takeShell(
+                                   conn,
+                                   Tools.getDefaultInt("SSH.ConnectTimeout"),
+                                   this);
+            if (newShell == null) {
+                return new SSHOutput("", 130);
+            }
+            mSessionLock.lock();
+            shell = newShell;
+            mSessionLock.unlock();
+            try {
+                final String realCommand = host.getSudoCommand(
+                                               host.getHoppedCommand(command),
+                                               false);
+                LOG.debug2("execInShell: command: " + host.getName() + ": "
+                           + realCommand);
+                final SSHOutput ret = newShell.run(
+                            "bash -c '"
+                            + Tools.escapeSingleQuotes("export LC_ALL=C;"
+                                                       + realCommand, 1)
+                            + "'",
+                            sshCommandTimeout);
+                LOG.debug2("execInShell: output: " + ret.getExitCode() + ": "
+                           + host.getName() + ": " + ret.getOutput());
+                return ret;
+            } catch (final IOException e) {
+                if (cancelIt) {
+                    return new SSHOutput("", 130);
+                }
+                LOG.appWarning("execInShell: " + host.getName() + ":"
+                               + e.getMessage() + ":" + command);
+                return new SSHOutput("", ERROR_EXIT_CODE);
+            } finally {
+                mSessionLock.lock();
+                shell = null;
+                mSessionLock.unlock();
+                sessionPool.releaseShell(newShell);
+            }
+        }
+
+        /** Closes the current session and returns it to the pool. */
+        private void closeSession() {
             mSessionLock.lock();
             final Session thisSession = sess;
             sess = null;
             mSessionLock.unlock();
-            if (thisSession != null) {
-                thisSession.close();
-            }
+            sessionPool.close(thisSession);
         }
 
         /** Executes a command in a thread. */
@@ -642,48 +755,10 @@ public final class SSH {
             // if previous command has finished successfully.
             final String[] commands = command.split(";;;");
             final StringBuilder ans = new StringBuilder("");
+            /* long running commands with output callback don't take a
+             * session slot, they would block the short ones for ever. */
+            final boolean bounded = newOutputCallback == null;
             for (int i = 0; i < commands.length; i++) {
-                final Boolean[] cancelTimeout = new Boolean[1];
-                cancelTimeout[0] = false;
-                final Thread tt = new Thread(new Runnable() {
-                    @Override
-                    public void run() {
-                        Tools.sleep(Tools.getDefaultInt("SSH.ConnectTimeout"));
-                        if (!cancelTimeout[0]) {
-                            LOG.debug1("exec: " + host.getName()
-                                       + ": open ssh session: timeout");
-                            cancelTimeout[0] = true;
-                            conn.dmcCancel();
-                        }
-                    }
-                });
-                tt.start();
-                try {
-                    /* it may hang here if we lost connection, so it will be
-                     * interrupted after a timeout. */
-                    final Session newSession = conn.openSession();
-                    mSessionLock.lock();
-                    try {
-                        sess = newSession;
-                    } finally {
-                        mSessionLock.unlock();
-                    }
-                    if (cancelTimeout[0]) {
-                        throw new IOException("open session failed");
-                    }
-                    cancelTimeout[0] = true;
-                } catch (java.io.IOException e) {
-                    mConnectionLock.lock();
-                    try {
-                        connection = null;
-                    } finally {
-                        mConnectionLock.unlock();
-                    }
-                    if (execCallback != null) {
-                        execCallback.doneError("could not open session", 45);
-                    }
-                    break;
-                }
                 commands[i].trim();
                 //Tools.commandLock();
                 if (commandVisible && outputVisible) {
@@ -692,8 +767,72 @@ public final class SSH {
                     host.getTerminalPanel().addCommand(
                             consoleCommand.replaceAll(DistResource.SUDO, " "));
                 }
-                final SSHOutput ret = execOneCommand(commands[i],
-                                                     outputVisible);
+                SSHOutput ret = null;
+                if (bounded) {
+                    ret = execOnGuiHelperServer(conn,
+                                                commands[i],
+                                                sshCommandTimeout);
+                }
+                if (ret != null) {
+                    if (outputVisible) {
+                        host.getTerminalPanel().addContent(ret.getOutput());
+                        host.getTerminalPanel().nextCommand();
+                    }
+                } else if (bounded && isShellCommand(commands[i])) {
+                    try {
+                        ret = execInShell(conn, commands[i]);
+                    } catch (java.io.IOException e) {
+                        mConnectionLock.lock();
+                        try {
+                            connection = null;
+                        } finally {
+                            mConnectionLock.unlock();
+                        }
+                        if (execCallback != null) {
+                            execCallback.doneError("could not open session",
+                                                   45);
+                        }
+                        break;
+                    }
+                } else {
+                    try {
+                        final Session newSession = sessionPool.openSession(
+                                   conn,
+                                   bounded,
+                                   Tools.getDefaultInt("SSH.ConnectTimeout"),
+                                   this);
+                        if (newSession == null) {
+                            /* canceled, while it waited for a session */
+                            if (execCallback != null) {
+                                execCallback.doneError("", 130);
+                            }
+                            return;
+                        }
+                        mSessionLock.lock();
+                        try {
+                            sess = newSession;
+                        } finally {
+                            mSessionLock.unlock();
+                        }
+                    } catch (java.io.IOException e) {
+                        mConnectionLock.lock();
+                        try {
+                            connection = null;
+                        } finally {
+                            mConnectionLock.unlock();
+                        }
+                        if (execCallback != null) {
+                            execCallback.doneError("could not open session",
+                                                   45);
+                        }
+                        break;
+                    }
+                    try {
+                        ret = execOneCommand(commands[i], outputVisible);
+                    } finally {
+                        closeSession();
+                    }
+                }
                 ans.append(ret.getOutput());
 
                 final int exitCode = ret.getExitCode();
@@ -714,6 +853,92 @@ public final class SSH {
         }
     }
 
+    /**
+     * Executes the gui helper action on the gui helper server, that runs in
+     * one long-lived session, so that no new process, sudo and perl have to
+     * start for it. Returns null if the command is not a gui helper action,
+     * the server is busy or not available, in which case the command should
+     * be executed the usual way.
+     */
+    private SSHOutput execOnGuiHelperServer(final MyConnection conn,
+                                            final String command,
+                                            final int timeout) {
+        final String action = GuiHelperClient.getServedAction(command);
+        if (action == null) {
+            return null;
+        }
+        if (!mGuiHelperLock.tryLock()) {
+            return null;
+        }
+        try {
+            if (guiHelperFailedConnection == conn
+                && System.currentTimeMillis() < guiHelperRetryTime) {
+                return null;
+            }
+            if (guiHelperClient == null
+                || !guiHelperClient.isOnConnection(conn)) {
+                closeGuiHelperClient();
+                final GuiHelperClient client = new GuiHelperClient(host, conn);
+                try {
+                    client.start(sessionPool,
+                                 Tools.getDefaultInt("SSH.ConnectTimeout"));
+                } catch (IOException e) {
+                    LOG.debug("execOnGuiHelperServer: " + host.getName()
+                              + ": server not available: " + e.getMessage());
+                    client.close();
+                    if (guiHelperFailedConnection != conn) {
+                        guiHelperBackoff = GUI_HELPER_MIN_BACKOFF;
+                    }
+                    guiHelperFailedConnection = conn;
+                    guiHelperRetryTime = System.currentTimeMillis()
+                                         + guiHelperBackoff;
+                    guiHelperBackoff = Math.min(guiHelperBackoff * 2,
+                                                GUI_HELPER_MAX_BACKOFF);
+                    return null;
+                }
+                guiHelperFailedConnection = null;
+                guiHelperBackoff = GUI_HELPER_MIN_BACKOFF;
+                guiHelperClient = client;
+            }
+            LOG.debug2("execOnGuiHelperServer: " + host.getName() + ": "
+                       + action);
+            try {
+                return guiHelperClient.call(action, timeout);
+            } catch (IOException e) {
+                LOG.appWarning("execOnGuiHelperServer: " + host.getName()
+                               + ": " + e.getMessage() + ": " + action);
+                closeGuiHelperClient();
+                return null;
+            }
+        } finally {
+            mGuiHelperLock.unlock();
+        }
+    }
+
+    /**
+     * Lets the gui helper server start again with the next command, e.g.
+     * after the sudo password was entered, without which it could not
+     * start.
+     */
+    public void retryGuiHelperServer() {
+        mGuiHelperLock.lock();
+        try {
+            guiHelperFailedConnection = null;
+            guiHelperBackoff = GUI_HELPER_MIN_BACKOFF;
+        } finally {
+            mGuiHelperLock.unlock();
+        }
+    }
+
+    /** Stops the gui helper server. */
+    private void closeGuiHelperClient() {
+        final GuiHelperClient client = guiHelperClient;
+        guiHelperClient = null;
+        if (client != null) {
+            client.close();
+        }
+    }
+
     /**
      * Executes command and returns an exit code.
      * 100 is timeout
@@ -1464,6 +1689,8 @@ public final class SSH {
                 if (hostkeyAlgos != null) {
                     conn.setServerHostKeyAlgorithms(hostkeyAlgos);
                 }
+                /* delayed zlib, it starts after the authentication */
+                conn.setCompression(host.isSSHCompression());
                 final int connectTimeout =
                                     Tools.getDefaultInt("SSH.ConnectTimeout");
                 final int kexTimeout = Tools.getDefaultInt("SSH.KexTimeout");
@@ -1545,17 +1772,138 @@ public final class SSH {
         return false;
     }
 
-    /** Installs gui-helper on the remote host. */
+    /**
+     * Installs gui-helper on the remote host, if it is not there or if its
+     * checksum differs from the helper, that comes with the gui.
+     */
     public void installGuiHelper() {
         if (!Tools.getConfigData().getKeepHelper()) {
             final String fileName = "/help-progs/lcmc-gui-helper";
             final String file = Tools.getFile(fileName);
             if (file != null) {
+                if (isGuiHelperInstalled(file)) {
+                    LOG.debug1("installGuiHelper: " + host.getName()
+                               + ": gui helper is up to date");
+                    return;
+                }
                 scp(file, "@GUI-HELPER-PROG@", "0700", false, null, null, null);
+                /* a running server would still have the old helper */
+                mGuiHelperLock.lock();
+                try {
+                    closeGuiHelperClient();
+                } finally {
+                    mGuiHelperLock.unlock();
+                }
             }
         }
     }
 
+    /**
+     * Returns whether the remote gui helper has the same md5 checksum as
+     * the file, that scp would install.
+     */
+    private boolean isGuiHelperInstalled(final String file) {
+        final String checksum = md5Hex(file + "\n");
+        if (checksum == null) {
+            return false;
+        }
+        final SSHOutput ret = execCommandAndWait(
+                     DistResource.SUDO + "md5sum @GUI-HELPER-PROG@ 2>/dev/null",
+                     false,
+                     false,
+                     10000);
+        return ret.getExitCode() == 0
+               && ret.getOutput().trim().startsWith(checksum + " ");
+    }
+
+    /** Returns md5 checksum of the utf-8 string in hex or null. */
+    private static String md5Hex(final String content) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("MD5").digest(
+                                                   content.getBytes("UTF-8"));
+            final StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (final byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+                hex.append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (final NoSuchAlgorithmException e) {
+            LOG.appWarning("md5Hex: " + e.getMessage());
+        } catch (final UnsupportedEncodingException e) {
+            LOG.appWarning("md5Hex: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Uploads the utf-8 content to a new file in a private directory, that
+     * mktemp -d creates on the remote host, with the scp protocol. The bytes
+     * don't go through the shell. Returns the uploaded file or null, if it
+     * failed, e.g. scp is not installed on the host.
+     */
+    private Upload upload(final String content) {
+        final MyConnection conn = connection;
+        if (conn == null) {
+            return null;
+        }
+        final SSHOutput ret = execCommandAndWait("mktemp -d && id -u",
+                                                 false,
+                                                 false,
+                                                 10000);
+        final Matcher m = UPLOAD_DIR_PATTERN.matcher(ret.getOutput().trim());
+        if (ret.getExitCode() != 0 || !m.matches()) {
+            LOG.appWarning("upload: " + host.getName() + ": mktemp failed: "
+                           + ret.getOutput());
+            return null;
+        }
+        final Upload upload = new Upload(m.group(1), m.group(2));
+        try {
+            new SCPClient(conn).put(content.getBytes("UTF-8"),
+                                    UPLOAD_FILE,
+                                    upload.dir,
+                                    "0600");
+        } catch (final IOException e) {
+            LOG.appWarning("upload: " + host.getName() + ": scp failed: "
+                           + e.getMessage());
+            execCommandAndWait("rm -rf " + upload.dir, false, false, 10000);
+            return null;
+        }
+        return upload;
+    }
+
+    /** File, that was uploaded to a private directory. */
+    private static final class Upload {
+        /** Private directory, that mktemp created. */
+        private final String dir;
+        /** The uploaded file. */
+        private final String file;
+        /** Id of the user, that owns the directory and the file. */
+        private final String uid;
+
+        /** Prepares a new <code>Upload</code> object. */
+        Upload(final String dir, final String uid) {
+            this.dir = dir;
+            this.file = dir + "/" + UPLOAD_FILE;
+            this.uid = uid;
+        }
+
+        /**
+         * Returns the commands, that remove the directory on exit and fail,
+         * if the directory or the file are links, other users can write to
+         * the directory or they are not owned by the uploading user. Sudo
+         * reads the file only after that.
+         */
+        String getCheckCommands() {
+            return "trap 'rm -rf " + dir + "' EXIT;"
+                   + "if [ -L " + dir + " ] || [ ! -d " + dir + " ]"
+                   + " || [ -L " + file + " ] || [ ! -f " + file + " ]"
+                   + " || [ `stat -c %u:%a " + dir + "` != " + uid + ":700 ]"
+                   + " || [ `stat -c %u " + file + "` != " + uid + " ];"
+                   + " then echo error: " + file + " is not safe;"
+                   + " exit 1; fi;";
+        }
+    }
+
     /** Installs test suite on the remote host. */
     public void installTestFiles() {
         final String fileName = "lcmc-test.tar";
@@ -1611,7 +1959,9 @@ public final class SSH {
     }
 
     /**
-     * Copies file to the /tmp/ dir on the remote host.
+     * Copies the content to the file on the remote host. The content is
+     * uploaded with scp and moved in place with sudo, if scp is not
+     * available, it goes through the shell.
      *
      * @param fileContent
      *          content of the file as string
@@ -1667,7 +2017,6 @@ public final class SSH {
             backupString.append(".bak;");
             backupString.append(" fi ");
         }
-        final String stacktrace = Tools.getStackTrace();
         if (installCommand == null) {
             installCommand = "mv " + remoteFilename + ".new " + remoteFilename;
         }
@@ -1679,14 +2028,27 @@ public final class SSH {
 
                                    + postCommandString
                                    + backupString.toString();
-        LOG.debug1("scp: " + commands.toString() + "echo \"..." + commandTail);
+        /* with the new line like echo */
+        final Upload uploaded = upload(fileContent + "\n");
+        final String command;
+        if (uploaded == null) {
+            /* the content goes through the shell */
+            LOG.debug1("scp: " + commands.toString() + "echo \"..."
+                       + commandTail);
+            command = commands.toString()
+                      + "echo \""
+                      + Tools.escapeQuotes(fileContent, 1)
+                      + commandTail;
+        } else {
+            command = uploaded.getCheckCommands()
+                      + commands.toString()
+                      + "cat " + uploaded.file
+                      + commandTail.substring(1);
+            LOG.debug1("scp: " + command);
+        }
         final Thread t = execCommand(
                             DistResource.SUDO + "bash -c \""
-                            + Tools.escapeQuotes(
-                                commands.toString()
-                                + "echo \""
-                                + Tools.escapeQuotes(fileContent, 1)
-                                + commandTail, 1)
+                            + Tools.escapeQuotes(command, 1)
                             + "\"",
                             new ExecCallback() {
                                 @Override
@@ -0,0 +1,280 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2013, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.utilities;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import ch.ethz.ssh2.Session;
+
+/**
+ * Pool of ssh sessions (channels) of one host connection.
+ *
+ * Short commands share a limited number of session slots, so that status
+ * loops and user actions cannot open more channels at once than the sshd
+ * allows (MaxSessions). A command waits in the queue till a slot is free
+ * or the command is canceled. Long running commands with an output
+ * callback, like the status daemons, don't take a slot. Timeouts of all
+ * hosts are handled by one scheduler thread instead of a thread per
+ * command.
+ *
+ * The non-interactive commands run in shells, that are kept open after
+ * the command, so that the next command reuses the session. An idle shell
+ * keeps its slot, till a command, that cannot use it, needs the slot.
+ *
+ * @author Rasto Levrinc
+ *
+ */
+final class SSHSessionPool {
+    /** Logger. */
+    private static final Logger LOG =
+                                LoggerFactory.getLogger(SSHSessionPool.class);
+    /** How many short commands can run on one host at the same time. */
+    static final int MAX_SESSIONS = Tools.getDefaultInt("SSH.MaxSessions");
+    /** How many idle shells are kept open. */
+    private static final int MAX_IDLE_SHELLS =
+                                       Tools.getDefaultInt("SSH.IdleShells");
+    /** How often a waiting command checks, whether it was canceled. */
+    private static final long SLOT_WAIT_STEP = 1000;
+    /** Scheduler for session timeouts shared by all hosts. */
+    private static final ScheduledExecutorService TIMEOUT_SCHEDULER =
+        Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread t = new Thread(r, "SSH-timeout");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    /** Free session slots. */
+    private final Semaphore slots = new Semaphore(MAX_SESSIONS, true);
+    /** Sessions that hold a slot. */
+    private final Set<Session> slotSessions = Collections.newSetFromMap(
+                                new ConcurrentHashMap<Session, Boolean>());
+    /** Shells, that wait for the next command. They hold a slot. */
+    private final List<SSHShell> idleShells = new ArrayList<SSHShell>();
+
+    /**
+     * Schedules a task on the shared timeout thread. The task should be
+     * short and must not block.
+     */
+    static ScheduledFuture<?> schedule(final Runnable task,
+                                       final long delayMillis) {
+        return TIMEOUT_SCHEDULER.schedule(task,
+                                          delayMillis,
+                                          TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens a new session, that doesn't take a slot. Throws IOException, if
+     * the session could not be opened, in which case the connection is
+     * probably lost.
+     */
+    Session openSession(final SSH.MyConnection conn,
+                        final int timeout) throws IOException {
+        return openSession(conn, false, timeout, null);
+    }
+
+    /**
+     * Opens a new session. If bounded is true, it waits in the queue till a
+     * session slot is free. Returns null, if the waiting command was
+     * canceled. The timeout is for the opening of the session, not for the
+     * waiting. Throws IOException, if the session could not be opened, in
+     * which case the connection is probably lost.
+     */
+    Session openSession(final SSH.MyConnection conn,
+                        final boolean bounded,
+                        final int timeout,
+                        final SSH.ExecCommandThread waiting)
+    throws IOException {
+        if (bounded && !acquireSlot(waiting)) {
+            LOG.debug1("openSession: " + conn.getHostname()
+                       + ": canceled while waiting for a session");
+            return null;
+        }
+        final AtomicBoolean timedOut = new AtomicBoolean(false);
+        ScheduledFuture<?> timeoutTask = null;
+        if (timeout > 0) {
+            timeoutTask = schedule(new Runnable() {
+                                       @Override
+                                       public void run() {
+                                           LOG.debug1("openSession: "
+                                                      + conn.getHostname()
+                                                      + ": open ssh session:"
+                                                      + " timeout");
+                                           timedOut.set(true);
+                                           conn.dmcCancel();
+                                       }
+                                   },
+                                   timeout);
+        }
+        Session session = null;
+        try {
+            /* it may hang here if we lost connection, so it will be
+             * interrupted after a timeout. */
+            session = conn.openSession();
+        } finally {
+            if (timeoutTask != null) {
+                timeoutTask.cancel(false);
+            }
+            if (session == null && bounded) {
+                slots.release();
+            }
+        }
+        if (bounded) {
+            slotSessions.add(session);
+        }
+        if (timedOut.get()) {
+            close(session);
+            throw new IOException("open session failed");
+        }
+        return session;
+    }
+
+    /**
+     * Closes the session and frees its slot. It can be called more times
+     * for the same session.
+     */
+    void close(final Session session) {
+        if (session == null) {
+            return;
+        }
+        session.close();
+        if (slotSessions.remove(session)) {
+            slots.release();
+        }
+    }
+
+    /**
+     * Returns an idle shell of the connection or starts a new one. Returns
+     * null, if the waiting command was canceled. Throws IOException, if the
+     * session could not be opened.
+     */
+    SSHShell takeShell(final SSH.MyConnection conn,
+                       final int timeout,
+                       final SSH.ExecCommandThread waiting)
+    throws IOException {
+        while (true) {
+            final SSHShell idle;
+            synchronized (idleShells) {
+                if (idleShells.isEmpty()) {
+                    break;
+                }
+                idle = idleShells.remove(idleShells.size() - 1);
+            }
+            if (idle.getConnection() == conn && idle.isUsable()) {
+                return idle;
+            }
+            close(idle.getSession());
+        }
+        final Session session = openSession(conn, true, timeout, waiting);
+        if (session == null) {
+            return null;
+        }
+        try {
+            return new SSHShell(conn, session);
+        } catch (final IOException e) {
+            close(session);
+            throw e;
+        }
+    }
+
+    /**
+     * Keeps the shell for the next command, or closes it, if it cannot run
+     * more commands or enough shells are idle.
+     */
+    void releaseShell(final SSHShell shell) {
+        if (shell.isUsable()) {
+            synchronized (idleShells) {
+                if (idleShells.size() < MAX_IDLE_SHELLS) {
+                    idleShells.add(shell);
+                    return;
+                }
+            }
+        }
+        close(shell.getSession());
+    }
+
+    /** Closes the idle shells, e.g. after disconnect. */
+    void closeIdleShells() {
+        final List<SSHShell> shells;
+        synchronized (idleShells) {
+            shells = new ArrayList<SSHShell>(idleShells);
+            idleShells.clear();
+        }
+        for (final SSHShell shell : shells) {
+            close(shell.getSession());
+        }
+    }
+
+    /** Returns how many short commands are running at the moment. */
+    int getUsedSlots() {
+        return MAX_SESSIONS - slots.availablePermits();
+    }
+
+    /**
+     * Waits in the queue for a free slot. If no slot is free, the slot of
+     * an idle shell is taken. Returns false, if the waiting command was
+     * canceled.
+     */
+    private boolean acquireSlot(final SSH.ExecCommandThread waiting) {
+        try {
+            while (true) {
+                if (slots.tryAcquire()) {
+                    return true;
+                }
+                closeIdleShell();
+                if (slots.tryAcquire(SLOT_WAIT_STEP, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+                if (waiting != null && waiting.isCanceled()) {
+                    return false;
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /** Closes one idle shell, so that its slot is free. */
+    private void closeIdleShell() {
+        final SSHShell idle;
+        synchronized (idleShells) {
+            if (idleShells.isEmpty()) {
+                return;
+            }
+            idle = idleShells.remove(0);
+        }
+        close(idle.getSession());
+    }
+}
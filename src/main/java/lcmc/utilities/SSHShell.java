@@ -0,0 +1,201 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2013, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.utilities;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import ch.ethz.ssh2.ChannelCondition;
+import ch.ethz.ssh2.Session;
+
+/**
+ * A shell in one ssh session, that runs the non-interactive commands one
+ * after another, so that the session is reused and not opened for every
+ * command. The shell reads the commands on stdin, every command is
+ * followed by a marker line with its exit code:
+ *
+ * \n--lcmc-shell-random-- exit code\n
+ *
+ * The commands run without a pty and with stdin from /dev/null, so they
+ * cannot ask for a password. The stderr is mixed into the stdout, like it
+ * is with the pty.
+ *
+ * @author Rasto Levrinc
+ *
+ */
+final class SSHShell {
+    /** Random part of the markers. */
+    private static final Random RANDOM = new Random();
+    /** Size of the read buffer. */
+    private static final int BUFFER_SIZE = 8192;
+    /** Connection of the session. */
+    private final SSH.MyConnection conn;
+    /** The session, that runs the shell. */
+    private final Session session;
+    /** Stdout of the shell. */
+    private final InputStream stdout;
+    /** Stdin of the shell. */
+    private final OutputStream stdin;
+    /** Marker after every command, without the new lines. */
+    private final String marker;
+    /** Whether the shell can run the next command. */
+    private volatile boolean usable = true;
+
+    /** Starts the shell in the session. */
+    SSHShell(final SSH.MyConnection conn,
+             final Session session) throws IOException {
+        this.conn = conn;
+        this.session = session;
+        marker = "--lcmc-shell-" + Long.toHexString(RANDOM.nextLong()) + "--";
+        session.execCommand("exec bash -s");
+        stdout = session.getStdout();
+        stdin = session.getStdin();
+    }
+
+    /** Returns the connection of the session. */
+    SSH.MyConnection getConnection() {
+        return conn;
+    }
+
+    /** Returns the session, that runs the shell. */
+    Session getSession() {
+        return session;
+    }
+
+    /**
+     * Returns whether the shell can run the next command. It is not
+     * usable after a timeout, cancel or an error, or if the remote side
+     * closed it.
+     */
+    boolean isUsable() {
+        if (!usable) {
+            return false;
+        }
+        final int conditions = session.waitForCondition(
+                                ChannelCondition.EOF | ChannelCondition.CLOSED,
+                                1);
+        if ((conditions & (ChannelCondition.EOF
+                           | ChannelCondition.CLOSED)) != 0) {
+            usable = false;
+        }
+        return usable;
+    }
+
+    /**
+     * Runs the shell command and returns its output and exit code. The
+     * timeout is the time in ms without any output, 0 is no timeout.
+     * After an IOException the shell is not usable any more.
+     */
+    SSH.SSHOutput run(final String shellCommand,
+                      final int timeout) throws IOException {
+        usable = false;
+        stdin.write((shellCommand + " </dev/null 2>&1; printf '\\n%s %s\\n' "
+                     + marker + " \"$?\"\n").getBytes("UTF-8"));
+        stdin.flush();
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final byte[] buff = new byte[BUFFER_SIZE];
+        /* the marker and the exit code are looked for only at the end */
+        final byte[] tail = new byte[marker.length() + 16];
+        int tailLength = 0;
+        while (true) {
+            if (stdout.available() == 0) {
+                final int conditions = session.waitForCondition(
+                                            ChannelCondition.STDOUT_DATA
+                                            | ChannelCondition.EOF,
+                                            timeout);
+                if ((conditions & ChannelCondition.TIMEOUT) != 0) {
+                    throw new IOException(
+                                  "Timeout while waiting for data from peer.");
+                }
+                if ((conditions & ChannelCondition.STDOUT_DATA) == 0
+                    && (conditions & ChannelCondition.EOF) != 0) {
+                    throw new IOException("Shell closed.");
+                }
+            }
+            final int len = stdout.read(buff);
+            if (len < 0) {
+                throw new IOException("Shell closed.");
+            }
+            output.write(buff, 0, len);
+            tailLength = updateTail(tail, tailLength, buff, len);
+            final SSH.SSHOutput done = getOutput(output, tail, tailLength);
+            if (done != null) {
+                usable = true;
+                return done;
+            }
+        }
+    }
+
+    /**
+     * Keeps the last bytes of the output, that was read so far, in the
+     * tail and returns the new length of the tail.
+     */
+    private static int updateTail(final byte[] tail,
+                                  final int tailLength,
+                                  final byte[] buff,
+                                  final int len) {
+        if (len >= tail.length) {
+            System.arraycopy(buff, len - tail.length, tail, 0, tail.length);
+            return tail.length;
+        }
+        final int keep = Math.min(tailLength, tail.length - len);
+        System.arraycopy(tail, tailLength - keep, tail, 0, keep);
+        System.arraycopy(buff, 0, tail, keep, len);
+        return keep + len;
+    }
+
+    /**
+     * Returns the output without the marker and the exit code, if the
+     * marker line has arrived at the end of the output, otherwise null.
+     * Only the tail is checked, the whole output is decoded once, at the
+     * end.
+     */
+    private SSH.SSHOutput getOutput(final ByteArrayOutputStream output,
+                                    final byte[] tail,
+                                    final int tailLength)
+    throws IOException {
+        final String end = new String(tail, 0, tailLength, "ISO-8859-1");
+        if (!end.endsWith("\n")) {
+            return null;
+        }
+        final int m = end.lastIndexOf("\n" + marker + " ");
+        if (m < 0) {
+            return null;
+        }
+        int exitCode;
+        try {
+            exitCode = Integer.parseInt(
+                end.substring(m + marker.length() + 2,
+                              end.length() - 1).trim());
+        } catch (final NumberFormatException e) {
+            exitCode = SSH.ERROR_EXIT_CODE;
+        }
+        final int outputLength = output.size() - tailLength + m;
+        return new SSH.SSHOutput(new String(output.toByteArray(),
+                                            0,
+                                            outputLength,
+                                            "UTF-8"),
+                                 exitCode);
+    }
+}
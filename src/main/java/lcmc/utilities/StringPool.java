@@ -0,0 +1,70 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2013, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.utilities;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Returns one instance for equal strings, so that the parsed data don't
+ * keep the same node names, resource ids and parameter names many times.
+ *
+ * Unlike String.intern() the strings are not kept forever. Only the strings
+ * from the current and the previous generation are kept, a new generation
+ * starts e.g. with every parsed cib, so that the next cib shares the
+ * strings with the previous one.
+ *
+ * @author Rasto Levrinc
+ *
+ */
+public final class StringPool {
+    /** Strings of the current generation. */
+    private Map<String, String> current = new HashMap<String, String>();
+    /** Strings of the previous generation. */
+    private Map<String, String> previous = Collections.emptyMap();
+
+    /** Returns the pooled instance of the string. */
+    public synchronized String intern(final String s) {
+        if (s == null) {
+            return null;
+        }
+        String pooled = current.get(s);
+        if (pooled != null) {
+            return pooled;
+        }
+        pooled = previous.get(s);
+        if (pooled == null) {
+            pooled = s;
+        }
+        current.put(pooled, pooled);
+        return pooled;
+    }
+
+    /**
+     * Starts a new generation. The strings, that were not used since the
+     * previous call, are dropped.
+     */
+    public synchronized void newGeneration() {
+        previous = current;
+        current = new HashMap<String, String>(previous.size() * 4 / 3 + 1);
+    }
+}
@@ -73,6 +73,7 @@ import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.TableCellRenderer;
 import javax.swing.table.TableColumn;
 import javax.swing.table.DefaultTableColumnModel;
+import javax.swing.table.TableColumnModel;
 import javax.swing.JComponent;
 import javax.swing.JPopupMenu;
 import javax.swing.JViewport;
@@ -268,7 +269,7 @@ public final class Tools {
         final StringBuilder output = new StringBuilder("");
         final Integer[] exitCodeHolder = new Integer[]{0};
         if (execCallback == null) {
-            final String stacktrace = getStackTrace();
+            final Throwable callSite = getCallSite();
             ec = new ExecCallback() {
                              @Override
                              public void done(final String ans) {
@@ -281,6 +282,8 @@ public final class Tools {
                                  LOG.appWarning("doneError: " + command + " "
                                                 + ans + " rc: " + exitCode);
                                  if (outputVisible) {
+                                    final String stacktrace =
+                                              getCallSiteStackTrace(callSite);
                                     LOG.sshError(host,
                                                  command,
                                                  ans,
@@ -322,7 +325,7 @@ public final class Tools {
         final StringBuilder output = new StringBuilder("");
         final Integer[] exitCodeHolder = new Integer[]{0};
         if (execCallback == null) {
-            final String stacktrace = getStackTrace();
+            final Throwable callSite = getCallSite();
             ec = new ExecCallback() {
                              @Override
                              public void done(final String ans) {
@@ -333,6 +336,8 @@ public final class Tools {
                              public void doneError(final String ans,
                                                    final int exitCode) {
                                  if (outputVisible) {
+                                    final String stacktrace =
+                                              getCallSiteStackTrace(callSite);
                                     LOG.sshError(host,
                                                  command,
                                                  ans,
@@ -449,7 +454,11 @@ public final class Tools {
 
     /** Returns stack trace. */
     public static String getStackTrace() {
-        final Throwable th = new Throwable();
+        return formatStackTrace(new Throwable());
+    }
+
+    /** Returns stack trace of the throwable as printed by printStackTrace. */
+    private static String formatStackTrace(final Throwable th) {
         final StringWriter sw = new StringWriter();
         final PrintWriter pw = new PrintWriter(sw);
         th.printStackTrace(pw);
@@ -457,6 +466,31 @@ public final class Tools {
         return sw.toString();
     }
 
+    /**
+     * Returns the call site for an asynchronous call, if it is captured in
+     * the debug mode, or null. The stack trace is built only, if an error
+     * is reported, see getCallSiteStackTrace.
+     */
+    public static Throwable getCallSite() {
+        if (LoggerFactory.isCallSiteCaptured()) {
+            return new Throwable();
+        }
+        return null;
+    }
+
+    /**
+     * Counts the call site error and returns the stack trace of the call
+     * site for the error message.
+     */
+    public static String getCallSiteStackTrace(final Throwable callSite) {
+        final long errors = LoggerFactory.callSiteError();
+        if (callSite == null) {
+            return "call site not captured (" + errors
+                   + " call site errors), use debug level 2";
+        }
+        return formatStackTrace(callSite);
+    }
+
 
     /**
      * Loads the save file and returns its content as string. Return null, if
@@ -582,6 +616,7 @@ public final class Tools {
                                    hostOptions.getPort(),
                                    null,
                                    hostOptions.getSudo(),
+                                   hostOptions.getCompression(),
                                    false);
             }
         }
@@ -2268,6 +2303,51 @@ public final class Tools {
                             .setHorizontalAlignment(SwingConstants.CENTER);
     }
 
+    /**
+     * Widens the columns, if the cells in the changed model rows need more
+     * space. The columns never get narrower here, so that only the changed
+     * rows must be measured. The columns with default widths stay.
+     */
+    public static void widenTableColumns(
+                                   final JTable table,
+                                   final Map<Integer, Integer> defaultWidths,
+                                   final Collection<Integer> modelRows) {
+        final int margin = 3;
+        if (table == null) {
+            return;
+        }
+        final TableColumnModel colModel = table.getColumnModel();
+        for (int i = 0; i < table.getColumnCount(); i++) {
+            if (defaultWidths != null && defaultWidths.get(i) != null) {
+                continue;
+            }
+            final TableColumn col = colModel.getColumn(i);
+            final int oldWidth = col.getPreferredWidth() - 2 * margin;
+            int width = oldWidth;
+            for (final Integer modelRow : modelRows) {
+                final int r = table.convertRowIndexToView(modelRow);
+                if (r < 0) {
+                    continue;
+                }
+                final TableCellRenderer renderer = table.getCellRenderer(r, i);
+                if (renderer == null) {
+                    continue;
+                }
+                final Component comp = renderer.getTableCellRendererComponent(
+                                                      table,
+                                                      table.getValueAt(r, i),
+                                                      false,
+                                                      false,
+                                                      r,
+                                                      i);
+                width = Math.max(width, comp.getPreferredSize().width);
+            }
+            if (width > oldWidth) {
+                col.setPreferredWidth(width + 2 * margin);
+            }
+        }
+    }
+
     /** Sets the menu and all its parents visible, not visible. */
     public static void setMenuVisible(final JComponent menu,
                                       final boolean visible) {
@@ -0,0 +1,188 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2013, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.utilities;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import javax.swing.Timer;
+
+/**
+ * Coalesces the updates of the tree, tables and graphs.
+ *
+ * The status callbacks mark what is dirty, instead of posting a runnable
+ * for every event. The dirty updates are run once per frame, an update
+ * that is marked more times in one frame runs only once.
+ *
+ * @author Rasto Levrinc
+ *
+ */
+public final class UpdateScheduler {
+    /** Logger. */
+    private static final Logger LOG =
+                                LoggerFactory.getLogger(UpdateScheduler.class);
+    /** Minimal time between two flushes in milliseconds. */
+    private static final int FRAME_INTERVAL =
+                            Tools.getDefaultInt("UpdateScheduler.FrameInterval");
+    /** Lock for the dirty maps. */
+    private static final Object DIRTY_LOCK = new Object();
+    /** Dirty updates that run in the swing thread. */
+    private static Map<Key, Runnable> dirtyUpdates =
+                                        new LinkedHashMap<Key, Runnable>();
+    /** Dirty updates that run in the background thread. */
+    private static Map<Key, Runnable> dirtyBackgroundUpdates =
+                                        new LinkedHashMap<Key, Runnable>();
+    /** Whether the flush is scheduled. */
+    private static boolean flushScheduled = false;
+    /** Timer that flushes the updates in the swing thread. */
+    private static final Timer FLUSH_TIMER =
+                  new Timer(FRAME_INTERVAL, new ActionListener() {
+                      @Override
+                      public void actionPerformed(final ActionEvent e) {
+                          flush();
+                      }
+                  });
+    /** Thread for the updates that should not block the swing thread. */
+    private static final ExecutorService BACKGROUND =
+        Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread t = new Thread(r, "UpdateScheduler");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+    static {
+        FLUSH_TIMER.setRepeats(false);
+    }
+
+    /** Private constructor, cannot be instantiated. */
+    private UpdateScheduler() {
+        /* no instantiation possible. */
+    }
+
+    /**
+     * Marks the update of the owner as dirty. The update runs in the swing
+     * thread in the next frame. Another update with the same owner and
+     * name replaces it, if it has not run yet.
+     */
+    public static void markDirty(final Object owner,
+                                 final String name,
+                                 final Runnable update) {
+        synchronized (DIRTY_LOCK) {
+            dirtyUpdates.put(new Key(owner, name), update);
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Marks the update as dirty like markDirty, but the update runs in the
+     * background thread, e.g. the update of the popup menus.
+     */
+    public static void markDirtyInBackground(final Object owner,
+                                             final String name,
+                                             final Runnable update) {
+        synchronized (DIRTY_LOCK) {
+            dirtyBackgroundUpdates.put(new Key(owner, name), update);
+            scheduleFlush();
+        }
+    }
+
+    /** Starts the timer, if it is not running. Called with the lock. */
+    private static void scheduleFlush() {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            FLUSH_TIMER.start();
+        }
+    }
+
+    /** Runs the dirty updates. It is called in the swing thread. */
+    private static void flush() {
+        final Map<Key, Runnable> updates;
+        final Map<Key, Runnable> backgroundUpdates;
+        synchronized (DIRTY_LOCK) {
+            updates = dirtyUpdates;
+            backgroundUpdates = dirtyBackgroundUpdates;
+            dirtyUpdates = new LinkedHashMap<Key, Runnable>();
+            dirtyBackgroundUpdates = new LinkedHashMap<Key, Runnable>();
+            flushScheduled = false;
+        }
+        if (!backgroundUpdates.isEmpty()) {
+            final List<Runnable> runnables =
+                            new ArrayList<Runnable>(backgroundUpdates.values());
+            BACKGROUND.execute(new Runnable() {
+                @Override
+                public void run() {
+                    runAll(runnables);
+                }
+            });
+        }
+        runAll(updates.values());
+    }
+
+    /** Runs the updates, one failed update does not stop the others. */
+    private static void runAll(final Iterable<Runnable> updates) {
+        for (final Runnable update : updates) {
+            try {
+                update.run();
+            } catch (final RuntimeException e) {
+                LOG.appError("runAll: update failed", e);
+            }
+        }
+    }
+
+    /** Owner and name of an update, the owner is compared by identity. */
+    private static final class Key {
+        /** Owner of the update. */
+        private final Object owner;
+        /** Name of the update. */
+        private final String name;
+
+        /** Prepares a new <code>Key</code> object. */
+        Key(final Object owner, final String name) {
+            this.owner = owner;
+            this.name = name;
+        }
+
+        /** Returns whether the owner is the same and the names are equal. */
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return owner == other.owner && name.equals(other.name);
+        }
+
+        /** Returns hash code. */
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(owner) * 31 + name.hashCode();
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package lcmc.data;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.HashSet;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+import lcmc.utilities.Logger;
+import lcmc.utilities.LoggerFactory;
+
+public final class CibPatchTest1 extends TestCase {
+    /** Logger. */
+    private static final Logger LOG =
+                                 LoggerFactory.getLogger(CibPatchTest1.class);
+    /** Cib, that the patches are applied to. */
+    private static final String CIB =
+        "<pcmk><cib admin_epoch=\"0\" epoch=\"12\" num_updates=\"5\">"
+        + "<configuration><crm_config/><nodes/><resources>"
+        + "<primitive id=\"r1\" class=\"ocf\" type=\"Dummy\">"
+        + "<instance_attributes id=\"r1-ia\">"
+        + "<nvpair id=\"r1-ia-a\" name=\"a\" value=\"1\"/>"
+        + "</instance_attributes></primitive>"
+        + "<group id=\"g1\"><primitive id=\"r2\" class=\"ocf\""
+        + " type=\"Dummy\"/></group>"
+        + "</resources><constraints/></configuration>"
+        + "<status><node_state id=\"1\" uname=\"node1\">"
+        + "<lrm id=\"1\"><lrm_resources/></lrm>"
+        + "</node_state></status></cib></pcmk>";
+
+    /** Returns the cib document. */
+    private static Document getCib() throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                               .parse(new InputSource(new StringReader(CIB)));
+    }
+
+    /** Returns the patch. */
+    private static CibPatch getPatch(final String diffs) {
+        return new CibPatch("<patchset>" + diffs + "</patchset>",
+                            CRMXML.CIB_SKIP_ELEMENTS);
+    }
+
+    /** Returns the cib element. */
+    private static Element getCibElement(final Document cib) {
+        return (Element) cib.getElementsByTagName("cib").item(0);
+    }
+
+    /** Returns the element with the id. */
+    private static Element getById(final Document cib,
+                                   final String tag,
+                                   final String id) {
+        for (int i = 0; i < cib.getElementsByTagName(tag).getLength(); i++) {
+            final Element e = (Element) cib.getElementsByTagName(tag).item(i);
+            if (id.equals(e.getAttribute("id"))) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    /* ---- tests ----- */
+
+    @Test
+    public void testModify() throws Exception {
+        final Document cib = getCib();
+        final CibPatch patch = getPatch(
+            "<diff format=\"2\" from=\"0.12.5\" to=\"0.13.0\">"
+            + "<change operation=\"modify\" path=\"/cib/configuration"
+            + "/resources/primitive[@id='r1']/instance_attributes"
+            + "[@id='r1-ia']/nvpair[@id='r1-ia-a']\"><change-list>"
+            + "<change-attr name=\"value\" operation=\"set\" value=\"2\"/>"
+            + "</change-list></change></diff>");
+        assertTrue(patch.apply(cib));
+        assertTrue(patch.isChanged());
+        assertFalse(patch.isConfigurationChanged());
+        assertEquals(new HashSet<String>(Arrays.asList("r1")),
+                     patch.getChangedResources());
+        assertEquals("2", getById(cib, "nvpair", "r1-ia-a")
+                                                   .getAttribute("value"));
+        assertEquals("13", getCibElement(cib).getAttribute("epoch"));
+        assertEquals("0", getCibElement(cib).getAttribute("num_updates"));
+    }
+
+    @Test
+    public void testResourceInGroup() throws Exception {
+        final Document cib = getCib();
+        final CibPatch patch = getPatch(
+            "<diff format=\"2\" from=\"0.12.5\" to=\"0.13.0\">"
+            + "<change operation=\"create\" path=\"/cib/configuration"
+            + "/resources/group[@id='g1']/primitive[@id='r2']\">"
+            + "<meta_attributes id=\"r2-ma\"/></change></diff>");
+        assertTrue(patch.apply(cib));
+        assertFalse(patch.isConfigurationChanged());
+        assertEquals(new HashSet<String>(Arrays.asList("r2")),
+                     patch.getChangedResources());
+        assertNotNull(getById(cib, "meta_attributes", "r2-ma"));
+    }
+
+    @Test
+    public void testNewResource() throws Exception {
+        final Document cib = getCib();
+        final CibPatch patch = getPatch(
+            "<diff format=\"2\" from=\"0.12.5\" to=\"0.13.0\">"
+            + "<change operation=\"create\""
+            + " path=\"/cib/configuration/resources\">"
+            + "<primitive id=\"r3\" class=\"ocf\" type=\"Dummy\"/>"
+            + "</change>"
+            + "<change operation=\"delete\" path=\"/cib/configuration"
+            + "/resources/primitive[@id='r1']\"/></diff>");
+        assertTrue(patch.apply(cib));
+        assertTrue(patch.isConfigurationChanged());
+        assertNotNull(getById(cib, "primitive", "r3"));
+        assertNull(getById(cib, "primitive", "r1"));
+    }
+
+    @Test
+    public void testConstraint() throws Exception {
+        final Document cib = getCib();
+        final CibPatch patch = getPatch(
+            "<diff format=\"2\" from=\"0.12.5\" to=\"0.13.0\">"
+            + "<change operation=\"create\""
+            + " path=\"/cib/configuration/constraints\">"
+            + "<rsc_order id=\"o1\" first=\"r1\" then=\"g1\"/>"
+            + "</change></diff>");
+        assertTrue(patch.apply(cib));
+        assertTrue(patch.isConfigurationChanged());
+    }
+
+    @Test
+    public void testStatus() throws Exception {
+        final Document cib = getCib();
+        final CibPatch patch = getPatch(
+            "<fenced><node>node2</node></fenced>"
+            + "<diff format=\"2\" from=\"0.12.5\" to=\"0.12.6\">"
+            + "<change operation=\"modify\" path=\"/cib\"><change-list>"
+            + "<change-attr name=\"num_updates\" operation=\"set\""
+            + " value=\"6\"/></change-list></change>"
+            + "<change operation=\"create\" path=\"/cib/status"
+            + "/node_state[@id='1']/lrm[@id='1']/lrm_resources\">"
+            + "<lrm_resource id=\"r1\"><lrm_rsc_op id=\"r1_last_0\"/>"
+            + "</lrm_resource></change>"
+            + "<change operation=\"modify\" path=\"/cib/status"
+            + "/node_state[@id='1']/lrm[@id='1']/lrm_resources"
+            + "/lrm_resource[@id='r1']/lrm_rsc_op[@id='r1_last_0']\">"
+            + "<change-list><change-attr name=\"rc-code\""
+            + " operation=\"set\" value=\"0\"/></change-list></change>"
+            + "</diff>");
+        assertTrue(patch.apply(cib));
+        assertFalse(patch.isConfigurationChanged());
+        assertTrue(patch.getChangedResources().isEmpty());
+        assertNotNull(getById(cib, "lrm_resource", "r1"));
+        /* the operation history is not in the cib document */
+        assertEquals(0, cib.getElementsByTagName("lrm_rsc_op").getLength());
+        assertEquals(1, cib.getElementsByTagName("fenced").getLength());
+        assertEquals("6", getCibElement(cib).getAttribute("num_updates"));
+    }
+
+    @Test
+    public void testVersions() throws Exception {
+        final Document cib = getCib();
+        /* older diff is skipped */
+        final CibPatch old = getPatch(
+            "<diff format=\"2\" from=\"0.12.4\" to=\"0.12.5\">"
+            + "<change operation=\"delete\" path=\"/cib/configuration"
+            + "/resources/primitive[@id='r1']\"/></diff>");
+        assertTrue(old.apply(cib));
+        assertFalse(old.isChanged());
+        assertNotNull(getById(cib, "primitive", "r1"));
+        /* missing diff */
+        final CibPatch missing = getPatch(
+            "<diff format=\"2\" from=\"0.12.6\" to=\"0.12.7\"/>");
+        assertFalse(missing.apply(cib));
+    }
+
+    @Test
+    public void testNotInCib() throws Exception {
+        assertFalse(getPatch(
+            "<diff format=\"2\" from=\"0.12.5\" to=\"0.12.6\">"
+            + "<change operation=\"delete\" path=\"/cib/configuration"
+            + "/resources/primitive[@id='r9']\"/></diff>").apply(getCib()));
+        assertFalse(getPatch(
+            "<diff format=\"2\" from=\"0.12.5\" to=\"0.12.6\">"
+            + "<change operation=\"delete\" path=\"cib\"/></diff>")
+                                                         .apply(getCib()));
+        assertFalse(getPatch("<diff").apply(getCib()));
+    }
+
+    @Test
+    public void testMove() throws Exception {
+        final Document cib = getCib();
+        final CibPatch patch = getPatch(
+            "<diff format=\"2\" from=\"0.12.5\" to=\"0.13.0\">"
+            + "<change operation=\"move\" path=\"/cib/configuration"
+            + "/resources/group[@id='g1']\" position=\"0\"/></diff>");
+        assertTrue(patch.apply(cib));
+        assertTrue(patch.isConfigurationChanged());
+        final Element resources =
+                   (Element) cib.getElementsByTagName("resources").item(0);
+        assertEquals("g1",
+                     ((Element) resources.getFirstChild()).getAttribute("id"));
+    }
+
+    @Test
+    public void testCreateInGroup() throws Exception {
+        /* without the position the order in the group is not known */
+        assertFalse(getPatch(
+            "<diff format=\"2\" from=\"0.12.5\" to=\"0.13.0\">"
+            + "<change operation=\"create\" path=\"/cib/configuration"
+            + "/resources/group[@id='g1']\"><primitive id=\"r3\""
+            + " class=\"ocf\" type=\"Dummy\"/></change></diff>")
+                                                         .apply(getCib()));
+
+        final Document cib = getCib();
+        final CibPatch patch = getPatch(
+            "<diff format=\"2\" from=\"0.12.5\" to=\"0.13.0\">"
+            + "<change operation=\"create\" path=\"/cib/configuration"
+            + "/resources/group[@id='g1']\" position=\"0\">"
+            + "<primitive id=\"r3\" class=\"ocf\" type=\"Dummy\"/>"
+            + "</change></diff>");
+        assertTrue(patch.apply(cib));
+        final Element group = getById(cib, "group", "g1");
+        assertEquals("r3",
+                     ((Element) group.getFirstChild()).getAttribute("id"));
+        assertEquals("r2",
+                     ((Element) group.getLastChild()).getAttribute("id"));
+    }
+}
@@ -0,0 +1,176 @@
+package lcmc.data;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import lcmc.data.resources.BlockDevice;
+import lcmc.utilities.Logger;
+import lcmc.utilities.LoggerFactory;
+
+public final class ClusterHealthTest1 extends TestCase {
+    /** Logger. */
+    private static final Logger LOG =
+                              LoggerFactory.getLogger(ClusterHealthTest1.class);
+    /** No failed resources. */
+    private static final List<String> NO_FAILED =
+                                              Collections.<String>emptyList();
+    /** No DRBD devices. */
+    private static final List<BlockDevice> NO_DRBD =
+                                         Collections.<BlockDevice>emptyList();
+
+    /** Returns the DRBD device in the states. */
+    private static BlockDevice getDrbd(final String name,
+                                       final String cs,
+                                       final String ds) {
+        final BlockDevice bd = new BlockDevice(name + " size:1000");
+        bd.setDrbd(true);
+        bd.setNodeState("Secondary");
+        bd.setConnectionState(cs);
+        bd.setDiskState(ds);
+        return bd;
+    }
+
+    /* ---- tests ----- */
+
+    @Test
+    public void testOnline() {
+        final ClusterHealth health = ClusterHealth.of(
+                                         Arrays.asList("yes", "no", null),
+                                         "node1",
+                                         NO_FAILED,
+                                         NO_DRBD);
+        assertEquals(3, health.getNodes());
+        assertEquals(1, health.getOnlineNodes());
+        assertEquals("node1", health.getDC());
+        assertFalse(health.isDown());
+        assertFalse(health.isHealthy());
+        assertEquals("1/3 online, DC: node1", health.toString());
+
+        final ClusterHealth all = ClusterHealth.of(Arrays.asList("yes", "yes"),
+                                                   "node2",
+                                                   NO_FAILED,
+                                                   NO_DRBD);
+        assertEquals(2, all.getOnlineNodes());
+        assertTrue(all.isHealthy());
+
+        /* the status was not read yet */
+        final ClusterHealth unknown = ClusterHealth.of(
+                                    Arrays.asList((String) null, null),
+                                    null,
+                                    NO_FAILED,
+                                    NO_DRBD);
+        assertEquals(0, unknown.getOnlineNodes());
+        assertTrue(unknown.isDown());
+        assertEquals("0/2 online", unknown.toString());
+    }
+
+    @Test
+    public void testDrbd() {
+        final List<BlockDevice> drbds = Arrays.asList(
+                        getDrbd("/dev/drbd0", "Connected", "UpToDate"),
+                        getDrbd("/dev/drbd1", "SyncSource", "UpToDate"),
+                        getDrbd("/dev/drbd2", "PausedSyncT", "Inconsistent"),
+                        getDrbd("/dev/drbd3", "WFConnection", "UpToDate"),
+                        getDrbd("/dev/drbd4", "Connected", "Outdated"),
+                        getDrbd("/dev/drbd5", null, null));
+        final ClusterHealth health = ClusterHealth.of(Arrays.asList("yes"),
+                                                      "node1",
+                                                      NO_FAILED,
+                                                      drbds);
+        assertEquals(6, health.getDrbdDevices());
+        assertEquals(2, health.getDrbdSyncing());
+        assertEquals(3, health.getDrbdDegraded());
+        assertFalse(health.isHealthy());
+        assertEquals("1/1 online, DC: node1, drbd: 1/6 ok, 2 syncing",
+                     health.toString());
+
+        final ClusterHealth ok = ClusterHealth.of(
+                     Arrays.asList("yes"),
+                     "node1",
+                     NO_FAILED,
+                     Arrays.asList(getDrbd("/dev/drbd0",
+                                           "Connected",
+                                           "UpToDate")));
+        assertTrue(ok.isHealthy());
+        assertEquals("1/1 online, DC: node1, drbd: 1/1 ok", ok.toString());
+    }
+
+    @Test
+    public void testFailedResources() {
+        /* the clone instances are counted once, as the clone */
+        final ResourceStates.Builder builder = new ResourceStates.Builder();
+        builder.putFailCount("cl1:0", "node1", "1");
+        builder.putFailCount("cl1", "node1", "1");
+        builder.putFailCount("cl1:1", "node2", "1");
+        builder.putFailCount("cl1", "node2", "1");
+        builder.putFailCount("r1", "node2", "INFINITY");
+        final ClusterHealth health = ClusterHealth.of(
+                                     Arrays.asList("yes", "yes"),
+                                     "node1",
+                                     builder.build().getFailedResources(),
+                                     NO_DRBD);
+        assertEquals(Arrays.asList("cl1", "r1"), health.getFailedResources());
+        assertFalse(health.isHealthy());
+        assertEquals("2/2 online, DC: node1, 2 failed", health.toString());
+    }
+
+    @Test
+    public void testEquals() {
+        final ClusterHealth health = ClusterHealth.of(
+                      Arrays.asList("yes", "no"),
+                      "node1",
+                      Arrays.asList("r1"),
+                      Arrays.asList(getDrbd("/dev/drbd0",
+                                            "SyncTarget",
+                                            "Inconsistent")));
+        final ClusterHealth same = ClusterHealth.of(
+                      Arrays.asList("no", "yes"),
+                      "node1",
+                      Arrays.asList("r1"),
+                      Arrays.asList(getDrbd("/dev/drbd1",
+                                            "SyncSource",
+                                            "UpToDate")));
+        assertEquals(health, same);
+        assertEquals(health.hashCode(), same.hashCode());
+        assertFalse(health.equals(null));
+        assertFalse(health.equals("1/2 online"));
+
+        final ClusterHealth[] others = {
+            ClusterHealth.of(Arrays.asList("yes", "yes"),
+                             "node1",
+                             Arrays.asList("r1"),
+                             Arrays.asList(getDrbd("/dev/drbd0",
+                                                   "SyncTarget",
+                                                   "Inconsistent"))),
+            ClusterHealth.of(Arrays.asList("yes", "no"),
+                             null,
+                             Arrays.asList("r1"),
+                             Arrays.asList(getDrbd("/dev/drbd0",
+                                                   "SyncTarget",
+                                                   "Inconsistent"))),
+            ClusterHealth.of(Arrays.asList("yes", "no"),
+                             "node1",
+                             NO_FAILED,
+                             Arrays.asList(getDrbd("/dev/drbd0",
+                                                   "SyncTarget",
+                                                   "Inconsistent"))),
+            ClusterHealth.of(Arrays.asList("yes", "no"),
+                             "node1",
+                             Arrays.asList("r1"),
+                             Arrays.asList(getDrbd("/dev/drbd0",
+                                                   "WFConnection",
+                                                   "UpToDate"))),
+            ClusterHealth.of(Arrays.asList("yes", "no"),
+                             "node1",
+                             Arrays.asList("r1"),
+                             NO_DRBD),
+        };
+        for (final ClusterHealth other : others) {
+            assertFalse(other.toString(), health.equals(other));
+            assertFalse(other.toString(), other.equals(health));
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2013, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Throughput of the drbd events parsing, the regular expressions, that
+ * were compiled for every event, and the DrbdEvent tokenizer; and of the
+ * info block reading, the indexOf/delete per block and InfoBlockReader.
+ *
+ * It is not a unit test, run it with:
+ * java -cp ... lcmc.data.DrbdEventBenchmark [events] [events per chunk]
+ *
+ * @author Rasto Levrinc
+ *
+ */
+public final class DrbdEventBenchmark {
+    /** Number of volumes, that are resyncing. */
+    private static final int VOLUMES = 50;
+
+    /** Private constructor, cannot be instantiated. */
+    private DrbdEventBenchmark() {
+        /* no instantiation possible. */
+    }
+
+    /** Runs the benchmark. */
+    public static void main(final String[] args) {
+        final int count = args.length > 0 ? Integer.parseInt(args[0])
+                                          : 200000;
+        final int eventsPerChunk = args.length > 1 ? Integer.parseInt(args[1])
+                                                   : 20;
+        final List<String> lines = createLines(count);
+        int mismatches = 0;
+        for (final String line : lines) {
+            if (!parseWithRegex(line).equals(parseWithTokenizer(line))) {
+                mismatches++;
+            }
+        }
+        System.out.println("mismatches: " + mismatches);
+        final List<String> chunks = createChunks(lines, eventsPerChunk);
+        for (int run = 0; run < 3; run++) {
+            long start = System.nanoTime();
+            int parsed = 0;
+            for (final String line : lines) {
+                parsed += parseWithRegex(line).length();
+            }
+            report("regex", count, System.nanoTime() - start, parsed);
+            start = System.nanoTime();
+            parsed = 0;
+            for (final String line : lines) {
+                parsed += parseWithTokenizer(line).length();
+            }
+            report("tokenizer", count, System.nanoTime() - start, parsed);
+            start = System.nanoTime();
+            parsed = readWithDelete(chunks);
+            report("buffer delete", count, System.nanoTime() - start, parsed);
+            start = System.nanoTime();
+            parsed = readWithReader(chunks);
+            report("block reader", count, System.nanoTime() - start, parsed);
+        }
+    }
+
+    /** Prints the result. */
+    private static void report(final String name,
+                               final int count,
+                               final long nanos,
+                               final int check) {
+        System.out.println(String.format("%-14s %10.0f events/s (%d)",
+                                         name,
+                                         count * 1e9 / nanos,
+                                         check));
+    }
+
+    /** Returns the event lines of a resync in 8.3 and 8.4 format. */
+    private static List<String> createLines(final int count) {
+        final List<String> lines = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            final int minor = i % VOLUMES;
+            final String dev = i % 2 == 0 ? Integer.toString(minor)
+                                          : minor + ",r" + minor + "[0]";
+            switch (i % 10) {
+                case 0:
+                    lines.add(i + " ST " + dev + " { cs:SyncSource"
+                              + " ro:Primary/Secondary"
+                              + " ds:UpToDate/Inconsistent r---- }");
+                    break;
+                case 1:
+                    lines.add(i + " UH " + dev + " split-brain");
+                    break;
+                default:
+                    lines.add(i + " SP " + dev + " " + (i % 100) + "."
+                              + (i % 10));
+                    break;
+            }
+        }
+        return lines;
+    }
+
+    /** Returns the lines in info blocks, split to chunks. */
+    private static List<String> createChunks(final List<String> lines,
+                                             final int eventsPerChunk) {
+        final List<String> chunks = new ArrayList<String>();
+        final StringBuilder chunk = new StringBuilder();
+        int n = 0;
+        for (final String line : lines) {
+            chunk.append("--event-info-start--1361872213123456789\r\n");
+            chunk.append(line).append("\r\n");
+            chunk.append("--event-info-end--\r\n");
+            n++;
+            if (n % eventsPerChunk == 0) {
+                chunks.add(chunk.toString());
+                chunk.setLength(0);
+            }
+        }
+        chunks.add(chunk.toString());
+        return chunks;
+    }
+
+    /** Parses the event like DrbdXML did before, returns its fields. */
+    private static String parseWithRegex(final String line) {
+        final Pattern pDev = Pattern.compile("^(\\d+),(\\S+)\\[(\\d+)\\]$");
+        final Pattern pST = Pattern.compile(
+                "^(\\d+)\\s+ST\\s+(\\S+)\\s+\\{\\s+cs:(\\S+)\\s+"
+                + "(?:st|ro):(\\S+)/(\\S+)\\s+ds:(\\S+)/(\\S+)\\s+(\\S+).*?");
+        Matcher m = pST.matcher(line);
+        if (m.matches()) {
+            return device(pDev, m.group(2)) + m.group(3) + m.group(4)
+                   + m.group(5) + m.group(6) + m.group(7) + m.group(8);
+        }
+        final Pattern pSP =
+               Pattern.compile("^(\\d+)\\s+SP\\s+(\\S+)\\s(\\d+\\.\\d+).*");
+        m = pSP.matcher(line);
+        if (m.matches()) {
+            return device(pDev, m.group(2)) + m.group(3);
+        }
+        final Pattern pUH =
+               Pattern.compile("^(\\d+)\\s+UH\\s+(\\S+)\\s([a-z-]+).*");
+        m = pUH.matcher(line);
+        if (m.matches()) {
+            return device(pDev, m.group(2)) + m.group(3);
+        }
+        return "";
+    }
+
+    /** Returns the minor, resource and volume from the device. */
+    private static String device(final Pattern pDev, final String dev) {
+        final Matcher m = pDev.matcher(dev);
+        if (m.matches()) {
+            return m.group(1) + m.group(2) + m.group(3);
+        }
+        return dev + "null0";
+    }
+
+    /** Parses the event with the tokenizer, returns its fields. */
+    private static String parseWithTokenizer(final String line) {
+        final DrbdEvent e = DrbdEvent.parse(line);
+        if (e == null) {
+            return "";
+        }
+        final String dev = e.getMinor() + e.getResource() + e.getVolumeNr();
+        switch (e.getType()) {
+            case STATE:
+                return dev + e.getConnectionState() + e.getRole()
+                       + e.getRoleOther() + e.getDiskState()
+                       + e.getDiskStateOther() + e.getFlags();
+            case SYNC_PROGRESS:
+                return dev + e.getSynced();
+            default:
+                return dev + e.getHelper();
+        }
+    }
+
+    /**
+     * Reads the events from the chunks like Host.getOutput did for the
+     * events stream: indexOf from the start and delete for every block.
+     */
+    private static int readWithDelete(final List<String> chunks) {
+        final String infoStart = "--event-info-start--";
+        final String infoEnd = "--event-info-end--";
+        final StringBuffer buffer = new StringBuffer(300);
+        int length = 0;
+        for (final String chunk : chunks) {
+            buffer.append(chunk);
+            while (true) {
+                final int s = buffer.indexOf(infoStart);
+                final int s2 = buffer.indexOf("\r\n", s);
+                final int e = buffer.indexOf(infoEnd, s);
+                if (s < 0 || s >= s2 || s2 > e) {
+                    break;
+                }
+                final String header =
+                               buffer.substring(s + infoStart.length(), s2);
+                Double.parseDouble(header);
+                length += buffer.substring(s2 + 2, e).length();
+                buffer.delete(0, e + infoEnd.length() + 2);
+            }
+        }
+        return length;
+    }
+
+    /** Reads the events from the chunks with the InfoBlockReader. */
+    private static int readWithReader(final List<String> chunks) {
+        final InfoBlockReader reader = new InfoBlockReader();
+        int length = 0;
+        for (final String chunk : chunks) {
+            reader.append(chunk);
+            InfoBlockReader.Block block;
+            while ((block = reader.next()) != null) {
+                Double.parseDouble(block.getTimestamp());
+                length += block.getContent().length();
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,247 @@
+package lcmc.data;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import lcmc.utilities.Logger;
+import lcmc.utilities.LoggerFactory;
+
+public final class DrbdEventTest1 extends TestCase {
+    /** Logger. */
+    private static final Logger LOG =
+                                  LoggerFactory.getLogger(DrbdEventTest1.class);
+
+    /** Checks the state of the event. */
+    private static void assertState(final DrbdEvent event,
+                                    final String cs,
+                                    final String role,
+                                    final String roleOther,
+                                    final String ds,
+                                    final String dsOther,
+                                    final String flags) {
+        assertNotNull(event);
+        assertEquals(DrbdEvent.Type.STATE, event.getType());
+        assertEquals(cs, event.getConnectionState());
+        assertEquals(role, event.getRole());
+        assertEquals(roleOther, event.getRoleOther());
+        assertEquals(ds, event.getDiskState());
+        assertEquals(dsOther, event.getDiskStateOther());
+        assertEquals(flags, event.getFlags());
+    }
+
+    /* ---- tests ----- */
+
+    @Test
+    public void testState83() {
+        final DrbdEvent event = DrbdEvent.parse(
+            "19 ST 0 { cs:Connected ro:Primary/Secondary"
+            + " ds:UpToDate/UpToDate r--- }");
+        assertState(event,
+                    "Connected",
+                    "Primary",
+                    "Secondary",
+                    "UpToDate",
+                    "UpToDate",
+                    "r---");
+        assertEquals("0", event.getMinor());
+        assertNull(event.getResource());
+        assertEquals("0", event.getVolumeNr());
+        assertNull(event.getAction());
+    }
+
+    @Test
+    public void testStateOld() {
+        /* before 8.3 there is st: instead of ro: */
+        assertState(DrbdEvent.parse(
+                        "3 ST 1 { cs:WFConnection st:Secondary/Unknown"
+                        + " ds:UpToDate/DUnknown r--- }"),
+                    "WFConnection",
+                    "Secondary",
+                    "Unknown",
+                    "UpToDate",
+                    "DUnknown",
+                    "r---");
+    }
+
+    @Test
+    public void testState84() {
+        final DrbdEvent event = DrbdEvent.parse(
+            "1 ST 2,r1[1] { cs:SyncSource ro:Primary/Secondary"
+            + " ds:UpToDate/Inconsistent r----- }");
+        assertState(event,
+                    "SyncSource",
+                    "Primary",
+                    "Secondary",
+                    "UpToDate",
+                    "Inconsistent",
+                    "r-----");
+        assertEquals("2", event.getMinor());
+        assertEquals("r1", event.getResource());
+        assertEquals("1", event.getVolumeNr());
+        /* tabs and more spaces */
+        assertState(DrbdEvent.parse(
+                        "1\tST  2,r1[1]\t{ cs:SyncSource  ro:Primary/Secondary"
+                        + " ds:UpToDate/Inconsistent r----- }\r\n"),
+                    "SyncSource",
+                    "Primary",
+                    "Secondary",
+                    "UpToDate",
+                    "Inconsistent",
+                    "r-----");
+    }
+
+    @Test
+    public void testMalformedDevice() {
+        /* not minor,resource[volume], the whole token is the minor */
+        final DrbdEvent event = DrbdEvent.parse(
+            "1 ST 0,r0[x] { cs:Connected ro:Primary/Secondary"
+            + " ds:UpToDate/UpToDate r--- }");
+        assertEquals("0,r0[x]", event.getMinor());
+        assertNull(event.getResource());
+        assertEquals("0", event.getVolumeNr());
+        assertEquals("0,[0]", DrbdEvent.parse("1 SP 0,[0] 1.0").getMinor());
+        assertEquals("0,r0[0", DrbdEvent.parse("1 SP 0,r0[0 1.0").getMinor());
+        assertEquals("a,r0[0]",
+                     DrbdEvent.parse("1 SP a,r0[0] 1.0").getMinor());
+    }
+
+    @Test
+    public void testMalformedState() {
+        final String[] lines = {
+            "1 ST 0",
+            "1 ST 0 cs:Connected ro:Primary/Secondary ds:UpToDate/UpToDate r",
+            "1 ST 0 { ro:Primary/Secondary ds:UpToDate/UpToDate r--- }",
+            "1 ST 0 { cs:Connected }",
+            "1 ST 0 { cs:Connected ro:Primary ds:UpToDate/UpToDate r--- }",
+            "1 ST 0 { cs:Connected ro:Primary/ ds:UpToDate/UpToDate r--- }",
+            "1 ST 0 { cs:Connected ro:/Secondary ds:UpToDate/UpToDate r--- }",
+            "1 ST 0 { cs:Connected ro:Primary/Secondary ds:UpToDate r--- }",
+            "1 ST 0 { cs:Connected ro:Primary/Secondary ds:UpToDate/UpToDate",
+        };
+        for (final String line : lines) {
+            assertNull(line, DrbdEvent.parse(line));
+        }
+    }
+
+    @Test
+    public void testSyncProgress() {
+        final DrbdEvent event = DrbdEvent.parse("19 SP 0 16.9");
+        assertEquals(DrbdEvent.Type.SYNC_PROGRESS, event.getType());
+        assertEquals("16.9", event.getSynced());
+        assertEquals("0", event.getMinor());
+        assertEquals("100.0",
+                     DrbdEvent.parse("7 SP 3,r3[0] 100.0%").getSynced());
+        assertNull(DrbdEvent.parse("19 SP 0 16"));
+        assertNull(DrbdEvent.parse("19 SP 0 16."));
+        assertNull(DrbdEvent.parse("19 SP 0 .9"));
+        assertNull(DrbdEvent.parse("19 SP 0 done"));
+        assertNull(DrbdEvent.parse("19 SP 0"));
+    }
+
+    @Test
+    public void testHelper() {
+        final DrbdEvent event = DrbdEvent.parse("19 UH 1 split-brain");
+        assertEquals(DrbdEvent.Type.HELPER, event.getType());
+        assertEquals("split-brain", event.getHelper());
+        assertEquals("1", event.getMinor());
+        assertEquals("before-resync-target",
+                     DrbdEvent.parse("2 UH 1,r0[0] before-resync-target 0")
+                              .getHelper());
+        assertEquals("pri-lost",
+                     DrbdEvent.parse("2 UH 1 pri-lost(0)").getHelper());
+        assertNull(DrbdEvent.parse("19 UH 1 123"));
+        assertNull(DrbdEvent.parse("19 UH 1"));
+    }
+
+    @Test
+    public void testNotEvents() {
+        final String[] lines = {
+            "",
+            "   ",
+            "1",
+            "1 ST",
+            "1 XX 0 16.9",
+            "1 st 0 { cs:Connected ro:Primary/Secondary ds:UpToDate/UpToDate }",
+            "exists -",
+            "change",
+            "change resource",
+            "change resource role:Primary",
+            "change volume name:r0",
+            "2017-03-09T10:00:00.000000+01:00",
+            "2017-03-09T10:00:00.000000+01:00 foo resource name:r0",
+            "drbdsetup: command not found",
+        };
+        for (final String line : lines) {
+            assertNull("'" + line + "'", DrbdEvent.parse(line));
+        }
+    }
+
+    @Test
+    public void testEvents2() {
+        final DrbdEvent event = DrbdEvent.parse(
+            "change peer-device name:r0 peer-node-id:1 conn-name:b volume:0"
+            + " replication:SyncSource peer-disk:Inconsistent done:16.90");
+        assertEquals(DrbdEvent.Type.PEER_DEVICE, event.getType());
+        assertEquals(DrbdEvent.Action.CHANGE, event.getAction());
+        assertEquals("r0", event.getResource());
+        assertEquals("0", event.getVolumeNr());
+        assertNull(event.getMinor());
+        assertEquals("16.90", event.getSynced());
+        assertEquals("SyncSource", event.getProperty("replication"));
+        assertEquals("b", event.getProperty("conn-name"));
+        assertNull(event.getProperty("role"));
+        assertEquals(1, event.getLongProperty("peer-node-id"));
+        assertEquals(-1, event.getLongProperty("conn-name"));
+        assertEquals(-1, event.getLongProperty("role"));
+
+        final DrbdEvent resource = DrbdEvent.parse(
+                        "exists resource name:r0 role:Secondary suspended:no");
+        assertEquals(DrbdEvent.Type.RESOURCE, resource.getType());
+        assertEquals(DrbdEvent.Action.EXISTS, resource.getAction());
+        assertNull(resource.getVolumeNr());
+        assertEquals("Secondary", resource.getProperty("role"));
+
+        final DrbdEvent connection = DrbdEvent.parse(
+            "destroy connection name:r0 peer-node-id:1 conn-name:b");
+        assertEquals(DrbdEvent.Type.CONNECTION, connection.getType());
+        assertEquals(DrbdEvent.Action.DESTROY, connection.getAction());
+    }
+
+    @Test
+    public void testEvents2Timestamp() {
+        final DrbdEvent event = DrbdEvent.parse(
+            "2017-03-09T10:00:00.000000+01:00 create device name:r0 volume:0"
+            + " minor:3 disk:Diskless");
+        assertEquals(DrbdEvent.Type.DEVICE, event.getType());
+        assertEquals(DrbdEvent.Action.CREATE, event.getAction());
+        assertEquals("3", event.getMinor());
+        assertEquals("Diskless", event.getProperty("disk"));
+    }
+
+    @Test
+    public void testEvents2Helper() {
+        final DrbdEvent call = DrbdEvent.parse(
+            "call helper name:r0 peer-node-id:1 conn-name:b volume:0"
+            + " helper:before-resync-target");
+        assertEquals(DrbdEvent.Type.HELPER, call.getType());
+        assertEquals(DrbdEvent.Action.CALL, call.getAction());
+        assertEquals("before-resync-target", call.getHelper());
+        final DrbdEvent response = DrbdEvent.parse(
+            "response helper name:r0 peer-node-id:1 conn-name:b volume:0"
+            + " helper:before-resync-target status:0");
+        assertEquals(DrbdEvent.Action.RESPONSE, response.getAction());
+        assertEquals(0, response.getLongProperty("status"));
+    }
+
+    @Test
+    public void testEvents2MalformedProperties() {
+        /* tokens without a key are ignored, the value can have colons */
+        final DrbdEvent event = DrbdEvent.parse(
+            "change connection name:r0 :x junk conn-name:a:b empty:");
+        assertEquals("r0", event.getResource());
+        assertEquals("a:b", event.getProperty("conn-name"));
+        assertEquals("", event.getProperty("empty"));
+        assertNull(event.getProperty(""));
+        assertNull(event.getProperty("junk"));
+    }
+}
@@ -0,0 +1,287 @@
+package lcmc.data;
+
+import junit.framework.TestCase;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import lcmc.data.resources.BlockDevice;
+import lcmc.data.resources.DrbdPeerDevice;
+import lcmc.utilities.Logger;
+import lcmc.utilities.LoggerFactory;
+import lcmc.utilities.TestSuite1;
+
+public final class DrbdXMLTest1 extends TestCase {
+    /** Logger. */
+    private static final Logger LOG =
+                                    LoggerFactory.getLogger(DrbdXMLTest1.class);
+    /** Config with two volumes of r0 and one of r1, from drbdadm dump-xml. */
+    private static final String CONFIG =
+        "<config file=\"/etc/drbd.conf\">\n"
+        + "<resource name=\"r0\">\n"
+        + " <host name=\"node1\">\n"
+        + "  <volume vnr=\"0\">\n"
+        + "   <device minor=\"0\"></device>\n"
+        + "   <disk>/dev/sda1</disk>\n"
+        + "   <meta-disk>internal</meta-disk>\n"
+        + "  </volume>\n"
+        + "  <volume vnr=\"1\">\n"
+        + "   <device minor=\"1\"></device>\n"
+        + "   <disk>/dev/sda2</disk>\n"
+        + "   <meta-disk>internal</meta-disk>\n"
+        + "  </volume>\n"
+        + "  <address family=\"ipv4\" port=\"7788\">10.0.0.1</address>\n"
+        + " </host>\n"
+        + "</resource>\n"
+        + "<resource name=\"r1\">\n"
+        + " <host name=\"node1\">\n"
+        + "  <volume vnr=\"0\">\n"
+        + "   <device minor=\"2\"></device>\n"
+        + "   <disk>/dev/sdb1</disk>\n"
+        + "   <meta-disk>internal</meta-disk>\n"
+        + "  </volume>\n"
+        + "  <address family=\"ipv4\" port=\"7789\">10.0.0.1</address>\n"
+        + " </host>\n"
+        + "</resource>\n"
+        + "</config>\n";
+
+    @Before
+    @Override
+    protected void setUp() {
+        TestSuite1.initTest();
+    }
+
+    /** Returns the new drbd block device. */
+    private static BlockDevice getDrbd() {
+        final BlockDevice bd = new BlockDevice("/dev/sda1 size:1000");
+        bd.setDrbd(true);
+        return bd;
+    }
+
+    /** Feeds the events2 lines at the time in ms, returns, if it changed. */
+    private static boolean update(final BlockDevice bd,
+                                  final long time,
+                                  final String... lines) {
+        boolean changed = false;
+        for (final String line : lines) {
+            final DrbdEvent event = DrbdEvent.parse(line);
+            assertNotNull(line, event);
+            changed |= DrbdXML.updateBlockDevice(bd, event, time);
+        }
+        return changed;
+    }
+
+    /** Returns the peer with the node id. */
+    private static DrbdPeerDevice getPeer(final BlockDevice bd,
+                                          final String peerNodeId) {
+        for (final DrbdPeerDevice peer : bd.getDrbdPeerDevices()) {
+            if (peerNodeId.equals(peer.getPeerNodeId())) {
+                return peer;
+            }
+        }
+        fail("no peer " + peerNodeId);
+        return null;
+    }
+
+    /* ---- tests ----- */
+
+    @Test
+    public void testMinors() {
+        final DrbdXML drbdXML = new DrbdXML(new Host[]{},
+                                            new HashMap<Host, String>());
+        drbdXML.update(CONFIG);
+        assertEquals(Arrays.asList("0"), drbdXML.getMinors("r0", "0"));
+        assertEquals(Arrays.asList("1"), drbdXML.getMinors("r0", "1"));
+        /* the resource events have no volume */
+        assertEquals(new HashSet<String>(Arrays.asList("0", "1")),
+                     new HashSet<String>(drbdXML.getMinors("r0", null)));
+        assertEquals(Arrays.asList("2"), drbdXML.getMinors("r1", null));
+        assertTrue(drbdXML.getMinors("r1", "1").isEmpty());
+        assertTrue(drbdXML.getMinors("r2", null).isEmpty());
+    }
+
+    @Test
+    public void testTwoPeers() {
+        final BlockDevice bd = getDrbd();
+        assertTrue(update(
+            bd,
+            1000,
+            "exists resource name:r0 role:Primary suspended:no",
+            "exists connection name:r0 peer-node-id:1 conn-name:node2"
+            + " connection:Connected role:Secondary",
+            "exists connection name:r0 peer-node-id:2 conn-name:node3"
+            + " connection:Connected role:Secondary",
+            "exists device name:r0 volume:0 minor:0 disk:UpToDate",
+            "exists peer-device name:r0 peer-node-id:1 conn-name:node2"
+            + " volume:0 replication:Established peer-disk:UpToDate"
+            + " resync-suspended:no out-of-sync:0 sent:1000 received:100",
+            "exists peer-device name:r0 peer-node-id:2 conn-name:node3"
+            + " volume:0 replication:SyncSource peer-disk:Inconsistent"
+            + " resync-suspended:no done:10.00 out-of-sync:4000"
+            + " sent:2000 received:200"));
+        assertEquals("Primary", bd.getNodeState());
+        assertEquals("UpToDate", bd.getDiskState());
+        final List<DrbdPeerDevice> peers = bd.getDrbdPeerDevices();
+        assertEquals(2, peers.size());
+
+        final DrbdPeerDevice node2 = getPeer(bd, "1");
+        assertEquals("node2", node2.getConnectionName());
+        assertEquals("Connected", node2.getConnectionState());
+        assertEquals("Secondary", node2.getRole());
+        assertEquals("Established", node2.getReplicationState());
+        assertEquals("UpToDate", node2.getDiskState());
+        assertFalse(node2.isSyncing());
+        assertNull(node2.getSyncedProgress());
+        assertEquals(0, node2.getOutOfSync());
+        /* no rate after the first statistics */
+        assertEquals(0, node2.getSendRate());
+
+        final DrbdPeerDevice node3 = getPeer(bd, "2");
+        assertEquals("node3", node3.getConnectionName());
+        assertEquals("SyncSource", node3.getReplicationState());
+        assertEquals("Inconsistent", node3.getDiskState());
+        assertTrue(node3.isSyncing());
+        assertEquals("10.00", node3.getSyncedProgress());
+        assertEquals(4000, node3.getOutOfSync());
+
+        /* the peer, that syncs, is shown as the drbd 8 peer */
+        assertEquals("SyncSource", bd.getConnectionState());
+        assertEquals("Secondary", bd.getNodeStateOther());
+        assertEquals("Inconsistent", bd.getDiskStateOther());
+        assertEquals("10.00", bd.getSyncedProgress());
+
+        /* two seconds later */
+        assertTrue(update(
+            bd,
+            3000,
+            "change peer-device name:r0 peer-node-id:1 conn-name:node2"
+            + " volume:0 out-of-sync:0 sent:1200 received:140",
+            "change peer-device name:r0 peer-node-id:2 conn-name:node3"
+            + " volume:0 done:55.00 out-of-sync:2000 sent:6000"
+            + " received:300"));
+        assertEquals(100, node2.getSendRate());
+        assertEquals(20, node2.getReceiveRate());
+        assertEquals(1200, node2.getSent());
+        assertEquals(140, node2.getReceived());
+        assertEquals(2000, node3.getSendRate());
+        assertEquals(50, node3.getReceiveRate());
+        assertEquals("55.00", node3.getSyncedProgress());
+        assertEquals(2000, node3.getOutOfSync());
+        assertEquals("55.00", bd.getSyncedProgress());
+
+        /* the same again changes nothing */
+        assertFalse(update(
+            bd,
+            3000,
+            "change peer-device name:r0 peer-node-id:2 conn-name:node3"
+            + " volume:0 replication:SyncSource peer-disk:Inconsistent"));
+    }
+
+    @Test
+    public void testSyncFinishedAndDisconnect() {
+        final BlockDevice bd = getDrbd();
+        update(bd,
+               1000,
+               "exists resource name:r0 role:Secondary suspended:no",
+               "exists connection name:r0 peer-node-id:1 conn-name:node2"
+               + " connection:Connected role:Primary",
+               "exists connection name:r0 peer-node-id:2 conn-name:node3"
+               + " connection:Connected role:Secondary",
+               "exists device name:r0 volume:0 minor:0 disk:Inconsistent",
+               "exists peer-device name:r0 peer-node-id:1 conn-name:node2"
+               + " volume:0 replication:SyncTarget peer-disk:UpToDate"
+               + " done:90.00",
+               "exists peer-device name:r0 peer-node-id:2 conn-name:node3"
+               + " volume:0 replication:Established peer-disk:UpToDate");
+        assertEquals("SyncTarget", bd.getConnectionState());
+        assertEquals("Primary", bd.getNodeStateOther());
+
+        /* the sync is done */
+        assertTrue(update(
+            bd,
+            2000,
+            "change device name:r0 volume:0 minor:0 disk:UpToDate",
+            "change peer-device name:r0 peer-node-id:1 conn-name:node2"
+            + " volume:0 replication:Established"));
+        assertEquals("UpToDate", bd.getDiskState());
+        assertNull(getPeer(bd, "1").getSyncedProgress());
+        assertEquals("Connected", bd.getConnectionState());
+        assertNull(bd.getSyncedProgress());
+
+        /* the first peer goes away, the other one is shown */
+        assertTrue(update(
+            bd,
+            3000,
+            "change connection name:r0 peer-node-id:1 conn-name:node2"
+            + " connection:Connecting",
+            "destroy connection name:r0 peer-node-id:1 conn-name:node2"));
+        assertEquals(1, bd.getDrbdPeerDevices().size());
+        assertEquals("Secondary", bd.getNodeStateOther());
+        assertFalse(update(
+            bd,
+            3000,
+            "destroy connection name:r0 peer-node-id:1 conn-name:node2"));
+
+        /* the last one */
+        assertTrue(update(
+            bd,
+            4000,
+            "change connection name:r0 peer-node-id:2 conn-name:node3"
+            + " connection:Connecting"));
+        assertEquals("WFConnection", bd.getConnectionState());
+        assertTrue(update(
+            bd,
+            4000,
+            "destroy connection name:r0 peer-node-id:2 conn-name:node3"));
+        assertTrue(bd.getDrbdPeerDevices().isEmpty());
+        assertEquals("StandAlone", bd.getConnectionState());
+        assertNull(bd.getNodeStateOther());
+    }
+
+    @Test
+    public void testSuspendedAndSplitBrain() {
+        final BlockDevice bd = getDrbd();
+        update(bd,
+               1000,
+               "exists resource name:r0 role:Primary suspended:no",
+               "exists connection name:r0 peer-node-id:1 conn-name:node2"
+               + " connection:Connected role:Secondary",
+               "exists peer-device name:r0 peer-node-id:1 conn-name:node2"
+               + " volume:0 replication:PausedSyncS peer-disk:Inconsistent"
+               + " resync-suspended:user");
+        assertTrue(bd.isPausedSync());
+        assertTrue(update(
+            bd,
+            2000,
+            "change resource name:r0 suspended:user"));
+        assertFalse(update(
+            bd,
+            2000,
+            "change resource name:r0 suspended:user"));
+        assertTrue(update(
+            bd,
+            2000,
+            "change peer-device name:r0 peer-node-id:1 conn-name:node2"
+            + " volume:0 replication:SyncSource resync-suspended:no"));
+        assertFalse(bd.isPausedSync());
+
+        assertFalse(bd.isSplitBrain());
+        /* the response is not the split brain */
+        assertFalse(update(
+            bd,
+            2000,
+            "response helper name:r0 peer-node-id:1 conn-name:node2"
+            + " volume:0 helper:split-brain status:0"));
+        assertTrue(update(
+            bd,
+            2000,
+            "call helper name:r0 peer-node-id:1 conn-name:node2 volume:0"
+            + " helper:split-brain"));
+        assertTrue(bd.isSplitBrain());
+
+        assertTrue(update(bd, 3000, "destroy resource name:r0"));
+    }
+}
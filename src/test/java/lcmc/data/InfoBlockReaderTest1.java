@@ -0,0 +1,189 @@
+package lcmc.data;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.List;
+
+import lcmc.utilities.Logger;
+import lcmc.utilities.LoggerFactory;
+
+public final class InfoBlockReaderTest1 extends TestCase {
+    /** Logger. */
+    private static final Logger LOG =
+                            LoggerFactory.getLogger(InfoBlockReaderTest1.class);
+    /** Drbd block with the content hash. */
+    private static final String DRBD_BLOCK =
+        "--drbd-info-start--1365412345123456789 3f2a\n"
+        + "<config><resource name=\"r0\"/></config>\n"
+        + "--drbd-info-end--\n";
+    /** Event block. */
+    private static final String EVENT_BLOCK =
+        "--event-info-start--1365412346000000000\n"
+        + "1 ST 0 { cs:Connected ro:Primary/Secondary"
+        + " ds:UpToDate/UpToDate r--- }\n"
+        + "--event-info-end--\n";
+
+    /** Returns all complete blocks. */
+    private static List<InfoBlockReader.Block> readAll(
+                                               final InfoBlockReader reader) {
+        final List<InfoBlockReader.Block> blocks =
+                                     new ArrayList<InfoBlockReader.Block>();
+        while (true) {
+            final InfoBlockReader.Block block = reader.next();
+            if (block == null) {
+                return blocks;
+            }
+            blocks.add(block);
+        }
+    }
+
+    /** Returns the types of the blocks. */
+    private static String getTypes(final List<InfoBlockReader.Block> blocks) {
+        final StringBuilder types = new StringBuilder();
+        for (final InfoBlockReader.Block block : blocks) {
+            types.append(block.getType()).append(' ');
+        }
+        return types.toString().trim();
+    }
+
+    /* ---- tests ----- */
+
+    @Test
+    public void testBlock() {
+        final InfoBlockReader reader = new InfoBlockReader();
+        assertNull(reader.next());
+        reader.append(DRBD_BLOCK);
+        final InfoBlockReader.Block block = reader.next();
+        assertEquals("drbd", block.getType());
+        assertEquals("1365412345123456789", block.getTimestamp());
+        assertEquals(1365412345123L, block.getTimeMillis());
+        assertEquals("3f2a", block.getHash());
+        assertEquals("<config><resource name=\"r0\"/></config>\n",
+                     block.getContent());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void testNoHash() {
+        final InfoBlockReader reader = new InfoBlockReader();
+        reader.append(EVENT_BLOCK);
+        final InfoBlockReader.Block block = reader.next();
+        assertEquals("event", block.getType());
+        assertNull(block.getHash());
+        assertEquals(1365412346000L, block.getTimeMillis());
+    }
+
+    @Test
+    public void testNoNanoseconds() {
+        /* date without %N */
+        final InfoBlockReader reader = new InfoBlockReader();
+        reader.append("--event-info-start--1365412346N\nx\n"
+                      + "--event-info-end--\n");
+        final InfoBlockReader.Block block = reader.next();
+        assertEquals("1365412346N", block.getTimestamp());
+        assertEquals(-1, block.getTimeMillis());
+        reader.append("--event-info-start--\nx\n--event-info-end--\n");
+        assertEquals(-1, reader.next().getTimeMillis());
+    }
+
+    @Test
+    public void testOrder() {
+        final InfoBlockReader reader = new InfoBlockReader();
+        reader.append(EVENT_BLOCK + DRBD_BLOCK + EVENT_BLOCK);
+        assertEquals("event drbd event", getTypes(readAll(reader)));
+    }
+
+    @Test
+    public void testChunks() {
+        /* the output is split at every position */
+        final String output = EVENT_BLOCK + DRBD_BLOCK + EVENT_BLOCK;
+        for (int split = 0; split <= output.length(); split++) {
+            final InfoBlockReader reader = new InfoBlockReader();
+            reader.append(output.substring(0, split));
+            final List<InfoBlockReader.Block> blocks = readAll(reader);
+            reader.append(output.substring(split));
+            blocks.addAll(readAll(reader));
+            assertEquals("split " + split,
+                         "event drbd event",
+                         getTypes(blocks));
+            assertEquals("<config><resource name=\"r0\"/></config>\n",
+                         blocks.get(1).getContent());
+        }
+    }
+
+    @Test
+    public void testCharByChar() {
+        final String output = DRBD_BLOCK + EVENT_BLOCK;
+        final InfoBlockReader reader = new InfoBlockReader();
+        final List<InfoBlockReader.Block> blocks =
+                                     new ArrayList<InfoBlockReader.Block>();
+        for (int i = 0; i < output.length(); i++) {
+            reader.append(output.substring(i, i + 1));
+            blocks.addAll(readAll(reader));
+        }
+        assertEquals("drbd event", getTypes(blocks));
+    }
+
+    @Test
+    public void testTextOutside() {
+        final InfoBlockReader reader = new InfoBlockReader();
+        reader.append("Warning: Permanently added 'node1' to known hosts\n"
+                      + "-- not a block --\n"
+                      + "--bogus-info-stat--1\n"
+                      + DRBD_BLOCK
+                      + "sudo: unable to resolve host node1\n"
+                      + EVENT_BLOCK);
+        assertEquals("drbd event", getTypes(readAll(reader)));
+    }
+
+    @Test
+    public void testCarriageReturns() {
+        final InfoBlockReader reader = new InfoBlockReader();
+        reader.append("--drbd-info-start--1365412345123456789 3f2a\r\n"
+                      + "content\r\n"
+                      + "--drbd-info-end--\r\n"
+                      + EVENT_BLOCK);
+        final InfoBlockReader.Block block = reader.next();
+        assertEquals("3f2a", block.getHash());
+        assertEquals("1365412345123456789", block.getTimestamp());
+        assertEquals("content\r\n", block.getContent());
+        assertEquals("event", reader.next().getType());
+    }
+
+    @Test
+    public void testOtherEndMarker() {
+        /* the end marker of an other type is part of the content */
+        final InfoBlockReader reader = new InfoBlockReader();
+        reader.append("--event-info-start--1\n"
+                      + "--drbd-info-end--\n"
+                      + "--event-info-end-\n"
+                      + "x--event-info-end--\n");
+        final InfoBlockReader.Block block = reader.next();
+        assertEquals("event", block.getType());
+        assertEquals("--drbd-info-end--\n--event-info-end-\nx",
+                     block.getContent());
+    }
+
+    @Test
+    public void testEmptyContent() {
+        final InfoBlockReader reader = new InfoBlockReader();
+        reader.append("--vg-info-start--1\n--vg-info-end--\n");
+        final InfoBlockReader.Block block = reader.next();
+        assertEquals("vg", block.getType());
+        assertEquals("", block.getContent());
+    }
+
+    @Test
+    public void testUnfinished() {
+        final InfoBlockReader reader = new InfoBlockReader();
+        reader.append("--drbd-info-start--1 3f2a\n<config>\n");
+        assertNull(reader.next());
+        assertNull(reader.next());
+        reader.append("</config>\n--drbd-info-e");
+        assertNull(reader.next());
+        reader.append("nd--\n");
+        assertEquals("<config>\n</config>\n", reader.next().getContent());
+        assertNull(reader.next());
+    }
+}
@@ -0,0 +1,187 @@
+package lcmc.data;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import lcmc.utilities.Logger;
+import lcmc.utilities.LoggerFactory;
+
+public final class ResourceStatesTest1 extends TestCase {
+    /** Logger. */
+    private static final Logger LOG =
+                             LoggerFactory.getLogger(ResourceStatesTest1.class);
+
+    /* ---- tests ----- */
+
+    @Test
+    public void testEmpty() {
+        final ResourceStates states = ResourceStates.EMPTY;
+        assertNull(states.getRunningOnNodes("r1"));
+        assertNull(states.getMasterOnNodes("r1"));
+        assertNull(states.getSlaveOnNodes("r1"));
+        assertTrue(states.isManaged("r1"));
+        assertTrue(states.getAllocationScores("r1").isEmpty());
+        assertNull(states.getFailCount("node1", "r1"));
+        assertTrue(states.getFailedResources().isEmpty());
+    }
+
+    @Test
+    public void testRunning() {
+        final ResourceStates.Builder builder = new ResourceStates.Builder();
+        builder.addRunning("r1", "node1");
+        builder.addRunning("ms1", "node1");
+        builder.addRunning("ms1", "node2");
+        builder.addMaster("ms1", "node1");
+        builder.addSlave("ms1", "node2");
+        final ResourceStates states = builder.build();
+        assertEquals(Arrays.asList("node1"), states.getRunningOnNodes("r1"));
+        assertNull(states.getMasterOnNodes("r1"));
+        assertEquals(Arrays.asList("node1", "node2"),
+                     states.getRunningOnNodes("ms1"));
+        assertEquals(Arrays.asList("node1"), states.getMasterOnNodes("ms1"));
+        assertEquals(Arrays.asList("node2"), states.getSlaveOnNodes("ms1"));
+        assertNull(states.getRunningOnNodes("r2"));
+    }
+
+    @Test
+    public void testSortedNodes() {
+        /* the nodes are sorted by name, not in the order they came */
+        final ResourceStates.Builder builder = new ResourceStates.Builder();
+        builder.addRunning("cl1", "node3");
+        builder.addRunning("cl1", "Node1");
+        builder.addRunning("cl1", "node2");
+        builder.putAllocationScore("cl1", "node3", "0");
+        builder.putAllocationScore("cl1", "node2", "100");
+        final ResourceStates states = builder.build();
+        assertEquals(Arrays.asList("Node1", "node2", "node3"),
+                     states.getRunningOnNodes("cl1"));
+        assertEquals(Arrays.asList("node2", "node3"),
+                     Arrays.asList(states.getAllocationScores("cl1")
+                                         .keySet().toArray()));
+    }
+
+    @Test
+    public void testMoreInstancesOnNode() {
+        final ResourceStates.Builder builder = new ResourceStates.Builder();
+        builder.addRunning("cl1", "node1");
+        builder.addRunning("cl1", "node1");
+        builder.addRunning("cl1", "node2");
+        assertEquals(Arrays.asList("node1", "node1", "node2"),
+                     builder.build().getRunningOnNodes("cl1"));
+    }
+
+    @Test
+    public void testNodeNameCase() {
+        /* the name, that is not in lower case, wins */
+        final ResourceStates.Builder builder = new ResourceStates.Builder();
+        builder.addRunning("r1", "node1");
+        builder.addRunning("r2", "Node1");
+        builder.addRunning("r3", "node1");
+        builder.addRunning("r1", "NODE2");
+        builder.addRunning("r2", "node2");
+        builder.putFailCount("r1", "node1", "1");
+        final ResourceStates states = builder.build();
+        assertEquals(Arrays.asList("Node1", "NODE2"),
+                     states.getRunningOnNodes("r1"));
+        assertEquals(Arrays.asList("Node1", "NODE2"),
+                     states.getRunningOnNodes("r2"));
+        assertEquals(Arrays.asList("Node1"), states.getRunningOnNodes("r3"));
+        assertEquals("1", states.getFailCount("NODE1", "r1"));
+        assertEquals("1", states.getFailCount("node1", "r1"));
+        assertNull(states.getFailCount("node3", "r1"));
+    }
+
+    @Test
+    public void testInfinity() {
+        final ResourceStates.Builder builder = new ResourceStates.Builder();
+        builder.putAllocationScore("r1", "node1", "INFINITY");
+        builder.putAllocationScore("r1", "node2", "-INFINITY");
+        builder.putAllocationScore("r1", "node3", "+INFINITY");
+        builder.putAllocationScore("r1", "node4", "2000000");
+        builder.putAllocationScore("r1", "node5", "-99999999999");
+        builder.putAllocationScore("r1", "node6", " 100 ");
+        builder.putAllocationScore("r1", "node7", "-1000000");
+        builder.putAllocationScore("r1", "node8", "999999");
+        /* not a score */
+        builder.putAllocationScore("r1", "node9", "abc");
+        builder.putAllocationScore("r1", "node9", null);
+        final Map<String, String> expected =
+                                         new LinkedHashMap<String, String>();
+        expected.put("node1", "INFINITY");
+        expected.put("node2", "-INFINITY");
+        expected.put("node3", "INFINITY");
+        expected.put("node4", "INFINITY");
+        expected.put("node5", "-INFINITY");
+        expected.put("node6", "100");
+        expected.put("node7", "-INFINITY");
+        expected.put("node8", "999999");
+        assertEquals(expected, builder.build().getAllocationScores("r1"));
+    }
+
+    @Test
+    public void testFailCounts() {
+        final ResourceStates.Builder builder = new ResourceStates.Builder();
+        builder.putFailCount("r1", "node1", "INFINITY");
+        builder.putFailCount("r2", "node2", "0");
+        builder.putFailCount("a1", "node2", "3");
+        builder.putFailCount("r3", "node1", "x");
+        final ResourceStates states = builder.build();
+        assertEquals("INFINITY", states.getFailCount("node1", "r1"));
+        assertEquals("0", states.getFailCount("node2", "r2"));
+        assertNull(states.getFailCount("node2", "r1"));
+        assertNull(states.getFailCount("node1", "r3"));
+        /* sorted, without the zero fail counts */
+        assertEquals(Arrays.asList("a1", "r1"), states.getFailedResources());
+    }
+
+    @Test
+    public void testCloneFailCounts() {
+        /* the fail counts of the clone instances, fail-count-cl1:0, are
+           also put for the clone, like in CRMXML */
+        final ResourceStates.Builder builder = new ResourceStates.Builder();
+        builder.putFailCount("cl1:0", "node1", "1");
+        builder.putFailCount("cl1", "node1", "1");
+        builder.putFailCount("cl1:1", "node2", "INFINITY");
+        builder.putFailCount("cl1", "node2", "INFINITY");
+        final ResourceStates states = builder.build();
+        assertEquals("1", states.getFailCount("node1", "cl1:0"));
+        assertNull(states.getFailCount("node2", "cl1:0"));
+        assertEquals("INFINITY", states.getFailCount("node2", "cl1:1"));
+        assertEquals("1", states.getFailCount("node1", "cl1"));
+        assertEquals("INFINITY", states.getFailCount("node2", "cl1"));
+        /* the clone is failed once, not for every instance */
+        assertEquals(Arrays.asList("cl1"), states.getFailedResources());
+        /* the last one wins */
+        builder.putFailCount("cl1", "node1", "2");
+        assertEquals("2", builder.build().getFailCount("node1", "cl1"));
+    }
+
+    @Test
+    public void testManaged() {
+        final ResourceStates.Builder builder = new ResourceStates.Builder();
+        builder.setManaged("r1", false);
+        builder.setManaged("r2", true);
+        builder.addRunning("r3", "node1");
+        final ResourceStates states = builder.build();
+        assertFalse(states.isManaged("r1"));
+        assertTrue(states.isManaged("r2"));
+        assertTrue(states.isManaged("r3"));
+        assertTrue(states.isManaged("r4"));
+        /* managed, but without nodes */
+        assertNull(states.getRunningOnNodes("r1"));
+    }
+
+    @Test
+    public void testNulls() {
+        final ResourceStates.Builder builder = new ResourceStates.Builder();
+        builder.addRunning(null, "node1");
+        builder.addRunning("r1", null);
+        builder.putFailCount("r1", null, "1");
+        final ResourceStates states = builder.build();
+        assertNull(states.getRunningOnNodes("r1"));
+        assertTrue(states.getFailedResources().isEmpty());
+    }
+}
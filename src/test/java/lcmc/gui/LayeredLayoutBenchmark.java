@@ -0,0 +1,104 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2013, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.gui;
+
+import java.awt.geom.Point2D;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Time of the layered layout of a big constraint graph, all at once and
+ * after adding a few vertices.
+ *
+ * It is not a unit test, run it with:
+ * java -cp ... lcmc.gui.LayeredLayoutBenchmark [vertices] [edges]
+ *
+ * @author Rasto Levrinc
+ *
+ */
+public final class LayeredLayoutBenchmark {
+    /** Number of runs, the first ones warm up. */
+    private static final int RUNS = 5;
+    /** Number of the vertices, that are added to the laid out graph. */
+    private static final int ADDED = 10;
+
+    /** Private constructor, cannot be instantiated. */
+    private LayeredLayoutBenchmark() {
+        /* no instantiation possible. */
+    }
+
+    /** Runs the benchmark. */
+    public static void main(final String[] args) {
+        final int vertices = args.length > 0 ? Integer.parseInt(args[0])
+                                             : 1000;
+        final int edges = args.length > 1 ? Integer.parseInt(args[1])
+                                          : 2 * vertices;
+        for (int run = 0; run < RUNS; run++) {
+            final long start = System.nanoTime();
+            final Map<Integer, Point2D> positions =
+                      createLayout(vertices, edges, null).layout(10, 100);
+            final long full = System.nanoTime() - start;
+            final LayeredLayout<Integer> incremental =
+                          createLayout(vertices + ADDED, edges, positions);
+            final long start2 = System.nanoTime();
+            final Map<Integer, Point2D> added = incremental.layout(10, 100);
+            final long inc = System.nanoTime() - start2;
+            System.out.println(String.format(
+                           "%d vertices, %d edges: full %d ms, "
+                           + "%d added %d ms",
+                           vertices,
+                           edges,
+                           full / 1000000,
+                           added.size(),
+                           inc / 1000000));
+        }
+    }
+
+    /**
+     * Returns the layout of a random acyclic graph, the vertices with
+     * positions are fixed.
+     */
+    private static LayeredLayout<Integer> createLayout(
+                                     final int vertices,
+                                     final int edges,
+                                     final Map<Integer, Point2D> positions) {
+        final Random random = new Random(vertices);
+        final LayeredLayout<Integer> layout =
+                                  new LayeredLayout<Integer>(30, 40, 2600);
+        for (int i = 0; i < vertices; i++) {
+            layout.addNode(i, 60 + random.nextInt(100), 50);
+        }
+        final Random edgeRandom = new Random(edges);
+        for (int e = 0; e < edges; e++) {
+            final int from = edgeRandom.nextInt(vertices - 1);
+            /* mostly short edges, like order chains and groups */
+            final int to = Math.min(vertices - 1,
+                                    from + 1 + edgeRandom.nextInt(20));
+            layout.addEdge(from, to);
+        }
+        if (positions != null) {
+            for (final Map.Entry<Integer, Point2D> p : positions.entrySet()) {
+                layout.setFixedPosition(p.getKey(), p.getValue());
+            }
+        }
+        return layout;
+    }
+}
@@ -0,0 +1,276 @@
+package lcmc.gui;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import lcmc.utilities.Logger;
+import lcmc.utilities.LoggerFactory;
+
+public final class LayeredLayoutTest1 extends TestCase {
+    /** Logger. */
+    private static final Logger LOG =
+                             LoggerFactory.getLogger(LayeredLayoutTest1.class);
+    /** Horizontal space between the nodes. */
+    private static final int NODE_SPACING = 30;
+    /** Vertical space between the layers. */
+    private static final int LAYER_SPACING = 40;
+    /** Maximum width of the rows. */
+    private static final int MAX_WIDTH = 1000;
+    /** Height of the nodes. */
+    private static final int HEIGHT = 50;
+    /** Origin of the layout. */
+    private static final int ORIGIN = 10;
+
+    /** Widths of the nodes. */
+    private final Map<String, Integer> widths = new HashMap<String, Integer>();
+
+    /** Returns the new layout. */
+    private LayeredLayout<String> getLayout() {
+        return new LayeredLayout<String>(NODE_SPACING,
+                                         LAYER_SPACING,
+                                         MAX_WIDTH);
+    }
+
+    /** Adds the node. */
+    private void addNode(final LayeredLayout<String> layout,
+                         final String node,
+                         final int width) {
+        widths.put(node, width);
+        layout.addNode(node, width, HEIGHT);
+    }
+
+    /** Checks, that no two nodes overlap. */
+    private void assertNoOverlaps(final Map<String, Point2D> positions) {
+        final List<Map.Entry<String, Point2D>> entries =
+                   new ArrayList<Map.Entry<String, Point2D>>(
+                                                       positions.entrySet());
+        for (int i = 0; i < entries.size(); i++) {
+            for (int j = i + 1; j < entries.size(); j++) {
+                final String n1 = entries.get(i).getKey();
+                final String n2 = entries.get(j).getKey();
+                final Point2D p1 = entries.get(i).getValue();
+                final Point2D p2 = entries.get(j).getValue();
+                final double dx = (widths.get(n1) + widths.get(n2)) / 2.0;
+                final boolean overlap =
+                                   Math.abs(p1.getX() - p2.getX()) < dx
+                                   && Math.abs(p1.getY() - p2.getY()) < HEIGHT;
+                assertFalse(n1 + " " + p1 + " overlaps " + n2 + " " + p2,
+                            overlap);
+            }
+        }
+    }
+
+    /** Checks, that all nodes are right of and below the origin. */
+    private void assertAfterOrigin(final Map<String, Point2D> positions) {
+        for (final Map.Entry<String, Point2D> e : positions.entrySet()) {
+            final Point2D p = e.getValue();
+            assertTrue(e.getKey() + " " + p,
+                       p.getX() - widths.get(e.getKey()) / 2.0 >= ORIGIN);
+            assertTrue(e.getKey() + " " + p, p.getY() - HEIGHT / 2.0 >= ORIGIN);
+        }
+    }
+
+    /* ---- tests ----- */
+
+    @Test
+    public void testChain() {
+        final LayeredLayout<String> layout = getLayout();
+        addNode(layout, "a", 100);
+        addNode(layout, "b", 60);
+        addNode(layout, "c", 80);
+        layout.addEdge("a", "b");
+        layout.addEdge("b", "c");
+        /* long edge, that gets a dummy node */
+        layout.addEdge("a", "c");
+        final Map<String, Point2D> positions = layout.layout(ORIGIN, ORIGIN);
+        assertEquals(3, positions.size());
+        assertTrue(positions.get("a").getY() < positions.get("b").getY());
+        assertTrue(positions.get("b").getY() < positions.get("c").getY());
+        assertEquals(HEIGHT + LAYER_SPACING,
+                     positions.get("b").getY() - positions.get("a").getY(),
+                     0.001);
+        assertNoOverlaps(positions);
+        assertAfterOrigin(positions);
+    }
+
+    @Test
+    public void testCycle() {
+        final LayeredLayout<String> layout = getLayout();
+        addNode(layout, "a", 100);
+        addNode(layout, "b", 100);
+        addNode(layout, "c", 100);
+        layout.addEdge("a", "b");
+        layout.addEdge("b", "c");
+        layout.addEdge("c", "a");
+        /* self loop and unknown nodes are ignored */
+        layout.addEdge("a", "a");
+        layout.addEdge("a", "x");
+        final Map<String, Point2D> positions = layout.layout(ORIGIN, ORIGIN);
+        assertEquals(3, positions.size());
+        assertNoOverlaps(positions);
+    }
+
+    @Test
+    public void testComponentsInRows() {
+        final LayeredLayout<String> layout = getLayout();
+        for (int c = 0; c < 20; c++) {
+            addNode(layout, "p" + c, 100);
+            addNode(layout, "c" + c, 100);
+            layout.addEdge("p" + c, "c" + c);
+        }
+        for (int s = 0; s < 30; s++) {
+            addNode(layout, "s" + s, 70);
+        }
+        final Map<String, Point2D> positions = layout.layout(ORIGIN, ORIGIN);
+        assertEquals(70, positions.size());
+        assertNoOverlaps(positions);
+        assertAfterOrigin(positions);
+        for (final Map.Entry<String, Point2D> e : positions.entrySet()) {
+            assertTrue(e.getKey() + " " + e.getValue(),
+                       e.getValue().getX() + widths.get(e.getKey()) / 2.0
+                       <= ORIGIN + MAX_WIDTH);
+        }
+    }
+
+    @Test
+    public void testWideComponent() {
+        /* one component, that is wider than the maximum width, is not
+           squeezed */
+        final LayeredLayout<String> layout = getLayout();
+        addNode(layout, "root", 100);
+        for (int c = 0; c < 30; c++) {
+            addNode(layout, "c" + c, 100);
+            layout.addEdge("root", "c" + c);
+        }
+        final Map<String, Point2D> positions = layout.layout(ORIGIN, ORIGIN);
+        assertNoOverlaps(positions);
+        double maxX = 0;
+        for (final Point2D p : positions.values()) {
+            maxX = Math.max(maxX, p.getX());
+        }
+        assertTrue(maxX > MAX_WIDTH);
+    }
+
+    @Test
+    public void testIncremental() {
+        final LayeredLayout<String> layout = getLayout();
+        addNode(layout, "a", 100);
+        addNode(layout, "b", 100);
+        addNode(layout, "new", 100);
+        addNode(layout, "new2", 100);
+        layout.addEdge("a", "new");
+        layout.addEdge("new2", "b");
+        final Point2D a = new Point2D.Double(200, 100);
+        final Point2D b = new Point2D.Double(400, 300);
+        layout.setFixedPosition("a", a);
+        layout.setFixedPosition("b", b);
+        final Map<String, Point2D> positions = layout.layout(ORIGIN, ORIGIN);
+        /* the fixed nodes are not moved */
+        assertEquals(2, positions.size());
+        assertFalse(positions.containsKey("a"));
+        assertFalse(positions.containsKey("b"));
+        /* below the predecessor */
+        assertEquals(200, positions.get("new").getX(), 0.001);
+        assertEquals(100 + HEIGHT + LAYER_SPACING,
+                     positions.get("new").getY(),
+                     0.001);
+        /* above the successor */
+        assertEquals(400, positions.get("new2").getX(), 0.001);
+        assertEquals(300 - HEIGHT - LAYER_SPACING,
+                     positions.get("new2").getY(),
+                     0.001);
+        positions.put("a", a);
+        positions.put("b", b);
+        assertNoOverlaps(positions);
+    }
+
+    @Test
+    public void testIncrementalSiblings() {
+        /* many new children of one node are placed next to each other */
+        final LayeredLayout<String> layout = getLayout();
+        addNode(layout, "parent", 100);
+        addNode(layout, "old", 100);
+        layout.addEdge("parent", "old");
+        for (int c = 0; c < 300; c++) {
+            addNode(layout, "c" + c, 60 + c % 50);
+            layout.addEdge("parent", "c" + c);
+        }
+        layout.setFixedPosition("parent", new Point2D.Double(500, 100));
+        layout.setFixedPosition("old", new Point2D.Double(500, 190));
+        final Map<String, Point2D> positions = layout.layout(ORIGIN, ORIGIN);
+        assertEquals(300, positions.size());
+        for (final Point2D p : positions.values()) {
+            assertEquals(190, p.getY(), 0.001);
+            assertTrue(p.getX() > 500);
+        }
+        positions.put("parent", new Point2D.Double(500, 100));
+        positions.put("old", new Point2D.Double(500, 190));
+        assertNoOverlaps(positions);
+    }
+
+    @Test
+    public void testIncrementalNewRows() {
+        /* the nodes without placed neighbours wrap at the maximum width */
+        final LayeredLayout<String> layout = getLayout();
+        addNode(layout, "fixed", 100);
+        layout.setFixedPosition("fixed", new Point2D.Double(100, 100));
+        for (int s = 0; s < 50; s++) {
+            addNode(layout, "s" + s, 100);
+        }
+        final Map<String, Point2D> positions = layout.layout(ORIGIN, ORIGIN);
+        assertEquals(50, positions.size());
+        for (final Map.Entry<String, Point2D> e : positions.entrySet()) {
+            final Point2D p = e.getValue();
+            assertTrue(e.getKey() + " " + p,
+                       p.getX() + 50 <= ORIGIN + MAX_WIDTH);
+            assertTrue(e.getKey() + " " + p,
+                       p.getY() - HEIGHT / 2.0 >= 100 + HEIGHT / 2.0);
+        }
+        assertNoOverlaps(positions);
+    }
+
+    @Test
+    public void testBigGraph() {
+        final Random random = new Random(500);
+        final LayeredLayout<String> layout = getLayout();
+        for (int i = 0; i < 500; i++) {
+            addNode(layout, "n" + i, 60 + random.nextInt(100));
+        }
+        for (int e = 0; e < 1000; e++) {
+            final int from = random.nextInt(499);
+            layout.addEdge("n" + from,
+                           "n" + Math.min(499, from + 1 + random.nextInt(20)));
+        }
+        final Map<String, Point2D> positions = layout.layout(ORIGIN, ORIGIN);
+        assertEquals(500, positions.size());
+        assertNoOverlaps(positions);
+        assertAfterOrigin(positions);
+
+        /* 50 more, added to the laid out graph */
+        final LayeredLayout<String> more = getLayout();
+        for (int i = 0; i < 550; i++) {
+            final String node = "n" + i;
+            more.addNode(node,
+                         widths.containsKey(node) ? widths.get(node) : 80,
+                         HEIGHT);
+            widths.put(node,
+                       widths.containsKey(node) ? widths.get(node) : 80);
+        }
+        for (int i = 500; i < 550; i++) {
+            more.addEdge("n" + (i - 500) * 7, "n" + i);
+        }
+        for (final Map.Entry<String, Point2D> e : positions.entrySet()) {
+            more.setFixedPosition(e.getKey(), e.getValue());
+        }
+        final Map<String, Point2D> added = more.layout(ORIGIN, ORIGIN);
+        assertEquals(50, added.size());
+        positions.putAll(added);
+        assertNoOverlaps(positions);
+    }
+}
@@ -0,0 +1,273 @@
+package lcmc.gui.resources;
+
+import junit.framework.TestCase;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import lcmc.data.Host;
+import lcmc.data.resources.BlockDevice;
+import lcmc.gui.ResourceRegistry;
+import lcmc.utilities.Logger;
+import lcmc.utilities.LoggerFactory;
+import lcmc.utilities.TestSuite1;
+
+public final class ResourceRegistryTest1 extends TestCase {
+    /** Logger. */
+    private static final Logger LOG =
+                          LoggerFactory.getLogger(ResourceRegistryTest1.class);
+    /** Number of the threads, that change the registry at the same time. */
+    private static final int THREADS = 8;
+    /** Number of the changes of every thread. */
+    private static final int CHANGES = 200;
+
+    @Before
+    @Override
+    protected void setUp() {
+        TestSuite1.initTest();
+    }
+
+    /** Returns the new service. */
+    private static ServiceInfo getService(final String name) {
+        return new ServiceInfo(name, null, null);
+    }
+
+    /** Returns the new block device, line is as from the helper. */
+    private static BlockDevInfo getBlockDev(final String line) {
+        final BlockDevice bd = new BlockDevice(line);
+        return new BlockDevInfo(bd.getName(), bd, null);
+    }
+
+    /** Checks, that the map cannot be changed. */
+    private static <V> void assertUnmodifiable(final Map<String, V> map) {
+        try {
+            map.put("x", null);
+            fail("map is modifiable");
+        } catch (final UnsupportedOperationException e) {
+            /* expected */
+        }
+    }
+
+    /* ---- tests ----- */
+
+    @Test
+    public void testSnapshotDoesNotChange() {
+        final ResourceRegistry registry = new ResourceRegistry();
+        final ServiceInfo si1 = getService("Dummy");
+        registry.putCRMId("res_Dummy_1", si1);
+        final ResourceRegistry.Snapshot old = registry.getSnapshot();
+        registry.putCRMId("res_Dummy_2", getService("Dummy"));
+        registry.removeCRMId("res_Dummy_1");
+        /* the old snapshot still sees the old indexes */
+        assertSame(si1, old.getServiceByCRMId("res_Dummy_1"));
+        assertNull(old.getServiceByCRMId("res_Dummy_2"));
+        assertEquals(1, old.getCRMIdToService().size());
+        final ResourceRegistry.Snapshot current = registry.getSnapshot();
+        assertNull(current.getServiceByCRMId("res_Dummy_1"));
+        assertNotNull(current.getServiceByCRMId("res_Dummy_2"));
+        /* unchanged maps are shared */
+        assertSame(old.getDrbdResources(), current.getDrbdResources());
+        assertSame(old.getNameToServices(), current.getNameToServices());
+    }
+
+    @Test
+    public void testUnmodifiable() {
+        final ResourceRegistry registry = new ResourceRegistry();
+        registry.putCRMId("res_Dummy_1", getService("Dummy"));
+        registry.putService("Dummy", "res_Dummy_1", getService("Dummy"));
+        registry.putDrbdResource("r0", null);
+        registry.putDrbdDevice("/dev/drbd0", null);
+        final ResourceRegistry.Snapshot s = registry.getSnapshot();
+        assertUnmodifiable(s.getCRMIdToService());
+        assertUnmodifiable(s.getNameToServices());
+        assertUnmodifiable(s.getNameToServices().get("Dummy"));
+        assertUnmodifiable(s.getDrbdResources());
+        assertUnmodifiable(s.getDrbdDevices());
+        /* the empty maps too */
+        assertUnmodifiable(new ResourceRegistry().getSnapshot()
+                                                 .getCRMIdToService());
+    }
+
+    @Test
+    public void testPutCRMIdIfAbsent() {
+        final ResourceRegistry registry = new ResourceRegistry();
+        final ServiceInfo si1 = getService("Dummy");
+        registry.putCRMIdIfAbsent("res_Dummy_1", si1);
+        final ResourceRegistry.Snapshot old = registry.getSnapshot();
+        registry.putCRMIdIfAbsent("res_Dummy_1", getService("Dummy"));
+        assertSame(si1, registry.getSnapshot()
+                                .getServiceByCRMId("res_Dummy_1"));
+        /* nothing changed, no new snapshot */
+        assertSame(old, registry.getSnapshot());
+        /* removing an unknown id doesn't make a new snapshot either */
+        registry.removeCRMId("res_Dummy_9");
+        assertSame(old, registry.getSnapshot());
+    }
+
+    @Test
+    public void testServiceNames() {
+        final ResourceRegistry registry = new ResourceRegistry();
+        final ServiceInfo si1 = getService("IPaddr2");
+        final ServiceInfo si2 = getService("IPaddr2");
+        registry.putService("IPaddr2", "res_IPaddr2_1", si1);
+        registry.putService("ipaddr2", "res_IPaddr2_2", si2);
+        final ResourceRegistry.Snapshot s = registry.getSnapshot();
+        assertEquals(1, s.getNameToServices().size());
+        final Map<String, ServiceInfo> ids =
+                                    s.getNameToServices().get("IPADDR2");
+        assertEquals(2, ids.size());
+        assertSame(si1, ids.get("RES_IPADDR2_1"));
+        assertSame(si2, ids.get("res_ipaddr2_2"));
+
+        registry.removeService("IPaddr2", "res_IPaddr2_1");
+        assertEquals(Arrays.asList("res_IPaddr2_2"),
+                     new ArrayList<String>(registry.getSnapshot()
+                                                   .getNameToServices()
+                                                   .get("IPaddr2")
+                                                   .keySet()));
+        /* the older snapshot still has both */
+        assertEquals(2, s.getNameToServices().get("IPaddr2").size());
+        /* the last id drops the name */
+        registry.removeService("IPaddr2", "res_IPaddr2_2");
+        assertTrue(registry.getSnapshot().getNameToServices().isEmpty());
+        registry.removeService("IPaddr2", "res_IPaddr2_2");
+    }
+
+    @Test
+    public void testDrbdResources() {
+        final ResourceRegistry registry = new ResourceRegistry();
+        final DrbdResourceInfo dri =
+                      new DrbdResourceInfo("r0", new HashSet<Host>(), null);
+        registry.putDrbdResource("r0", dri);
+        assertSame(dri, registry.getSnapshot().getDrbdResource("r0"));
+        /* no volumes yet */
+        assertNull(registry.getSnapshot().getDrbdVolume("r0", "0"));
+        assertNull(registry.getSnapshot().getDrbdVolume("r1", "0"));
+        assertSame(dri, registry.removeDrbdResource("r0"));
+        assertNull(registry.removeDrbdResource("r0"));
+        assertTrue(registry.getSnapshot().getDrbdResources().isEmpty());
+    }
+
+    @Test
+    public void testDrbdDevices() {
+        final ResourceRegistry registry = new ResourceRegistry();
+        registry.putDrbdDevice("/dev/drbd0", null);
+        registry.putDrbdDevice("/dev/drbd/by-res/r1", null);
+        final ResourceRegistry.Snapshot s = registry.getSnapshot();
+        assertEquals(new HashSet<String>(Arrays.asList("/dev/drbd0",
+                                                       "/dev/drbd/by-res/r1")),
+                     s.getDrbdDevices().keySet());
+        registry.removeDrbdDevice("/dev/drbd0");
+        assertEquals(new HashSet<String>(Arrays.asList("/dev/drbd/by-res/r1")),
+                     registry.getSnapshot().getDrbdDevices().keySet());
+        assertEquals(2, s.getDrbdDevices().size());
+        /* unknown device doesn't make a new snapshot */
+        final ResourceRegistry.Snapshot old = registry.getSnapshot();
+        registry.removeDrbdDevice("/dev/drbd0");
+        assertSame(old, registry.getSnapshot());
+    }
+
+    @Test
+    public void testBlockDevices() {
+        final ResourceRegistry registry = new ResourceRegistry();
+        final BlockDevInfo sda1 = getBlockDev("/dev/sda1 size:1000");
+        final BlockDevInfo link =
+                     getBlockDev("/dev/disk/by-id/disk1 rl:/dev/sdb1 size:2000");
+        final BlockDevInfo sdb1 = getBlockDev("/dev/sdb1 size:2000");
+        final List<BlockDevInfo> bdis =
+                               new ArrayList<BlockDevInfo>(
+                                         Arrays.asList(sda1, link, sdb1));
+        registry.putBlockDevInfos("node1", bdis);
+        final ResourceRegistry.Snapshot s = registry.getSnapshot();
+        assertSame(sda1, s.getBlockDevInfo("node1", "/dev/sda1"));
+        assertSame(link, s.getBlockDevInfo("node1", "/dev/disk/by-id/disk1"));
+        /* the name wins over the device, that an other one links to */
+        assertSame(sdb1, s.getBlockDevInfo("node1", "/dev/sdb1"));
+        assertNull(s.getBlockDevInfo("node2", "/dev/sda1"));
+        assertNull(s.getBlockDevInfo("node1", "/dev/sdc1"));
+
+        /* without /dev/sdb1 the link is found by the device */
+        registry.putBlockDevInfos("node1", Arrays.asList(sda1, link));
+        assertSame(link, registry.getSnapshot().getBlockDevInfo("node1",
+                                                                "/dev/sdb1"));
+        /* the list of the caller may change */
+        bdis.clear();
+        assertSame(sdb1, s.getBlockDevInfo("node1", "/dev/sdb1"));
+    }
+
+    @Test
+    public void testConcurrentChanges() throws InterruptedException {
+        final ResourceRegistry registry = new ResourceRegistry();
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < CHANGES; i++) {
+                        registry.putCRMId("res_" + thread + "_" + i, null);
+                        registry.putService("Dummy",
+                                            "res_" + thread + "_" + i,
+                                            null);
+                    }
+                }
+            }));
+        }
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        /* no change is lost */
+        final ResourceRegistry.Snapshot s = registry.getSnapshot();
+        assertEquals(THREADS * CHANGES, s.getCRMIdToService().size());
+        assertEquals(THREADS * CHANGES,
+                     s.getNameToServices().get("Dummy").size());
+    }
+
+    @Test
+    public void testReserveMinor() throws InterruptedException {
+        /* the minor is picked and put under the registry lock, like in
+           DrbdInfo.getNewDrbdVolume, so that no two volumes get the same
+           one */
+        final ResourceRegistry registry = new ResourceRegistry();
+        final Set<String> devices = new HashSet<String>();
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < THREADS; t++) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < CHANGES / 10; i++) {
+                        final String device;
+                        synchronized (registry) {
+                            int minor = 0;
+                            while (registry.getSnapshot().getDrbdDevices()
+                                       .containsKey("/dev/drbd" + minor)) {
+                                minor++;
+                            }
+                            device = "/dev/drbd" + minor;
+                            registry.putDrbdDevice(device, null);
+                        }
+                        synchronized (devices) {
+                            assertTrue(device, devices.add(device));
+                        }
+                    }
+                }
+            }));
+        }
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(THREADS * CHANGES / 10, devices.size());
+        assertEquals(devices, registry.getSnapshot().getDrbdDevices().keySet());
+    }
+}
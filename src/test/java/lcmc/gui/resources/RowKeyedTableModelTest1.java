@@ -0,0 +1,238 @@
+package lcmc.gui.resources;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.swing.JLabel;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+
+import lcmc.utilities.Logger;
+import lcmc.utilities.LoggerFactory;
+
+public final class RowKeyedTableModelTest1 extends TestCase {
+    /** Logger. */
+    private static final Logger LOG =
+                        LoggerFactory.getLogger(RowKeyedTableModelTest1.class);
+    /** Column names. */
+    private static final String[] COL_NAMES = {"name", "state", "node"};
+
+    /** Events, that the model fired, as "type:first-last:column". */
+    private final List<String> events = new ArrayList<String>();
+
+    /** Cell, whose text changes, but not its identity, like an Info. */
+    private static final class MutableText {
+        /** Text of the cell. */
+        private String text;
+
+        /** Prepares a new <code>MutableText</code> object. */
+        MutableText(final String text) {
+            this.text = text;
+        }
+
+        /** Sets the text. */
+        void setText(final String text) {
+            this.text = text;
+        }
+
+        /** Returns the text. */
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    /** Returns the model, that records its events. */
+    private RowKeyedTableModel getModel(final Object[][] data) {
+        return listen(new RowKeyedTableModel(data, COL_NAMES));
+    }
+
+    /** Records the events of the model. */
+    private RowKeyedTableModel listen(final RowKeyedTableModel model) {
+        model.addTableModelListener(new TableModelListener() {
+            @Override
+            public void tableChanged(final TableModelEvent e) {
+                String type;
+                if (e.getFirstRow() == TableModelEvent.HEADER_ROW) {
+                    type = "structure";
+                } else if (e.getType() == TableModelEvent.INSERT) {
+                    type = "insert";
+                } else if (e.getType() == TableModelEvent.DELETE) {
+                    type = "delete";
+                } else {
+                    type = "update";
+                }
+                events.add(type + ':' + e.getFirstRow() + '-'
+                           + e.getLastRow() + ':' + e.getColumn());
+            }
+        });
+        return model;
+    }
+
+    /** Returns the rows r1, r2, r3. */
+    private static Object[][] getData() {
+        return new Object[][]{{"r1", "started", "node1"},
+                              {"r2", "started", "node2"},
+                              {"r3", "stopped", null}};
+    }
+
+    /** Returns the first column of the model. */
+    private static List<Object> getKeys(final RowKeyedTableModel model) {
+        final List<Object> keys = new ArrayList<Object>();
+        for (int r = 0; r < model.getRowCount(); r++) {
+            keys.add(model.getValueAt(r, 0));
+        }
+        return keys;
+    }
+
+    /* ---- tests ----- */
+
+    @Test
+    public void testUnchanged() {
+        final RowKeyedTableModel model = getModel(getData());
+        final Collection<Integer> changed = model.updateRows(getData());
+        assertTrue(changed.isEmpty());
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void testUpdateCell() {
+        final RowKeyedTableModel model = getModel(getData());
+        final Object[][] data = getData();
+        data[1][2] = "node1";
+        data[2][2] = "node2";
+        final Collection<Integer> changed = model.updateRows(data);
+        assertEquals(Arrays.asList(1, 2), new ArrayList<Integer>(changed));
+        assertEquals(Arrays.asList("update:1-1:2", "update:2-2:2"), events);
+        assertEquals("node1", model.getValueAt(1, 2));
+        assertEquals("node2", model.getValueAt(2, 2));
+    }
+
+    @Test
+    public void testDelete() {
+        final RowKeyedTableModel model = getModel(getData());
+        final Object[][] data = getData();
+        final Collection<Integer> changed =
+                          model.updateRows(new Object[][]{data[0], data[2]});
+        assertTrue(changed.isEmpty());
+        assertEquals(Arrays.asList("delete:1-1:-1"), events);
+        assertEquals(Arrays.<Object>asList("r1", "r3"), getKeys(model));
+    }
+
+    @Test
+    public void testInsert() {
+        final RowKeyedTableModel model = getModel(getData());
+        final Object[][] data = getData();
+        final Collection<Integer> changed = model.updateRows(
+              new Object[][]{data[0],
+                             {"r1a", "started", "node2"},
+                             data[1],
+                             data[2],
+                             {"r4", "stopped", null}});
+        assertEquals(Arrays.asList(1, 4), new ArrayList<Integer>(changed));
+        assertEquals(Arrays.asList("insert:1-1:-1", "insert:4-4:-1"), events);
+        assertEquals(Arrays.<Object>asList("r1", "r1a", "r2", "r3", "r4"),
+                     getKeys(model));
+    }
+
+    @Test
+    public void testInsertDeleteUpdate() {
+        final RowKeyedTableModel model = getModel(getData());
+        final Object[][] data = getData();
+        data[2][1] = "started";
+        final Collection<Integer> changed = model.updateRows(
+              new Object[][]{{"r0", "stopped", null}, data[0], data[2]});
+        assertEquals(Arrays.asList(0, 2), new ArrayList<Integer>(changed));
+        assertEquals(Arrays.asList("delete:1-1:-1",
+                                   "insert:0-0:-1",
+                                   "update:2-2:1"),
+                     events);
+        assertEquals(Arrays.<Object>asList("r0", "r1", "r3"), getKeys(model));
+        assertEquals("started", model.getValueAt(2, 1));
+    }
+
+    @Test
+    public void testReorder() {
+        final RowKeyedTableModel model = getModel(getData());
+        final Object[][] data = getData();
+        assertNull(model.updateRows(new Object[][]{data[1], data[0], data[2]}));
+        assertEquals(1, events.size());
+        assertTrue(events.get(0).startsWith("structure:"));
+        assertEquals(Arrays.<Object>asList("r2", "r1", "r3"), getKeys(model));
+        /* the next update is diffed against the new order */
+        events.clear();
+        assertTrue(model.updateRows(
+                   new Object[][]{data[1], data[0], data[2]}).isEmpty());
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void testDuplicateKey() {
+        final RowKeyedTableModel model = getModel(getData());
+        final Object[][] data = getData();
+        assertNull(model.updateRows(new Object[][]{data[0], data[0]}));
+        assertEquals(2, model.getRowCount());
+        assertNull(model.updateRows(new Object[][]{{"r1", "started"}}));
+    }
+
+    @Test
+    public void testKeyFromLabel() {
+        final JLabel oldLabel = new JLabel("r1");
+        final RowKeyedTableModel model = getModel(
+                                  new Object[][]{{oldLabel, "started", null}});
+        /* a new label with the same text is the same row and the old one
+           stays in the cell */
+        final Collection<Integer> changed = model.updateRows(
+                        new Object[][]{{new JLabel("r1"), "started", null}});
+        assertTrue(changed.isEmpty());
+        assertTrue(events.isEmpty());
+        assertSame(oldLabel, model.getValueAt(0, 0));
+        /* a different text is a different row */
+        model.updateRows(new Object[][]{{new JLabel("r2"), "started", null}});
+        assertEquals(Arrays.asList("delete:0-0:-1", "insert:0-0:-1"), events);
+    }
+
+    @Test
+    public void testMutableText() {
+        final MutableText state = new MutableText("started");
+        final RowKeyedTableModel model = getModel(
+                                        new Object[][]{{"r1", state, null}});
+        assertTrue(model.updateRows(
+                           new Object[][]{{"r1", state, null}}).isEmpty());
+        /* same object, that shows a different text */
+        state.setText("stopped");
+        assertEquals(Arrays.asList(0),
+                     new ArrayList<Integer>(model.updateRows(
+                                        new Object[][]{{"r1", state, null}})));
+        assertEquals(Arrays.asList("update:0-0:1"), events);
+    }
+
+    @Test
+    public void testRowState() {
+        final Map<String, Object> states = new HashMap<String, Object>();
+        final RowKeyedTableModel model = listen(
+                              new RowKeyedTableModel(getData(), COL_NAMES) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected Object getRowState(final String key) {
+                return states.get(key);
+            }
+        });
+        /* the states are not known before the first update */
+        states.put("r2", "red");
+        assertEquals(Arrays.asList(1),
+                     new ArrayList<Integer>(model.updateRows(getData())));
+        assertEquals(Arrays.asList("update:1-1:-1"), events);
+        events.clear();
+        assertTrue(model.updateRows(getData()).isEmpty());
+        assertTrue(events.isEmpty());
+        states.remove("r2");
+        assertEquals(Arrays.asList(1),
+                     new ArrayList<Integer>(model.updateRows(getData())));
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2013, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.utilities;
+
+import java.security.GeneralSecurityException;
+
+import ch.ethz.ssh2.crypto.cipher.AEADCipher;
+import ch.ethz.ssh2.crypto.cipher.AESGCM;
+import ch.ethz.ssh2.crypto.cipher.BlockCipher;
+import ch.ethz.ssh2.crypto.cipher.BlockCipherFactory;
+import ch.ethz.ssh2.crypto.cipher.BulkBlockCipher;
+import ch.ethz.ssh2.crypto.digest.MAC;
+
+/**
+ * Throughput of the ssh ciphers and macs, pure java and JCE.
+ *
+ * It is not a unit test, run it with:
+ * java -cp ... lcmc.utilities.SSHCipherBenchmark [MB]
+ *
+ * @author Rasto Levrinc
+ *
+ */
+public final class SSHCipherBenchmark {
+    /** Size of one packet. */
+    private static final int PACKET_SIZE = 32768;
+    /** Ciphers to measure. */
+    private static final String[] CIPHERS = {"aes128-ctr",
+                                             "aes256-ctr",
+                                             "aes128-cbc",
+                                             "aes128-gcm@openssh.com",
+                                             "aes256-gcm@openssh.com"};
+    /** Macs to measure. */
+    private static final String[] MACS = {"hmac-sha1",
+                                          "hmac-md5",
+                                          "hmac-sha2-256"};
+    /** Mac that has no pure java implementation. */
+    private static final String JCE_ONLY_MAC = "hmac-sha2-256";
+
+    /** Private constructor, cannot be instantiated. */
+    private SSHCipherBenchmark() {
+        /* no instantiation possible. */
+    }
+
+    /** Runs the benchmark. */
+    public static void main(final String[] args) throws Exception {
+        final int megaBytes = args.length > 0 ? Integer.parseInt(args[0])
+                                              : 256;
+        final long packets = megaBytes * 1024L * 1024L / PACKET_SIZE;
+        for (final String type : CIPHERS) {
+            if (BlockCipherFactory.isAEAD(type)) {
+                if (AESGCM.isAvailable(BlockCipherFactory.getKeySize(type))) {
+                    report(type, "jce", packets, measureAEAD(type, packets));
+                }
+                continue;
+            }
+            BlockCipherFactory.setUseJCE(false);
+            report(type, "java", packets, measureCipher(type, packets));
+            BlockCipherFactory.setUseJCE(true);
+            report(type, "jce", packets, measureCipher(type, packets));
+        }
+        for (final String type : MACS) {
+            if (!JCE_ONLY_MAC.equals(type)) {
+                MAC.setUseJCE(false);
+                report(type, "java", packets, measureMAC(type, packets));
+            }
+            MAC.setUseJCE(true);
+            report(type, "jce", packets, measureMAC(type, packets));
+        }
+    }
+
+    /** Prints the result. */
+    private static void report(final String type,
+                               final String impl,
+                               final long packets,
+                               final long nanos) {
+        final double mb = packets * (double) PACKET_SIZE / (1024 * 1024);
+        System.out.println(String.format("%-24s %-5s %8.1f MB/s",
+                                         type,
+                                         impl,
+                                         mb * 1e9 / nanos));
+    }
+
+    /** Returns the time in ns, that it takes to encrypt the packets. */
+    private static long measureCipher(final String type, final long packets) {
+        final BlockCipher bc = BlockCipherFactory.createCipher(
+                            type,
+                            true,
+                            new byte[BlockCipherFactory.getKeySize(type)],
+                            new byte[BlockCipherFactory.getIVSize(type)]);
+        final int bs = bc.getBlockSize();
+        final byte[] src = new byte[PACKET_SIZE];
+        final byte[] dst = new byte[PACKET_SIZE];
+        /* warm up */
+        encrypt(bc, bs, src, dst, packets / 4 + 1);
+        final long start = System.nanoTime();
+        encrypt(bc, bs, src, dst, packets);
+        return System.nanoTime() - start;
+    }
+
+    /** Encrypts the packets. */
+    private static void encrypt(final BlockCipher bc,
+                                final int bs,
+                                final byte[] src,
+                                final byte[] dst,
+                                final long packets) {
+        for (long p = 0; p < packets; p++) {
+            if (bc instanceof BulkBlockCipher) {
+                ((BulkBlockCipher) bc).transformBlocks(src, 0, dst, 0,
+                                                       PACKET_SIZE);
+            } else {
+                for (int i = 0; i < PACKET_SIZE; i += bs) {
+                    bc.transformBlock(src, i, dst, i);
+                }
+            }
+        }
+    }
+
+    /** Returns the time in ns, that it takes to seal the packets. */
+    private static long measureAEAD(final String type, final long packets)
+    throws GeneralSecurityException {
+        final AEADCipher gcm = BlockCipherFactory.createAEADCipher(
+                            type,
+                            true,
+                            new byte[BlockCipherFactory.getKeySize(type)],
+                            new byte[BlockCipherFactory.getIVSize(type)]);
+        final byte[] aad = new byte[4];
+        final byte[] src = new byte[PACKET_SIZE];
+        final byte[] dst = new byte[PACKET_SIZE + gcm.getTagSize()];
+        for (long p = 0; p < packets / 4 + 1; p++) {
+            gcm.transformPacket(aad, src, 0, PACKET_SIZE, dst, 0);
+        }
+        final long start = System.nanoTime();
+        for (long p = 0; p < packets; p++) {
+            gcm.transformPacket(aad, src, 0, PACKET_SIZE, dst, 0);
+        }
+        return System.nanoTime() - start;
+    }
+
+    /** Returns the time in ns, that it takes to compute the macs. */
+    private static long measureMAC(final String type, final long packets) {
+        final MAC mac = new MAC(type, new byte[MAC.getKeyLen(type)]);
+        final byte[] src = new byte[PACKET_SIZE];
+        final byte[] out = new byte[mac.size()];
+        for (long p = 0; p < packets / 4 + 1; p++) {
+            mac.initMac((int) p);
+            mac.update(src, 0, PACKET_SIZE);
+            mac.getMac(out, 0);
+        }
+        final long start = System.nanoTime();
+        for (long p = 0; p < packets; p++) {
+            mac.initMac((int) p);
+            mac.update(src, 0, PACKET_SIZE);
+            mac.getMac(out, 0);
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,303 @@
+package lcmc.utilities;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import ch.ethz.ssh2.crypto.cipher.AEADCipher;
+import ch.ethz.ssh2.crypto.cipher.AESGCM;
+import ch.ethz.ssh2.crypto.cipher.BlockCipherFactory;
+import ch.ethz.ssh2.crypto.digest.MAC;
+import ch.ethz.ssh2.transport.TransportConnection;
+
+public final class SSHCipherTest1 extends TestCase {
+    /** Logger. */
+    private static final Logger LOG =
+                                 LoggerFactory.getLogger(SSHCipherTest1.class);
+    /** Key of the GCM test cases 3 and 4. */
+    private static final String GCM_KEY = "feffe9928665731c6d6a8f9467308308";
+    /** IV of the GCM test cases 3, 4 and 15. */
+    private static final String GCM_IV = "cafebabefacedbaddecaf888";
+    /** Plain text of the GCM test cases 3 and 15. */
+    private static final String GCM_PLAIN =
+                        "d9313225f88406e5a55909c5aff5269a"
+                        + "86a7a9531534f7da2e4c303d8a318a72"
+                        + "1c3c0c95956809532fcf0e2449a6b525"
+                        + "b16aedf5aa0de657ba637b391aafd255";
+    /** Type of the SSH_MSG_CHANNEL_DATA message. */
+    private static final byte SSH_MSG_CHANNEL_DATA = 94;
+
+    /** Returns the bytes of the hex string. */
+    private static byte[] hex(final String s) {
+        final byte[] b = new byte[s.length() / 2];
+        for (int i = 0; i < b.length; i++) {
+            b[i] = (byte) Integer.parseInt(s.substring(i * 2, i * 2 + 2), 16);
+        }
+        return b;
+    }
+
+    /** Returns the first len bytes of the array. */
+    private static byte[] head(final byte[] b, final int len) {
+        return Arrays.copyOf(b, len);
+    }
+
+    /** Returns the message with the type and len bytes of payload. */
+    private static byte[] getMessage(final int len) {
+        final byte[] message = new byte[len];
+        message[0] = SSH_MSG_CHANNEL_DATA;
+        for (int i = 1; i < len; i++) {
+            message[i] = (byte) (i * 7);
+        }
+        return message;
+    }
+
+    /** Sends the messages through the connection and returns the bytes. */
+    private static byte[] send(final TransportConnection tc,
+                               final ByteArrayOutputStream out,
+                               final byte[][] messages) throws IOException {
+        for (final byte[] message : messages) {
+            tc.sendMessage(message);
+        }
+        return out.toByteArray();
+    }
+
+    /** Receives the messages and checks them. */
+    private static void receive(final TransportConnection tc,
+                                final byte[][] messages) throws IOException {
+        final byte[] buffer = new byte[35000];
+        for (final byte[] message : messages) {
+            assertEquals(message.length, tc.peekNextMessageLength());
+            final int len = tc.receiveMessage(buffer, 0, buffer.length);
+            assertEquals(message.length, len);
+            assertTrue(Arrays.equals(message, head(buffer, len)));
+        }
+    }
+
+    /* ---- tests ----- */
+
+    @Test
+    public void testGCMKnownAnswer() throws Exception {
+        if (!AESGCM.isAvailable(16)) {
+            LOG.info("testGCMKnownAnswer: no AES/GCM in the JCE");
+            return;
+        }
+        /* GCM spec, test case 3, no associated data */
+        final AESGCM enc = new AESGCM(true, hex(GCM_KEY), hex(GCM_IV));
+        final byte[] plain = hex(GCM_PLAIN);
+        final byte[] sealed = new byte[plain.length + AESGCM.TAG_SIZE];
+        assertEquals(sealed.length, enc.transform(null,
+                                                  0,
+                                                  plain,
+                                                  0,
+                                                  plain.length,
+                                                  sealed,
+                                                  0));
+        assertTrue(Arrays.equals(
+            hex("42831ec2217774244b7221b784d0d49c"
+                + "e3aa212f2c02a4e035c17e2329aca12e"
+                + "21d514b25466931c7d8f6a5aac84aa05"
+                + "1ba30b396a0aac973d58e091473f5985"
+                + "4d5c2af327cd64a62cf35abd2ba6fab4"),
+            sealed));
+
+        /* test case 4, with associated data */
+        final byte[] aad = hex("feedfacedeadbeeffeedfacedeadbeefabaddad2");
+        final byte[] sealed4 = new byte[60 + AESGCM.TAG_SIZE];
+        new AESGCM(true, hex(GCM_KEY), hex(GCM_IV)).transform(aad,
+                                                              aad.length,
+                                                              plain,
+                                                              0,
+                                                              60,
+                                                              sealed4,
+                                                              0);
+        assertTrue(Arrays.equals(
+            hex("42831ec2217774244b7221b784d0d49c"
+                + "e3aa212f2c02a4e035c17e2329aca12e"
+                + "21d514b25466931c7d8f6a5aac84aa05"
+                + "1ba30b396a0aac973d58e091"
+                + "5bc94fbc3221a5db94fae95ae7121a47"),
+            sealed4));
+
+        /* and back */
+        final AESGCM dec = new AESGCM(false, hex(GCM_KEY), hex(GCM_IV));
+        final byte[] opened = new byte[60];
+        assertEquals(60, dec.transform(aad,
+                                       aad.length,
+                                       sealed4,
+                                       0,
+                                       sealed4.length,
+                                       opened,
+                                       0));
+        assertTrue(Arrays.equals(head(plain, 60), opened));
+    }
+
+    @Test
+    public void testGCM256KnownAnswer() throws Exception {
+        if (!AESGCM.isAvailable(32)) {
+            LOG.info("testGCM256KnownAnswer: no AES-256/GCM in the JCE");
+            return;
+        }
+        /* GCM spec, test case 15 */
+        final AESGCM enc = new AESGCM(true,
+                                      hex(GCM_KEY + GCM_KEY),
+                                      hex(GCM_IV));
+        final byte[] plain = hex(GCM_PLAIN);
+        final byte[] sealed = new byte[plain.length + AESGCM.TAG_SIZE];
+        enc.transform(null, 0, plain, 0, plain.length, sealed, 0);
+        assertTrue(Arrays.equals(
+            hex("522dc1f099567d07f47f37a32a84427d"
+                + "643a8cdcbfe5c0c97598a2bd2555d1aa"
+                + "8cb08e48590dbb3da7b08b1056828838"
+                + "c5f61e6393ba7a0abcc9f662898015ad"
+                + "b094dac5d93471bdec1a502270e3cc6c"),
+            sealed));
+    }
+
+    @Test
+    public void testGCMCounter() throws Exception {
+        if (!AESGCM.isAvailable(16)) {
+            return;
+        }
+        /* the second packet uses the nonce with the incremented counter, that
+           carries over to the next byte, but not into the fixed part */
+        final byte[] plain = hex(GCM_PLAIN);
+        final byte[] aad = new byte[]{0, 0, 0, 64};
+        final AESGCM enc = new AESGCM(true,
+                                      hex(GCM_KEY),
+                                      hex("00000001ffffffffffffffff"));
+        final byte[] first = new byte[plain.length + AESGCM.TAG_SIZE];
+        final byte[] second = new byte[plain.length + AESGCM.TAG_SIZE];
+        enc.transformPacket(aad, plain, 0, plain.length, first, 0);
+        enc.transformPacket(aad, plain, 0, plain.length, second, 0);
+        final byte[] expected = new byte[plain.length + AESGCM.TAG_SIZE];
+        new AESGCM(true,
+                   hex(GCM_KEY),
+                   hex("000000010000000000000000")).transformPacket(
+                                                            aad,
+                                                            plain,
+                                                            0,
+                                                            plain.length,
+                                                            expected,
+                                                            0);
+        assertTrue(Arrays.equals(expected, second));
+        assertFalse(Arrays.equals(first, second));
+    }
+
+    @Test
+    public void testGCMRoundTrip() throws Exception {
+        final String type = "aes128-gcm@openssh.com";
+        if (!AESGCM.isAvailable(16)) {
+            return;
+        }
+        assertTrue(BlockCipherFactory.isAEAD(type));
+        final byte[] key = hex(GCM_KEY);
+        final byte[] iv = hex(GCM_IV);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final TransportConnection sender =
+                                 new TransportConnection(null,
+                                                         out,
+                                                         new SecureRandom());
+        final AEADCipher enc =
+                     BlockCipherFactory.createAEADCipher(type, true, key, iv);
+        sender.changeSendCipher(enc);
+        final byte[][] messages = {getMessage(1),
+                                   getMessage(15),
+                                   getMessage(16),
+                                   getMessage(1000),
+                                   getMessage(32768)};
+        final byte[] wire = send(sender, out, messages);
+
+        /* the plain text is not on the wire */
+        final byte[] last = messages[messages.length - 1];
+        final String wireString = new String(wire, "ISO-8859-1");
+        assertEquals(-1, wireString.indexOf(
+                             new String(last, 1, 64, "ISO-8859-1")));
+
+        final TransportConnection receiver =
+                        new TransportConnection(new ByteArrayInputStream(wire),
+                                                null,
+                                                new SecureRandom());
+        receiver.changeRecvCipher(
+                    BlockCipherFactory.createAEADCipher(type, false, key, iv));
+        receive(receiver, messages);
+    }
+
+    @Test
+    public void testGCMCorruptPacket() throws Exception {
+        final String type = "aes128-gcm@openssh.com";
+        if (!AESGCM.isAvailable(16)) {
+            return;
+        }
+        final byte[] key = hex(GCM_KEY);
+        final byte[] iv = hex(GCM_IV);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final TransportConnection sender =
+                                 new TransportConnection(null,
+                                                         out,
+                                                         new SecureRandom());
+        sender.changeSendCipher(
+                     BlockCipherFactory.createAEADCipher(type, true, key, iv));
+        final byte[] wire = send(sender, out, new byte[][]{getMessage(100)});
+        wire[10] ^= 1;
+        final TransportConnection receiver =
+                        new TransportConnection(new ByteArrayInputStream(wire),
+                                                null,
+                                                new SecureRandom());
+        receiver.changeRecvCipher(
+                   BlockCipherFactory.createAEADCipher(type, false, key, iv));
+        try {
+            receiver.receiveMessage(new byte[35000], 0, 35000);
+            fail("corrupt packet was accepted");
+        } catch (final IOException e) {
+            assertEquals("Remote sent corrupt packet.", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testCTRRoundTrip() throws Exception {
+        final String type = "aes128-ctr";
+        assertFalse(BlockCipherFactory.isAEAD(type));
+        final byte[] key = hex(GCM_KEY);
+        final byte[] iv = hex(GCM_KEY);
+        final byte[] macKey = new byte[MAC.getKeyLen("hmac-sha1")];
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final TransportConnection sender =
+                                 new TransportConnection(null,
+                                                         out,
+                                                         new SecureRandom());
+        sender.changeSendCipher(
+                        BlockCipherFactory.createCipher(type, true, key, iv),
+                        new MAC("hmac-sha1", macKey));
+        final byte[][] messages = {getMessage(1),
+                                   getMessage(100),
+                                   getMessage(32768)};
+        final byte[] wire = send(sender, out, messages);
+        final TransportConnection receiver =
+                        new TransportConnection(new ByteArrayInputStream(wire),
+                                                null,
+                                                new SecureRandom());
+        receiver.changeRecvCipher(
+                        BlockCipherFactory.createCipher(type, false, key, iv),
+                        new MAC("hmac-sha1", macKey));
+        receive(receiver, messages);
+    }
+
+    @Test
+    public void testAEADIsNotBlockCipher() {
+        try {
+            BlockCipherFactory.createCipher("aes128-gcm@openssh.com",
+                                            true,
+                                            new byte[16],
+                                            new byte[12]);
+            if (AESGCM.isAvailable(16)) {
+                fail("aead cipher was created as a block cipher");
+            }
+        } catch (final IllegalArgumentException e) {
+            /* expected */
+        }
+    }
+}